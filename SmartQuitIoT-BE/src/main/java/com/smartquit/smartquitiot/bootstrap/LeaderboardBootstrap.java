@@ -0,0 +1,32 @@
+package com.smartquit.smartquitiot.bootstrap;
+
+import com.smartquit.smartquitiot.service.LeaderboardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Dựng lại sorted set từ DB khi khởi động và mỗi đêm để sửa lệch (Redis flush, lỗi ghi...)
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LeaderboardBootstrap {
+
+  private final LeaderboardService leaderboardService;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void seed() {
+    rebuild();
+  }
+
+  @Scheduled(cron = "0 15 3 * * *")
+  public void rebuild() {
+    try {
+      leaderboardService.rebuildAll();
+    } catch (Exception e) {
+      log.error("Failed to rebuild leaderboards", e);
+    }
+  }
+}
@@ -2,6 +2,7 @@ package com.smartquit.smartquitiot.client;
 
 import com.smartquit.smartquitiot.dto.request.*;
 import com.smartquit.smartquitiot.dto.response.*;
+import feign.Request;
 import feign.Response;
 import java.util.Map;
 import org.springframework.cloud.openfeign.FeignClient;
@@ -30,7 +31,8 @@ public interface AiServiceClient {
   Object getWeeklySummary(@RequestBody AISummaryRequest request);
 
   @PostMapping("/analyze-diary")
-  AnalyzeDiaryResponse analyzeDiaryRecord(@RequestBody AnalyzeDiaryRequest request);
+  AnalyzeDiaryResponse analyzeDiaryRecord(
+      @RequestBody AnalyzeDiaryRequest request, Request.Options options);
 
   @PostMapping(value = "/voice-to-text", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
   VoiceToTextResponse voiceToText(@RequestPart("file") MultipartFile file);
@@ -48,5 +50,6 @@ public interface AiServiceClient {
   PredictRiskResponse getRiskPredictionDashboard(@RequestBody PredictRiskRequest request);
 
   @PostMapping("/predict-risk/mobile")
-  PeakCravingResponse getPeakCravingPrediction(@RequestBody PredictRiskMobileRequest request);
+  PeakCravingResponse getPeakCravingPrediction(
+      @RequestBody PredictRiskMobileRequest request, Request.Options options);
 }
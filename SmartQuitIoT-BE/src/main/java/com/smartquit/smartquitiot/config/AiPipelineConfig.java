@@ -0,0 +1,39 @@
+package com.smartquit.smartquitiot.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AiPipelineConfig {
+
+  // Virtual threads cho I/O tới AI service, giới hạn số call đồng thời + hàng đợi có cận
+  // để không dồn request vô hạn khi AI service chậm (task bị reject thay vì block diary save)
+  @Bean(destroyMethod = "shutdown")
+  public ThreadPoolExecutor diaryAiExecutor(
+      @Value("${app.ai.pipeline.concurrency:8}") int concurrency,
+      @Value("${app.ai.pipeline.queue-capacity:1000}") int queueCapacity,
+      MeterRegistry meterRegistry) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            concurrency,
+            concurrency,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            Thread.ofVirtual().name("diary-ai-", 0).factory(),
+            new ThreadPoolExecutor.AbortPolicy());
+    Gauge.builder("diary.ai.pipeline.queue.depth", executor, e -> e.getQueue().size())
+        .description("Diary AI tasks waiting for a worker")
+        .register(meterRegistry);
+    Gauge.builder("diary.ai.pipeline.active", executor, ThreadPoolExecutor::getActiveCount)
+        .description("Diary AI tasks currently calling the AI service")
+        .register(meterRegistry);
+    return executor;
+  }
+}
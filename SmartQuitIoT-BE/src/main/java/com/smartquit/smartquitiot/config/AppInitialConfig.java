@@ -6,6 +6,7 @@ import com.smartquit.smartquitiot.entity.*;
 import com.smartquit.smartquitiot.enums.*;
 import com.smartquit.smartquitiot.repository.*;
 import com.smartquit.smartquitiot.service.PhaseService;
+import com.smartquit.smartquitiot.service.TriggerStatService;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -31,6 +32,7 @@ public class AppInitialConfig {
   private final MissionTypeRepository missionTypeRepository;
   private final InterestCategoryRepository interestCategoryRepository;
   private final PhaseService phaseService;
+  private final TriggerStatService triggerStatService;
 
   @Bean
   ApplicationRunner applicationRunner() {
@@ -112,6 +114,12 @@ public class AppInitialConfig {
       if (interestCategoryRepository.count() == 0) {
         initInterestCategories();
       }
+      // thống kê trigger cho diary cũ; đã có thì bỏ qua nên chạy lại mỗi lần start cũng được
+      try {
+        triggerStatService.backfillMissingStats();
+      } catch (Exception e) {
+        log.warn("Trigger stat backfill failed: {}", e.getMessage());
+      }
     };
   }
 
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature; // Import this
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import java.time.Duration;
+import java.util.Set;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
@@ -15,13 +17,32 @@ import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
+@EnableCaching
 public class RedisConfig {
 
-  private GenericJackson2JsonRedisSerializer getJsonSerializer() {
+  public static final Set<String> CACHE_NAMES =
+      Set.of(
+          "diary_record",
+          "member_charts",
+          "member_chart_series",
+          "member_diary_history",
+          "risk_prediction",
+          "member_owned_achievements",
+          "member_top_triggers",
+          "plan_generation_jobs",
+          "news_details",
+          "post_details");
+
+  /** Value serializer of every cache in {@link #CACHE_NAMES}. */
+  public static GenericJackson2JsonRedisSerializer getJsonSerializer() {
     ObjectMapper objectMapper = new ObjectMapper();
     objectMapper.registerModule(new JavaTimeModule());
     objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-    return new GenericJackson2JsonRedisSerializer(objectMapper);
+    // cần type hint, không thì cache trả về LinkedHashMap thay vì DTO
+    return GenericJackson2JsonRedisSerializer.builder()
+        .objectMapper(objectMapper)
+        .defaultTyping(true)
+        .build();
   }
 
   @Bean
@@ -36,7 +57,13 @@ public class RedisConfig {
                     new StringRedisSerializer()))
             .serializeValuesWith(
                 RedisSerializationContext.SerializationPair.fromSerializer(jsonSerializer));
-    return RedisCacheManager.builder(connectionFactory).cacheDefaults(config).build();
+    // khai báo trước tên cache + bật statistics để actuator export cache.gets{result=hit|miss},
+    // cache.puts, cache.evictions theo từng cache
+    return RedisCacheManager.builder(connectionFactory)
+        .cacheDefaults(config)
+        .initialCacheNames(CACHE_NAMES)
+        .enableStatistics()
+        .build();
   }
 
   @Bean
@@ -71,6 +71,9 @@ public class SecurityConfig {
           Map.entry("/quit-plan/time", HttpMethod.GET),
           Map.entry("/quit-plan/keep-plan", HttpMethod.POST),
           Map.entry("/quit-plan/create-new", HttpMethod.POST),
+          Map.entry("/quit-plan/create-in-first-login/async", HttpMethod.POST),
+          Map.entry("/quit-plan/create-new/async", HttpMethod.POST),
+          Map.entry("/quit-plan/jobs/{jobId}", HttpMethod.GET),
           Map.entry("/form-metric", HttpMethod.GET),
           Map.entry("/form-metric", HttpMethod.POST),
           Map.entry("/quit-plan/all-quit-plan", HttpMethod.GET),
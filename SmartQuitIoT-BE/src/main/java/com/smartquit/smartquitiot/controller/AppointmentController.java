@@ -102,6 +102,33 @@ public class AppointmentController {
     return ResponseEntity.ok(GlobalResponse.ok("Appointments fetched", res));
   }
 
+  /** Cursor pagination: beforeId (appointment id của item cuối trang trước) và limit. */
+  @GetMapping("/cursor")
+  @PreAuthorize("hasAnyRole('MEMBER','COACH')")
+  @SecurityRequirement(name = "Bearer Authentication")
+  public ResponseEntity<GlobalResponse> listForCurrentUserByCursor(
+      @RequestParam(required = false) String status,
+      @RequestParam(required = false) String date,
+      @RequestParam(required = false) Integer beforeId,
+      @RequestParam(defaultValue = "20") int limit,
+      Authentication authentication,
+      @AuthenticationPrincipal Jwt jwt) {
+
+    int accountId = getAccountId(jwt);
+    boolean isCoach =
+        authentication.getAuthorities().stream()
+            .anyMatch(a -> a.getAuthority().equals("ROLE_COACH"));
+
+    var res =
+        isCoach
+            ? appointmentService.getCoachAppointmentsBefore(
+                accountId, status, date, beforeId, limit)
+            : appointmentService.getMemberAppointmentsBefore(
+                accountId, status, date, beforeId, limit);
+
+    return ResponseEntity.ok(GlobalResponse.ok("Appointments fetched", res));
+  }
+
   @PostMapping("/{appointmentId}/join-token")
   @PreAuthorize("hasAnyRole('MEMBER','COACH')")
   @SecurityRequirement(name = "Bearer Authentication")
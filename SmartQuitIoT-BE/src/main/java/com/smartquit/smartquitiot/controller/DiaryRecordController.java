@@ -64,6 +64,32 @@ public class DiaryRecordController {
     return ResponseEntity.ok(diaryRecordService.getDiaryRecordsChartsByMemberId(memberId));
   }
 
+  @GetMapping("/charts/series")
+  @SecurityRequirement(name = "Bearer Authentication")
+  @Operation(
+      summary =
+          "Get compact (columnar) chart series for the authenticated member, optionally"
+              + " windowed by date and downsampled to at most `downsample` points")
+  public ResponseEntity<?> getDiaryChartSeries(
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+      @RequestParam(required = false) Integer downsample) {
+    log.debug("REST request to get chart series for current user");
+    return ResponseEntity.ok(diaryRecordService.getDiaryChartSeries(from, to, downsample));
+  }
+
+  @GetMapping("/charts/series/{memberId}")
+  @Operation(summary = "Get compact (columnar) chart series for member")
+  public ResponseEntity<?> getDiaryChartSeriesByMemberId(
+      @PathVariable int memberId,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+      @RequestParam(required = false) Integer downsample) {
+    log.info("REST request to get chart series for memberId: {}", memberId);
+    return ResponseEntity.ok(
+        diaryRecordService.getDiaryChartSeriesByMemberId(memberId, from, to, downsample));
+  }
+
   @GetMapping("/history/{memberId}")
   @Operation(summary = "Get diary record history for member")
   public ResponseEntity<?> getDiaryRecordHistoryByMemberId(@PathVariable int memberId) {
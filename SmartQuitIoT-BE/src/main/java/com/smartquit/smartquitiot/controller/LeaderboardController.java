@@ -0,0 +1,49 @@
+package com.smartquit.smartquitiot.controller;
+
+import com.smartquit.smartquitiot.dto.response.GlobalResponse;
+import com.smartquit.smartquitiot.dto.response.LeaderboardEntryDTO;
+import com.smartquit.smartquitiot.dto.response.LeaderboardResponse;
+import com.smartquit.smartquitiot.enums.LeaderboardType;
+import com.smartquit.smartquitiot.service.LeaderboardService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@Slf4j
+@RestController
+@RequestMapping("/leaderboards")
+@RequiredArgsConstructor
+public class LeaderboardController {
+
+  private final LeaderboardService leaderboardService;
+
+  @GetMapping("/{type}")
+  @PreAuthorize("hasRole('MEMBER')")
+  @SecurityRequirement(name = "Bearer Authentication")
+  @Operation(summary = "Get a leaderboard page (STREAKS, MONEY_SAVED, ACHIEVEMENTS) with my rank")
+  public ResponseEntity<GlobalResponse<LeaderboardResponse>> getLeaderboard(
+      @PathVariable LeaderboardType type,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "10") int size) {
+    log.debug("REST request to get leaderboard {} page {} size {}", type, page, size);
+    return ResponseEntity.ok(
+        GlobalResponse.ok(
+            "Leaderboard fetched successfully",
+            leaderboardService.getLeaderboard(type, page, size)));
+  }
+
+  @GetMapping("/{type}/me")
+  @PreAuthorize("hasRole('MEMBER')")
+  @SecurityRequirement(name = "Bearer Authentication")
+  @Operation(summary = "Get my rank on a leaderboard")
+  public ResponseEntity<GlobalResponse<LeaderboardEntryDTO>> getMyRank(
+      @PathVariable LeaderboardType type) {
+    log.debug("REST request to get my rank on leaderboard {}", type);
+    return ResponseEntity.ok(
+        GlobalResponse.ok("Rank fetched successfully", leaderboardService.getMyRank(type)));
+  }
+}
@@ -5,8 +5,10 @@ import com.smartquit.smartquitiot.dto.request.CreateQuitPlanInFirstLoginRequest;
 import com.smartquit.smartquitiot.dto.request.KeepPhaseOfQuitPlanRequest;
 import com.smartquit.smartquitiot.dto.response.AiPredictionResponse;
 import com.smartquit.smartquitiot.dto.response.PhaseBatchMissionsResponse;
+import com.smartquit.smartquitiot.dto.response.PlanGenerationJobResponse;
 import com.smartquit.smartquitiot.dto.response.QuitPlanResponse;
 import com.smartquit.smartquitiot.dto.response.TimeResponse;
+import com.smartquit.smartquitiot.service.PlanGenerationJobService;
 import com.smartquit.smartquitiot.service.QuitPlanService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -24,6 +26,7 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class QuitPlanController {
   private final QuitPlanService quitPlanService;
+  private final PlanGenerationJobService planGenerationJobService;
 
   @PostMapping("/create-in-first-login")
   @PreAuthorize("hasRole('MEMBER')")
@@ -37,6 +40,40 @@ public class QuitPlanController {
     return ResponseEntity.status(HttpStatus.CREATED).body(response);
   }
 
+  @PostMapping("/create-in-first-login/async")
+  @PreAuthorize("hasRole('MEMBER')")
+  @SecurityRequirement(name = "Bearer Authentication")
+  @Operation(
+      summary =
+          "Start creating the first quit plan in background, poll /quit-plan/jobs/{jobId} or"
+              + " subscribe /topic/quit-plan-jobs/{accountId} for the result")
+  public ResponseEntity<PlanGenerationJobResponse> submitQuitPlanInFirstLogin(
+      @RequestBody CreateQuitPlanInFirstLoginRequest req) {
+    log.info("REST request to submit initial QuitPlan job: {}", req.getQuitPlanName());
+    PlanGenerationJobResponse response = planGenerationJobService.submitFirstLoginPlan(req);
+    return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+  }
+
+  @PostMapping("/create-new/async")
+  @PreAuthorize("hasRole('MEMBER')")
+  @SecurityRequirement(name = "Bearer Authentication")
+  @Operation(summary = "Start creating a NEW QUIT PLAN in background")
+  public ResponseEntity<PlanGenerationJobResponse> submitNewQuitPlan(
+      @RequestBody CreateNewQuitPlanRequest req) {
+    log.info("REST request to submit NEW QuitPlan job: {}", req.getQuitPlanName());
+    PlanGenerationJobResponse response = planGenerationJobService.submitNewPlan(req);
+    return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+  }
+
+  @GetMapping("/jobs/{jobId}")
+  @PreAuthorize("hasRole('MEMBER')")
+  @SecurityRequirement(name = "Bearer Authentication")
+  @Operation(summary = "Get status of a quit plan generation job")
+  public ResponseEntity<PlanGenerationJobResponse> getPlanGenerationJob(
+      @PathVariable String jobId) {
+    return ResponseEntity.ok(planGenerationJobService.getJob(jobId));
+  }
+
   @GetMapping()
   @PreAuthorize("hasRole('MEMBER')")
   @Operation(summary = "Get information of current quit plan ")
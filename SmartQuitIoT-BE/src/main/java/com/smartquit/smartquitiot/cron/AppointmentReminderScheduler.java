@@ -2,31 +2,59 @@ package com.smartquit.smartquitiot.cron;
 
 import com.smartquit.smartquitiot.entity.Account;
 import com.smartquit.smartquitiot.entity.Appointment;
+import com.smartquit.smartquitiot.entity.CoachWorkSchedule;
 import com.smartquit.smartquitiot.enums.AppointmentStatus;
 import com.smartquit.smartquitiot.enums.NotificationType;
 import com.smartquit.smartquitiot.repository.AppointmentRepository;
-import com.smartquit.smartquitiot.repository.NotificationRepository;
 import com.smartquit.smartquitiot.service.NotificationService;
 import java.time.*;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Sends the coach reminder for appointments whose precomputed {@code reminderAt} has passed. The
+ * time is written by AppointmentServiceImpl on book / reassign and cleared on cancel, so a run only
+ * reads due rows.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 // @ConditionalOnProperty(prefix = "scheduler.reminder", name = "enabled", havingValue = "true")
 public class AppointmentReminderScheduler {
 
+  public static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+  // reminder offset in minutes
+  public static final int REMINDER_MINUTES = 10;
+
   private final AppointmentRepository appointmentRepository;
-  private final NotificationRepository notificationRepository;
   private final NotificationService notificationService;
 
-  // reminder offset in minutes
-  private static final int REMINDER_MINUTES = 10;
+  /** Reminder time of an appointment held on {@code cws}, in Vietnam local time. */
+  public static LocalDateTime reminderAtFor(CoachWorkSchedule cws) {
+    if (cws == null || cws.getDate() == null || cws.getSlot() == null) return null;
+    return LocalDateTime.of(cws.getDate(), cws.getSlot().getStartTime())
+        .minusMinutes(REMINDER_MINUTES);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional
+  public void backfillReminderIndex() {
+    try {
+      int updated = appointmentRepository.backfillReminderAt(REMINDER_MINUTES, LocalDate.now(ZONE));
+      if (updated > 0) {
+        log.info("Backfilled reminderAt for {} appointment(s)", updated);
+      }
+    } catch (Exception e) {
+      log.error("Failed to backfill appointment reminder index: {}", e.getMessage(), e);
+    }
+  }
 
   @Scheduled(
       fixedDelayString = "${scheduler.reminder.ms:300000}",
@@ -34,50 +62,24 @@ public class AppointmentReminderScheduler {
   @Transactional
   public void remindUpcomingAppointments() {
     try {
-      ZoneId zone = ZoneId.of("Asia/Ho_Chi_Minh");
-      ZonedDateTime now = ZonedDateTime.now(zone);
-      ZonedDateTime target = now.plusMinutes(REMINDER_MINUTES);
-
-      LocalDate date = target.toLocalDate();
-      LocalTime from = target.toLocalTime().minusSeconds(60);
-      LocalTime to = target.toLocalTime().plusSeconds(60);
-
-      log.debug(
-          "ReminderScheduler: scanning appointments for date={} time between {} and {}",
-          date,
-          from,
-          to);
-
-      List<Appointment> upcoming =
-          appointmentRepository.findAppointmentsForReminder(
-              date, from, to, AppointmentStatus.PENDING);
-
-      for (Appointment a : upcoming) {
+      LocalDateTime now = LocalDateTime.now(ZONE);
+      // reminderAt quá REMINDER_MINUTES nghĩa là buổi hẹn đã bắt đầu => bỏ qua
+      List<Appointment> due =
+          appointmentRepository.findDueReminders(
+              now.minusMinutes(REMINDER_MINUTES), now, AppointmentStatus.PENDING);
+      log.debug("ReminderScheduler: {} appointment reminder(s) due at {}", due.size(), now);
+
+      for (Appointment a : due) {
         try {
-          if (a.getCoach() == null || a.getCoach().getAccount() == null) {
-            log.warn("Appointment {} missing coach/account -> skip reminder", a.getId());
-            continue;
-          }
-
-          Account coachAccount = a.getCoach().getAccount();
-          int coachAccountId = coachAccount.getId();
-          String deepLink = "smartquit://appointment/" + a.getId();
-
-          boolean already =
-              notificationRepository
-                  .existsByAccount_IdAndNotificationTypeAndDeepLinkAndIsDeletedFalse(
-                      coachAccountId, NotificationType.APPOINTMENT_REMINDER, deepLink);
-          if (already) {
+          if (appointmentRepository.markReminderSent(a.getId()) == 0) {
             log.debug("Reminder already sent for appointment {} -> skip", a.getId());
             continue;
           }
 
-          LocalDate apDate = a.getCoachWorkSchedule().getDate();
+          Account coachAccount = a.getCoach().getAccount();
           LocalTime startTime = a.getCoachWorkSchedule().getSlot().getStartTime();
-          ZonedDateTime startZ = LocalDateTime.of(apDate, startTime).atZone(zone);
-          ZonedDateTime nowZ = ZonedDateTime.now(zone);
-
-          long minutesUntilStart = Duration.between(nowZ, startZ).toMinutes();
+          LocalDateTime start = LocalDateTime.of(a.getCoachWorkSchedule().getDate(), startTime);
+          long minutesUntilStart = Duration.between(now, start).toMinutes();
 
           String title = "Upcoming appointment in " + minutesUntilStart + " minutes";
           String content =
@@ -92,10 +94,12 @@ public class AppointmentReminderScheduler {
               content,
               null,
               "appointments/" + a.getId(),
-              deepLink);
+              "smartquit://appointment/" + a.getId());
 
           log.info(
-              "Sent reminder for appointment {} to coachAccount={}", a.getId(), coachAccountId);
+              "Sent reminder for appointment {} to coachAccount={}",
+              a.getId(),
+              coachAccount.getId());
         } catch (Exception e) {
           log.error("Failed to send reminder for appointment {}: {}", a.getId(), e.getMessage(), e);
         }
@@ -1,106 +1,87 @@
 package com.smartquit.smartquitiot.cron;
 
-import com.smartquit.smartquitiot.entity.Appointment;
 import com.smartquit.smartquitiot.enums.AppointmentStatus;
 import com.smartquit.smartquitiot.repository.AppointmentRepository;
 import jakarta.transaction.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.List;
-import java.util.stream.Collectors;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+/**
+ * Moves appointments PENDING -> IN_PROGRESS -> COMPLETED from their slot times with set-based
+ * updates. Looks back {@code catchUpDays} so runs missed while the app was down, and slots that end
+ * after midnight, are still closed.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class AppointmentStatusCron {
 
-  private final AppointmentRepository appointmentRepository;
   private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+  private static final List<String> OPEN_STATUSES =
+      List.of(AppointmentStatus.PENDING.name(), AppointmentStatus.IN_PROGRESS.name());
+  private static final List<String> PENDING_ONLY = List.of(AppointmentStatus.PENDING.name());
+
+  private final AppointmentRepository appointmentRepository;
+  private final int catchUpDays;
+
+  /** IDs moved by one run, for callers that want to notify the participants. */
+  public record Transitions(List<Integer> started, List<Integer> completed) {}
+
+  public AppointmentStatusCron(
+      AppointmentRepository appointmentRepository,
+      @Value("${scheduler.appointment-status.catch-up-days:7}") int catchUpDays) {
+    this.appointmentRepository = appointmentRepository;
+    this.catchUpDays = catchUpDays;
+  }
 
   @Scheduled(fixedDelay = 300000)
   @Transactional
   public void updateAppointmentStatuses() {
     try {
-      LocalDate today = LocalDate.now(ZONE);
-
-      // bỏ qua completed và cancelled
-      List<AppointmentStatus> watch =
-          List.of(AppointmentStatus.PENDING, AppointmentStatus.IN_PROGRESS);
-
-      List<Appointment> appointments = appointmentRepository.findAllByDateAndStatusIn(today, watch);
-      if (appointments == null || appointments.isEmpty()) {
-        log.debug("No appointments to update for {}", today);
+      Transitions transitions = transitionStatuses(LocalDateTime.now(ZONE));
+      if (transitions.started().isEmpty() && transitions.completed().isEmpty()) {
+        log.debug("No appointment status changes");
         return;
       }
+      log.info(
+          "Auto-updated appointments: {} started {}, {} completed {}",
+          transitions.started().size(),
+          transitions.started(),
+          transitions.completed().size(),
+          transitions.completed());
+    } catch (Exception ex) {
+      log.error("AppointmentStatusCron failed: {}", ex.getMessage(), ex);
+    }
+  }
 
-      LocalDateTime now = LocalDateTime.now(ZONE);
-
-      List<Appointment> toSave =
-          appointments.stream()
-              .filter(
-                  a ->
-                      a != null
-                          && a.getCoachWorkSchedule() != null
-                          && a.getCoachWorkSchedule().getSlot() != null)
-              .peek(
-                  a -> {
-                    try {
-                      var slot = a.getCoachWorkSchedule().getSlot();
-                      LocalTime start = slot.getStartTime();
-                      LocalTime end = slot.getEndTime();
-                      if (start == null || end == null) {
-                        log.warn("Appointment {} has null slot times - skipping", a.getId());
-                        return;
-                      }
-
-                      LocalDate apDate = a.getDate();
-                      LocalDateTime startDt = LocalDateTime.of(apDate, start);
-                      LocalDateTime endDt = LocalDateTime.of(apDate, end);
+  /**
+   * Applies both transitions as of {@code now} and returns the changed IDs. Must run inside a
+   * transaction: the IDs are selected FOR UPDATE so the returned lists are exactly the rows
+   * updated.
+   */
+  @Transactional
+  public Transitions transitionStatuses(LocalDateTime now) {
+    LocalDate today = now.toLocalDate();
+    LocalDate fromDate = today.minusDays(catchUpDays);
 
-                      // Transition logic
-                      if (now.isBefore(startDt)) {
-                        // before start -> keep PENDING
-                        // don't change
-                      } else if (!now.isBefore(startDt) && now.isBefore(endDt)) {
-                        // between start and end -> IN_PROGRESS
-                        if (a.getAppointmentStatus() != AppointmentStatus.IN_PROGRESS) {
-                          a.setAppointmentStatus(AppointmentStatus.IN_PROGRESS);
-                        }
-                      } else if (!now.isBefore(endDt)) {
-                        // after end -> COMPLETED
-                        if (a.getAppointmentStatus() != AppointmentStatus.COMPLETED) {
-                          a.setAppointmentStatus(AppointmentStatus.COMPLETED);
-                        }
-                      }
-                    } catch (Exception e) {
-                      log.error(
-                          "Error computing status for appointment {}: {}",
-                          a.getId(),
-                          e.getMessage(),
-                          e);
-                    }
-                  })
-              // filter only those we changed (to avoid unnecessary saves)
-              .filter(
-                  a ->
-                      a.getAppointmentStatus() == AppointmentStatus.IN_PROGRESS
-                          || a.getAppointmentStatus() == AppointmentStatus.COMPLETED)
-              .collect(Collectors.toList());
+    // kết thúc trước => appointment bị lỡ (vẫn PENDING) cũng đi thẳng sang COMPLETED
+    List<Integer> completed =
+        appointmentRepository.lockEndedIds(OPEN_STATUSES, fromDate, today, now);
+    if (!completed.isEmpty()) {
+      appointmentRepository.updateStatusByIds(
+          completed, OPEN_STATUSES, AppointmentStatus.COMPLETED.name());
+    }
 
-      if (!toSave.isEmpty()) {
-        appointmentRepository.saveAll(toSave);
-        log.info("Auto-updated {} appointments for {}", toSave.size(), today);
-      } else {
-        log.debug("No appointment status changes for {}", today);
-      }
-    } catch (Exception ex) {
-      log.error("AppointmentStatusCron failed: {}", ex.getMessage(), ex);
+    List<Integer> started = appointmentRepository.lockStartedIds(fromDate, today, now);
+    if (!started.isEmpty()) {
+      appointmentRepository.updateStatusByIds(
+          started, PENDING_ONLY, AppointmentStatus.IN_PROGRESS.name());
     }
+    return new Transitions(started, completed);
   }
 }
@@ -0,0 +1,59 @@
+package com.smartquit.smartquitiot.cron;
+
+import com.smartquit.smartquitiot.entity.Metric;
+import com.smartquit.smartquitiot.repository.DiaryRecordRepository;
+import com.smartquit.smartquitiot.repository.MetricRepository;
+import com.smartquit.smartquitiot.util.MetricAggregateUtils;
+import jakarta.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/** Rebuilds the running diary aggregates on Metric when they drift from DiaryRecord. */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MetricAggregateReconcileCron {
+
+  private final MetricRepository metricRepository;
+  private final DiaryRecordRepository diaryRecordRepository;
+
+  @Scheduled(cron = "${scheduler.metric-reconcile.cron:0 30 2 * * *}")
+  @Transactional
+  public void reconcileMetricAggregates() {
+    try {
+      Map<Integer, Object[]> rowsByMember = new HashMap<>();
+      for (Object[] row : diaryRecordRepository.aggregateGroupByMember()) {
+        rowsByMember.put(((Number) row[0]).intValue(), row);
+      }
+
+      List<Metric> drifted = new ArrayList<>();
+      for (Metric metric : metricRepository.findAll()) {
+        if (metric.getMember() == null) {
+          continue;
+        }
+        Object[] row = rowsByMember.get(metric.getMember().getId());
+        if (MetricAggregateUtils.matchesRow(metric, row)) {
+          continue;
+        }
+        MetricAggregateUtils.resetFromRow(metric, row);
+        MetricAggregateUtils.refreshAverages(metric);
+        drifted.add(metric);
+      }
+
+      if (drifted.isEmpty()) {
+        log.debug("Metric aggregates are in sync");
+        return;
+      }
+      metricRepository.saveAll(drifted);
+      log.info("Reconciled diary aggregates for {} metric(s)", drifted.size());
+    } catch (Exception e) {
+      log.error("Error while reconciling metric aggregates", e);
+    }
+  }
+}
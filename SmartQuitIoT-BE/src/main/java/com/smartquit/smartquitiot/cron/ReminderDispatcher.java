@@ -0,0 +1,218 @@
+package com.smartquit.smartquitiot.cron;
+
+import com.smartquit.smartquitiot.entity.Member;
+import com.smartquit.smartquitiot.entity.ReminderQueue;
+import com.smartquit.smartquitiot.enums.NotificationType;
+import com.smartquit.smartquitiot.enums.ReminderQueueStatus;
+import com.smartquit.smartquitiot.repository.ReminderQueueRepository;
+import com.smartquit.smartquitiot.service.NotificationService;
+import com.smartquit.smartquitiot.service.PushDeliveryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Sends due ReminderQueue rows. Each worker owns the rows with {@code id % shards == shard} and
+ * claims them in batches with a lease, so several app instances can run this at the same time
+ * without pushing the same reminder twice. Claim and completion commit per batch; the pushes of a
+ * batch are handed to PushDeliveryService after the completion commit.
+ */
+@Slf4j
+@Component
+public class ReminderDispatcher {
+
+  private final ReminderQueueRepository reminderQueueRepository;
+  private final NotificationService notificationService;
+  private final PushDeliveryService pushDeliveryService;
+  private final TransactionTemplate tx;
+  private final ExecutorService workers;
+  private final int shards;
+  private final int batchSize;
+  private final int maxBatchesPerRun;
+  private final Duration lease;
+  private final Map<ReminderQueueStatus, Counter> dispatched =
+      new EnumMap<>(ReminderQueueStatus.class);
+
+  public ReminderDispatcher(
+      ReminderQueueRepository reminderQueueRepository,
+      NotificationService notificationService,
+      PushDeliveryService pushDeliveryService,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry,
+      @Value("${app.reminder.dispatch.shards:4}") int shards,
+      @Value("${app.reminder.dispatch.batch-size:100}") int batchSize,
+      @Value("${app.reminder.dispatch.max-batches-per-run:50}") int maxBatchesPerRun,
+      @Value("${app.reminder.dispatch.lease-seconds:300}") long leaseSeconds) {
+    this.reminderQueueRepository = reminderQueueRepository;
+    this.notificationService = notificationService;
+    this.pushDeliveryService = pushDeliveryService;
+    this.tx = new TransactionTemplate(transactionManager);
+    this.shards = Math.max(shards, 1);
+    this.batchSize = batchSize;
+    this.maxBatchesPerRun = maxBatchesPerRun;
+    this.lease = Duration.ofSeconds(leaseSeconds);
+    this.workers =
+        Executors.newFixedThreadPool(
+            this.shards, Thread.ofVirtual().name("reminder-dispatch-", 0).factory());
+    for (ReminderQueueStatus status : ReminderQueueStatus.values()) {
+      dispatched.put(
+          status,
+          Counter.builder("reminder.dispatch.completed")
+              .tag("status", status.name())
+              .register(meterRegistry));
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.reminder.dispatch.interval-ms:60000}")
+  public void dispatchDueReminders() {
+    List<Future<Integer>> runs = new ArrayList<>(shards);
+    for (int shard = 0; shard < shards; shard++) {
+      int s = shard;
+      runs.add(workers.submit(() -> drainShard(s)));
+    }
+
+    int total = 0;
+    for (Future<Integer> run : runs) {
+      try {
+        total += run.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        log.error("Reminder dispatch worker failed", e);
+      }
+    }
+    if (total > 0) {
+      log.info("Dispatched {} reminder(s)", total);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdown();
+  }
+
+  private int drainShard(int shard) {
+    int total = 0;
+    for (int i = 0; i < maxBatchesPerRun; i++) {
+      int count = dispatchBatch(shard);
+      if (count == 0) break;
+      total += count;
+    }
+    return total;
+  }
+
+  /** Sends the given reminders right away if they are due and nobody has claimed them yet. */
+  public void dispatchNow(Collection<Integer> ids) {
+    if (ids.isEmpty()) return;
+    List<Integer> due = List.copyOf(ids);
+    workers.execute(
+        () -> {
+          try {
+            dispatchClaimed(
+                (token, now) ->
+                    reminderQueueRepository.claimDueByIds(token, due, now, now.plus(lease)));
+          } catch (Exception e) {
+            log.error("Failed to dispatch reminders {}", due, e);
+          }
+        });
+  }
+
+  private int dispatchBatch(int shard) {
+    return dispatchClaimed(
+        (token, now) ->
+            reminderQueueRepository.claimDueBatch(
+                token, now, now.plus(lease), shards, shard, batchSize));
+  }
+
+  // claim(token, now) đánh dấu các row của lần gửi này, trả về số row claim được
+  private int dispatchClaimed(BiFunction<String, LocalDateTime, Integer> claim) {
+    String token = UUID.randomUUID().toString();
+    LocalDateTime now = LocalDateTime.now();
+
+    List<ReminderQueue> claimed =
+        tx.execute(
+            status ->
+                claim.apply(token, now) == 0
+                    ? List.of()
+                    : reminderQueueRepository.findClaimed(token));
+    if (claimed == null || claimed.isEmpty()) return 0;
+
+    Map<ReminderQueueStatus, List<Integer>> outcomes = new EnumMap<>(ReminderQueueStatus.class);
+    List<PushDeliveryService.PushMessage> pushes = new ArrayList<>();
+    for (ReminderQueue rq : claimed) {
+      outcomes.computeIfAbsent(deliver(rq, now, pushes), k -> new ArrayList<>()).add(rq.getId());
+    }
+
+    tx.executeWithoutResult(
+        status ->
+            outcomes.forEach(
+                (outcome, ids) -> reminderQueueRepository.completeClaimed(token, ids, outcome)));
+    outcomes.forEach((outcome, ids) -> dispatched.get(outcome).increment(ids.size()));
+    // push gửi gộp theo batch, không chờ FCM trả lời
+    pushDeliveryService.sendAll(pushes);
+    return claimed.size();
+  }
+
+  private ReminderQueueStatus deliver(
+      ReminderQueue rq, LocalDateTime now, List<PushDeliveryService.PushMessage> pushes) {
+    try {
+      // Nếu là reminder của hôm nay nhưng đã trễ quá 1h bỏ luôn
+      if (rq.getScheduledAt().toLocalDate().isEqual(now.toLocalDate())
+          && rq.getScheduledAt().isBefore(now.minusHours(1))) {
+        return ReminderQueueStatus.CANCELLED;
+      }
+
+      // AI prediction gắn qua Account, daily task gắn qua PhaseDetail
+      Member member = null;
+      if (rq.getAccount() != null) {
+        member = rq.getAccount().getMember();
+      } else if (rq.getPhaseDetail() != null) {
+        member = rq.getPhaseDetail().getPhase().getQuitPlan().getMember();
+      }
+      if (member == null) {
+        log.warn("Reminder {} has no member, marking failed", rq.getId());
+        return ReminderQueueStatus.FAILED;
+      }
+
+      String title = rq.getPhaseDetail() == null ? "SmartQuit Peak Warning" : "SmartQuit Reminder";
+      notificationService.saveAndPublish(
+          member.getAccount(),
+          NotificationType.REMINDER,
+          title,
+          rq.getContent(),
+          null,
+          null,
+          "smartquit://reminder");
+
+      if (member.getFcmToken() != null && !member.getFcmToken().isEmpty()) {
+        pushes.add(
+            new PushDeliveryService.PushMessage(member.getFcmToken(), title, rq.getContent()));
+      } else {
+        log.warn("Member {} has no FCM Token, skipping push.", member.getId());
+      }
+      return ReminderQueueStatus.SENT;
+    } catch (Exception e) {
+      log.error("Error dispatching reminder ID: {}", rq.getId(), e);
+      return ReminderQueueStatus.CANCELLED;
+    }
+  }
+}
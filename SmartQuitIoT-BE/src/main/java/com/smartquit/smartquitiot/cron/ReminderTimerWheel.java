@@ -0,0 +1,146 @@
+package com.smartquit.smartquitiot.cron;
+
+import com.smartquit.smartquitiot.repository.ReminderQueueRepository;
+import com.smartquit.smartquitiot.util.TimingWheel;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps reminders due in the next few minutes in a timing wheel and hands each one to
+ * ReminderDispatcher at its scheduledAt (1s precision). The wheel only holds ids: ReminderQueue
+ * stays the source of truth, and the dispatcher's claim makes a fire from several instances (or
+ * from the catch-up sweep) send once.
+ */
+@Slf4j
+@Component
+public class ReminderTimerWheel {
+
+  private static final long TICK_MS = 1000;
+
+  private final ReminderQueueRepository reminderQueueRepository;
+  private final ReminderDispatcher reminderDispatcher;
+  private final Duration horizon;
+  private final LongSupplier clock;
+  // 2 level: 60 x 1s, 60 x 1 phút => giữ được tối đa ~1 giờ
+  private final TimingWheel<Integer> wheel;
+  private final ScheduledExecutorService ticker =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("reminder-wheel").daemon().factory());
+
+  @Autowired
+  public ReminderTimerWheel(
+      ReminderQueueRepository reminderQueueRepository,
+      ReminderDispatcher reminderDispatcher,
+      @Value("${app.reminder.wheel.horizon-minutes:10}") long horizonMinutes) {
+    this(
+        reminderQueueRepository,
+        reminderDispatcher,
+        Duration.ofMinutes(horizonMinutes),
+        System::currentTimeMillis);
+  }
+
+  // clock tách ra để test điều khiển tick
+  ReminderTimerWheel(
+      ReminderQueueRepository reminderQueueRepository,
+      ReminderDispatcher reminderDispatcher,
+      Duration horizon,
+      LongSupplier clock) {
+    this.reminderQueueRepository = reminderQueueRepository;
+    this.reminderDispatcher = reminderDispatcher;
+    this.horizon = horizon;
+    this.clock = clock;
+    this.wheel = new TimingWheel<>(TICK_MS, 60, 2, clock.getAsLong());
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    hydrate();
+    ticker.scheduleAtFixedRate(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    ticker.shutdownNow();
+  }
+
+  /**
+   * Registers a reminder that was just inserted or moved to a new scheduledAt. One due beyond the
+   * horizon is dropped from the wheel and picked up again by a later hydrate.
+   */
+  public void schedule(int reminderId, LocalDateTime scheduledAt) {
+    if (scheduledAt == null) return;
+    long deadlineMs = toEpochMillis(scheduledAt);
+    synchronized (wheel) {
+      if (deadlineMs > clock.getAsLong() + horizon.toMillis()) {
+        wheel.cancel(reminderId);
+      } else {
+        wheel.reschedule(reminderId, deadlineMs);
+      }
+    }
+  }
+
+  /** Drops a reminder that was cancelled before it fired. */
+  public void cancel(int reminderId) {
+    synchronized (wheel) {
+      wheel.cancel(reminderId);
+    }
+  }
+
+  // nạp lại các reminder sắp tới hạn từ DB, refresh phải ngắn hơn horizon
+  @Scheduled(
+      fixedDelayString = "${app.reminder.wheel.refresh-ms:300000}",
+      initialDelayString = "${app.reminder.wheel.refresh-ms:300000}")
+  public void hydrate() {
+    try {
+      LocalDateTime now =
+          LocalDateTime.ofInstant(Instant.ofEpochMilli(clock.getAsLong()), ZoneId.systemDefault());
+      List<Object[]> rows =
+          reminderQueueRepository.findPendingScheduledBetween(
+              now.minusMinutes(1), now.plus(horizon));
+      int added = 0;
+      synchronized (wheel) {
+        for (Object[] row : rows) {
+          if (wheel.add(((Number) row[0]).intValue(), toEpochMillis((LocalDateTime) row[1]))) {
+            added++;
+          }
+        }
+      }
+      log.debug("Reminder wheel hydrated {} new reminder(s), {} scheduled", added, wheel.size());
+    } catch (Exception e) {
+      log.error("Failed to hydrate reminder wheel", e);
+    }
+  }
+
+  void tick() {
+    try {
+      List<Integer> due;
+      synchronized (wheel) {
+        due = wheel.advance(clock.getAsLong());
+      }
+      if (!due.isEmpty()) {
+        reminderDispatcher.dispatchNow(due);
+      }
+    } catch (Exception e) {
+      log.error("Reminder wheel tick failed", e);
+    }
+  }
+
+  private long toEpochMillis(LocalDateTime time) {
+    return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+}
@@ -0,0 +1,25 @@
+package com.smartquit.smartquitiot.dto.response;
+
+import java.util.List;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Chart dạng cột: dates[i] ứng với phần tử thứ i của mỗi series
+// level là double vì khi downsample mỗi điểm là trung bình của cả bucket
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DiaryChartSeriesDTO {
+
+  List<String> dates;
+  double[] confidenceLevel;
+  double[] moodLevel;
+  double[] anxietyLevel;
+  double[] cravingLevel;
+  double[] cigarettesSmoked;
+  double[] estimatedNicotineIntake;
+  double[] reductionPercentage;
+}
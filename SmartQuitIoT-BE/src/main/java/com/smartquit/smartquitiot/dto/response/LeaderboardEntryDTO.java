@@ -0,0 +1,19 @@
+package com.smartquit.smartquitiot.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntryDTO {
+  // hạng bắt đầu từ 1
+  private long rank;
+  private int memberId;
+  private String memberName;
+  private String avatarUrl;
+  private double score;
+}
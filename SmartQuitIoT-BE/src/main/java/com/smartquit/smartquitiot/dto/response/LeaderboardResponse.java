@@ -0,0 +1,22 @@
+package com.smartquit.smartquitiot.dto.response;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardResponse {
+  private String type;
+  private int page;
+  private int size;
+  // tổng số member có mặt trên bảng xếp hạng
+  private long totalMembers;
+  private List<LeaderboardEntryDTO> entries;
+  // vị trí của member đang đăng nhập, null nếu chưa có điểm
+  private LeaderboardEntryDTO me;
+}
@@ -0,0 +1,24 @@
+package com.smartquit.smartquitiot.dto.response;
+
+import com.smartquit.smartquitiot.enums.PlanGenerationJobStatus;
+import java.time.LocalDateTime;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Trạng thái job tạo quit plan bất đồng bộ, client poll hoặc nghe /topic/quit-plan-jobs/{accountId}
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PlanGenerationJobResponse {
+
+  String jobId;
+  int accountId;
+  PlanGenerationJobStatus status;
+  PhaseBatchMissionsResponse result;
+  String error;
+  LocalDateTime submittedAt;
+  LocalDateTime finishedAt;
+}
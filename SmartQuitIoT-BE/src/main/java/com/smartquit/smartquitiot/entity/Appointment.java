@@ -11,6 +11,12 @@ import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 @Entity
+@Table(
+    indexes = @Index(name = "idx_appointment_reminder", columnList = "reminder_sent, reminder_at"),
+    uniqueConstraints =
+        @UniqueConstraint(
+            name = "uk_appointment_active_schedule",
+            columnNames = "active_schedule_id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -42,9 +48,18 @@ public class Appointment {
 
   LocalDateTime createdAt;
 
+  // thời điểm nhắc coach (giờ VN), null = không cần nhắc (đã cancel)
+  LocalDateTime reminderAt;
+
+  boolean reminderSent;
+
   @ManyToOne(fetch = FetchType.LAZY)
   CoachWorkSchedule coachWorkSchedule;
 
+  // id của coachWorkSchedule khi còn hiệu lực, null khi đã cancel. MariaDB không có partial
+  // unique index nên unique trên cột này = mỗi (coach, slot, date) chỉ có 1 appointment active
+  Integer activeScheduleId;
+
   @ElementCollection
   @CollectionTable(
       name = "appointment_snapshots",
@@ -28,4 +28,9 @@ public class CoachWorkSchedule {
 
   @ManyToOne(fetch = FetchType.LAZY)
   Coach coach;
+
+  // đổi status qua entity (cancel, reassign, sửa lịch) sẽ fail nếu có booking chen vào giữa
+  @Version
+  @Column(nullable = false, columnDefinition = "int default 0")
+  int version;
 }
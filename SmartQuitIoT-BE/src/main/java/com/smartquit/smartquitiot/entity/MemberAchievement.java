@@ -7,6 +7,11 @@ import lombok.experimental.FieldDefaults;
 import org.hibernate.annotations.CreationTimestamp;
 
 @Entity
+@Table(
+    uniqueConstraints =
+        @UniqueConstraint(
+            name = "uk_member_achievement",
+            columnNames = {"member_id", "achievement_id"}))
 @Getter
 @Setter
 @NoArgsConstructor
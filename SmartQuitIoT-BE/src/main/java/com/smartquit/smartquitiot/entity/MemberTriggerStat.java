@@ -0,0 +1,31 @@
+package com.smartquit.smartquitiot.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// Số lần mỗi trigger xuất hiện trong diary của member, cộng dồn khi log diary
+@Entity
+@Table(
+    name = "member_trigger_stat",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"member_id", "trigger_code"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class MemberTriggerStat {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  int id;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "member_id")
+  Member member;
+
+  @Column(name = "trigger_code", length = 64)
+  String triggerCode;
+
+  int triggerCount;
+}
@@ -59,6 +59,16 @@ public class Metric {
       reductionInLastSmoked; // percentage of reduction in cigarettes smoked compared to last smoked
   // day
 
+  // running aggregates over diary records, updated by delta on log/update
+  int diaryRecordCount;
+  long sumCravingLevel;
+  long sumMoodLevel;
+  long sumConfidenceLevel;
+  long sumAnxietyLevel;
+  long totalCigarettesSmoked;
+  int smokeFreeDayCount;
+  double nrtTotalSpent;
+
   @CreationTimestamp LocalDateTime createdAt;
   @UpdateTimestamp LocalDateTime updatedAt;
 
@@ -12,7 +12,12 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 @Entity
-@Table(name = "quit_plan")
+@Table(
+    name = "quit_plan",
+    indexes =
+        @Index(
+            name = "idx_quit_plan_status_next_transition",
+            columnList = "status,nextTransitionDate"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -35,6 +40,9 @@ public class QuitPlan {
   LocalDate startDate;
   LocalDate endDate;
 
+  // ngày scheduler cần xét lại trạng thái plan, null = chưa tính (xét ở lần chạy kế tiếp)
+  LocalDate nextTransitionDate;
+
   int ftndScore;
 
   @CreationTimestamp
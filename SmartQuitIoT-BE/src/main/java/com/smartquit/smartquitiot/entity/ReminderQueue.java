@@ -7,6 +7,10 @@ import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 @Entity
+@Table(
+    name = "reminder_queue",
+    indexes =
+        @Index(name = "idx_reminder_queue_status_scheduled", columnList = "status,scheduledAt"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -30,6 +34,10 @@ public class ReminderQueue {
 
   LocalDateTime scheduledAt;
 
+  // lease khi dispatcher claim batch: instance khác bỏ qua tới khi claimedUntil hết hạn
+  String claimToken;
+  LocalDateTime claimedUntil;
+
   @ManyToOne(fetch = FetchType.LAZY)
   ReminderTemplate reminderTemplate;
 
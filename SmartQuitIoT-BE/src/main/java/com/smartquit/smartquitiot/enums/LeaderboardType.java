@@ -0,0 +1,17 @@
+package com.smartquit.smartquitiot.enums;
+
+public enum LeaderboardType {
+  STREAKS("leaderboard:streaks"),
+  MONEY_SAVED("leaderboard:money_saved"),
+  ACHIEVEMENTS("leaderboard:achievements");
+
+  private final String redisKey;
+
+  LeaderboardType(String redisKey) {
+    this.redisKey = redisKey;
+  }
+
+  public String getRedisKey() {
+    return redisKey;
+  }
+}
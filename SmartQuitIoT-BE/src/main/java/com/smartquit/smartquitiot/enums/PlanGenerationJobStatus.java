@@ -0,0 +1,8 @@
+package com.smartquit.smartquitiot.enums;
+
+public enum PlanGenerationJobStatus {
+  PENDING,
+  RUNNING,
+  SUCCEEDED,
+  FAILED
+}
@@ -0,0 +1,262 @@
+package com.smartquit.smartquitiot.event;
+
+import com.smartquit.smartquitiot.client.AiServiceClient;
+import com.smartquit.smartquitiot.cron.ReminderTimerWheel;
+import com.smartquit.smartquitiot.dto.request.AnalyzeDiaryRequest;
+import com.smartquit.smartquitiot.dto.request.PredictRiskMobileRequest;
+import com.smartquit.smartquitiot.dto.response.AnalyzeDiaryResponse;
+import com.smartquit.smartquitiot.dto.response.PeakCravingResponse;
+import com.smartquit.smartquitiot.entity.Account;
+import com.smartquit.smartquitiot.entity.DiaryRecord;
+import com.smartquit.smartquitiot.entity.Member;
+import com.smartquit.smartquitiot.entity.QuitPlan;
+import com.smartquit.smartquitiot.entity.ReminderQueue;
+import com.smartquit.smartquitiot.enums.Gender;
+import com.smartquit.smartquitiot.enums.NotificationType;
+import com.smartquit.smartquitiot.enums.ReminderQueueStatus;
+import com.smartquit.smartquitiot.repository.DiaryRecordRepository;
+import com.smartquit.smartquitiot.repository.QuitPlanRepository;
+import com.smartquit.smartquitiot.repository.ReminderQueueRepository;
+import com.smartquit.smartquitiot.service.NotificationService;
+import feign.Request;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the AI calls of the diary write path after the diary transaction commits, so a slow AI
+ * service never holds a DB connection or delays the diary response.
+ */
+@Slf4j
+@Component
+public class DiaryAiPipeline {
+
+  private final ThreadPoolExecutor diaryAiExecutor;
+  private final AiServiceClient aiServiceClient;
+  private final DiaryRecordRepository diaryRecordRepository;
+  private final QuitPlanRepository quitPlanRepository;
+  private final ReminderQueueRepository reminderQueueRepository;
+  private final NotificationService notificationService;
+  private final ReminderTimerWheel reminderTimerWheel;
+  private final TransactionTemplate readOnlyTx;
+  private final Retry retry;
+  private final Request.Options aiOptions;
+  private final Timer lagTimer;
+  private final Counter rejectedCounter;
+  private final Counter analyzeFailedCounter;
+  private final Counter cravingAlertFailedCounter;
+
+  public DiaryAiPipeline(
+      ThreadPoolExecutor diaryAiExecutor,
+      AiServiceClient aiServiceClient,
+      DiaryRecordRepository diaryRecordRepository,
+      QuitPlanRepository quitPlanRepository,
+      ReminderQueueRepository reminderQueueRepository,
+      NotificationService notificationService,
+      ReminderTimerWheel reminderTimerWheel,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry,
+      @Value("${app.ai.pipeline.max-attempts:3}") int maxAttempts,
+      @Value("${app.ai.pipeline.retry-wait-ms:500}") long retryWaitMs,
+      @Value("${app.ai.pipeline.connect-timeout-ms:2000}") long connectTimeoutMs,
+      @Value("${app.ai.pipeline.read-timeout-ms:5000}") long readTimeoutMs) {
+    this.diaryAiExecutor = diaryAiExecutor;
+    this.aiServiceClient = aiServiceClient;
+    this.diaryRecordRepository = diaryRecordRepository;
+    this.quitPlanRepository = quitPlanRepository;
+    this.reminderQueueRepository = reminderQueueRepository;
+    this.notificationService = notificationService;
+    this.reminderTimerWheel = reminderTimerWheel;
+    this.readOnlyTx = new TransactionTemplate(transactionManager);
+    this.readOnlyTx.setReadOnly(true);
+    this.retry =
+        Retry.of(
+            "diary-ai",
+            RetryConfig.custom()
+                .maxAttempts(maxAttempts)
+                .waitDuration(Duration.ofMillis(retryWaitMs))
+                .build());
+    this.aiOptions =
+        new Request.Options(
+            connectTimeoutMs, TimeUnit.MILLISECONDS, readTimeoutMs, TimeUnit.MILLISECONDS, true);
+    this.lagTimer =
+        Timer.builder("diary.ai.pipeline.lag")
+            .description("Time between diary commit and AI task start")
+            .register(meterRegistry);
+    this.rejectedCounter =
+        Counter.builder("diary.ai.pipeline.rejected")
+            .description("Diary AI tasks dropped because the queue was full")
+            .register(meterRegistry);
+    this.analyzeFailedCounter =
+        Counter.builder("diary.ai.pipeline.failed").tag("task", "analyze").register(meterRegistry);
+    this.cravingAlertFailedCounter =
+        Counter.builder("diary.ai.pipeline.failed")
+            .tag("task", "craving_alert")
+            .register(meterRegistry);
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onDiaryRecordLogged(DiaryRecordLoggedEvent event) {
+    try {
+      diaryAiExecutor.execute(() -> process(event));
+    } catch (RejectedExecutionException e) {
+      rejectedCounter.increment();
+      log.warn(
+          "Diary AI queue is full, skipping AI analysis for record {}", event.getDiaryRecordId());
+    }
+  }
+
+  private void process(DiaryRecordLoggedEvent event) {
+    lagTimer.record(Duration.between(event.getPublishedAt(), Instant.now()));
+    DiaryAiContext context = readOnlyTx.execute(status -> loadContext(event));
+    if (context == null) {
+      return;
+    }
+
+    if (context.cravingRequest() != null) {
+      try {
+        scheduleAiCravingAlert(context);
+      } catch (Exception e) {
+        cravingAlertFailedCounter.increment();
+        log.error("Failed to schedule AI craving alert", e);
+      }
+    }
+
+    try {
+      analyzeAndNotify(context);
+    } catch (Exception e) {
+      analyzeFailedCounter.increment();
+      log.error("Failed to analyze diary record via AI Service", e);
+    }
+  }
+
+  // đọc hết dữ liệu cần cho AI trong 1 transaction ngắn, call AI nằm ngoài transaction
+  private DiaryAiContext loadContext(DiaryRecordLoggedEvent event) {
+    DiaryRecord record = diaryRecordRepository.findById(event.getDiaryRecordId()).orElse(null);
+    if (record == null) {
+      log.warn("Diary record {} no longer exists, skipping AI", event.getDiaryRecordId());
+      return null;
+    }
+    Member member = record.getMember();
+
+    List<String> triggerList =
+        record.getTriggers() != null
+            ? record.getTriggers().stream().map(Object::toString).toList()
+            : new ArrayList<>();
+    AnalyzeDiaryRequest analyzeRequest =
+        AnalyzeDiaryRequest.builder()
+            .anxietyLevel(record.getAnxietyLevel())
+            .cravingLevel(record.getCravingLevel())
+            .moodLevel(record.getMoodLevel())
+            .haveSmoked(record.isHaveSmoked())
+            .note(record.getNote() != null ? record.getNote() : "")
+            .triggers(triggerList)
+            .build();
+
+    PredictRiskMobileRequest cravingRequest = null;
+    if (event.isScheduleCravingAlert()) {
+      QuitPlan plan = quitPlanRepository.findTopByMemberIdOrderByCreatedAtDesc(member.getId());
+      if (plan != null) {
+        cravingRequest =
+            PredictRiskMobileRequest.builder()
+                .age(Period.between(member.getDob(), LocalDate.now()).getYears())
+                .gender_code(member.getGender() == Gender.MALE ? 1 : 0)
+                .ftnd_score(plan.getFtndScore())
+                .smoke_avg_per_day(plan.getFormMetric().getSmokeAvgPerDay())
+                .mood_level(record.getMoodLevel())
+                .anxiety_level(record.getAnxietyLevel())
+                .day_of_week(LocalDate.now().getDayOfWeek().getValue())
+                .build();
+      }
+    }
+
+    return new DiaryAiContext(
+        member.getId(), member.getLastName(), member.getAccount(), analyzeRequest, cravingRequest);
+  }
+
+  private void analyzeAndNotify(DiaryAiContext context) {
+    log.info("Calling AI Service for Diary Analysis for Member: {}", context.memberId());
+    AnalyzeDiaryResponse aiResponse =
+        callWithRetry(
+            () -> aiServiceClient.analyzeDiaryRecord(context.analyzeRequest(), aiOptions));
+    if (aiResponse == null || aiResponse.getMessage() == null) {
+      return;
+    }
+
+    String statusColor =
+        aiResponse.getStatusColor() != null ? aiResponse.getStatusColor().toLowerCase() : "green";
+    String title =
+        switch (statusColor) {
+          case "red" -> "Stay Strong ";
+          case "yellow" -> "Here for you";
+          default -> "Great Job!";
+        };
+
+    notificationService.saveAndPublish(
+        context.account(),
+        NotificationType.REMINDER,
+        title,
+        aiResponse.getMessage(),
+        null,
+        null,
+        "smartquit://diary");
+    log.info("Sent AI Notification. Status: {}, Title: {}", statusColor, title);
+  }
+
+  private void scheduleAiCravingAlert(DiaryAiContext context) {
+    PeakCravingResponse aiResponse =
+        callWithRetry(
+            () -> aiServiceClient.getPeakCravingPrediction(context.cravingRequest(), aiOptions));
+
+    if (aiResponse != null && aiResponse.getPeak_time() != null) {
+      LocalTime peakTime = LocalTime.parse(aiResponse.getPeak_time());
+      LocalDateTime scheduledTime = LocalDateTime.of(LocalDate.now(), peakTime);
+
+      if (scheduledTime.isBefore(LocalDateTime.now())) {
+        scheduledTime = scheduledTime.plusDays(1);
+      }
+
+      ReminderQueue task = new ReminderQueue();
+      task.setAccount(context.account());
+      task.setContent(aiResponse.getMessage());
+      task.setScheduledAt(scheduledTime);
+      task.setStatus(ReminderQueueStatus.PENDING);
+
+      task = reminderQueueRepository.save(task);
+      reminderTimerWheel.schedule(task.getId(), scheduledTime);
+      log.info("Scheduled AI Alert for {} at {}", context.lastName(), scheduledTime);
+    }
+  }
+
+  private <T> T callWithRetry(Supplier<T> call) {
+    return Retry.decorateSupplier(retry, call).get();
+  }
+
+  private record DiaryAiContext(
+      int memberId,
+      String lastName,
+      Account account,
+      AnalyzeDiaryRequest analyzeRequest,
+      PredictRiskMobileRequest cravingRequest) {}
+}
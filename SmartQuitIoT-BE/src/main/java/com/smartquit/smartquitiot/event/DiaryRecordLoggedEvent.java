@@ -0,0 +1,24 @@
+package com.smartquit.smartquitiot.event;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class DiaryRecordLoggedEvent {
+
+  private final int memberId;
+  private final int diaryRecordId;
+  // chỉ dự đoán craving peak khi log mới, update record thì chỉ phân tích lại
+  private final boolean scheduleCravingAlert;
+  private final Instant publishedAt;
+
+  public static DiaryRecordLoggedEvent logged(int memberId, int diaryRecordId) {
+    return new DiaryRecordLoggedEvent(memberId, diaryRecordId, true, Instant.now());
+  }
+
+  public static DiaryRecordLoggedEvent updated(int memberId, int diaryRecordId) {
+    return new DiaryRecordLoggedEvent(memberId, diaryRecordId, false, Instant.now());
+  }
+}
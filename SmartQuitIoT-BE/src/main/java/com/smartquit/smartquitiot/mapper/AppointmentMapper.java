@@ -2,8 +2,11 @@ package com.smartquit.smartquitiot.mapper;
 
 import com.smartquit.smartquitiot.dto.response.AppointmentResponse;
 import com.smartquit.smartquitiot.entity.Appointment;
+import com.smartquit.smartquitiot.entity.Coach;
+import com.smartquit.smartquitiot.entity.Member;
 import com.smartquit.smartquitiot.entity.Slot;
 import com.smartquit.smartquitiot.enums.AppointmentStatus;
+import com.smartquit.smartquitiot.repository.AppointmentListRow;
 import java.time.*;
 import org.springframework.stereotype.Component;
 
@@ -20,74 +23,33 @@ public class AppointmentMapper {
     AppointmentStatus realAppointmentStatus = appointment.getAppointmentStatus();
     LocalDateTime createdAt = appointment.getCreatedAt();
     Integer appointmentId = appointment.getId();
-    Integer coachId = appointment.getCoach() != null ? appointment.getCoach().getId() : null;
-    String coachName = "";
-    if (appointment.getCoach() != null) {
-      String fn =
-          appointment.getCoach().getFirstName() != null
-              ? appointment.getCoach().getFirstName()
-              : "";
-      String ln =
-          appointment.getCoach().getLastName() != null ? appointment.getCoach().getLastName() : "";
-      coachName = (fn + " " + ln).trim();
-    }
-
-    LocalDate date = appointment.getDate();
+    Coach coach = appointment.getCoach();
+    Member member = appointment.getMember();
+    Integer coachId = coach != null ? coach.getId() : null;
 
     // --- Lấy slot từ CoachWorkSchedule
     Slot slot = null;
     if (appointment.getCoachWorkSchedule() != null) {
       slot = appointment.getCoachWorkSchedule().getSlot();
     }
-
     Integer slotId = slot != null ? slot.getId() : null;
-    LocalTime startTime = slot != null ? slot.getStartTime() : null;
-    LocalTime endTime = slot != null ? slot.getEndTime() : null;
 
     AppointmentResponse.AppointmentResponseBuilder builder =
-        AppointmentResponse.builder()
-            .appointmentId(appointmentId != null ? appointmentId : 0)
+        baseBuilder(
+                appointmentId,
+                appointment.getDate(),
+                slot != null ? slot.getStartTime() : null,
+                slot != null ? slot.getEndTime() : null,
+                coach != null ? coach.getFirstName() : null,
+                coach != null ? coach.getLastName() : null,
+                member != null ? member.getId() : null,
+                member != null ? member.getFirstName() : null,
+                member != null ? member.getLastName() : null)
             .coachId(coachId != null ? coachId : 0)
-            .coachName(coachName)
-            .date(date)
             .slotId(slotId != null ? slotId : 0)
-            .startTime(startTime)
-            .endTime(endTime)
             .realAppointmentStatus(realAppointmentStatus)
             .createdAt(createdAt);
 
-    // --- map member info (moved into mapper)
-    if (appointment.getMember() != null) {
-      Integer memberId = appointment.getMember().getId();
-      String mfn =
-          appointment.getMember().getFirstName() != null
-              ? appointment.getMember().getFirstName()
-              : "";
-      String mln =
-          appointment.getMember().getLastName() != null
-              ? appointment.getMember().getLastName()
-              : "";
-      builder.memberId(memberId).memberName((mfn + " " + mln).trim());
-    }
-
-    // tạo channel và meeting url
-    if (appointmentId != null) {
-      String channel = "appointment_" + appointmentId;
-      String meetingUrl = "/meeting/" + appointmentId;
-      builder.channelName(channel).meetingUrl(meetingUrl);
-    }
-
-    // compute join window instants if date/start/end present
-    if (date != null && startTime != null && endTime != null) {
-      LocalDateTime windowStartLdt = LocalDateTime.of(date, startTime).minusMinutes(5);
-      LocalDateTime windowEndLdt = LocalDateTime.of(date, endTime).plusMinutes(5);
-
-      Instant windowStartInstant = windowStartLdt.atZone(ZONE).toInstant();
-      Instant windowEndInstant = windowEndLdt.atZone(ZONE).toInstant();
-
-      builder.joinWindowStart(windowStartInstant).joinWindowEnd(windowEndInstant);
-    }
-
     // --- map cancelled fields
     if (appointment.getCancelledBy() != null) {
       builder.cancelledBy(appointment.getCancelledBy());
@@ -106,4 +68,68 @@ public class AppointmentMapper {
     }
     return response;
   }
+
+  // cùng field với toResponse(Appointment) nhưng từ row projection, không chạm entity
+  public AppointmentResponse toResponse(AppointmentListRow row, String runtimeStatus) {
+    return baseBuilder(
+            row.appointmentId(),
+            row.date(),
+            row.startTime(),
+            row.endTime(),
+            row.coachFirstName(),
+            row.coachLastName(),
+            row.memberId(),
+            row.memberFirstName(),
+            row.memberLastName())
+        .coachId(row.coachId())
+        .slotId(row.slotId() != null ? row.slotId() : 0)
+        .realAppointmentStatus(row.status())
+        .createdAt(row.createdAt())
+        .runtimeStatus(runtimeStatus)
+        .cancelledBy(row.cancelledBy())
+        .cancelledAt(row.cancelledAt())
+        .hasRated(row.hasFeedback())
+        .build();
+  }
+
+  // phần chung của 2 nguồn: tên coach/member, channel + meeting url, join window (±5 phút)
+  private static AppointmentResponse.AppointmentResponseBuilder baseBuilder(
+      Integer appointmentId,
+      LocalDate date,
+      LocalTime startTime,
+      LocalTime endTime,
+      String coachFirstName,
+      String coachLastName,
+      Integer memberId,
+      String memberFirstName,
+      String memberLastName) {
+    AppointmentResponse.AppointmentResponseBuilder builder =
+        AppointmentResponse.builder()
+            .appointmentId(appointmentId != null ? appointmentId : 0)
+            .coachName(fullName(coachFirstName, coachLastName))
+            .date(date)
+            .startTime(startTime)
+            .endTime(endTime);
+
+    if (memberId != null) {
+      builder.memberId(memberId).memberName(fullName(memberFirstName, memberLastName));
+    }
+
+    // tạo channel và meeting url
+    if (appointmentId != null) {
+      builder.channelName("appointment_" + appointmentId).meetingUrl("/meeting/" + appointmentId);
+    }
+
+    if (date != null && startTime != null && endTime != null) {
+      builder
+          .joinWindowStart(
+              LocalDateTime.of(date, startTime).minusMinutes(5).atZone(ZONE).toInstant())
+          .joinWindowEnd(LocalDateTime.of(date, endTime).plusMinutes(5).atZone(ZONE).toInstant());
+    }
+    return builder;
+  }
+
+  private static String fullName(String firstName, String lastName) {
+    return ((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "")).trim();
+  }
 }
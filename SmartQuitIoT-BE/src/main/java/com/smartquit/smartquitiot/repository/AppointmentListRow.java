@@ -0,0 +1,34 @@
+package com.smartquit.smartquitiot.repository;
+
+import com.smartquit.smartquitiot.enums.AppointmentStatus;
+import com.smartquit.smartquitiot.enums.CancelledBy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * One row of an appointment listing, read with its coach, member, slot and feedback in a single
+ * query. Slot columns are null when the appointment has no work schedule.
+ */
+public record AppointmentListRow(
+    int appointmentId,
+    LocalDate date,
+    AppointmentStatus status,
+    CancelledBy cancelledBy,
+    LocalDateTime cancelledAt,
+    LocalDateTime createdAt,
+    int coachId,
+    String coachFirstName,
+    String coachLastName,
+    Integer memberId,
+    String memberFirstName,
+    String memberLastName,
+    Integer slotId,
+    LocalTime startTime,
+    LocalTime endTime,
+    Integer feedbackId) {
+
+  public boolean hasFeedback() {
+    return feedbackId != null;
+  }
+}
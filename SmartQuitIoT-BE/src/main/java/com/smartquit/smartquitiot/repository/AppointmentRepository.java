@@ -3,12 +3,13 @@ package com.smartquit.smartquitiot.repository;
 import com.smartquit.smartquitiot.entity.Appointment;
 import com.smartquit.smartquitiot.enums.AppointmentStatus;
 import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.LocalDateTime;
 import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -22,16 +23,94 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Intege
   boolean existsActiveByCoachSlotDate(
       @Param("coachId") int coachId, @Param("slotId") int slotId, @Param("date") LocalDate date);
 
+  // slot qua nửa đêm (end <= start) thì giờ kết thúc thuộc ngày hôm sau
+  String SLOT_START_SQL = " TIMESTAMP(a.date, s.start_time) ";
+  String SLOT_END_SQL =
+      " (TIMESTAMP(a.date, s.end_time) + INTERVAL (s.end_time <= s.start_time) DAY) ";
+  String SLOT_JOIN_SQL =
+      "SELECT a.id FROM appointment a"
+          + " JOIN coach_work_schedule cws ON cws.id = a.coach_work_schedule_id"
+          + " JOIN slot s ON s.id = cws.slot_id";
+
+  @Query(
+      value =
+          SLOT_JOIN_SQL
+              + " WHERE a.appointment_status IN (:fromStatuses)"
+              + " AND a.date BETWEEN :fromDate AND :toDate"
+              + " AND"
+              + SLOT_END_SQL
+              + "<= :now FOR UPDATE",
+      nativeQuery = true)
+  List<Integer> lockEndedIds(
+      @Param("fromStatuses") List<String> fromStatuses,
+      @Param("fromDate") LocalDate fromDate,
+      @Param("toDate") LocalDate toDate,
+      @Param("now") LocalDateTime now);
+
+  @Query(
+      value =
+          SLOT_JOIN_SQL
+              + " WHERE a.appointment_status = 'PENDING'"
+              + " AND a.date BETWEEN :fromDate AND :toDate"
+              + " AND"
+              + SLOT_START_SQL
+              + "<= :now AND"
+              + SLOT_END_SQL
+              + "> :now FOR UPDATE",
+      nativeQuery = true)
+  List<Integer> lockStartedIds(
+      @Param("fromDate") LocalDate fromDate,
+      @Param("toDate") LocalDate toDate,
+      @Param("now") LocalDateTime now);
+
+  @Modifying
   @Query(
-      "SELECT a FROM Appointment a "
-          + "JOIN FETCH a.coachWorkSchedule cws "
-          + "JOIN FETCH cws.slot s "
-          + "WHERE a.date = :date AND a.appointmentStatus IN :statuses")
-  List<Appointment> findAllByDateAndStatusIn(
-      @Param("date") LocalDate date, @Param("statuses") List<AppointmentStatus> statuses);
+      value =
+          "UPDATE appointment SET appointment_status = :toStatus"
+              + " WHERE id IN (:ids) AND appointment_status IN (:fromStatuses)",
+      nativeQuery = true)
+  int updateStatusByIds(
+      @Param("ids") List<Integer> ids,
+      @Param("fromStatuses") List<String> fromStatuses,
+      @Param("toStatus") String toStatus);
 
   List<Appointment> findAllByMemberId(int memberId);
 
+  // listing theo cursor (id giảm dần): 1 câu SQL/trang, feedback LEFT JOIN (unique theo
+  // appointment)
+  String LIST_ROW_SELECT =
+      "SELECT new com.smartquit.smartquitiot.repository.AppointmentListRow("
+          + " a.id, a.date, a.appointmentStatus, a.cancelledBy, a.cancelledAt, a.createdAt,"
+          + " c.id, c.firstName, c.lastName, m.id, m.firstName, m.lastName,"
+          + " s.id, s.startTime, s.endTime, f.id)"
+          + " FROM Appointment a"
+          + " JOIN a.coach c"
+          + " LEFT JOIN a.member m"
+          + " LEFT JOIN a.coachWorkSchedule cws"
+          + " LEFT JOIN cws.slot s"
+          + " LEFT JOIN Feedback f ON f.appointment = a";
+  String LIST_ROW_FILTER =
+      " AND (:status IS NULL OR a.appointmentStatus = :status)"
+          + " AND (:date IS NULL OR a.date = :date)"
+          + " AND (:beforeId IS NULL OR a.id < :beforeId)"
+          + " ORDER BY a.id DESC";
+
+  @Query(LIST_ROW_SELECT + " WHERE m.account.id = :accountId" + LIST_ROW_FILTER)
+  List<AppointmentListRow> findListRowsByMemberAccountId(
+      @Param("accountId") int accountId,
+      @Param("status") AppointmentStatus status,
+      @Param("date") LocalDate date,
+      @Param("beforeId") Integer beforeId,
+      Pageable pageable);
+
+  @Query(LIST_ROW_SELECT + " WHERE c.account.id = :accountId" + LIST_ROW_FILTER)
+  List<AppointmentListRow> findListRowsByCoachAccountId(
+      @Param("accountId") int accountId,
+      @Param("status") AppointmentStatus status,
+      @Param("date") LocalDate date,
+      @Param("beforeId") Integer beforeId,
+      Pageable pageable);
+
   List<Appointment> findAllByCoachId(int coachId);
 
   @Query(
@@ -55,19 +134,45 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Intege
 
   @Query(
       """
-    SELECT a FROM Appointment a
-    JOIN a.coachWorkSchedule cws
-    JOIN cws.slot s
-    WHERE a.appointmentStatus = :status
-      AND a.date = :date
-      AND s.startTime BETWEEN :from AND :to
-""")
-  List<Appointment> findAppointmentsForReminder(
-      @Param("date") LocalDate date,
-      @Param("from") LocalTime from,
-      @Param("to") LocalTime to,
+      SELECT a FROM Appointment a
+      JOIN FETCH a.coach c
+      JOIN FETCH c.account
+      JOIN FETCH a.coachWorkSchedule cws
+      JOIN FETCH cws.slot s
+      WHERE a.reminderSent = false
+        AND a.reminderAt > :notBefore
+        AND a.reminderAt <= :now
+        AND a.appointmentStatus = :status
+      ORDER BY a.reminderAt
+      """)
+  List<Appointment> findDueReminders(
+      @Param("notBefore") LocalDateTime notBefore,
+      @Param("now") LocalDateTime now,
       @Param("status") AppointmentStatus status);
 
+  // claim trước khi gửi => nhiều instance chạy cùng lúc cũng chỉ gửi 1 lần
+  @Modifying
+  @Query(
+      "UPDATE Appointment a SET a.reminderSent = true WHERE a.id = :id AND a.reminderSent = false")
+  int markReminderSent(@Param("id") int id);
+
+  // appointment tạo trước khi có cột reminder_at
+  @Modifying
+  @Query(
+      value =
+          """
+          UPDATE appointment a
+          JOIN coach_work_schedule cws ON cws.id = a.coach_work_schedule_id
+          JOIN slot s ON s.id = cws.slot_id
+          SET a.reminder_at = TIMESTAMP(cws.date, s.start_time) - INTERVAL :minutes MINUTE
+          WHERE a.reminder_at IS NULL
+            AND a.reminder_sent = false
+            AND a.appointment_status = 'PENDING'
+            AND cws.date >= :fromDate
+          """,
+      nativeQuery = true)
+  int backfillReminderAt(@Param("minutes") int minutes, @Param("fromDate") LocalDate fromDate);
+
   // Count active appointments from a specific date onwards (for slot reseed validation)
   @Query(
       "SELECT COUNT(a) FROM Appointment a WHERE a.date >= :fromDate   AND a.appointmentStatus <>"
@@ -21,6 +21,10 @@ public interface CoachRepository extends JpaRepository<Coach, Integer> {
 
   Page<Coach> findAll(Specification<Coach> spec, Pageable pageable);
 
+  @EntityGraph(attributePaths = {"account"})
+  @Query("SELECT c FROM Coach c")
+  List<Coach> findAllWithAccount();
+
   // Khoá trong khi đang update rating của coach ( từ Feedback)
   @Lock(LockModeType.PESSIMISTIC_WRITE)
   @Query("SELECT c FROM Coach c WHERE c.id = :id")
@@ -9,6 +9,7 @@ import java.util.Optional;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -50,6 +51,26 @@ public interface CoachWorkScheduleRepository extends JpaRepository<CoachWorkSche
   Optional<CoachWorkSchedule> findByCoachIdAndDateAndSlotIdForUpdate(
       @Param("coachId") int coachId, @Param("date") LocalDate date, @Param("slotId") int slotId);
 
+  // booking optimistic: chỉ 1 request đổi được AVAILABLE -> BOOKED, request thua nhận 0 row
+  @Modifying
+  @Query(
+      "UPDATE CoachWorkSchedule cws SET cws.status ="
+          + " com.smartquit.smartquitiot.enums.CoachWorkScheduleStatus.BOOKED,"
+          + " cws.version = cws.version + 1"
+          + " WHERE cws.coach.id = :coachId AND cws.date = :date AND cws.slot.id = :slotId"
+          + " AND cws.status = com.smartquit.smartquitiot.enums.CoachWorkScheduleStatus.AVAILABLE")
+  int claimAvailable(
+      @Param("coachId") int coachId, @Param("date") LocalDate date, @Param("slotId") int slotId);
+
+  @Query(
+      "SELECT cws FROM CoachWorkSchedule cws "
+          + "JOIN FETCH cws.coach c "
+          + "LEFT JOIN FETCH c.account "
+          + "JOIN FETCH cws.slot "
+          + "WHERE c.id = :coachId AND cws.date = :date AND cws.slot.id = :slotId")
+  Optional<CoachWorkSchedule> findByCoachIdAndDateAndSlotIdWithCoach(
+      @Param("coachId") int coachId, @Param("date") LocalDate date, @Param("slotId") int slotId);
+
   // Dự tính cho cron - update batch theo ngày
   @Query(
       "SELECT cws FROM CoachWorkSchedule cws "
@@ -64,6 +85,12 @@ public interface CoachWorkScheduleRepository extends JpaRepository<CoachWorkSche
   List<LocalDate> findDistinctDatesByCoachIdAndDateBetween(
       @Param("coachId") int coachId, @Param("start") LocalDate start, @Param("end") LocalDate end);
 
+  @Query(
+      "SELECT cws.coach.id, cws.slot.id FROM CoachWorkSchedule cws"
+          + " WHERE cws.date = :date AND cws.status = :status")
+  List<Object[]> findCoachAndSlotIdsByDateAndStatus(
+      @Param("date") LocalDate date, @Param("status") CoachWorkScheduleStatus status);
+
   @Query(
       "select cws from CoachWorkSchedule cws join fetch cws.coach ch where cws.date = :date and"
           + " cws.slot.id = :slotId")
@@ -5,6 +5,8 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface DiaryRecordRepository extends JpaRepository<DiaryRecord, Integer> {
 
@@ -14,6 +16,16 @@ public interface DiaryRecordRepository extends JpaRepository<DiaryRecord, Intege
 
   List<DiaryRecord> findByMemberIdOrderByDateDesc(Integer memberId);
 
+  // chỉ lấy cột triggers để thống kê, không load cả diary record
+  @Query("SELECT d.triggers FROM DiaryRecord d WHERE d.member.id = :memberId")
+  List<List<String>> findTriggersByMemberId(@Param("memberId") int memberId);
+
+  // [memberId, triggers] của member chưa có dòng nào trong member_trigger_stat (backfill)
+  @Query(
+      "SELECT d.member.id, d.triggers FROM DiaryRecord d WHERE NOT EXISTS"
+          + " (SELECT 1 FROM MemberTriggerStat s WHERE s.member = d.member)")
+  List<Object[]> findTriggersOfMembersWithoutStats();
+
   Optional<DiaryRecord> findTopByMemberIdOrderByDateDesc(Integer memberId);
 
   Optional<DiaryRecord> findTopByMemberIdAndHaveSmokedIsTrueOrderByDateDesc(Integer memberId);
@@ -22,4 +34,38 @@ public interface DiaryRecordRepository extends JpaRepository<DiaryRecord, Intege
 
   List<DiaryRecord> findByMemberIdAndDateBetweenOrderByDateAsc(
       int memberId, LocalDate startDate, LocalDate endDate);
+
+  // [memberId, count, sumCraving, sumMood, sumConfidence, sumAnxiety, totalCigarettes,
+  // smokeFreeDays, nrtTotalSpent]
+  @Query(
+      """
+      SELECT d.member.id, COUNT(d), SUM(d.cravingLevel), SUM(d.moodLevel),
+             SUM(d.confidenceLevel), SUM(d.anxietyLevel), SUM(d.cigarettesSmoked),
+             SUM(CASE WHEN d.haveSmoked = false THEN 1 ELSE 0 END), SUM(d.moneySpentOnNrt)
+      FROM DiaryRecord d
+      WHERE d.member.id = :memberId
+      GROUP BY d.member.id
+      """)
+  List<Object[]> aggregateByMemberId(@Param("memberId") Integer memberId);
+
+  @Query(
+      """
+      SELECT d.member.id, COUNT(d), SUM(d.cravingLevel), SUM(d.moodLevel),
+             SUM(d.confidenceLevel), SUM(d.anxietyLevel), SUM(d.cigarettesSmoked),
+             SUM(CASE WHEN d.haveSmoked = false THEN 1 ELSE 0 END), SUM(d.moneySpentOnNrt)
+      FROM DiaryRecord d
+      GROUP BY d.member.id
+      """)
+  List<Object[]> aggregateGroupByMember();
+
+  // [date, confidence, mood, anxiety, craving, cigarettes, nicotine, reduction] theo ngày tăng dần
+  @Query(
+      """
+      SELECT d.date, d.confidenceLevel, d.moodLevel, d.anxietyLevel, d.cravingLevel,
+             d.cigarettesSmoked, d.estimatedNicotineIntake, d.reductionPercentage
+      FROM DiaryRecord d
+      WHERE d.member.id = :memberId
+      ORDER BY d.date ASC
+      """)
+  List<Object[]> findChartRowsByMemberId(@Param("memberId") int memberId);
 }
@@ -1,9 +1,11 @@
 package com.smartquit.smartquitiot.repository;
 
 import com.smartquit.smartquitiot.entity.MemberAchievement;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface MemberAchievementRepository extends JpaRepository<MemberAchievement, Integer> {
   List<MemberAchievement> getMemberAchievementsByMember_Id(int memberId);
@@ -23,4 +25,26 @@ public interface MemberAchievementRepository extends JpaRepository<MemberAchieve
         """,
       nativeQuery = true)
   List<Object[]> findTop10MembersWithMostAchievements();
+
+  @Query(
+      "SELECT ma.achievement.id, ma.achievedAt FROM MemberAchievement ma"
+          + " WHERE ma.member.id = :memberId")
+  List<Object[]> findOwnedAchievementIds(@Param("memberId") int memberId);
+
+  // locking read: thấy row mới nhất đã commit, không phải snapshot đầu transaction
+  @Query(
+      value =
+          "SELECT achievement_id, achieved_at FROM member_achievement"
+              + " WHERE member_id = :memberId FOR UPDATE",
+      nativeQuery = true)
+  List<Object[]> findOwnedAchievementIdsForUpdate(@Param("memberId") int memberId);
+
+  @Query("SELECT ma.member.id, COUNT(ma) FROM MemberAchievement ma GROUP BY ma.member.id")
+  List<Object[]> countAchievementsGroupByMember();
+
+  @Query(
+      "SELECT ma FROM MemberAchievement ma JOIN FETCH ma.achievement JOIN FETCH ma.member"
+          + " WHERE ma.member.id IN :memberIds ORDER BY ma.achievedAt")
+  List<MemberAchievement> findByMemberIdInWithAchievement(
+      @Param("memberIds") Collection<Integer> memberIds);
 }
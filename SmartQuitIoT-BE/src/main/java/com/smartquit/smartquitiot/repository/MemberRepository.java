@@ -1,6 +1,7 @@
 package com.smartquit.smartquitiot.repository;
 
 import com.smartquit.smartquitiot.entity.Member;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -9,6 +10,7 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -27,6 +29,14 @@ public interface MemberRepository
   @EntityGraph(attributePaths = {"account"})
   List<Member> findAllByAccount_IsActiveTrueAndAccount_IsBannedFalse();
 
+  // khoá row member để tuần tự hoá thao tác khởi tạo dữ liệu theo member
+  @Query(value = "SELECT id FROM member WHERE id = :id FOR UPDATE", nativeQuery = true)
+  Optional<Integer> lockById(@Param("id") int id);
+
+  @Modifying
+  @Query("UPDATE Member m SET m.fcmToken = null WHERE m.fcmToken IN :tokens")
+  int clearFcmTokens(@Param("tokens") Collection<String> tokens);
+
   @Query(
       "SELECT COUNT(m) FROM Member m "
           + "JOIN m.account a "
@@ -0,0 +1,55 @@
+package com.smartquit.smartquitiot.repository;
+
+import com.smartquit.smartquitiot.entity.MemberTriggerStat;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface MemberTriggerStatRepository extends JpaRepository<MemberTriggerStat, Integer> {
+
+  boolean existsByMember_Id(int memberId);
+
+  // đọc có khoá => thấy row transaction khác vừa commit, không đọc snapshot cũ
+  @Query(
+      value = "SELECT COUNT(*) FROM member_trigger_stat WHERE member_id = :memberId FOR UPDATE",
+      nativeQuery = true)
+  long countByMemberIdForUpdate(@Param("memberId") int memberId);
+
+  @Modifying
+  @Query(
+      value =
+          """
+        INSERT INTO member_trigger_stat (member_id, trigger_code, trigger_count)
+        VALUES (:memberId, :triggerCode, GREATEST(:delta, 0))
+        ON DUPLICATE KEY UPDATE trigger_count = GREATEST(trigger_count + :delta, 0)
+        """,
+      nativeQuery = true)
+  int upsertCount(
+      @Param("memberId") int memberId,
+      @Param("triggerCode") String triggerCode,
+      @Param("delta") int delta);
+
+  // ghi số tuyệt đối => chạy lại nhiều lần vẫn ra cùng kết quả
+  @Modifying
+  @Query(
+      value =
+          """
+        INSERT INTO member_trigger_stat (member_id, trigger_code, trigger_count)
+        VALUES (:memberId, :triggerCode, :count)
+        ON DUPLICATE KEY UPDATE trigger_count = VALUES(trigger_count)
+        """,
+      nativeQuery = true)
+  int setCount(
+      @Param("memberId") int memberId,
+      @Param("triggerCode") String triggerCode,
+      @Param("count") int count);
+
+  @Query(
+      "SELECT s.triggerCode FROM MemberTriggerStat s"
+          + " WHERE s.member.id = :memberId AND s.triggerCount > 0"
+          + " ORDER BY s.triggerCount DESC, s.triggerCode")
+  List<String> findTopTriggerCodes(@Param("memberId") int memberId, Pageable pageable);
+}
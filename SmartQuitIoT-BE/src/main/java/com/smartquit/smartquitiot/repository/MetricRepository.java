@@ -1,10 +1,16 @@
 package com.smartquit.smartquitiot.repository;
 
 import com.smartquit.smartquitiot.entity.Metric;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 public interface MetricRepository extends JpaRepository<Metric, Integer> {
 
   Optional<Metric> findByMemberId(Integer memberId);
+
+  // [memberId, streaks, moneySaved] dùng để dựng lại leaderboard
+  @Query("SELECT m.member.id, m.streaks, m.moneySaved FROM Metric m WHERE m.member IS NOT NULL")
+  List<Object[]> findLeaderboardScores();
 }
@@ -4,18 +4,27 @@ import com.smartquit.smartquitiot.entity.Mission;
 import com.smartquit.smartquitiot.enums.MissionPhase;
 import com.smartquit.smartquitiot.enums.MissionStatus;
 import jakarta.validation.constraints.NotBlank;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 public interface MissionRepository extends JpaRepository<Mission, Integer> {
   List<Mission> findByPhaseAndStatus(MissionPhase phase, MissionStatus status);
 
+  @Query("SELECT m FROM Mission m LEFT JOIN FETCH m.interestCategory ORDER BY m.id")
+  List<Mission> findAllWithInterestCategory();
+
   Optional<Mission> findByCode(String code);
 
+  List<Mission> findByIdIn(Collection<Integer> ids);
+
+  List<Mission> findByCodeIn(Collection<String> codes);
+
   Page<Mission> findAll(Specification<Mission> spec, Pageable pageable);
 
   boolean existsByCode(@NotBlank(message = "Code is required") String code);
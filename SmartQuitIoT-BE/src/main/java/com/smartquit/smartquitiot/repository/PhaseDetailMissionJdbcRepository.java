@@ -0,0 +1,47 @@
+package com.smartquit.smartquitiot.repository;
+
+import com.smartquit.smartquitiot.entity.PhaseDetailMission;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+// Insert mission của cả phase bằng 1 JDBC batch thay vì persist từng row (IDENTITY tắt batching)
+@Repository
+@RequiredArgsConstructor
+public class PhaseDetailMissionJdbcRepository {
+
+  private static final String INSERT_SQL =
+      """
+      INSERT INTO phase_detail_mission
+        (code, name, description, completed_at, status, phase_detail_id, mission_id)
+      VALUES (?, ?, ?, ?, ?, ?, ?)
+      """;
+
+  private static final int BATCH_SIZE = 500;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public void batchInsert(List<PhaseDetailMission> missions) {
+    if (missions.isEmpty()) return;
+    jdbcTemplate.batchUpdate(
+        INSERT_SQL,
+        missions,
+        BATCH_SIZE,
+        (ps, m) -> {
+          ps.setString(1, m.getCode());
+          ps.setString(2, m.getName());
+          ps.setString(3, m.getDescription());
+          if (m.getCompletedAt() != null) {
+            ps.setTimestamp(4, Timestamp.valueOf(m.getCompletedAt()));
+          } else {
+            ps.setNull(4, Types.TIMESTAMP);
+          }
+          ps.setString(5, m.getStatus().name());
+          ps.setInt(6, m.getPhaseDetail().getId());
+          ps.setInt(7, m.getMission().getId());
+        });
+  }
+}
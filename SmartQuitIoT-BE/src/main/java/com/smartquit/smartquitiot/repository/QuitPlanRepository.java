@@ -2,14 +2,27 @@ package com.smartquit.smartquitiot.repository;
 
 import com.smartquit.smartquitiot.entity.QuitPlan;
 import com.smartquit.smartquitiot.enums.QuitPlanStatus;
+import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface QuitPlanRepository extends JpaRepository<QuitPlan, Integer> {
   List<QuitPlan> findByStatusIn(Collection<QuitPlanStatus> statuses);
 
+  @Query(
+      "SELECT q.id FROM QuitPlan q WHERE q.status IN :statuses"
+          + " AND (q.nextTransitionDate IS NULL OR q.nextTransitionDate <= :today)")
+  List<Integer> findIdsDueForTransition(
+      @Param("statuses") Collection<QuitPlanStatus> statuses, @Param("today") LocalDate today);
+
+  @EntityGraph(attributePaths = {"phases"})
+  List<QuitPlan> findWithPhasesByIdIn(Collection<Integer> ids);
+
   QuitPlan findTopByMemberIdOrderByCreatedAtDesc(Integer memberId);
 
   QuitPlan findByMember_IdAndStatus(int memberId, QuitPlanStatus status);
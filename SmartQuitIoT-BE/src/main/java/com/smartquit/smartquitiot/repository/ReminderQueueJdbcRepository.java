@@ -0,0 +1,54 @@
+package com.smartquit.smartquitiot.repository;
+
+import com.smartquit.smartquitiot.entity.ReminderQueue;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+// Insert hàng loạt bằng JDBC batch: id IDENTITY làm Hibernate tắt batching khi persist
+@Repository
+@RequiredArgsConstructor
+public class ReminderQueueJdbcRepository {
+
+  private static final String INSERT_SQL =
+      """
+      INSERT INTO reminder_queue
+        (content, status, scheduled_at, reminder_template_id, phase_detail_id, account_id)
+      VALUES (?, ?, ?, ?, ?, ?)
+      """;
+
+  private static final int BATCH_SIZE = 500;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public void batchInsert(List<ReminderQueue> reminders) {
+    if (reminders.isEmpty()) return;
+    jdbcTemplate.batchUpdate(
+        INSERT_SQL,
+        reminders,
+        BATCH_SIZE,
+        (ps, rq) -> {
+          ps.setString(1, rq.getContent());
+          ps.setString(2, rq.getStatus().name());
+          ps.setTimestamp(3, Timestamp.valueOf(rq.getScheduledAt()));
+          setNullableId(
+              ps, 4, rq.getReminderTemplate() != null ? rq.getReminderTemplate().getId() : null);
+          setNullableId(ps, 5, rq.getPhaseDetail() != null ? rq.getPhaseDetail().getId() : null);
+          setNullableId(ps, 6, rq.getAccount() != null ? rq.getAccount().getId() : null);
+        });
+  }
+
+  private static void setNullableId(PreparedStatement ps, int index, Integer id)
+      throws SQLException {
+    if (id == null) {
+      ps.setNull(index, Types.INTEGER);
+    } else {
+      ps.setInt(index, id);
+    }
+  }
+}
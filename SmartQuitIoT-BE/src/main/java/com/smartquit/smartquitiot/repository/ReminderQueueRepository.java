@@ -3,13 +3,87 @@ package com.smartquit.smartquitiot.repository;
 import com.smartquit.smartquitiot.entity.ReminderQueue;
 import com.smartquit.smartquitiot.enums.ReminderQueueStatus;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface ReminderQueueRepository extends JpaRepository<ReminderQueue, Integer> {
-  List<ReminderQueue> findByStatusAndScheduledAtBefore(
-      ReminderQueueStatus reminderQueueStatus, LocalDateTime now);
+  // claim nguyên tử: chỉ 1 instance set được token cho mỗi row, lease hết hạn thì claim lại được
+  @Modifying
+  @Query(
+      value =
+          """
+        UPDATE reminder_queue
+        SET claim_token = :token, claimed_until = :leaseUntil
+        WHERE status = 'PENDING'
+          AND scheduled_at <= :now
+          AND (claimed_until IS NULL OR claimed_until < :now)
+          AND MOD(id, :shardCount) = :shard
+        ORDER BY scheduled_at
+        LIMIT :batchSize
+        """,
+      nativeQuery = true)
+  int claimDueBatch(
+      @Param("token") String token,
+      @Param("now") LocalDateTime now,
+      @Param("leaseUntil") LocalDateTime leaseUntil,
+      @Param("shardCount") int shardCount,
+      @Param("shard") int shard,
+      @Param("batchSize") int batchSize);
 
-  List<ReminderQueue> findAllByStatusAndScheduledAtBefore(
-      ReminderQueueStatus status, LocalDateTime now);
+  @Modifying
+  @Query(
+      value =
+          """
+        UPDATE reminder_queue
+        SET claim_token = :token, claimed_until = :leaseUntil
+        WHERE id IN (:ids)
+          AND status = 'PENDING'
+          AND scheduled_at <= :now
+          AND (claimed_until IS NULL OR claimed_until < :now)
+        """,
+      nativeQuery = true)
+  int claimDueByIds(
+      @Param("token") String token,
+      @Param("ids") Collection<Integer> ids,
+      @Param("now") LocalDateTime now,
+      @Param("leaseUntil") LocalDateTime leaseUntil);
+
+  @Query(
+      """
+      SELECT r.id, r.scheduledAt FROM ReminderQueue r
+      WHERE r.status = com.smartquit.smartquitiot.enums.ReminderQueueStatus.PENDING
+        AND r.scheduledAt BETWEEN :from AND :to
+      """)
+  List<Object[]> findPendingScheduledBetween(
+      @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+  @Query(
+      """
+      SELECT r FROM ReminderQueue r
+      LEFT JOIN FETCH r.account a
+      LEFT JOIN FETCH a.member
+      LEFT JOIN FETCH r.phaseDetail pd
+      LEFT JOIN FETCH pd.phase p
+      LEFT JOIN FETCH p.quitPlan qp
+      LEFT JOIN FETCH qp.member m
+      LEFT JOIN FETCH m.account
+      WHERE r.claimToken = :token
+      """)
+  List<ReminderQueue> findClaimed(@Param("token") String token);
+
+  @Modifying
+  @Query(
+      """
+      UPDATE ReminderQueue r
+      SET r.status = :status, r.claimToken = null, r.claimedUntil = null
+      WHERE r.id IN :ids AND r.claimToken = :token
+      """)
+  int completeClaimed(
+      @Param("token") String token,
+      @Param("ids") Collection<Integer> ids,
+      @Param("status") ReminderQueueStatus status);
 }
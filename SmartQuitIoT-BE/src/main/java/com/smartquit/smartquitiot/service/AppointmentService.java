@@ -22,6 +22,14 @@ public interface AppointmentService {
   List<AppointmentResponse> getAppointmentsByCoachAccountId(
       int coachAccountId, String statusFilter, String dateFilter, int page, int size);
 
+  /** Appointments of the member older than {@code beforeId} (newest first), at most limit. */
+  List<AppointmentResponse> getMemberAppointmentsBefore(
+      int memberAccountId, String statusFilter, String dateFilter, Integer beforeId, int limit);
+
+  /** Appointments of the coach older than {@code beforeId} (newest first), at most limit. */
+  List<AppointmentResponse> getCoachAppointmentsBefore(
+      int coachAccountId, String statusFilter, String dateFilter, Integer beforeId, int limit);
+
   AppointmentResponse getAppointmentDetailForPrincipal(int appointmentId, int accountId);
 
   JoinTokenResponse generateJoinTokenForAppointment(int appointmentId, int accountId);
@@ -2,6 +2,7 @@ package com.smartquit.smartquitiot.service;
 
 import com.smartquit.smartquitiot.dto.request.DiaryRecordRequest;
 import com.smartquit.smartquitiot.dto.request.DiaryRecordUpdateRequest;
+import com.smartquit.smartquitiot.dto.response.DiaryChartSeriesDTO;
 import com.smartquit.smartquitiot.dto.response.DiaryRecordDTO;
 import com.smartquit.smartquitiot.dto.response.GlobalResponse;
 import com.smartquit.smartquitiot.dto.response.PredictRiskResponse;
@@ -21,6 +22,11 @@ public interface DiaryRecordService {
 
   Map<String, Object> getDiaryRecordsChartsByMemberId(int memberId);
 
+  DiaryChartSeriesDTO getDiaryChartSeries(LocalDate from, LocalDate to, Integer downsample);
+
+  DiaryChartSeriesDTO getDiaryChartSeriesByMemberId(
+      int memberId, LocalDate from, LocalDate to, Integer downsample);
+
   List<DiaryRecordDTO> getDiaryRecordsHistoryByMemberId(int memberId);
 
   boolean hasCreatedDiaryRecordToday();
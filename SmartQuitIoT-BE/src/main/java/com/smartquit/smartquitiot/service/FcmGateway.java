@@ -0,0 +1,18 @@
+package com.smartquit.smartquitiot.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Sends one batch (max 500) to FCM; the result list is in the same order as the messages. */
+public interface FcmGateway {
+
+  int MAX_BATCH_SIZE = 500;
+
+  enum Outcome {
+    SENT,
+    UNREGISTERED,
+    FAILED
+  }
+
+  CompletableFuture<List<Outcome>> sendEach(List<PushDeliveryService.PushMessage> messages);
+}
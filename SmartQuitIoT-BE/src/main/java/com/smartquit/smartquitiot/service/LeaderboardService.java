@@ -0,0 +1,22 @@
+package com.smartquit.smartquitiot.service;
+
+import com.smartquit.smartquitiot.dto.response.LeaderboardEntryDTO;
+import com.smartquit.smartquitiot.dto.response.LeaderboardResponse;
+import com.smartquit.smartquitiot.enums.LeaderboardType;
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface LeaderboardService {
+
+  void updateDiaryScores(int memberId, int streaks, BigDecimal moneySaved);
+
+  void incrementAchievementCount(int memberId, int delta);
+
+  LeaderboardResponse getLeaderboard(LeaderboardType type, int page, int size);
+
+  LeaderboardEntryDTO getMyRank(LeaderboardType type);
+
+  List<Integer> getTopMemberIds(LeaderboardType type, int limit);
+
+  void rebuildAll();
+}
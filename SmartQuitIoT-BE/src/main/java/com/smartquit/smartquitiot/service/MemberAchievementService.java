@@ -4,6 +4,7 @@ import com.smartquit.smartquitiot.dto.request.AddAchievementRequest;
 import com.smartquit.smartquitiot.dto.response.AchievementDTO;
 import com.smartquit.smartquitiot.dto.response.TopMemberAchievementDTO;
 import com.smartquit.smartquitiot.entity.Achievement;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,6 +12,8 @@ public interface MemberAchievementService {
 
   Optional<Achievement> addMemberAchievement(AddAchievementRequest request);
 
+  List<Achievement> addMemberAchievements(Collection<String> fields);
+
   List<AchievementDTO> getAllMyAchievements();
 
   List<TopMemberAchievementDTO> getTop10MembersWithAchievements();
@@ -0,0 +1,13 @@
+package com.smartquit.smartquitiot.service;
+
+import com.smartquit.smartquitiot.dto.request.CreateNewQuitPlanRequest;
+import com.smartquit.smartquitiot.dto.request.CreateQuitPlanInFirstLoginRequest;
+import com.smartquit.smartquitiot.dto.response.PlanGenerationJobResponse;
+
+public interface PlanGenerationJobService {
+  PlanGenerationJobResponse submitFirstLoginPlan(CreateQuitPlanInFirstLoginRequest req);
+
+  PlanGenerationJobResponse submitNewPlan(CreateNewQuitPlanRequest req);
+
+  PlanGenerationJobResponse getJob(String jobId);
+}
@@ -0,0 +1,13 @@
+package com.smartquit.smartquitiot.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface PushDeliveryService {
+
+  record PushMessage(String token, String title, String body) {}
+
+  CompletableFuture<Void> send(PushMessage message);
+
+  CompletableFuture<Void> sendAll(List<PushMessage> messages);
+}
@@ -0,0 +1,15 @@
+package com.smartquit.smartquitiot.service;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface TriggerStatService {
+
+  void recordTriggers(int memberId, Collection<String> triggers);
+
+  void backfillMissingStats();
+
+  List<String> getTopTriggers(int memberId, int limit);
+
+  String normalizeTrigger(String raw);
+}
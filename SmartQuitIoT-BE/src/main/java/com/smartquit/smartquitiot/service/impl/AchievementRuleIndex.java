@@ -0,0 +1,174 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.smartquit.smartquitiot.dto.response.ConditionAchievementDTO;
+import com.smartquit.smartquitiot.entity.Achievement;
+import com.smartquit.smartquitiot.repository.AchievementRepository;
+import java.time.Duration;
+import java.util.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Achievement conditions parsed once and grouped by metric field. Rules with ">=" / ">" are kept
+ * sorted by threshold so the eligible ones are a prefix found by binary search; the rare other
+ * operators are checked one by one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class AchievementRuleIndex {
+
+  // các instance khác sửa achievement sẽ không invalidate được cache ở đây => tự refresh định kỳ
+  private static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+  private final AchievementRepository achievementRepository;
+
+  private volatile Snapshot snapshot;
+
+  record Rule(Achievement achievement, ConditionAchievementDTO condition) {}
+
+  private record FieldRules(
+      int[] thresholds, boolean[] inclusive, Rule[] sorted, List<Rule> others) {}
+
+  private record Snapshot(
+      Map<String, FieldRules> byField, List<Achievement> catalog, long loadedAtNanos) {}
+
+  public void invalidate() {
+    snapshot = null;
+  }
+
+  /** Every achievement, deleted ones included, in id order. */
+  public List<Achievement> catalog() {
+    return current().catalog();
+  }
+
+  /** Rules of {@code field} that {@code value} satisfies, lowest threshold first. */
+  public List<Rule> matching(String field, int value) {
+    FieldRules rules = current().byField().get(field);
+    if (rules == null) return List.of();
+
+    // thresholds tăng dần: mọi rule có threshold < value (hoặc == value với ">=") đều đạt
+    int hi = upperBound(rules.thresholds(), value);
+    List<Rule> result = new ArrayList<>(hi + rules.others().size());
+    for (int i = 0; i < hi; i++) {
+      if (rules.thresholds()[i] < value || rules.inclusive()[i]) {
+        result.add(rules.sorted()[i]);
+      }
+    }
+    for (Rule rule : rules.others()) {
+      if (compare(value, rule.condition().getOperator(), rule.condition().getValue())) {
+        result.add(rule);
+      }
+    }
+    return result;
+  }
+
+  private Snapshot current() {
+    Snapshot s = snapshot;
+    if (s == null || System.nanoTime() - s.loadedAtNanos() > MAX_AGE.toNanos()) {
+      synchronized (this) {
+        s = snapshot;
+        if (s == null || System.nanoTime() - s.loadedAtNanos() > MAX_AGE.toNanos()) {
+          s = load();
+          snapshot = s;
+        }
+      }
+    }
+    return s;
+  }
+
+  private Snapshot load() {
+    Map<String, List<Rule>> monotonic = new HashMap<>();
+    Map<String, List<Rule>> others = new HashMap<>();
+    int count = 0;
+    List<Achievement> catalog = new ArrayList<>(achievementRepository.findAll());
+    catalog.sort(Comparator.comparingInt(Achievement::getId));
+    for (Achievement achievement : catalog) {
+      if (achievement.isDeleted()) continue;
+      ConditionAchievementDTO condition = parseConditionDTO(achievement.getCondition());
+      if (condition == null) continue;
+      Rule rule = new Rule(achievement, condition);
+      String op = condition.getOperator();
+      if (">=".equals(op) || ">".equals(op)) {
+        monotonic.computeIfAbsent(condition.getField(), k -> new ArrayList<>()).add(rule);
+      } else {
+        others.computeIfAbsent(condition.getField(), k -> new ArrayList<>()).add(rule);
+      }
+      count++;
+    }
+
+    Set<String> fields = new HashSet<>(monotonic.keySet());
+    fields.addAll(others.keySet());
+    Map<String, FieldRules> byField = new HashMap<>();
+    for (String field : fields) {
+      List<Rule> sorted = new ArrayList<>(monotonic.getOrDefault(field, List.of()));
+      sorted.sort(Comparator.comparingInt(r -> r.condition().getValue()));
+      int[] thresholds = new int[sorted.size()];
+      boolean[] inclusive = new boolean[sorted.size()];
+      for (int i = 0; i < sorted.size(); i++) {
+        thresholds[i] = sorted.get(i).condition().getValue();
+        inclusive[i] = ">=".equals(sorted.get(i).condition().getOperator());
+      }
+      byField.put(
+          field,
+          new FieldRules(
+              thresholds,
+              inclusive,
+              sorted.toArray(new Rule[0]),
+              List.copyOf(others.getOrDefault(field, List.of()))));
+    }
+    log.info("Loaded {} achievement rules for {} fields", count, byField.size());
+    return new Snapshot(byField, List.copyOf(catalog), System.nanoTime());
+  }
+
+  // số phần tử <= value
+  private int upperBound(int[] thresholds, int value) {
+    int lo = 0;
+    int hi = thresholds.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (thresholds[mid] <= value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private ConditionAchievementDTO parseConditionDTO(JsonNode node) {
+    if (node == null || node.isNull()) return null;
+
+    JsonNode conditionNode = node.isArray() ? node.get(0) : node;
+
+    String field = conditionNode.path("field").asText(null);
+    String op = conditionNode.path("operator").asText(null);
+    int val = conditionNode.path("value").asInt(Integer.MIN_VALUE);
+
+    if (field == null || op == null || val == Integer.MIN_VALUE) return null;
+
+    return new ConditionAchievementDTO(field, op, val);
+  }
+
+  private boolean compare(int actual, String operator, int target) {
+    switch (operator) {
+      case ">=":
+        return actual >= target;
+      case ">":
+        return actual > target;
+      case "<=":
+        return actual <= target;
+      case "<":
+        return actual < target;
+      case "==":
+      case "=":
+        return actual == target;
+      case "!=":
+        return actual != target;
+      default:
+        return false;
+    }
+  }
+}
@@ -26,6 +26,7 @@ public class AchievementServiceImpl implements AchievementService {
   private final AchievementRepository achievementRepository;
   private final AchievementMapper achievementMapper;
   private final NotificationService notificationService;
+  private final AchievementRuleIndex achievementRuleIndex;
 
   @Override
   public Page<AchievementDTO> getAllAchievements(int page, int size, String search) {
@@ -63,7 +64,10 @@ public class AchievementServiceImpl implements AchievementService {
         "New achievement created: " + request.getName(),
         "A new achievement has been added to the system. Check it out!");
 
-    return achievementMapper.toAchievementDTO(achievementRepository.save(achievement));
+    AchievementDTO saved =
+        achievementMapper.toAchievementDTO(achievementRepository.save(achievement));
+    achievementRuleIndex.invalidate();
+    return saved;
   }
 
   @Override
@@ -75,7 +79,10 @@ public class AchievementServiceImpl implements AchievementService {
 
     achievement.setDeleted(true);
 
-    return achievementMapper.toAchievementDTO(achievementRepository.save(achievement));
+    AchievementDTO saved =
+        achievementMapper.toAchievementDTO(achievementRepository.save(achievement));
+    achievementRuleIndex.invalidate();
+    return saved;
   }
 
   @Override
@@ -93,7 +100,10 @@ public class AchievementServiceImpl implements AchievementService {
     achievement.setType(AchievementType.valueOf(request.getType()));
     achievement.setCondition(request.getCondition());
 
-    return achievementMapper.toAchievementDTO(achievementRepository.save(achievement));
+    AchievementDTO saved =
+        achievementMapper.toAchievementDTO(achievementRepository.save(achievement));
+    achievementRuleIndex.invalidate();
+    return saved;
   }
 
   private void validateCondition(JsonNode condition) {
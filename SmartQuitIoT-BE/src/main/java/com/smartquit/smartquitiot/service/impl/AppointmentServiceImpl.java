@@ -1,5 +1,6 @@
 package com.smartquit.smartquitiot.service.impl;
 
+import com.smartquit.smartquitiot.cron.AppointmentReminderScheduler;
 import com.smartquit.smartquitiot.dto.request.AppointmentRequest;
 import com.smartquit.smartquitiot.dto.response.AppointmentResponse;
 import com.smartquit.smartquitiot.dto.response.JoinTokenResponse;
@@ -15,19 +16,27 @@ import com.smartquit.smartquitiot.service.AgoraService;
 import com.smartquit.smartquitiot.service.AppointmentService;
 import com.smartquit.smartquitiot.service.NotificationService;
 import com.smartquit.smartquitiot.specifications.AppointmentSpecification;
+import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
 import java.time.*;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service implementation cho Appointment. - Chú thích bằng tiếng Việt. - Các thông báo lỗi /
@@ -42,11 +51,19 @@ public class AppointmentServiceImpl implements AppointmentService {
   private final MemberRepository memberRepository;
   private final AppointmentMapper appointmentMapper;
   private final AgoraService agoraService;
-  private final MembershipSubscriptionRepository membershipSubscriptionRepository; // NEW
   private final FeedbackRepository feedbackRepository;
   private final NotificationService notificationService;
   private final NotificationRepository notificationRepository;
-  private static final int BOOKINGS_PER_30D = 4;
+  private final CoachAvailabilityIndex coachAvailabilityIndex;
+  private final PlatformTransactionManager transactionManager;
+  private final BookingQuotaCounter bookingQuotaCounter;
+  // việc sau commit chạy trên thread riêng để trả connection của booking về pool trước
+  private final ExecutorService afterCommitExecutor = Executors.newVirtualThreadPerTaskExecutor();
+  private static final int MAX_LIST_LIMIT = 100;
+
+  // false = khoá row CWS bằng SELECT ... FOR UPDATE như trước
+  @Value("${app.appointment.optimistic-booking:true}")
+  private boolean optimisticBooking;
 
   /**
    * Member đặt lịch hẹn với coach. - Trước khi book sẽ kiểm tra member còn lượt trong subscription
@@ -67,12 +84,9 @@ public class AppointmentServiceImpl implements AppointmentService {
     var coachId = request.getCoachId();
     var slotId = request.getSlotId();
 
-    // --- CHECK 1: kiểm tra còn lượt booking hay không (dựa trên subscription active)
-    RemainingBookingResponse remaining = getRemainingBookingsForMember(accountId);
-    if (remaining == null) {
-      throw new IllegalStateException("No active subscription");
-    }
-    if (remaining.getRemaining() <= 0) {
+    // --- CHECK 1: lấy 1 lượt booking của subscription active (compare-and-increment, tự trả lại
+    // nếu transaction rollback)
+    if (!bookingQuotaCounter.tryAcquire(memberId, date)) {
       throw new IllegalStateException("No remaining booking available in your subscription period");
     }
 
@@ -120,25 +134,11 @@ public class AppointmentServiceImpl implements AppointmentService {
       throw new IllegalStateException(errorMessage);
     }
 
-    // Kiểm tra slot đã được đặt chưa (by coachId, slotId, date, miễn không phải cancel)
-    if (appointmentRepository.existsActiveByCoachSlotDate(coachId, slotId, date)) {
-      throw new IllegalStateException("This slot has already been booked");
-    }
-
-    // Kiểm tra slot có trong lịch làm việc không
     CoachWorkSchedule cws =
-        coachWorkScheduleRepository
-            .findByCoachIdAndDateAndSlotIdForUpdate(coachId, date, slotId)
-            .orElseThrow(
-                () -> new IllegalArgumentException("Coach does not have this slot in schedule"));
-
-    if (cws.getStatus() != CoachWorkScheduleStatus.AVAILABLE) {
-      throw new IllegalStateException("This slot is not available");
-    }
-
-    // Cập nhật trạng thái CWS sang BOOKED
-    cws.setStatus(CoachWorkScheduleStatus.BOOKED);
-    coachWorkScheduleRepository.save(cws);
+        optimisticBooking
+            ? claimSlot(coachId, date, slotId)
+            : lockAndClaimSlot(coachId, date, slotId);
+    coachAvailabilityIndex.onStatusChanged(cws);
 
     // Tạo appointment mới, trạng thái PENDING
     Appointment appointment = new Appointment();
@@ -150,8 +150,15 @@ public class AppointmentServiceImpl implements AppointmentService {
         "Appointment with coach "
             + (cws.getCoach().getLastName() != null ? cws.getCoach().getLastName() : ""));
     appointment.setCoachWorkSchedule(cws);
+    appointment.setActiveScheduleId(cws.getId());
     appointment.setCreatedAt(LocalDateTime.now());
-    appointmentRepository.save(appointment);
+    appointment.setReminderAt(AppointmentReminderScheduler.reminderAtFor(cws));
+    try {
+      appointmentRepository.save(appointment);
+    } catch (DataIntegrityViolationException e) {
+      // uk_appointment_active_schedule: slot đã có appointment active
+      throw new IllegalStateException("This slot has already been booked");
+    }
 
     log.info(
         "Member(accountId={}) (memberId={}) booked slot {} with coach {} on date {}",
@@ -161,59 +168,118 @@ public class AppointmentServiceImpl implements AppointmentService {
         coachId,
         date);
 
-    // Phần notification
-    try {
-      Account coachAccount = cws.getCoach().getAccount();
-      if (coachAccount != null) {
-        String deepLink = "smartquit://appointment/" + appointment.getId();
-        String url = "appointments/" + appointment.getId();
+    // Phần notification: gửi sau khi commit, không giữ lock/connection của booking
+    Account coachAccount = cws.getCoach().getAccount();
+    int appointmentId = appointment.getId();
+    String content =
+        String.format(
+            "Member %s requested an appointment on %s at %s",
+            (member.getFirstName() != null ? member.getFirstName() : "Member"),
+            appointment.getDate(),
+            (cws.getSlot() != null ? cws.getSlot().getStartTime().toString() : "unknown time"));
+    runAfterCommit(() -> sendBookedNotification(coachAccount, appointmentId, content));
 
-        boolean already =
-            notificationRepository
-                .existsByAccount_IdAndNotificationTypeAndDeepLinkAndIsDeletedFalse(
-                    coachAccount.getId(), NotificationType.APPOINTMENT_BOOKED, deepLink);
-        if (!already) {
-          String title = "New booking: appointment #" + appointment.getId();
-          String content =
-              String.format(
-                  "Member %s requested an appointment on %s at %s",
-                  (member.getFirstName() != null ? member.getFirstName() : "Member"),
-                  appointment.getDate(),
-                  (cws.getSlot() != null
-                      ? cws.getSlot().getStartTime().toString()
-                      : "unknown time"));
-          try {
-            notificationService.saveAndPublish(
-                coachAccount,
-                NotificationType.APPOINTMENT_BOOKED,
-                title,
-                content,
-                null,
-                url,
-                deepLink);
-          } catch (Exception ex) {
-            log.warn(
-                "Failed to publish appointment booked notification for appointment {}: {}",
-                appointment.getId(),
-                ex.getMessage());
-          }
-        } else {
-          log.debug("Booked noti already exists for appointment {}", appointment.getId());
-        }
-      } else {
-        log.warn(
-            "Coach account missing for appointment {} — skip booked notification",
-            appointment.getId());
+    return appointmentMapper.toResponse(appointment);
+  }
+
+  // UPDATE có điều kiện thay cho SELECT ... FOR UPDATE: không giữ lock trong lúc kiểm tra
+  private CoachWorkSchedule claimSlot(int coachId, LocalDate date, int slotId) {
+    if (coachWorkScheduleRepository.claimAvailable(coachId, date, slotId) == 0) {
+      if (!coachWorkScheduleRepository.existsByCoachIdAndDateAndSlotId(coachId, date, slotId)) {
+        throw new IllegalArgumentException("Coach does not have this slot in schedule");
       }
+      throw new IllegalStateException("This slot is not available");
+    }
+    return coachWorkScheduleRepository
+        .findByCoachIdAndDateAndSlotIdWithCoach(coachId, date, slotId)
+        .orElseThrow(
+            () -> new IllegalArgumentException("Coach does not have this slot in schedule"));
+  }
+
+  private CoachWorkSchedule lockAndClaimSlot(int coachId, LocalDate date, int slotId) {
+    // Kiểm tra slot đã được đặt chưa (by coachId, slotId, date, miễn không phải cancel)
+    if (appointmentRepository.existsActiveByCoachSlotDate(coachId, slotId, date)) {
+      throw new IllegalStateException("This slot has already been booked");
+    }
+
+    // Kiểm tra slot có trong lịch làm việc không
+    CoachWorkSchedule cws =
+        coachWorkScheduleRepository
+            .findByCoachIdAndDateAndSlotIdForUpdate(coachId, date, slotId)
+            .orElseThrow(
+                () -> new IllegalArgumentException("Coach does not have this slot in schedule"));
+
+    if (cws.getStatus() != CoachWorkScheduleStatus.AVAILABLE) {
+      throw new IllegalStateException("This slot is not available");
+    }
+
+    // Cập nhật trạng thái CWS sang BOOKED
+    cws.setStatus(CoachWorkScheduleStatus.BOOKED);
+    coachWorkScheduleRepository.save(cws);
+    return cws;
+  }
+
+  private void sendBookedNotification(Account coachAccount, int appointmentId, String content) {
+    if (coachAccount == null) {
+      log.warn(
+          "Coach account missing for appointment {} — skip booked notification", appointmentId);
+      return;
+    }
+    try {
+      String deepLink = "smartquit://appointment/" + appointmentId;
+      String url = "appointments/" + appointmentId;
+
+      boolean already =
+          notificationRepository.existsByAccount_IdAndNotificationTypeAndDeepLinkAndIsDeletedFalse(
+              coachAccount.getId(), NotificationType.APPOINTMENT_BOOKED, deepLink);
+      if (already) {
+        log.debug("Booked noti already exists for appointment {}", appointmentId);
+        return;
+      }
+      notificationService.saveAndPublish(
+          coachAccount,
+          NotificationType.APPOINTMENT_BOOKED,
+          "New booking: appointment #" + appointmentId,
+          content,
+          null,
+          url,
+          deepLink);
     } catch (Exception ex) {
-      log.error(
-          "Error while sending booked notification for appointment {}: {}",
-          appointment.getId(),
-          ex.getMessage(),
-          ex);
+      log.warn(
+          "Failed to publish appointment booked notification for appointment {}: {}",
+          appointmentId,
+          ex.getMessage());
     }
+  }
 
-    return appointmentMapper.toResponse(appointment);
+  // trong afterCommit connection của transaction cũ vẫn bị giữ => mở transaction mới ngay trên
+  // thread này sẽ cần 2 connection/booking và cạn pool khi nhiều người đặt cùng lúc. Chạy trên
+  // thread khác để request trả connection trước, transaction mới tự commit save + publish
+  private void runAfterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionTemplate tx = new TransactionTemplate(transactionManager);
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              afterCommitExecutor.execute(
+                  () -> {
+                    try {
+                      tx.executeWithoutResult(status -> action.run());
+                    } catch (Exception e) {
+                      log.warn("After-commit action failed: {}", e.getMessage());
+                    }
+                  });
+            }
+          });
+    } else {
+      action.run();
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    afterCommitExecutor.shutdown();
   }
 
   /**
@@ -292,6 +358,7 @@ public class AppointmentServiceImpl implements AppointmentService {
       if (stored != null) {
         stored.setStatus(CoachWorkScheduleStatus.AVAILABLE);
         coachWorkScheduleRepository.save(stored);
+        coachAvailabilityIndex.onStatusChanged(stored);
       } else {
         log.warn("CWS not found by forUpdate for appointment {} — fallback skipped", appointmentId);
       }
@@ -302,6 +369,8 @@ public class AppointmentServiceImpl implements AppointmentService {
     appointment.setAppointmentStatus(AppointmentStatus.CANCELLED);
     appointment.setCancelledBy(CancelledBy.MEMBER);
     appointment.setCancelledAt(LocalDateTime.now());
+    appointment.setReminderAt(null);
+    appointment.setActiveScheduleId(null);
 
     appointmentRepository.save(appointment);
 
@@ -414,17 +483,25 @@ public class AppointmentServiceImpl implements AppointmentService {
     if (stored != null) {
       stored.setStatus(CoachWorkScheduleStatus.UNAVAILABLE);
       coachWorkScheduleRepository.save(stored);
+      coachAvailabilityIndex.onStatusChanged(stored);
     } else {
       log.warn("CWS not found by forUpdate for appointment {} — using linkedCws", appointmentId);
       linkedCws.setStatus(CoachWorkScheduleStatus.UNAVAILABLE);
       coachWorkScheduleRepository.save(linkedCws);
+      coachAvailabilityIndex.onStatusChanged(linkedCws);
     }
 
     appointment.setAppointmentStatus(AppointmentStatus.CANCELLED);
     appointment.setCancelledBy(CancelledBy.COACH);
     appointment.setCancelledAt(LocalDateTime.now());
+    appointment.setReminderAt(null);
+    appointment.setActiveScheduleId(null);
 
     appointmentRepository.save(appointment);
+    // coach huỷ => hoàn lượt cho member
+    if (appointment.getMember() != null) {
+      bookingQuotaCounter.release(appointment.getMember().getId(), appointment.getDate());
+    }
 
     log.info(
         "Coach(accountId={}) cancelled appointment {} — slot marked UNAVAILABLE",
@@ -500,30 +577,10 @@ public class AppointmentServiceImpl implements AppointmentService {
 
     int memberId = member.getId();
 
-    List<Appointment> all = appointmentRepository.findAllByMemberId(memberId);
+    final AppointmentStatus statusFinal = parseStatusFilter(statusFilter);
+    final LocalDate dateFinal = parseDateFilter(dateFilter);
 
-    // parse status filter
-    AppointmentStatus parsedStatus = null;
-    if (statusFilter != null && !statusFilter.isBlank()) {
-      try {
-        parsedStatus = AppointmentStatus.valueOf(statusFilter.trim().toUpperCase());
-      } catch (IllegalArgumentException e) {
-        throw new IllegalArgumentException("Invalid status filter: " + statusFilter);
-      }
-    }
-
-    // parse date filter - expects yyyy-MM-dd
-    LocalDate parsedDate = null;
-    if (dateFilter != null && !dateFilter.isBlank()) {
-      try {
-        parsedDate = LocalDate.parse(dateFilter.trim());
-      } catch (DateTimeException e) {
-        throw new IllegalArgumentException("Invalid date filter, expected yyyy-MM-dd");
-      }
-    }
-
-    final AppointmentStatus statusFinal = parsedStatus;
-    final LocalDate dateFinal = parsedDate;
+    List<Appointment> all = appointmentRepository.findAllByMemberId(memberId);
 
     var converted =
         all.stream()
@@ -584,30 +641,12 @@ public class AppointmentServiceImpl implements AppointmentService {
   public List<AppointmentResponse> getAppointmentsByCoachAccountId(
       int coachAccountId, String statusFilter, String dateFilter, int page, int size) {
 
+    final AppointmentStatus statusFinal = parseStatusFilter(statusFilter);
+    final LocalDate dateFinal = parseDateFilter(dateFilter);
+
     // fetch appointments by coach's account id
     List<Appointment> all = appointmentRepository.findAllByCoachAccountId(coachAccountId);
 
-    AppointmentStatus parsedStatus = null;
-    if (statusFilter != null && !statusFilter.isBlank()) {
-      try {
-        parsedStatus = AppointmentStatus.valueOf(statusFilter.trim().toUpperCase());
-      } catch (IllegalArgumentException e) {
-        throw new IllegalArgumentException("Invalid status filter: " + statusFilter);
-      }
-    }
-
-    LocalDate parsedDate = null;
-    if (dateFilter != null && !dateFilter.isBlank()) {
-      try {
-        parsedDate = LocalDate.parse(dateFilter.trim());
-      } catch (DateTimeException e) {
-        throw new IllegalArgumentException("Invalid date filter, expected yyyy-MM-dd");
-      }
-    }
-
-    final AppointmentStatus statusFinal = parsedStatus;
-    final LocalDate dateFinal = parsedDate;
-
     var converted =
         all.stream()
             .filter(
@@ -660,11 +699,12 @@ public class AppointmentServiceImpl implements AppointmentService {
 
   /** Tính runtime status dựa trên CoachWorkSchedule slot times. */
   private String calculateRuntimeStatus(CoachWorkSchedule cws) {
-    ZoneId zone = ZoneId.of("Asia/Ho_Chi_Minh");
+    return calculateRuntimeStatus(
+        cws.getDate(), cws.getSlot().getStartTime(), cws.getSlot().getEndTime());
+  }
 
-    LocalDate date = cws.getDate();
-    LocalTime start = cws.getSlot().getStartTime();
-    LocalTime end = cws.getSlot().getEndTime();
+  private String calculateRuntimeStatus(LocalDate date, LocalTime start, LocalTime end) {
+    ZoneId zone = ZoneId.of("Asia/Ho_Chi_Minh");
 
     LocalDateTime startDt = LocalDateTime.of(date, start);
     LocalDateTime endDt = LocalDateTime.of(date, end);
@@ -683,6 +723,67 @@ public class AppointmentServiceImpl implements AppointmentService {
     }
   }
 
+  @Override
+  public List<AppointmentResponse> getMemberAppointmentsBefore(
+      int memberAccountId, String statusFilter, String dateFilter, Integer beforeId, int limit) {
+    return appointmentRepository
+        .findListRowsByMemberAccountId(
+            memberAccountId,
+            parseStatusFilter(statusFilter),
+            parseDateFilter(dateFilter),
+            beforeId,
+            PageRequest.of(0, clampListLimit(limit)))
+        .stream()
+        .map(row -> appointmentMapper.toResponse(row, runtimeStatusOf(row)))
+        .toList();
+  }
+
+  @Override
+  public List<AppointmentResponse> getCoachAppointmentsBefore(
+      int coachAccountId, String statusFilter, String dateFilter, Integer beforeId, int limit) {
+    return appointmentRepository
+        .findListRowsByCoachAccountId(
+            coachAccountId,
+            parseStatusFilter(statusFilter),
+            parseDateFilter(dateFilter),
+            beforeId,
+            PageRequest.of(0, clampListLimit(limit)))
+        .stream()
+        .map(row -> appointmentMapper.toResponse(row, runtimeStatusOf(row)))
+        .toList();
+  }
+
+  private String runtimeStatusOf(AppointmentListRow row) {
+    if (row.status() == AppointmentStatus.CANCELLED) return "CANCELLED";
+    if (row.status() == AppointmentStatus.COMPLETED) return "COMPLETED";
+    if (row.date() == null || row.startTime() == null || row.endTime() == null) return "UNKNOWN";
+    return calculateRuntimeStatus(row.date(), row.startTime(), row.endTime());
+  }
+
+  private static int clampListLimit(int limit) {
+    if (limit <= 0) return 20;
+    return Math.min(limit, MAX_LIST_LIMIT);
+  }
+
+  private static AppointmentStatus parseStatusFilter(String statusFilter) {
+    if (statusFilter == null || statusFilter.isBlank()) return null;
+    try {
+      return AppointmentStatus.valueOf(statusFilter.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid status filter: " + statusFilter);
+    }
+  }
+
+  // expects yyyy-MM-dd
+  private static LocalDate parseDateFilter(String dateFilter) {
+    if (dateFilter == null || dateFilter.isBlank()) return null;
+    try {
+      return LocalDate.parse(dateFilter.trim());
+    } catch (DateTimeException e) {
+      throw new IllegalArgumentException("Invalid date filter, expected yyyy-MM-dd");
+    }
+  }
+
   /** Lấy chi tiết appointment cho caller (member hoặc coach) sau khi kiểm tra quyền. */
   @Override
   public AppointmentResponse getAppointmentDetailForPrincipal(int appointmentId, int accountId) {
@@ -825,12 +926,8 @@ public class AppointmentServiceImpl implements AppointmentService {
             .findByAccountId(memberAccountId)
             .orElseThrow(() -> new IllegalArgumentException("Member not found"));
 
-    int memberId = member.getId();
-
-    LocalDate today = LocalDate.now();
-
-    var subOpt = membershipSubscriptionRepository.findActiveByMemberId(memberId, today);
-    if (subOpt.isEmpty()) {
+    var quotaOpt = bookingQuotaCounter.current(member.getId());
+    if (quotaOpt.isEmpty()) {
       return RemainingBookingResponse.builder()
           .allowed(0)
           .used(0)
@@ -841,24 +938,13 @@ public class AppointmentServiceImpl implements AppointmentService {
           .build();
     }
 
-    MembershipSubscription sub = subOpt.get();
-    LocalDate start = sub.getStartDate();
-    LocalDate end = sub.getEndDate();
-
-    long days = ChronoUnit.DAYS.between(start, end) + 1;
-    int allowed = (int) Math.floor((days * BOOKINGS_PER_30D) / 30.0);
-
-    long usedLong = appointmentRepository.countActiveByMemberIdAndDateBetween(memberId, start, end);
-    int used = (int) Math.min(usedLong, Integer.MAX_VALUE);
-
-    int remaining = Math.max(0, allowed - used);
-
+    BookingQuotaCounter.Quota quota = quotaOpt.get();
     return RemainingBookingResponse.builder()
-        .allowed(allowed)
-        .used(used)
-        .remaining(remaining)
-        .periodStart(start)
-        .periodEnd(end)
+        .allowed(quota.allowed())
+        .used(quota.used())
+        .remaining(quota.remaining())
+        .periodStart(quota.periodStart())
+        .periodEnd(quota.periodEnd())
         .note(
             "Counting non-cancelled appointments and member-cancelled appointments as used;"
                 + " coach-cancelled appointments are refunded.")
@@ -1031,14 +1117,17 @@ public class AppointmentServiceImpl implements AppointmentService {
     if (lockedCurrentCws != null) {
       lockedCurrentCws.setStatus(CoachWorkScheduleStatus.UNAVAILABLE);
       coachWorkScheduleRepository.save(lockedCurrentCws);
+      coachAvailabilityIndex.onStatusChanged(lockedCurrentCws);
     } else {
       // fallback: if we couldn't lock currentCws by coachId, try using the attached entity
       currentCws.setStatus(CoachWorkScheduleStatus.UNAVAILABLE);
       coachWorkScheduleRepository.save(currentCws);
+      coachAvailabilityIndex.onStatusChanged(currentCws);
     }
 
     targetCws.setStatus(CoachWorkScheduleStatus.BOOKED);
     coachWorkScheduleRepository.save(targetCws);
+    coachAvailabilityIndex.onStatusChanged(targetCws);
 
     // 6) update appointment -> new coach + new coachWorkSchedule
     Coach newCoach = targetCws.getCoach();
@@ -1048,6 +1137,10 @@ public class AppointmentServiceImpl implements AppointmentService {
 
     ap.setCoach(newCoach);
     ap.setCoachWorkSchedule(targetCws);
+    ap.setActiveScheduleId(targetCws.getId());
+    // coach mới chưa được nhắc
+    ap.setReminderAt(AppointmentReminderScheduler.reminderAtFor(targetCws));
+    ap.setReminderSent(false);
 
     appointmentRepository.save(ap);
 
@@ -0,0 +1,241 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.smartquit.smartquitiot.entity.MembershipSubscription;
+import com.smartquit.smartquitiot.repository.AppointmentRepository;
+import com.smartquit.smartquitiot.repository.MembershipSubscriptionRepository;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Booking quota of a member's active subscription, kept in a Redis hash (period, allowed, used)
+ * that expires the day after the period ends. Booking takes one unit with a single
+ * compare-and-increment script, so two concurrent bookings can no longer both see remaining = 1; a
+ * missing hash is rebuilt from the subscription and the appointment count.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class BookingQuotaCounter {
+
+  static final int BOOKINGS_PER_30D = 4;
+
+  private static final String KEY_FMT = "booking_quota:%d";
+  private static final List<Object> FIELDS = List.of("sub", "start", "end", "allowed", "used");
+
+  private static final long MISS = -2;
+  private static final long DENIED = -1;
+  private static final long ACQUIRED = 1;
+
+  // ngày hẹn ngoài kỳ subscription không bị tính (giống countActiveByMemberIdAndDateBetween)
+  // => chỉ kiểm tra còn lượt, không tăng used
+  private static final RedisScript<Long> ACQUIRE =
+      new DefaultRedisScript<>(
+          "if redis.call('EXISTS', KEYS[1]) == 0 then return -2 end\n"
+              + "local q = redis.call('HMGET', KEYS[1], 'start', 'end', 'allowed', 'used')\n"
+              + "if tonumber(q[4]) >= tonumber(q[3]) then return -1 end\n"
+              + "local day = tonumber(ARGV[1])\n"
+              + "if day < tonumber(q[1]) or day > tonumber(q[2]) then return 0 end\n"
+              + "redis.call('HINCRBY', KEYS[1], 'used', 1)\n"
+              + "return 1",
+          Long.class);
+
+  private static final RedisScript<Long> RELEASE =
+      new DefaultRedisScript<>(
+          "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n"
+              + "local q = redis.call('HMGET', KEYS[1], 'start', 'end', 'used')\n"
+              + "local day = tonumber(ARGV[1])\n"
+              + "if day < tonumber(q[1]) or day > tonumber(q[2]) or tonumber(q[3]) <= 0 then"
+              + " return 0 end\n"
+              + "redis.call('HINCRBY', KEYS[1], 'used', -1)\n"
+              + "return 1",
+          Long.class);
+
+  // 2 request cùng miss thì chỉ bản ghi đầu tiên được giữ
+  private static final RedisScript<Long> PUT_IF_ABSENT =
+      new DefaultRedisScript<>(
+          "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end\n"
+              + "redis.call('HSET', KEYS[1], 'sub', ARGV[1], 'start', ARGV[2], 'end', ARGV[3],"
+              + " 'allowed', ARGV[4], 'used', ARGV[5])\n"
+              + "redis.call('PEXPIREAT', KEYS[1], ARGV[6])\n"
+              + "return 1",
+          Long.class);
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final MembershipSubscriptionRepository membershipSubscriptionRepository;
+  private final AppointmentRepository appointmentRepository;
+
+  record Quota(
+      int subscriptionId, LocalDate periodStart, LocalDate periodEnd, int allowed, int used) {
+    int remaining() {
+      return Math.max(0, allowed - used);
+    }
+  }
+
+  /** Quota of the member's active subscription; empty when there is none. */
+  public Optional<Quota> current(int memberId) {
+    try {
+      Quota cached = read(memberId);
+      if (cached != null) return Optional.of(cached);
+      Optional<Quota> loaded = load(memberId);
+      loaded.ifPresent(q -> store(memberId, q));
+      return loaded;
+    } catch (RuntimeException e) {
+      log.warn("Booking quota cache unavailable for member {}: {}", memberId, e.getMessage());
+      return load(memberId);
+    }
+  }
+
+  /**
+   * Takes one booking of the quota for an appointment on {@code date}; false when it is used up or
+   * the member has no active subscription. The booking is given back if the surrounding transaction
+   * rolls back.
+   */
+  public boolean tryAcquire(int memberId, LocalDate date) {
+    try {
+      long result = acquire(memberId, date);
+      if (result == MISS) {
+        Optional<Quota> loaded = load(memberId);
+        if (loaded.isEmpty()) return false;
+        store(memberId, loaded.get());
+        result = acquire(memberId, date);
+        // bị evict ngay sau khi store => dùng số vừa đếm
+        if (result == MISS) return loaded.get().remaining() > 0;
+      }
+      if (result == ACQUIRED) releaseOnRollback(memberId, date);
+      return result != DENIED;
+    } catch (RuntimeException e) {
+      log.warn(
+          "Booking quota cache unavailable, checking member {} against the database: {}",
+          memberId,
+          e.getMessage());
+      return load(memberId).map(q -> q.remaining() > 0).orElse(false);
+    }
+  }
+
+  /** Gives back the booking of an appointment on {@code date} once the transaction commits. */
+  public void release(int memberId, LocalDate date) {
+    afterCommit(() -> releaseNow(memberId, date));
+  }
+
+  /** Drops the cached quota once the transaction commits, e.g. after a new subscription. */
+  public void evict(int memberId) {
+    afterCommit(
+        () -> {
+          try {
+            stringRedisTemplate.delete(key(memberId));
+          } catch (RuntimeException e) {
+            log.warn("Failed to evict booking quota of member {}: {}", memberId, e.getMessage());
+          }
+        });
+  }
+
+  private long acquire(int memberId, LocalDate date) {
+    Long result =
+        stringRedisTemplate.execute(
+            ACQUIRE, List.of(key(memberId)), String.valueOf(date.toEpochDay()));
+    return result != null ? result : MISS;
+  }
+
+  private void releaseNow(int memberId, LocalDate date) {
+    try {
+      stringRedisTemplate.execute(
+          RELEASE, List.of(key(memberId)), String.valueOf(date.toEpochDay()));
+    } catch (RuntimeException e) {
+      // không trả lại được thì xoá để lần sau đếm lại từ DB
+      log.warn("Failed to release booking quota of member {}: {}", memberId, e.getMessage());
+      try {
+        stringRedisTemplate.delete(key(memberId));
+      } catch (RuntimeException ignored) {
+        // Redis down, hash sẽ hết hạn cuối kỳ
+      }
+    }
+  }
+
+  private Quota read(int memberId) {
+    List<Object> values = stringRedisTemplate.opsForHash().multiGet(key(memberId), FIELDS);
+    if (values.stream().anyMatch(v -> v == null)) return null;
+    return new Quota(
+        Integer.parseInt((String) values.get(0)),
+        LocalDate.ofEpochDay(Long.parseLong((String) values.get(1))),
+        LocalDate.ofEpochDay(Long.parseLong((String) values.get(2))),
+        Integer.parseInt((String) values.get(3)),
+        Integer.parseInt((String) values.get(4)));
+  }
+
+  private void store(int memberId, Quota quota) {
+    long expireAtMillis =
+        quota
+            .periodEnd()
+            .plusDays(1)
+            .atStartOfDay(ZoneId.systemDefault())
+            .toInstant()
+            .toEpochMilli();
+    stringRedisTemplate.execute(
+        PUT_IF_ABSENT,
+        List.of(key(memberId)),
+        String.valueOf(quota.subscriptionId()),
+        String.valueOf(quota.periodStart().toEpochDay()),
+        String.valueOf(quota.periodEnd().toEpochDay()),
+        String.valueOf(quota.allowed()),
+        String.valueOf(quota.used()),
+        String.valueOf(expireAtMillis));
+  }
+
+  private Optional<Quota> load(int memberId) {
+    Optional<MembershipSubscription> subOpt =
+        membershipSubscriptionRepository.findActiveByMemberId(memberId, LocalDate.now());
+    if (subOpt.isEmpty()) return Optional.empty();
+
+    MembershipSubscription sub = subOpt.get();
+    LocalDate start = sub.getStartDate();
+    LocalDate end = sub.getEndDate();
+
+    long days = ChronoUnit.DAYS.between(start, end) + 1;
+    int allowed = (int) Math.floor((days * BOOKINGS_PER_30D) / 30.0);
+
+    long usedLong = appointmentRepository.countActiveByMemberIdAndDateBetween(memberId, start, end);
+    int used = (int) Math.min(usedLong, Integer.MAX_VALUE);
+
+    return Optional.of(new Quota(sub.getId(), start, end, allowed, used));
+  }
+
+  private void releaseOnRollback(int memberId, LocalDate date) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            if (status == STATUS_ROLLED_BACK) releaseNow(memberId, date);
+          }
+        });
+  }
+
+  private void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              action.run();
+            }
+          });
+    } else {
+      action.run();
+    }
+  }
+
+  private static String key(int memberId) {
+    return String.format(KEY_FMT, memberId);
+  }
+}
@@ -0,0 +1,208 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.smartquit.smartquitiot.dto.response.CoachSummaryDTO;
+import com.smartquit.smartquitiot.entity.Coach;
+import com.smartquit.smartquitiot.entity.CoachWorkSchedule;
+import com.smartquit.smartquitiot.entity.Slot;
+import com.smartquit.smartquitiot.enums.CoachWorkScheduleStatus;
+import com.smartquit.smartquitiot.mapper.CoachMapper;
+import com.smartquit.smartquitiot.repository.CoachRepository;
+import com.smartquit.smartquitiot.repository.CoachWorkScheduleRepository;
+import com.smartquit.smartquitiot.repository.SlotRepository;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * AVAILABLE coach work schedules kept as one BitSet of slot ids per (date, coach). A date is loaded
+ * with a single query the first time it is asked for; after that booking, cancel, reassign and
+ * schedule edits patch the bits once their transaction commits. Slots and coach summaries are a
+ * separate snapshot, so answering a lookup never touches the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class CoachAvailabilityIndex {
+
+  // thay đổi từ instance khác không patch được => tự load lại định kỳ
+  private static final Duration MAX_AGE = Duration.ofMinutes(5);
+  private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+  private final CoachWorkScheduleRepository coachWorkScheduleRepository;
+  private final CoachRepository coachRepository;
+  private final SlotRepository slotRepository;
+  private final CoachMapper coachMapper;
+
+  private final Map<LocalDate, Day> days = new ConcurrentHashMap<>();
+  private volatile Catalog catalog;
+
+  // slots theo startTime tăng dần; coach chưa có account thì không có summary
+  private record Catalog(
+      List<Slot> slots,
+      Set<Integer> coachIds,
+      Map<Integer, CoachSummaryDTO> summaries,
+      long loadedAtNanos) {}
+
+  private static final class Day {
+    final Map<Integer, BitSet> freeSlotsByCoach = new HashMap<>();
+    long loadedAtNanos;
+    boolean loaded;
+  }
+
+  public boolean coachExists(int coachId) {
+    if (currentCatalog().coachIds().contains(coachId)) return true;
+    // coach mới tạo sau lần load catalog gần nhất
+    boolean exists = coachRepository.existsById(coachId);
+    if (exists) catalog = null;
+    return exists;
+  }
+
+  /** Free slots of {@code coachId} on {@code date}, earliest first. */
+  public List<Slot> freeSlots(int coachId, LocalDate date) {
+    Catalog c = currentCatalog();
+    Day day = loadedDay(date);
+    BitSet free;
+    synchronized (day) {
+      BitSet bits = day.freeSlotsByCoach.get(coachId);
+      if (bits == null || bits.isEmpty()) return List.of();
+      free = (BitSet) bits.clone();
+    }
+    List<Slot> result = new ArrayList<>(free.cardinality());
+    for (Slot slot : c.slots()) {
+      if (free.get(slot.getId())) result.add(slot);
+    }
+    return result;
+  }
+
+  /** Coaches with {@code slotId} free on {@code date}, by coach id. */
+  public List<CoachSummaryDTO> freeCoaches(LocalDate date, int slotId, Integer excludeCoachId) {
+    Catalog c = currentCatalog();
+    Day day = loadedDay(date);
+    List<Integer> coachIds = new ArrayList<>();
+    synchronized (day) {
+      day.freeSlotsByCoach.forEach(
+          (coachId, bits) -> {
+            if (bits.get(slotId)) coachIds.add(coachId);
+          });
+    }
+    coachIds.sort(Comparator.naturalOrder());
+    List<CoachSummaryDTO> result = new ArrayList<>(coachIds.size());
+    for (Integer coachId : coachIds) {
+      if (excludeCoachId != null && coachId.intValue() == excludeCoachId) continue;
+      CoachSummaryDTO summary = c.summaries().get(coachId);
+      if (summary != null) result.add(summary);
+    }
+    return result;
+  }
+
+  /** Records the current status of {@code cws} once the surrounding transaction commits. */
+  public void onStatusChanged(CoachWorkSchedule cws) {
+    if (cws == null || cws.getCoach() == null || cws.getSlot() == null) return;
+    int coachId = cws.getCoach().getId();
+    int slotId = cws.getSlot().getId();
+    LocalDate date = cws.getDate();
+    boolean free = cws.getStatus() == CoachWorkScheduleStatus.AVAILABLE;
+    afterCommit(() -> apply(date, coachId, slotId, free));
+  }
+
+  /** Drops {@code date} so the next lookup reloads it, e.g. after coaches are added or removed. */
+  public void invalidateDate(LocalDate date) {
+    afterCommit(() -> days.remove(date));
+  }
+
+  /** Drops everything, e.g. after the slot grid is reseeded. */
+  public void invalidateAll() {
+    afterCommit(
+        () -> {
+          days.clear();
+          catalog = null;
+        });
+  }
+
+  private void apply(LocalDate date, int coachId, int slotId, boolean free) {
+    Day day = days.get(date);
+    if (day == null) return; // chưa load => lần đọc sau sẽ lấy từ DB
+    synchronized (day) {
+      if (!day.loaded) return;
+      BitSet bits = day.freeSlotsByCoach.computeIfAbsent(coachId, k -> new BitSet());
+      bits.set(slotId, free);
+    }
+  }
+
+  // load trong lock của Day: update commit trong lúc load sẽ chờ rồi patch lên (set/clear
+  // idempotent)
+  private Day loadedDay(LocalDate date) {
+    Day day = days.computeIfAbsent(date, d -> new Day());
+    synchronized (day) {
+      if (!day.loaded || System.nanoTime() - day.loadedAtNanos > MAX_AGE.toNanos()) {
+        day.freeSlotsByCoach.clear();
+        for (Object[] row :
+            coachWorkScheduleRepository.findCoachAndSlotIdsByDateAndStatus(
+                date, CoachWorkScheduleStatus.AVAILABLE)) {
+          int coachId = ((Number) row[0]).intValue();
+          int slotId = ((Number) row[1]).intValue();
+          day.freeSlotsByCoach.computeIfAbsent(coachId, k -> new BitSet()).set(slotId);
+        }
+        day.loaded = true;
+        day.loadedAtNanos = System.nanoTime();
+        evictPastDays();
+      }
+    }
+    return day;
+  }
+
+  private void evictPastDays() {
+    LocalDate today = LocalDate.now(ZONE);
+    days.keySet().removeIf(d -> d.isBefore(today));
+  }
+
+  private Catalog currentCatalog() {
+    Catalog c = catalog;
+    if (c == null || System.nanoTime() - c.loadedAtNanos() > MAX_AGE.toNanos()) {
+      synchronized (this) {
+        c = catalog;
+        if (c == null || System.nanoTime() - c.loadedAtNanos() > MAX_AGE.toNanos()) {
+          c = loadCatalog();
+          catalog = c;
+        }
+      }
+    }
+    return c;
+  }
+
+  private Catalog loadCatalog() {
+    List<Slot> slots = List.copyOf(slotRepository.findAllByOrderByStartTimeAsc());
+
+    Set<Integer> coachIds = new HashSet<>();
+    Map<Integer, CoachSummaryDTO> summaries = new HashMap<>();
+    for (Coach coach : coachRepository.findAllWithAccount()) {
+      coachIds.add(coach.getId());
+      if (coach.getAccount() != null) {
+        summaries.put(coach.getId(), coachMapper.toCoachSummaryDTO(coach));
+      }
+    }
+    log.info("Loaded availability catalog: {} slots, {} coaches", slots.size(), coachIds.size());
+    return new Catalog(slots, coachIds, summaries, System.nanoTime());
+  }
+
+  private void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              action.run();
+            }
+          });
+    } else {
+      action.run();
+    }
+  }
+}
@@ -7,33 +7,89 @@ import com.smartquit.smartquitiot.dto.request.*;
 import com.smartquit.smartquitiot.dto.response.*;
 import com.smartquit.smartquitiot.entity.*;
 import com.smartquit.smartquitiot.enums.*;
+import com.smartquit.smartquitiot.event.DiaryRecordLoggedEvent;
 import com.smartquit.smartquitiot.mapper.DiaryRecordMapper;
 import com.smartquit.smartquitiot.repository.*;
 import com.smartquit.smartquitiot.service.DiaryRecordService;
+import com.smartquit.smartquitiot.service.LeaderboardService;
 import com.smartquit.smartquitiot.service.MemberAchievementService;
 import com.smartquit.smartquitiot.service.MemberService;
 import com.smartquit.smartquitiot.service.NotificationService;
+import com.smartquit.smartquitiot.service.TriggerStatService;
+import com.smartquit.smartquitiot.util.MetricAggregateUtils;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.Period;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DiaryRecordServiceImpl implements DiaryRecordService {
 
+  // baseline value khi vừa hút / khi đã hồi phục, thời gian hồi phục chuẩn (phút)
+  private record RecoverySpec(
+      int minutesToNormal, double smokedValue, double recoveredValue, String description) {}
+
+  private static final Map<HealthRecoveryDataName, RecoverySpec> RECOVERY_SPECS =
+      new EnumMap<>(HealthRecoveryDataName.class);
+
+  static {
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.PULSE_RATE,
+        new RecoverySpec(20, 80.0, 100.0, "Pulse rate returns to normal"));
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.OXYGEN_LEVEL, // 8 hours
+        new RecoverySpec(480, 90.0, 100.0, "Oxygen level in blood returns to normal"));
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.CARBON_MONOXIDE_LEVEL, // 12 hours
+        new RecoverySpec(720, 92.0, 100.0, "Carbon monoxide level in blood returns to normal"));
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.TASTE_AND_SMELL, // 1 day
+        new RecoverySpec(1440, 96.0, 100.0, "Taste and smell improvement"));
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.NICOTINE_EXPELLED_FROM_BODY, // 3 days
+        new RecoverySpec(4320, 95.0, 100.0, "Nicotine is expelled from body"));
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.CIRCULATION, // 14 days
+        new RecoverySpec(20160, 85.0, 100.0, "Circulation and lung function improvement"));
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.BREATHING, // 30 days
+        new RecoverySpec(43200, 98.0, 100.0, "Coughing and breathing improvement"));
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.REDUCED_RISK_OF_HEART_DISEASE, // 1 year
+        new RecoverySpec(525600, 5.0, 4.0, "Reduced risk of heart disease"));
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.DECREASED_RISK_OF_HEART_ATTACK, // 5 years
+        new RecoverySpec(2628000, 5.0, 0.0, "Stroke risk and Heart attack reduction"));
+    RECOVERY_SPECS.put(
+        HealthRecoveryDataName.IMMUNITY_AND_LUNG_FUNCTION, // 10 years
+        new RecoverySpec(
+            5256000,
+            12.0,
+            0.0,
+            "Your risk of lung cancer falls to about half that of a smoker and your risk"
+                + " of cancer of the mouth, throat, esophagus, bladder, cervix, and"
+                + " pancreas decreases."));
+  }
+
+  private static final List<String> MEMBER_SCOPED_CACHES =
+      List.of("member_charts", "member_diary_history", "member_chart_series", "risk_prediction");
+
   private final DiaryRecordMapper diaryRecordMapper;
   private final DiaryRecordRepository diaryRecordRepository;
   private final MemberService memberService;
@@ -42,34 +98,22 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
   private final HealthRecoveryRepository healthRecoveryRepository;
   private final MemberRepository memberRepository;
   private final AiServiceClient aiServiceClient;
-
-  private final int PULSE_RATE_TO_NORMAL = 20; // minutes
-  private final int OXYGEN_LEVEL_TO_NORMAL = 480; // minutes => 8 hours
-  private final int CARBON_MONOXIDE_TO_NORMAL = 720; // minutes => 12 hours
-  private final int TASTE_AND_SMELL_IMPROVEMENT = 1440; // minutes => 1 day
-  private final int NICOTINE_EXPELLED_FROM_BODY = 4320; // minutes => 3 days
-  private final int CIRCULATION_AND_LUNG_FUNCTION = 20160; // minutes => 14 days
-  private final int COUGHING_AND_BREATHING = 43200; // minutes => 30 days
-  private final int REDUCED_RISK_OF_HEART_DISEASE = 525600; // minutes => 1 year
-  private final int STROKE_RISK_REDUCTION = 2628000; // minutes => 5 years
-  private final int LUNG_CANCER_RISK_REDUCTION = 5256000; // minutes => 10 years
-
   private final MemberAchievementService memberAchievementService;
   private final NotificationService notificationService;
   private final ReminderTemplateRepository reminderTemplateRepository;
   private final ReminderQueueRepository reminderQueueRepository;
+  private final ApplicationEventPublisher eventPublisher;
+  private final CacheManager cacheManager;
+  private final LeaderboardService leaderboardService;
+  private final TriggerStatService triggerStatService;
 
   @Transactional
   @Override
-  @Caching(
-      evict = {
-        @CacheEvict(value = "member_diary_history", allEntries = true),
-        @CacheEvict(value = "member_charts", allEntries = true)
-      })
   public GlobalResponse<DiaryRecordDTO> logDiaryRecord(DiaryRecordRequest request) {
 
     log.info("------- WRITING DATA: Clearing Cache for Charts and History -------");
     Member member = memberService.getAuthenticatedMember();
+    evictMemberCaches(member.getId());
     QuitPlan currentQuitPlan =
         quitPlanRepository.findTopByMemberIdOrderByCreatedAtDesc(member.getId());
     FormMetric currentFormMetric = currentQuitPlan.getFormMetric();
@@ -175,6 +219,7 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
                   metricRepository.save(newMetric);
                   return newMetric;
                 });
+    ensureAggregatesLoaded(metric, member.getId());
 
     int streaksCount = 1;
     Optional<DiaryRecord> previousDayRecord =
@@ -202,31 +247,14 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
       reductionInLastSmoked = reductionPercentage;
     }
     diaryRecord = diaryRecordRepository.save(diaryRecord);
-    int smokeFreeDaysCount = 0;
-    int totalCigarettesInRecords = 0;
-    List<DiaryRecord> records = diaryRecordRepository.findByMemberId(member.getId());
-    for (DiaryRecord record : records) {
-      if (!record.isHaveSmoked()) {
-        // count only days member did not smoke
-        smokeFreeDaysCount += 1;
-      }
-      totalCigarettesInRecords += record.getCigarettesSmoked();
-    }
-    int count = records.size(); // number of member's diary records
-    double newAvgCravingLevel =
-        records.stream().mapToDouble(DiaryRecord::getCravingLevel).average().orElse(0.0);
-    double newAvgMoodLevel =
-        records.stream().mapToDouble(DiaryRecord::getMoodLevel).average().orElse(0.0);
-    double newAvgConfidenceLevel =
-        records.stream().mapToDouble(DiaryRecord::getConfidenceLevel).average().orElse(0.0);
-    double newAvgAnxietyLevel =
-        records.stream().mapToDouble(DiaryRecord::getAnxietyLevel).average().orElse(0.0);
-    double avgCigarettesPerDay = (double) totalCigarettesInRecords / count;
+    triggerStatService.recordTriggers(member.getId(), diaryRecord.getTriggers());
+    MetricAggregateUtils.applyRecord(metric, diaryRecord, 1);
+    MetricAggregateUtils.refreshAverages(metric);
+    int count = metric.getDiaryRecordCount();
+    long totalCigarettesSmoked = metric.getTotalCigarettesSmoked();
+    int smokeFreeDaysCount = metric.getSmokeFreeDayCount();
     double avgNicotineMgPerDay =
-        (amountNicotinePerCigarettesOfMemberForm.doubleValue() * totalCigarettesInRecords) / count;
-    if (Double.isNaN(avgCigarettesPerDay) || Double.isInfinite(avgCigarettesPerDay)) {
-      avgCigarettesPerDay = metric.getAvgCigarettesPerDay();
-    }
+        (amountNicotinePerCigarettesOfMemberForm.doubleValue() * totalCigarettesSmoked) / count;
     double smokeFreeDayPercentage = ((double) smokeFreeDaysCount / dayBetween) * 100.0;
     if (Double.isNaN(smokeFreeDayPercentage) || Double.isInfinite(smokeFreeDayPercentage)) {
       smokeFreeDayPercentage = metric.getSmokeFreeDayPercentage();
@@ -235,30 +263,13 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
       avgNicotineMgPerDay = metric.getAvgNicotineMgPerDay();
     }
     metric.setStreaks(request.getHaveSmoked() ? 0 : streaksCount);
-    metric.setAvgCravingLevel(newAvgCravingLevel);
-    metric.setAvgMood(newAvgMoodLevel);
-    metric.setAvgConfidentLevel(newAvgConfidenceLevel);
-    metric.setAvgAnxiety(newAvgAnxietyLevel);
     metric.setAvgNicotineMgPerDay(avgNicotineMgPerDay);
     metric.setCurrentAnxietyLevel(request.getAnxietyLevel());
     metric.setCurrentCravingLevel(request.getCravingLevel());
     metric.setCurrentConfidenceLevel(request.getConfidenceLevel());
     metric.setCurrentMoodLevel(request.getMoodLevel());
     metric.setAnnualSaved(annualSaved);
-    int totalCigarettesSmoked = 0;
-    int noSmokedDayCount = 0;
-    double nrtTotalSpent = records.stream().mapToDouble(DiaryRecord::getMoneySpentOnNrt).sum();
-    for (DiaryRecord record : records) {
-      totalCigarettesSmoked += record.getCigarettesSmoked();
-      if (!record.isHaveSmoked()) {
-        noSmokedDayCount += 1;
-      }
-    }
-    long moneySaved =
-        (noSmokedDayCount * moneyForSmokedPerDay.longValue())
-            - (totalCigarettesSmoked * pricePerCigarettes.longValue());
-    metric.setMoneySaved(BigDecimal.valueOf(moneySaved - nrtTotalSpent));
-    metric.setAvgCigarettesPerDay(avgCigarettesPerDay);
+    metric.setMoneySaved(calculateMoneySaved(metric, moneyForSmokedPerDay, pricePerCigarettes));
     metric.setReductionPercentage(reductionPercentage);
     metric.setSmokeFreeDayPercentage(smokeFreeDayPercentage);
     metric.setReductionInLastSmoked(reductionInLastSmoked);
@@ -276,37 +287,21 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
       metric.setSleepDuration(request.getSleepDuration());
     }
     metricRepository.save(metric);
+    leaderboardService.updateDiaryScores(
+        member.getId(), metric.getStreaks(), metric.getMoneySaved());
 
     // calculate recovery time
     calculateRecoveryTime(
-        calculateAge(member.getDob()), currentQuitPlan.getFtndScore(), request.getHaveSmoked());
-
-    // add achievement streaks ( already check )
-    AddAchievementRequest addAchievementRequestStreaks = new AddAchievementRequest();
-    addAchievementRequestStreaks.setField("streaks");
-    memberAchievementService.addMemberAchievement(addAchievementRequestStreaks).orElse(null);
+        member,
+        calculateAge(member.getDob()),
+        currentQuitPlan.getFtndScore(),
+        request.getHaveSmoked());
 
-    // add achievement money_saved ( already check )
-    AddAchievementRequest addAchievementRequestMoneySaved = new AddAchievementRequest();
-    addAchievementRequestMoneySaved.setField("money_saved");
-    memberAchievementService.addMemberAchievement(addAchievementRequestMoneySaved).orElse(null);
-
-    // add achievement money_saved ( already check )
-    AddAchievementRequest addAchievementRequestSteps = new AddAchievementRequest();
-    addAchievementRequestSteps.setField("steps");
-    memberAchievementService.addMemberAchievement(addAchievementRequestSteps).orElse(null);
-
-    try {
-      scheduleAiCravingAlert(member, diaryRecord, currentQuitPlan);
-    } catch (Exception e) {
-      log.error("Failed to schedule AI craving alert", e);
-    }
+    // achievements theo streaks, money_saved, steps đánh giá 1 lần trên metric hiện tại
+    memberAchievementService.addMemberAchievements(List.of("streaks", "money_saved", "steps"));
 
-    try {
-      analyzeAndNotify(diaryRecord, member);
-    } catch (Exception e) {
-      log.error("Failed to analyze diary record via AI Service", e);
-    }
+    // AI craving alert + phân tích diary chạy sau khi commit
+    eventPublisher.publishEvent(DiaryRecordLoggedEvent.logged(member.getId(), diaryRecord.getId()));
 
     if (isOnPlan && request.getHaveSmoked() == true) {
       List<ReminderTemplate> smokedTemplates =
@@ -345,354 +340,83 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
         "Diary record logged successfully", diaryRecordMapper.toDiaryRecordDTO(diaryRecord));
   }
 
-  /*
-   * Calculate recovery time on WHO data: https://www.who.int/news-room/questions-and-answers/item/tobacco-health-benefits-of-smoking-cessation
-   * */
-  private void calculateRecoveryTime(int age, int ftndScore, boolean isSmoke) {
-    Member member = memberService.getAuthenticatedMember();
-    HealthRecovery pulseRateRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(HealthRecoveryDataName.PULSE_RATE, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.PULSE_RATE);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(
-                      isSmoke ? BigDecimal.valueOf(80.0) : BigDecimal.valueOf(100.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke ? calculateTimeToNormal(PULSE_RATE_TO_NORMAL, age, ftndScore) : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription("Pulse rate returns to normal");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-    HealthRecovery oxygenLevelRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(HealthRecoveryDataName.OXYGEN_LEVEL, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.OXYGEN_LEVEL);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(
-                      isSmoke ? BigDecimal.valueOf(90.0) : BigDecimal.valueOf(100.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke ? calculateTimeToNormal(OXYGEN_LEVEL_TO_NORMAL, age, ftndScore) : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription("Oxygen level in blood returns to normal");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-    HealthRecovery carbonMonoxideRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(HealthRecoveryDataName.CARBON_MONOXIDE_LEVEL, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.CARBON_MONOXIDE_LEVEL);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(
-                      isSmoke ? BigDecimal.valueOf(92.0) : BigDecimal.valueOf(100.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke
-                          ? calculateTimeToNormal(CARBON_MONOXIDE_TO_NORMAL, age, ftndScore)
-                          : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription("Carbon monoxide level in blood returns to normal");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-    HealthRecovery tasteAndSmellRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(HealthRecoveryDataName.TASTE_AND_SMELL, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.TASTE_AND_SMELL);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(
-                      isSmoke ? BigDecimal.valueOf(96.0) : BigDecimal.valueOf(100.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke
-                          ? calculateTimeToNormal(TASTE_AND_SMELL_IMPROVEMENT, age, ftndScore)
-                          : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription("Taste and smell improvement");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-    HealthRecovery nicotineExpelledFromBodyRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(
-                HealthRecoveryDataName.NICOTINE_EXPELLED_FROM_BODY, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.NICOTINE_EXPELLED_FROM_BODY);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(
-                      isSmoke ? BigDecimal.valueOf(95.0) : BigDecimal.valueOf(100.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke
-                          ? calculateTimeToNormal(NICOTINE_EXPELLED_FROM_BODY, age, ftndScore)
-                          : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription("Nicotine is expelled from body");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-    HealthRecovery circulationRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(HealthRecoveryDataName.CIRCULATION, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.CIRCULATION);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(
-                      isSmoke ? BigDecimal.valueOf(85.0) : BigDecimal.valueOf(100.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke
-                          ? calculateTimeToNormal(CIRCULATION_AND_LUNG_FUNCTION, age, ftndScore)
-                          : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription("Circulation and lung function improvement");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-    HealthRecovery coughingAndBreathingRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(HealthRecoveryDataName.BREATHING, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.BREATHING);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(
-                      isSmoke ? BigDecimal.valueOf(98.0) : BigDecimal.valueOf(100.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke ? calculateTimeToNormal(COUGHING_AND_BREATHING, age, ftndScore) : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription("Coughing and breathing improvement");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-    HealthRecovery reducedRiskOfHeartDiseaseRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(
-                HealthRecoveryDataName.REDUCED_RISK_OF_HEART_DISEASE, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.REDUCED_RISK_OF_HEART_DISEASE);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(isSmoke ? BigDecimal.valueOf(5.0) : BigDecimal.valueOf(4.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke
-                          ? calculateTimeToNormal(REDUCED_RISK_OF_HEART_DISEASE, age, ftndScore)
-                          : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription("Reduced risk of heart disease");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-    HealthRecovery reducedRiskOfHeartAttackRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(
-                HealthRecoveryDataName.DECREASED_RISK_OF_HEART_ATTACK, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.DECREASED_RISK_OF_HEART_ATTACK);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(isSmoke ? BigDecimal.valueOf(5.0) : BigDecimal.valueOf(0.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke ? calculateTimeToNormal(STROKE_RISK_REDUCTION, age, ftndScore) : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription("Stroke risk and Heart attack reduction");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-    HealthRecovery immunityAndLungFunctionRecovery =
-        healthRecoveryRepository
-            .findByNameAndMemberId(
-                HealthRecoveryDataName.IMMUNITY_AND_LUNG_FUNCTION, member.getId())
-            .orElseGet(
-                () -> {
-                  HealthRecovery newRecovery = new HealthRecovery();
-                  newRecovery.setName(HealthRecoveryDataName.IMMUNITY_AND_LUNG_FUNCTION);
-                  newRecovery.setMember(member);
-                  newRecovery.setValue(
-                      isSmoke ? BigDecimal.valueOf(12.0) : BigDecimal.valueOf(0.0));
-                  var estimateRecoveryTimeInMinutes =
-                      isSmoke
-                          ? calculateTimeToNormal(LUNG_CANCER_RISK_REDUCTION, age, ftndScore)
-                          : 0;
-                  newRecovery.setTimeTriggered(LocalDateTime.now());
-                  newRecovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-                  LocalDateTime estimateTargetTime =
-                      LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-                  newRecovery.setTargetTime(isSmoke ? estimateTargetTime : LocalDateTime.now());
-                  newRecovery.setDescription(
-                      "Your risk of lung cancer falls to about half that of a smoker and your risk"
-                          + " of cancer of the mouth, throat, esophagus, bladder, cervix, and"
-                          + " pancreas decreases.");
-                  healthRecoveryRepository.save(newRecovery);
-                  return newRecovery;
-                });
-
-    if (isSmoke) {
-      updateRecoveryTimeIfSmoked(
-          pulseRateRecovery, PULSE_RATE_TO_NORMAL, age, ftndScore, BigDecimal.valueOf(80.0));
-      updateRecoveryTimeIfSmoked(
-          oxygenLevelRecovery, OXYGEN_LEVEL_TO_NORMAL, age, ftndScore, BigDecimal.valueOf(90.0));
-      updateRecoveryTimeIfSmoked(
-          carbonMonoxideRecovery,
-          CARBON_MONOXIDE_TO_NORMAL,
-          age,
-          ftndScore,
-          BigDecimal.valueOf(92.0));
-      updateRecoveryTimeIfSmoked(
-          tasteAndSmellRecovery,
-          TASTE_AND_SMELL_IMPROVEMENT,
-          age,
-          ftndScore,
-          BigDecimal.valueOf(96.0));
-      updateRecoveryTimeIfSmoked(
-          nicotineExpelledFromBodyRecovery,
-          NICOTINE_EXPELLED_FROM_BODY,
-          age,
-          ftndScore,
-          BigDecimal.valueOf(95.0));
-      updateRecoveryTimeIfSmoked(
-          circulationRecovery,
-          CIRCULATION_AND_LUNG_FUNCTION,
-          age,
-          ftndScore,
-          BigDecimal.valueOf(85.0));
-      updateRecoveryTimeIfSmoked(
-          coughingAndBreathingRecovery,
-          COUGHING_AND_BREATHING,
-          age,
-          ftndScore,
-          BigDecimal.valueOf(98.0));
-      updateRecoveryTimeIfSmoked(
-          reducedRiskOfHeartDiseaseRecovery,
-          REDUCED_RISK_OF_HEART_DISEASE,
-          age,
-          ftndScore,
-          BigDecimal.valueOf(5.0));
-      updateRecoveryTimeIfSmoked(
-          reducedRiskOfHeartAttackRecovery,
-          STROKE_RISK_REDUCTION,
-          age,
-          ftndScore,
-          BigDecimal.valueOf(5.0));
-      updateRecoveryTimeIfSmoked(
-          immunityAndLungFunctionRecovery,
-          LUNG_CANCER_RISK_REDUCTION,
-          age,
-          ftndScore,
-          BigDecimal.valueOf(12.0));
+  // chỉ xoá cache của member vừa ghi diary, sau khi commit để tránh đọc lại dữ liệu cũ
+  private void evictMemberCaches(int memberId) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              doEvictMemberCaches(memberId);
+            }
+          });
     } else {
-      pulseRateRecovery.setRecoveryTime(0);
-      pulseRateRecovery.setTargetTime(LocalDateTime.now());
-      pulseRateRecovery.setValue(BigDecimal.valueOf(100.0));
-      healthRecoveryRepository.save(pulseRateRecovery);
-
-      oxygenLevelRecovery.setRecoveryTime(0);
-      oxygenLevelRecovery.setTargetTime(LocalDateTime.now());
-      oxygenLevelRecovery.setValue(BigDecimal.valueOf(100.0));
-      healthRecoveryRepository.save(oxygenLevelRecovery);
-
-      carbonMonoxideRecovery.setRecoveryTime(0);
-      carbonMonoxideRecovery.setTargetTime(LocalDateTime.now());
-      carbonMonoxideRecovery.setValue(BigDecimal.valueOf(100.0));
-      healthRecoveryRepository.save(carbonMonoxideRecovery);
-
-      tasteAndSmellRecovery.setRecoveryTime(0);
-      tasteAndSmellRecovery.setTargetTime(LocalDateTime.now());
-      tasteAndSmellRecovery.setValue(BigDecimal.valueOf(100.0));
-      healthRecoveryRepository.save(tasteAndSmellRecovery);
-
-      nicotineExpelledFromBodyRecovery.setRecoveryTime(0);
-      nicotineExpelledFromBodyRecovery.setTargetTime(LocalDateTime.now());
-      nicotineExpelledFromBodyRecovery.setValue(BigDecimal.valueOf(100.0));
-      healthRecoveryRepository.save(nicotineExpelledFromBodyRecovery);
-
-      circulationRecovery.setRecoveryTime(0);
-      circulationRecovery.setTargetTime(LocalDateTime.now());
-      circulationRecovery.setValue(BigDecimal.valueOf(100.0));
-      healthRecoveryRepository.save(circulationRecovery);
-
-      coughingAndBreathingRecovery.setRecoveryTime(0);
-      coughingAndBreathingRecovery.setTargetTime(LocalDateTime.now());
-      coughingAndBreathingRecovery.setValue(BigDecimal.valueOf(100.0));
-      healthRecoveryRepository.save(coughingAndBreathingRecovery);
-
-      reducedRiskOfHeartDiseaseRecovery.setRecoveryTime(0);
-      reducedRiskOfHeartDiseaseRecovery.setTargetTime(LocalDateTime.now());
-      reducedRiskOfHeartDiseaseRecovery.setValue(BigDecimal.valueOf(4.0));
-      healthRecoveryRepository.save(reducedRiskOfHeartDiseaseRecovery);
-
-      reducedRiskOfHeartAttackRecovery.setRecoveryTime(0);
-      reducedRiskOfHeartAttackRecovery.setTargetTime(LocalDateTime.now());
-      reducedRiskOfHeartAttackRecovery.setValue(BigDecimal.valueOf(0.0));
-      healthRecoveryRepository.save(reducedRiskOfHeartAttackRecovery);
-
-      immunityAndLungFunctionRecovery.setRecoveryTime(0);
-      immunityAndLungFunctionRecovery.setTargetTime(LocalDateTime.now());
-      immunityAndLungFunctionRecovery.setValue(BigDecimal.valueOf(0.0));
-      healthRecoveryRepository.save(immunityAndLungFunctionRecovery);
+      doEvictMemberCaches(memberId);
     }
   }
 
-  private void updateRecoveryTimeIfSmoked(
-      HealthRecovery recovery, int baseTimeInMinutes, int age, int ftndScore, BigDecimal newValue) {
-    var estimateRecoveryTimeInMinutes = calculateTimeToNormal(baseTimeInMinutes, age, ftndScore);
-    recovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
-    LocalDateTime newTargetTime =
-        LocalDateTime.now().plusMinutes((long) estimateRecoveryTimeInMinutes);
-    recovery.setTargetTime(newTargetTime);
-    recovery.setValue(newValue);
-    healthRecoveryRepository.save(recovery);
+  private void doEvictMemberCaches(int memberId) {
+    for (String cacheName : MEMBER_SCOPED_CACHES) {
+      Cache cache = cacheManager.getCache(cacheName);
+      if (cache != null) {
+        cache.evict(memberId);
+      }
+    }
+  }
+
+  // metric tạo trước khi có aggregate => nạp lại một lần từ diary records
+  private void ensureAggregatesLoaded(Metric metric, int memberId) {
+    if (metric.getDiaryRecordCount() > 0) {
+      return;
+    }
+    List<Object[]> rows = diaryRecordRepository.aggregateByMemberId(memberId);
+    MetricAggregateUtils.resetFromRow(metric, rows.isEmpty() ? null : rows.get(0));
+  }
+
+  private BigDecimal calculateMoneySaved(
+      Metric metric, BigDecimal moneyForSmokedPerDay, BigDecimal pricePerCigarettes) {
+    long moneySaved =
+        (metric.getSmokeFreeDayCount() * moneyForSmokedPerDay.longValue())
+            - (metric.getTotalCigarettesSmoked() * pricePerCigarettes.longValue());
+    return BigDecimal.valueOf(moneySaved - metric.getNrtTotalSpent());
+  }
+
+  /*
+   * Calculate recovery time on WHO data: https://www.who.int/news-room/questions-and-answers/item/tobacco-health-benefits-of-smoking-cessation
+   * */
+  private void calculateRecoveryTime(Member member, int age, int ftndScore, boolean isSmoke) {
+    Map<HealthRecoveryDataName, HealthRecovery> existing =
+        new EnumMap<>(HealthRecoveryDataName.class);
+    for (HealthRecovery recovery : healthRecoveryRepository.findByMemberId(member.getId())) {
+      existing.putIfAbsent(recovery.getName(), recovery);
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+    List<HealthRecovery> toSave = new ArrayList<>(RECOVERY_SPECS.size());
+    for (Map.Entry<HealthRecoveryDataName, RecoverySpec> entry : RECOVERY_SPECS.entrySet()) {
+      RecoverySpec spec = entry.getValue();
+      HealthRecovery recovery = existing.get(entry.getKey());
+      if (recovery == null) {
+        recovery = new HealthRecovery();
+        recovery.setName(entry.getKey());
+        recovery.setMember(member);
+        recovery.setTimeTriggered(now);
+        recovery.setDescription(spec.description());
+      }
+      if (isSmoke) {
+        double estimateRecoveryTimeInMinutes =
+            calculateTimeToNormal(spec.minutesToNormal(), age, ftndScore);
+        recovery.setRecoveryTime(estimateRecoveryTimeInMinutes);
+        recovery.setTargetTime(now.plusMinutes((long) estimateRecoveryTimeInMinutes));
+        recovery.setValue(BigDecimal.valueOf(spec.smokedValue()));
+      } else {
+        recovery.setRecoveryTime(0);
+        recovery.setTargetTime(now);
+        recovery.setValue(BigDecimal.valueOf(spec.recoveredValue()));
+      }
+      toSave.add(recovery);
+    }
+    healthRecoveryRepository.saveAll(toSave);
   }
 
   private double calculateTimeToNormal(int baseTimeInMinutes, int age, int ftndScore) {
@@ -800,6 +524,126 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
     return chartsData;
   }
 
+  @Override
+  public DiaryChartSeriesDTO getDiaryChartSeries(LocalDate from, LocalDate to, Integer downsample) {
+    Member member = memberService.getAuthenticatedMember();
+    return getDiaryChartSeriesByMemberId(member.getId(), from, to, downsample);
+  }
+
+  // cache toàn bộ lịch sử dạng cột theo member, cắt window + downsample sau khi đọc cache
+  @Override
+  public DiaryChartSeriesDTO getDiaryChartSeriesByMemberId(
+      int memberId, LocalDate from, LocalDate to, Integer downsample) {
+    Cache cache = cacheManager.getCache("member_chart_series");
+    DiaryChartSeriesDTO series =
+        cache != null
+            ? cache.get(memberId, () -> loadDiaryChartSeries(memberId))
+            : loadDiaryChartSeries(memberId);
+    return downsampleChartSeries(sliceChartSeries(series, from, to), downsample);
+  }
+
+  private DiaryChartSeriesDTO loadDiaryChartSeries(int memberId) {
+    log.info("------- DB HIT: Loading Chart Series for Member ID: {} -------", memberId);
+    List<Object[]> rows = diaryRecordRepository.findChartRowsByMemberId(memberId);
+    int n = rows.size();
+    List<String> dates = new ArrayList<>(n);
+    double[] confidence = new double[n];
+    double[] mood = new double[n];
+    double[] anxiety = new double[n];
+    double[] craving = new double[n];
+    double[] cigarettes = new double[n];
+    double[] nicotine = new double[n];
+    double[] reduction = new double[n];
+    for (int i = 0; i < n; i++) {
+      Object[] row = rows.get(i);
+      dates.add(row[0].toString());
+      confidence[i] = ((Number) row[1]).doubleValue();
+      mood[i] = ((Number) row[2]).doubleValue();
+      anxiety[i] = ((Number) row[3]).doubleValue();
+      craving[i] = ((Number) row[4]).doubleValue();
+      cigarettes[i] = ((Number) row[5]).doubleValue();
+      nicotine[i] = row[6] != null ? ((Number) row[6]).doubleValue() : 0.0;
+      reduction[i] = ((Number) row[7]).doubleValue();
+    }
+    return new DiaryChartSeriesDTO(
+        dates, confidence, mood, anxiety, craving, cigarettes, nicotine, reduction);
+  }
+
+  private DiaryChartSeriesDTO sliceChartSeries(
+      DiaryChartSeriesDTO series, LocalDate from, LocalDate to) {
+    List<String> dates = series.getDates();
+    // ISO date (yyyy-MM-dd) so sánh chuỗi đúng thứ tự ngày
+    int start = from != null ? lowerBound(dates, from.toString()) : 0;
+    int end = to != null ? lowerBound(dates, to.plusDays(1).toString()) : dates.size();
+    if (start == 0 && end == dates.size()) {
+      return series;
+    }
+    end = Math.max(start, end);
+    return new DiaryChartSeriesDTO(
+        new ArrayList<>(dates.subList(start, end)),
+        Arrays.copyOfRange(series.getConfidenceLevel(), start, end),
+        Arrays.copyOfRange(series.getMoodLevel(), start, end),
+        Arrays.copyOfRange(series.getAnxietyLevel(), start, end),
+        Arrays.copyOfRange(series.getCravingLevel(), start, end),
+        Arrays.copyOfRange(series.getCigarettesSmoked(), start, end),
+        Arrays.copyOfRange(series.getEstimatedNicotineIntake(), start, end),
+        Arrays.copyOfRange(series.getReductionPercentage(), start, end));
+  }
+
+  private int lowerBound(List<String> dates, String key) {
+    int lo = 0;
+    int hi = dates.size();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (dates.get(mid).compareTo(key) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // gom các ngày liên tiếp thành bucket (lấy trung bình), date của bucket là ngày cuối
+  private DiaryChartSeriesDTO downsampleChartSeries(DiaryChartSeriesDTO series, Integer maxPoints) {
+    int n = series.getDates().size();
+    if (maxPoints == null || maxPoints <= 0 || n <= maxPoints) {
+      return series;
+    }
+    int bucketSize = (n + maxPoints - 1) / maxPoints;
+    int buckets = (n + bucketSize - 1) / bucketSize;
+    List<String> dates = new ArrayList<>(buckets);
+    double[] confidence = new double[buckets];
+    double[] mood = new double[buckets];
+    double[] anxiety = new double[buckets];
+    double[] craving = new double[buckets];
+    double[] cigarettes = new double[buckets];
+    double[] nicotine = new double[buckets];
+    double[] reduction = new double[buckets];
+    for (int b = 0; b < buckets; b++) {
+      int start = b * bucketSize;
+      int end = Math.min(n, start + bucketSize);
+      dates.add(series.getDates().get(end - 1));
+      confidence[b] = averageOf(series.getConfidenceLevel(), start, end);
+      mood[b] = averageOf(series.getMoodLevel(), start, end);
+      anxiety[b] = averageOf(series.getAnxietyLevel(), start, end);
+      craving[b] = averageOf(series.getCravingLevel(), start, end);
+      cigarettes[b] = averageOf(series.getCigarettesSmoked(), start, end);
+      nicotine[b] = averageOf(series.getEstimatedNicotineIntake(), start, end);
+      reduction[b] = averageOf(series.getReductionPercentage(), start, end);
+    }
+    return new DiaryChartSeriesDTO(
+        dates, confidence, mood, anxiety, craving, cigarettes, nicotine, reduction);
+  }
+
+  private double averageOf(double[] values, int start, int end) {
+    double sum = 0;
+    for (int i = start; i < end; i++) {
+      sum += values[i];
+    }
+    return sum / (end - start);
+  }
+
   @Override
   @Cacheable(value = "member_diary_history", key = "#memberId")
   public List<DiaryRecordDTO> getDiaryRecordsHistoryByMemberId(int memberId) {
@@ -823,12 +667,7 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
 
   @Transactional
   @Override
-  @Caching(
-      evict = {
-        @CacheEvict(value = "diary_record", key = "#recordId"),
-        @CacheEvict(value = "member_diary_history", allEntries = true),
-        @CacheEvict(value = "member_charts", allEntries = true)
-      })
+  @CacheEvict(value = "diary_record", key = "#recordId")
   public DiaryRecordDTO updateDiaryRecord(int recordId, DiaryRecordUpdateRequest request) {
     log.info("------- UPDATE: Updating Record ID {} and Clearing Caches -------", recordId);
 
@@ -857,6 +696,10 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
     if (record.getMember().getId() != member.getId()) {
       throw new RuntimeException("You are not authorized to update this record");
     }
+    evictMemberCaches(member.getId());
+    ensureAggregatesLoaded(metric, member.getId());
+    // gỡ giá trị cũ của record khỏi aggregate, cộng lại sau khi cập nhật
+    MetricAggregateUtils.applyRecord(metric, record, -1);
     if (request.getCigarettesSmoked() != null && record.isHaveSmoked()) {
       record.setCigarettesSmoked(request.getCigarettesSmoked());
       // update estimated nicotine intake
@@ -895,19 +738,8 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
     record.setMoneySpentOnNrt(request.getMoneySpentOnNrt());
     diaryRecordRepository.save(record);
     // update metric
-    List<DiaryRecord> records = diaryRecordRepository.findByMemberId(member.getId());
-    double newAvgCravingLevel =
-        records.stream().mapToDouble(DiaryRecord::getCravingLevel).average().orElse(0.0);
-    double newAvgMoodLevel =
-        records.stream().mapToDouble(DiaryRecord::getMoodLevel).average().orElse(0.0);
-    double newAvgConfidenceLevel =
-        records.stream().mapToDouble(DiaryRecord::getConfidenceLevel).average().orElse(0.0);
-    double newAvgAnxietyLevel =
-        records.stream().mapToDouble(DiaryRecord::getAnxietyLevel).average().orElse(0.0);
-    metric.setAvgCravingLevel(newAvgCravingLevel);
-    metric.setAvgMood(newAvgMoodLevel);
-    metric.setAvgConfidentLevel(newAvgConfidenceLevel);
-    metric.setAvgAnxiety(newAvgAnxietyLevel);
+    MetricAggregateUtils.applyRecord(metric, record, 1);
+    MetricAggregateUtils.refreshAverages(metric);
     DiaryRecord latestRecord =
         diaryRecordRepository.findTopByMemberIdOrderByDateDesc(member.getId()).orElse(null);
     if (latestRecord != null && latestRecord.getId() == recordId) {
@@ -917,25 +749,11 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
       metric.setCurrentMoodLevel(request.getMoodLevel());
     }
     // update money saved in metric if moneySpentOnNrt is changed
-    int totalCigarettesSmoked = 0;
-    int noSmokedDayCount = 0;
-    double nrtTotalSpent = records.stream().mapToDouble(DiaryRecord::getMoneySpentOnNrt).sum();
-    for (DiaryRecord r : records) {
-      totalCigarettesSmoked += r.getCigarettesSmoked();
-      if (!r.isHaveSmoked()) {
-        noSmokedDayCount += 1;
-      }
-    }
-    long moneySaved =
-        (noSmokedDayCount * moneyForSmokedPerDay.longValue())
-            - (totalCigarettesSmoked * pricePerCigarettes.longValue());
-    metric.setMoneySaved(BigDecimal.valueOf(moneySaved - nrtTotalSpent));
+    metric.setMoneySaved(calculateMoneySaved(metric, moneyForSmokedPerDay, pricePerCigarettes));
     metricRepository.save(metric);
-    try {
-      analyzeAndNotify(record, member);
-    } catch (Exception e) {
-      log.error("Failed to analyze updated diary record via AI Service", e);
-    }
+    leaderboardService.updateDiaryScores(
+        member.getId(), metric.getStreaks(), metric.getMoneySaved());
+    eventPublisher.publishEvent(DiaryRecordLoggedEvent.updated(member.getId(), record.getId()));
 
     return diaryRecordMapper.toDiaryRecordDTO(record);
   }
@@ -1139,82 +957,4 @@ public class DiaryRecordServiceImpl implements DiaryRecordService {
         .note(record.getNote())
         .build();
   }
-
-  /** Helper method to call Python API and send Notification based on Red/Yellow/Green status. */
-  private void analyzeAndNotify(DiaryRecord record, Member member) {
-    List<String> triggerList =
-        record.getTriggers() != null
-            ? record.getTriggers().stream().map(Object::toString).collect(toList())
-            : new ArrayList<>();
-
-    AnalyzeDiaryRequest aiRequest =
-        AnalyzeDiaryRequest.builder()
-            .anxietyLevel(record.getAnxietyLevel())
-            .cravingLevel(record.getCravingLevel())
-            .moodLevel(record.getMoodLevel())
-            .haveSmoked(record.isHaveSmoked())
-            .note(record.getNote() != null ? record.getNote() : "")
-            .triggers(triggerList)
-            .build();
-
-    log.info("Calling AI Service for Diary Analysis for Member: {}", member.getId());
-    AnalyzeDiaryResponse aiResponse = aiServiceClient.analyzeDiaryRecord(aiRequest);
-    if (aiResponse == null || aiResponse.getMessage() == null) {
-      return;
-    }
-
-    String title;
-    String statusColor =
-        aiResponse.getStatusColor() != null ? aiResponse.getStatusColor().toLowerCase() : "green";
-
-    title =
-        switch (statusColor) {
-          case "red" -> "Stay Strong ";
-          case "yellow" -> "Here for you";
-          default -> "Great Job!";
-        };
-
-    notificationService.saveAndPublish(
-        member.getAccount(),
-        NotificationType.REMINDER,
-        title,
-        aiResponse.getMessage(),
-        null,
-        null,
-        "smartquit://diary");
-    log.info("Sent AI Notification. Status: {}, Title: {}", statusColor, title);
-  }
-
-  private void scheduleAiCravingAlert(Member member, DiaryRecord record, QuitPlan plan) {
-    PredictRiskMobileRequest aiRequest =
-        PredictRiskMobileRequest.builder()
-            .age(calculateAge(member.getDob()))
-            .gender_code(member.getGender() == Gender.MALE ? 1 : 0)
-            .ftnd_score(plan.getFtndScore())
-            .smoke_avg_per_day(plan.getFormMetric().getSmokeAvgPerDay())
-            .mood_level(record.getMoodLevel())
-            .anxiety_level(record.getAnxietyLevel())
-            .day_of_week(LocalDate.now().getDayOfWeek().getValue())
-            .build();
-
-    PeakCravingResponse aiResponse = aiServiceClient.getPeakCravingPrediction(aiRequest);
-
-    if (aiResponse != null && aiResponse.getPeak_time() != null) {
-      LocalTime peakTime = LocalTime.parse(aiResponse.getPeak_time());
-      LocalDateTime scheduledTime = LocalDateTime.of(LocalDate.now(), peakTime);
-
-      if (scheduledTime.isBefore(LocalDateTime.now())) {
-        scheduledTime = scheduledTime.plusDays(1);
-      }
-
-      ReminderQueue task = new ReminderQueue();
-      task.setAccount(member.getAccount());
-      task.setContent(aiResponse.getMessage());
-      task.setScheduledAt(scheduledTime);
-      task.setStatus(ReminderQueueStatus.PENDING);
-
-      reminderQueueRepository.save(task);
-      log.info("Scheduled AI Alert for {} at {}", member.getLastName(), scheduledTime);
-    }
-  }
 }
@@ -0,0 +1,69 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.firebase.messaging.AndroidConfig;
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.Notification;
+import com.google.firebase.messaging.SendResponse;
+import com.smartquit.smartquitiot.service.FcmGateway;
+import com.smartquit.smartquitiot.service.PushDeliveryService.PushMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.push.stub", havingValue = "false", matchIfMissing = true)
+public class FirebaseFcmGateway implements FcmGateway {
+
+  @Override
+  public CompletableFuture<List<Outcome>> sendEach(List<PushMessage> messages) {
+    List<Message> fcmMessages = new ArrayList<>(messages.size());
+    for (PushMessage m : messages) {
+      fcmMessages.add(
+          Message.builder()
+              .setToken(m.token())
+              .setNotification(Notification.builder().setTitle(m.title()).setBody(m.body()).build())
+              .setAndroidConfig(
+                  AndroidConfig.builder().setPriority(AndroidConfig.Priority.HIGH).build())
+              .build());
+    }
+
+    CompletableFuture<List<Outcome>> result = new CompletableFuture<>();
+    ApiFutures.addCallback(
+        FirebaseMessaging.getInstance().sendEachAsync(fcmMessages),
+        new ApiFutureCallback<BatchResponse>() {
+          @Override
+          public void onSuccess(BatchResponse response) {
+            List<Outcome> outcomes = new ArrayList<>(messages.size());
+            for (SendResponse r : response.getResponses()) {
+              if (r.isSuccessful()) {
+                outcomes.add(Outcome.SENT);
+              } else if (r.getException() != null
+                  && r.getException().getMessagingErrorCode() == MessagingErrorCode.UNREGISTERED) {
+                outcomes.add(Outcome.UNREGISTERED);
+              } else {
+                outcomes.add(Outcome.FAILED);
+              }
+            }
+            result.complete(outcomes);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            log.error("FCM batch of {} failed", messages.size(), t);
+            result.complete(Collections.nCopies(messages.size(), Outcome.FAILED));
+          }
+        },
+        Runnable::run);
+    return result;
+  }
+}
@@ -0,0 +1,271 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.smartquit.smartquitiot.dto.response.LeaderboardEntryDTO;
+import com.smartquit.smartquitiot.dto.response.LeaderboardResponse;
+import com.smartquit.smartquitiot.entity.Member;
+import com.smartquit.smartquitiot.enums.LeaderboardType;
+import com.smartquit.smartquitiot.repository.MemberAchievementRepository;
+import com.smartquit.smartquitiot.repository.MemberRepository;
+import com.smartquit.smartquitiot.repository.MetricRepository;
+import com.smartquit.smartquitiot.service.LeaderboardService;
+import com.smartquit.smartquitiot.service.MemberService;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LeaderboardServiceImpl implements LeaderboardService {
+
+  private static final int MAX_PAGE_SIZE = 100;
+  private static final int RECONCILE_BATCH = 500;
+
+  private static final String RECONCILE_SET = "set";
+  private static final String RECONCILE_ADD = "add";
+
+  // ARGV = mode rồi từng bộ (member, score lúc chụp | "", score từ DB | "")
+  // set (streaks, tiền): score đổi so với lúc chụp => đã có ghi mới hơn DB, giữ nguyên
+  // add (achievement, ZINCRBY): cộng phần chênh DB - lúc chụp để không mất lần tăng xen vào
+  private static final RedisScript<Long> RECONCILE =
+      new DefaultRedisScript<>(
+          "local changed = 0\n"
+              + "for i = 2, #ARGV, 3 do\n"
+              + "  local member = ARGV[i]\n"
+              + "  local was = tonumber(ARGV[i + 1])\n"
+              + "  local should = tonumber(ARGV[i + 2])\n"
+              + "  local now = tonumber(redis.call('ZSCORE', KEYS[1], member))\n"
+              + "  if ARGV[1] == 'add' then\n"
+              + "    local score = (now or 0) + (should or 0) - (was or 0)\n"
+              + "    if should == nil and score <= 0 then redis.call('ZREM', KEYS[1], member)\n"
+              + "    else redis.call('ZADD', KEYS[1], score, member) end\n"
+              + "    changed = changed + 1\n"
+              + "  elseif now == was then\n"
+              + "    if should == nil then redis.call('ZREM', KEYS[1], member)\n"
+              + "    else redis.call('ZADD', KEYS[1], should, member) end\n"
+              + "    changed = changed + 1\n"
+              + "  end\n"
+              + "end\n"
+              + "return changed",
+          Long.class);
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final MetricRepository metricRepository;
+  private final MemberAchievementRepository memberAchievementRepository;
+  private final MemberRepository memberRepository;
+  private final MemberService memberService;
+
+  @Override
+  public void updateDiaryScores(int memberId, int streaks, BigDecimal moneySaved) {
+    double money = moneySaved != null ? moneySaved.doubleValue() : 0.0;
+    runAfterCommit(
+        () -> {
+          ZSetOperations<String, String> zSet = stringRedisTemplate.opsForZSet();
+          String member = String.valueOf(memberId);
+          zSet.add(LeaderboardType.STREAKS.getRedisKey(), member, streaks);
+          zSet.add(LeaderboardType.MONEY_SAVED.getRedisKey(), member, money);
+        });
+  }
+
+  @Override
+  public void incrementAchievementCount(int memberId, int delta) {
+    if (delta == 0) return;
+    runAfterCommit(
+        () ->
+            stringRedisTemplate
+                .opsForZSet()
+                .incrementScore(
+                    LeaderboardType.ACHIEVEMENTS.getRedisKey(), String.valueOf(memberId), delta));
+  }
+
+  @Override
+  public LeaderboardResponse getLeaderboard(LeaderboardType type, int page, int size) {
+    int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+    int pageIndex = Math.max(page, 0);
+    long start = (long) pageIndex * pageSize;
+    String key = type.getRedisKey();
+
+    Set<ZSetOperations.TypedTuple<String>> tuples =
+        stringRedisTemplate.opsForZSet().reverseRangeWithScores(key, start, start + pageSize - 1);
+    Long total = stringRedisTemplate.opsForZSet().zCard(key);
+
+    List<LeaderboardEntryDTO> entries = toEntries(tuples, start);
+    LeaderboardEntryDTO me = getMyRank(type);
+
+    return LeaderboardResponse.builder()
+        .type(type.name())
+        .page(pageIndex)
+        .size(pageSize)
+        .totalMembers(total != null ? total : 0)
+        .entries(entries)
+        .me(me)
+        .build();
+  }
+
+  @Override
+  public LeaderboardEntryDTO getMyRank(LeaderboardType type) {
+    Member member = memberService.getAuthenticatedMember();
+    String key = type.getRedisKey();
+    String id = String.valueOf(member.getId());
+    Long rank = stringRedisTemplate.opsForZSet().reverseRank(key, id);
+    if (rank == null) return null;
+    Double score = stringRedisTemplate.opsForZSet().score(key, id);
+    return LeaderboardEntryDTO.builder()
+        .rank(rank + 1)
+        .memberId(member.getId())
+        .memberName(member.getFirstName() + " " + member.getLastName())
+        .avatarUrl(member.getAvatarUrl())
+        .score(score != null ? score : 0)
+        .build();
+  }
+
+  @Override
+  public List<Integer> getTopMemberIds(LeaderboardType type, int limit) {
+    Set<String> ids =
+        stringRedisTemplate.opsForZSet().reverseRange(type.getRedisKey(), 0, limit - 1);
+    if (ids == null) return List.of();
+    return ids.stream().map(Integer::valueOf).toList();
+  }
+
+  @Override
+  public void rebuildAll() {
+    // chụp Redis trước khi đọc DB: ghi mới xen vào giữa sẽ lộ ra khi so với ảnh chụp
+    Map<String, Double> streaksBefore = snapshot(LeaderboardType.STREAKS);
+    Map<String, Double> moneySavedBefore = snapshot(LeaderboardType.MONEY_SAVED);
+    Map<String, Double> achievementsBefore = snapshot(LeaderboardType.ACHIEVEMENTS);
+
+    Map<String, Double> streaks = new HashMap<>();
+    Map<String, Double> moneySaved = new HashMap<>();
+    for (Object[] row : metricRepository.findLeaderboardScores()) {
+      String memberId = String.valueOf(((Number) row[0]).intValue());
+      streaks.put(memberId, ((Number) row[1]).doubleValue());
+      moneySaved.put(memberId, row[2] != null ? ((BigDecimal) row[2]).doubleValue() : 0.0);
+    }
+    Map<String, Double> achievements = new HashMap<>();
+    for (Object[] row : memberAchievementRepository.countAchievementsGroupByMember()) {
+      achievements.put(
+          String.valueOf(((Number) row[0]).intValue()), ((Number) row[1]).doubleValue());
+    }
+
+    int changed = reconcile(LeaderboardType.STREAKS, RECONCILE_SET, streaksBefore, streaks);
+    changed += reconcile(LeaderboardType.MONEY_SAVED, RECONCILE_SET, moneySavedBefore, moneySaved);
+    changed +=
+        reconcile(LeaderboardType.ACHIEVEMENTS, RECONCILE_ADD, achievementsBefore, achievements);
+    log.info(
+        "Rebuilt leaderboards: {} streaks, {} money saved, {} achievements, {} score(s) corrected",
+        streaks.size(),
+        moneySaved.size(),
+        achievements.size(),
+        changed);
+  }
+
+  private Map<String, Double> snapshot(LeaderboardType type) {
+    Set<ZSetOperations.TypedTuple<String>> tuples =
+        stringRedisTemplate.opsForZSet().rangeWithScores(type.getRedisKey(), 0, -1);
+    Map<String, Double> scores = new HashMap<>();
+    if (tuples != null) {
+      for (ZSetOperations.TypedTuple<String> t : tuples) scores.put(t.getValue(), t.getScore());
+    }
+    return scores;
+  }
+
+  /**
+   * Moves the live sorted set from {@code before} (its content before the database was read) to
+   * {@code target} member by member inside Redis, so readers never see a partial board and writes
+   * that landed after the snapshot are kept.
+   */
+  private int reconcile(
+      LeaderboardType type, String mode, Map<String, Double> before, Map<String, Double> target) {
+    String key = type.getRedisKey();
+    // DB trả rỗng (lỗi query, DB mới...) thì giữ nguyên bảng đang có
+    if (target.isEmpty()) {
+      log.warn("No {} scores in the database, keeping {} as is", type, key);
+      return 0;
+    }
+    Set<String> members = new HashSet<>(before.keySet());
+    members.addAll(target.keySet());
+
+    int changed = 0;
+    List<String> args = new ArrayList<>();
+    args.add(mode);
+    for (String member : members) {
+      Double was = before.get(member);
+      Double should = target.get(member);
+      if (Objects.equals(was, should)) continue;
+      args.add(member);
+      args.add(was != null ? String.valueOf(was) : "");
+      args.add(should != null ? String.valueOf(should) : "");
+      if (args.size() > RECONCILE_BATCH * 3) {
+        changed += runReconcile(key, args);
+        args.subList(1, args.size()).clear();
+      }
+    }
+    if (args.size() > 1) changed += runReconcile(key, args);
+    return changed;
+  }
+
+  private int runReconcile(String key, List<String> args) {
+    Long changed = stringRedisTemplate.execute(RECONCILE, List.of(key), args.toArray());
+    return changed != null ? changed.intValue() : 0;
+  }
+
+  private List<LeaderboardEntryDTO> toEntries(
+      Set<ZSetOperations.TypedTuple<String>> tuples, long start) {
+    if (tuples == null || tuples.isEmpty()) return List.of();
+    List<Integer> ids = tuples.stream().map(t -> Integer.valueOf(t.getValue())).toList();
+    Map<Integer, Member> members =
+        memberRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Member::getId, Function.identity()));
+
+    List<LeaderboardEntryDTO> entries = new ArrayList<>(tuples.size());
+    long rank = start;
+    for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+      rank++;
+      int memberId = Integer.parseInt(tuple.getValue());
+      Member member = members.get(memberId);
+      entries.add(
+          LeaderboardEntryDTO.builder()
+              .rank(rank)
+              .memberId(memberId)
+              .memberName(
+                  member != null ? member.getFirstName() + " " + member.getLastName() : null)
+              .avatarUrl(member != null ? member.getAvatarUrl() : null)
+              .score(tuple.getScore() != null ? tuple.getScore() : 0)
+              .build());
+    }
+    return entries;
+  }
+
+  // Redis lỗi thì chỉ log, không làm hỏng luồng ghi diary/achievement
+  private void runAfterCommit(Runnable action) {
+    Runnable safe =
+        () -> {
+          try {
+            action.run();
+          } catch (Exception e) {
+            log.warn("Failed to update leaderboard: {}", e.getMessage());
+          }
+        };
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              safe.run();
+            }
+          });
+    } else {
+      safe.run();
+    }
+  }
+}
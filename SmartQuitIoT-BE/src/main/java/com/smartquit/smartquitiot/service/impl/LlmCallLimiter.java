@@ -0,0 +1,48 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caps how many plan-generation chat calls run at once across the instance, so parallel plan jobs
+ * and the phase scheduler cannot flood the model provider.
+ */
+@Component
+class LlmCallLimiter {
+
+  private final Semaphore permits;
+  private final Timer waitTimer;
+
+  LlmCallLimiter(
+      MeterRegistry meterRegistry, @Value("${app.ai.llm.max-concurrency:8}") int maxConcurrency) {
+    this.permits = new Semaphore(maxConcurrency, true);
+    this.waitTimer =
+        Timer.builder("ai.llm.permit.wait")
+            .description("Time spent waiting for a free LLM call slot")
+            .register(meterRegistry);
+    Gauge.builder("ai.llm.in_flight", permits, p -> maxConcurrency - p.availablePermits())
+        .register(meterRegistry);
+  }
+
+  public <T> T call(Supplier<T> chatCall) {
+    long start = System.nanoTime();
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for an LLM call slot", e);
+    }
+    waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    try {
+      return chatCall.get();
+    } finally {
+      permits.release();
+    }
+  }
+}
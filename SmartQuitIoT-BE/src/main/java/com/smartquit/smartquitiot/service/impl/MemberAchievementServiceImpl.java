@@ -1,162 +1,145 @@
 package com.smartquit.smartquitiot.service.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.smartquit.smartquitiot.dto.request.AddAchievementRequest;
 import com.smartquit.smartquitiot.dto.response.AchievementDTO;
-import com.smartquit.smartquitiot.dto.response.ConditionAchievementDTO;
 import com.smartquit.smartquitiot.dto.response.TopMemberAchievementDTO;
 import com.smartquit.smartquitiot.entity.Account;
 import com.smartquit.smartquitiot.entity.Achievement;
 import com.smartquit.smartquitiot.entity.MemberAchievement;
 import com.smartquit.smartquitiot.entity.Metric;
-import com.smartquit.smartquitiot.repository.AchievementRepository;
+import com.smartquit.smartquitiot.enums.LeaderboardType;
 import com.smartquit.smartquitiot.repository.MemberAchievementRepository;
+import com.smartquit.smartquitiot.repository.MemberRepository;
 import com.smartquit.smartquitiot.repository.MetricRepository;
 import com.smartquit.smartquitiot.service.AccountService;
+import com.smartquit.smartquitiot.service.LeaderboardService;
 import com.smartquit.smartquitiot.service.MemberAchievementService;
 import com.smartquit.smartquitiot.service.NotificationService;
+import com.smartquit.smartquitiot.util.OwnedAchievements;
 import java.math.RoundingMode;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MemberAchievementServiceImpl implements MemberAchievementService {
 
+  private static final String OWNED_CACHE = "member_owned_achievements";
+
   private final AccountService accountService;
   private final MemberAchievementRepository memberAchievementRepository;
-  private final AchievementRepository achievementRepository;
+  private final MemberRepository memberRepository;
   private final MetricRepository metricRepository;
   private final NotificationService notificationService;
+  private final LeaderboardService leaderboardService;
+  private final AchievementRuleIndex achievementRuleIndex;
+  private final CacheManager cacheManager;
 
   @Override
   @Transactional
   public Optional<Achievement> addMemberAchievement(AddAchievementRequest request) {
     log.info("Adding achievement for member " + request.getField());
     if (request.getField() == null) return Optional.empty();
-    Account account = accountService.getAuthenticatedAccount();
+    List<Achievement> unlocked = addMemberAchievements(List.of(request.getField()));
+    return unlocked.isEmpty() ? Optional.empty() : Optional.of(unlocked.get(0));
+  }
 
+  // đánh giá nhiều field trong 1 lần: đọc metric + achievement đã sở hữu 1 lần,
+  // mỗi field chỉ notify mốc cao nhất vừa đạt.
+  // Khoá row member rồi đọc achievement đã có từ DB (không dùng cache) để 2 lần award đồng thời
+  // (vd. log diary + hoàn thành mission) không cùng thêm 1 achievement
+  @Override
+  @Transactional
+  public List<Achievement> addMemberAchievements(Collection<String> fields) {
+    Account account = accountService.getAuthenticatedAccount();
     Metric metric = metricRepository.findByMemberId(account.getMember().getId()).orElse(null);
+    if (metric == null) return List.of();
+
+    int memberId = account.getMember().getId();
+    memberRepository.lockById(memberId);
+    OwnedAchievements owned =
+        toOwned(memberAchievementRepository.findOwnedAchievementIdsForUpdate(memberId));
+    Set<Integer> added = new HashSet<>();
+
+    List<MemberAchievement> toSave = new ArrayList<>();
+    List<Achievement> highestPerField = new ArrayList<>();
+    for (String field : fields) {
+      int currentValue = readMetricValue(metric, field);
+      if (currentValue < 0) continue;
+
+      Achievement highest = null;
+      int highestThreshold = Integer.MIN_VALUE;
+      for (AchievementRuleIndex.Rule rule : achievementRuleIndex.matching(field, currentValue)) {
+        Achievement achievement = rule.achievement();
+        // đã có (hoặc vừa được thêm bởi field khác)
+        if (owned.owns(achievement.getId()) || !added.add(achievement.getId())) continue;
+        MemberAchievement ma = new MemberAchievement();
+        ma.setMember(account.getMember());
+        ma.setAchievement(achievement);
+        toSave.add(ma);
+        // lưu nếu trường hợp 1 lúc đạt được 2 mốc, trả về mốc cao nhất
+        if (rule.condition().getValue() >= highestThreshold) {
+          highestThreshold = rule.condition().getValue();
+          highest = achievement;
+        }
+      }
+      if (highest != null) highestPerField.add(highest);
+    }
 
-    log.info("metric " + metric.getId());
-    int currentValue = readMetricValue(metric, request.getField());
-    if (currentValue < 0) return Optional.empty();
-
-    // get list achievement of users
-    List<MemberAchievement> memberAchievements =
-        memberAchievementRepository.getMemberAchievementsByMember_Id(account.getMember().getId());
-
-    Set<Integer> owned =
-        memberAchievements.stream()
-            .map(ma -> ma.getAchievement().getId())
-            .collect(Collectors.toSet());
-
-    // find all candidate achievements with condition.field == passed field
-    List<Achievement> all = achievementRepository.findAll();
-
-    List<AbstractMap.SimpleEntry<Achievement, ConditionAchievementDTO>> eligible =
-        all.stream()
-            .map(a -> new AbstractMap.SimpleEntry<>(a, parseConditionDTO(a.getCondition())))
-            .filter(e -> e.getValue() != null && request.getField().equals(e.getValue().getField()))
-            .filter(e -> compare(currentValue, e.getValue().getOperator(), e.getValue().getValue()))
-            .filter(e -> !owned.contains(e.getKey().getId()))
-            .collect(Collectors.toList());
-
-    if (eligible.isEmpty()) return Optional.empty();
-    // lưu nếu trường hợp 1 lúc đạt được 2 mốc
-    List<MemberAchievement> toSave =
-        eligible.stream()
-            .map(
-                e -> {
-                  MemberAchievement ma = new MemberAchievement();
-                  ma.setMember(account.getMember());
-                  ma.setAchievement(e.getKey());
-                  return ma;
-                })
-            .collect(Collectors.toList());
+    if (toSave.isEmpty()) return List.of();
     memberAchievementRepository.saveAll(toSave);
-    // trả về mốc cao nhất
-    Achievement highest =
-        eligible.stream()
-            .max(Comparator.comparingInt(e -> e.getValue().getValue())) // so sánh theo threshold
-            .map(Map.Entry::getKey)
-            .orElse(null);
+    leaderboardService.incrementAchievementCount(memberId, toSave.size());
 
-    if (highest != null) {
+    evictOwnedAfterCommit(memberId);
+
+    for (Achievement highest : highestPerField) {
       log.info("highest name: " + highest.getName());
       notificationService.saveAndSendAchievementNoti(account, highest);
     }
-
-    return Optional.ofNullable(highest);
-    // viết hàm check điều kiện nhận object, vì object có thể là streaks, steps,
-    // money_saved,post_count, comment_count, total mission completed, completed_all_mission_in_day
-    // nằm trong bảng metric,
-    // hãy check xem no1 là cái nào. xog sau đó get nó ra và so sánh với condition theo format
-    // {"field":"streaks","operator":">=","value":1}
-    // sau đó nếu pass thì check tiếp xem họ đã sở hữu nó chưa, nếu chưa thì add họ vào và return
-    // trả ra achievement đó
-
+    return highestPerField;
   }
 
   @Override
   public List<AchievementDTO> getAllMyAchievements() {
     Account account = accountService.getAuthenticatedAccount();
-
-    List<MemberAchievement> memberAchievements =
-        memberAchievementRepository.getMemberAchievementsByMember_IdOrderByAchievedAt(
-            account.getMember().getId());
-
-    List<Achievement> allAchievements = achievementRepository.findAll();
-
-    Map<Integer, MemberAchievement> ownedById = new HashMap<>();
-    for (MemberAchievement ma : memberAchievements) {
-      ownedById.put(ma.getAchievement().getId(), ma);
-    }
-
-    List<AchievementDTO> result = new ArrayList<>(allAchievements.size());
-    for (Achievement a : allAchievements) {
-      AchievementDTO dto = new AchievementDTO();
-      dto.setId(a.getId());
-      dto.setName(a.getName());
-      dto.setDescription(a.getDescription());
-      dto.setIcon(a.getIcon());
-      dto.setType(a.getType().name());
-
-      MemberAchievement hit = ownedById.get(a.getId());
-      if (hit != null) {
-        dto.setUnlocked(true);
-        dto.setAchievedAt(hit.getAchievedAt());
-      } else {
-        dto.setUnlocked(false);
-        dto.setAchievedAt(null);
-      }
-      result.add(dto);
-    }
-    result.sort(
-        Comparator.comparing(AchievementDTO::isUnlocked)
-            .reversed()
-            .thenComparing(
-                AchievementDTO::getAchievedAt, Comparator.nullsLast(Comparator.reverseOrder())));
-
-    return result;
+    return buildMyAchievements(account.getMember().getId());
   }
 
   @Override
   public List<TopMemberAchievementDTO> getTop10MembersWithAchievements() {
-    List<Object[]> top = memberAchievementRepository.findTop10MembersWithMostAchievements();
+    List<Integer> topIds = List.of();
+    try {
+      topIds = leaderboardService.getTopMemberIds(LeaderboardType.ACHIEVEMENTS, 10);
+    } catch (Exception e) {
+      log.warn("Leaderboard unavailable, falling back to DB: {}", e.getMessage());
+    }
+    if (topIds.isEmpty()) {
+      topIds =
+          memberAchievementRepository.findTop10MembersWithMostAchievements().stream()
+              .map(row -> ((Number) row[0]).intValue())
+              .toList();
+    }
+    if (topIds.isEmpty()) return List.of();
 
-    List<TopMemberAchievementDTO> result = new ArrayList<>();
-    for (Object[] row : top) {
-      int memberId = ((Number) row[0]).intValue();
-      int total = ((Number) row[1]).intValue();
+    // 1 query cho toàn bộ achievements của top member thay vì 1 query / member
+    Map<Integer, List<MemberAchievement>> byMember =
+        memberAchievementRepository.findByMemberIdInWithAchievement(topIds).stream()
+            .collect(Collectors.groupingBy(ma -> ma.getMember().getId()));
 
-      List<MemberAchievement> memberAchievements =
-          memberAchievementRepository.getMemberAchievementsByMember_IdOrderByAchievedAt(memberId);
+    List<TopMemberAchievementDTO> result = new ArrayList<>();
+    for (Integer memberId : topIds) {
+      List<MemberAchievement> memberAchievements = byMember.get(memberId);
+      if (memberAchievements == null || memberAchievements.isEmpty()) continue;
 
       List<AchievementDTO> achievements =
           memberAchievements.stream()
@@ -169,7 +152,6 @@ public class MemberAchievementServiceImpl implements MemberAchievementService {
                     dto.setDescription(a.getDescription());
                     dto.setIcon(a.getIcon());
                     dto.setType(a.getType().name());
-                    //   dto.setCondition(a.getCondition());
                     dto.setAchievedAt(ma.getAchievedAt());
                     return dto;
                   })
@@ -181,7 +163,7 @@ public class MemberAchievementServiceImpl implements MemberAchievementService {
           memberAchievements.get(0).getMember().getFirstName()
               + " "
               + memberAchievements.get(0).getMember().getLastName());
-      dto.setTotalAchievements(total);
+      dto.setTotalAchievements(memberAchievements.size());
       dto.setAchievements(achievements);
       dto.setAvatar_url(memberAchievements.get(0).getMember().getAvatarUrl());
 
@@ -192,21 +174,18 @@ public class MemberAchievementServiceImpl implements MemberAchievementService {
 
   @Override
   public List<AchievementDTO> getMyAchievementsAtHome() {
-
     Account account = accountService.getAuthenticatedAccount();
+    return buildMyAchievements(account.getMember().getId()).stream()
+        .limit(4)
+        .collect(Collectors.toList());
+  }
 
-    List<MemberAchievement> memberAchievements =
-        memberAchievementRepository.getMemberAchievementsByMember_IdOrderByAchievedAt(
-            account.getMember().getId());
-
-    List<Achievement> allAchievements = achievementRepository.findAll();
+  // danh sách achievement + trạng thái unlock: 1 lần đọc cache bitset, catalog lấy từ rule index
+  private List<AchievementDTO> buildMyAchievements(int memberId) {
+    OwnedAchievements owned = getOwnedAchievements(memberId);
+    List<Achievement> allAchievements = achievementRuleIndex.catalog();
 
-    Map<Integer, MemberAchievement> ownedById = new HashMap<>();
-    for (MemberAchievement ma : memberAchievements) {
-      ownedById.put(ma.getAchievement().getId(), ma);
-    }
-
-    List<AchievementDTO> result = new ArrayList<>();
+    List<AchievementDTO> result = new ArrayList<>(allAchievements.size());
     for (Achievement a : allAchievements) {
       AchievementDTO dto = new AchievementDTO();
       dto.setId(a.getId());
@@ -215,10 +194,9 @@ public class MemberAchievementServiceImpl implements MemberAchievementService {
       dto.setIcon(a.getIcon());
       dto.setType(a.getType().name());
 
-      MemberAchievement hit = ownedById.get(a.getId());
-      if (hit != null) {
+      if (owned.owns(a.getId())) {
         dto.setUnlocked(true);
-        dto.setAchievedAt(hit.getAchievedAt());
+        dto.setAchievedAt(owned.achievedAtOf(a.getId()));
       } else {
         dto.setUnlocked(false);
         dto.setAchievedAt(null);
@@ -231,7 +209,62 @@ public class MemberAchievementServiceImpl implements MemberAchievementService {
             .thenComparing(
                 AchievementDTO::getAchievedAt, Comparator.nullsLast(Comparator.reverseOrder())));
 
-    return result.stream().limit(4).collect(Collectors.toList());
+    return result;
+  }
+
+  private OwnedAchievements getOwnedAchievements(int memberId) {
+    Cache cache = cacheManager.getCache(OWNED_CACHE);
+    if (cache == null) return loadOwnedAchievements(memberId);
+    try {
+      OwnedAchievements owned = cache.get(memberId, () -> loadOwnedAchievements(memberId));
+      if (owned != null) return owned;
+    } catch (Exception e) {
+      log.warn("Owned achievement cache unavailable: {}", e.getMessage());
+    }
+    return loadOwnedAchievements(memberId);
+  }
+
+  private OwnedAchievements loadOwnedAchievements(int memberId) {
+    return toOwned(memberAchievementRepository.findOwnedAchievementIds(memberId));
+  }
+
+  private OwnedAchievements toOwned(List<Object[]> rows) {
+    Map<Integer, LocalDateTime> achievedAtById = new HashMap<>();
+    for (Object[] row : rows) {
+      achievedAtById.put(((Number) row[0]).intValue(), toLocalDateTime(row[1]));
+    }
+    return OwnedAchievements.of(achievedAtById);
+  }
+
+  // native query trả về Timestamp, JPQL trả về LocalDateTime
+  private LocalDateTime toLocalDateTime(Object value) {
+    if (value instanceof java.sql.Timestamp ts) return ts.toLocalDateTime();
+    return (LocalDateTime) value;
+  }
+
+  // chỉ xoá cache khi đã commit; lần đọc sau load lại từ DB
+  private void evictOwnedAfterCommit(int memberId) {
+    Runnable evict =
+        () -> {
+          Cache cache = cacheManager.getCache(OWNED_CACHE);
+          if (cache == null) return;
+          try {
+            cache.evict(memberId);
+          } catch (Exception e) {
+            log.warn("Failed to evict owned achievement cache: {}", e.getMessage());
+          }
+        };
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              evict.run();
+            }
+          });
+    } else {
+      evict.run();
+    }
   }
 
   private int readMetricValue(Metric metric, String field) {
@@ -256,38 +289,4 @@ public class MemberAchievementServiceImpl implements MemberAchievementService {
         return -1;
     }
   }
-
-  private ConditionAchievementDTO parseConditionDTO(JsonNode node) {
-    if (node == null || node.isNull()) return null;
-
-    JsonNode conditionNode = node.isArray() ? node.get(0) : node;
-
-    String field = conditionNode.path("field").asText(null);
-    String op = conditionNode.path("operator").asText(null);
-    int val = conditionNode.path("value").asInt(Integer.MIN_VALUE);
-
-    if (field == null || op == null || val == Integer.MIN_VALUE) return null;
-
-    return new ConditionAchievementDTO(field, op, val);
-  }
-
-  private boolean compare(int actual, String operator, int target) {
-    switch (operator) {
-      case ">=":
-        return actual >= target;
-      case ">":
-        return actual > target;
-      case "<=":
-        return actual <= target;
-      case "<":
-        return actual < target;
-      case "==":
-      case "=":
-        return actual == target;
-      case "!=":
-        return actual != target;
-      default:
-        return false;
-    }
-  }
 }
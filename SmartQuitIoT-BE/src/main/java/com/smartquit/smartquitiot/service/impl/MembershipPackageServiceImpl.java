@@ -53,6 +53,7 @@ public class MembershipPackageServiceImpl implements MembershipPackageService {
   private final MemberRepository memberRepository;
   private final PayOS payOS;
   private final MembershipSubscriptionMapper membershipSubscriptionMapper;
+  private final BookingQuotaCounter bookingQuotaCounter;
   private final PaymentRepository paymentRepository;
   private final NotificationService notificationService;
 
@@ -123,6 +124,7 @@ public class MembershipPackageServiceImpl implements MembershipPackageService {
       subscription.setStartDate(LocalDate.now());
       subscription.setEndDate(LocalDate.now().plusDays(membershipPackage.getDuration()));
       membershipSubscriptionRepository.save(subscription);
+      bookingQuotaCounter.evict(member.getId());
 
       member.setUsedFreeTrial(true);
       memberRepository.save(member);
@@ -223,6 +225,8 @@ public class MembershipPackageServiceImpl implements MembershipPackageService {
       }
       pendingSubscription.setStatus(MembershipSubscriptionStatus.AVAILABLE);
       membershipSubscriptionRepository.save(pendingSubscription);
+      // quota booking đang cache theo subscription cũ
+      bookingQuotaCounter.evict(member.getId());
       Payment payment = new Payment();
       payment.setAmount(pendingSubscription.getTotalAmount());
       payment.setOrderCode(request.getOrderCode());
@@ -0,0 +1,194 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.smartquit.smartquitiot.entity.FormMetric;
+import com.smartquit.smartquitiot.entity.Metric;
+import com.smartquit.smartquitiot.entity.Mission;
+import com.smartquit.smartquitiot.entity.QuitPlan;
+import com.smartquit.smartquitiot.enums.MissionPhase;
+import com.smartquit.smartquitiot.enums.MissionStatus;
+import com.smartquit.smartquitiot.repository.MissionRepository;
+import com.smartquit.smartquitiot.util.condition.CompiledCondition;
+import com.smartquit.smartquitiot.util.condition.ConditionCompiler;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Missions grouped by (phase, status) and then by interest category, with their conditions compiled
+ * at load time, so picking candidates for a phase never goes to the database.
+ */
+@Slf4j
+@Component
+class MissionCatalogIndex {
+
+  // mission sửa ở instance khác không invalidate được => tự refresh định kỳ
+  private static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+  record MissionConditionContext(FormMetric formMetric, Metric metric, QuitPlan plan) {}
+
+  private static final ConditionCompiler<MissionConditionContext> MISSION_CONDITIONS =
+      new ConditionCompiler<>(
+          Map.ofEntries(
+              metricField("avg_confident_level", Metric::getAvgConfidentLevel),
+              metricField("avg_craving_level", Metric::getAvgCravingLevel),
+              metricField("avg_mood", Metric::getAvgMood),
+              metricField("avg_anxiety", Metric::getAvgAnxiety),
+              metricField("streaks", Metric::getStreaks),
+              metricField("relapse_count_in_phase", Metric::getRelapseCountInPhase),
+              Map.entry("use_nrt", c -> c.plan() != null ? c.plan().isUseNRT() : null),
+              formField("morning_smoking_frequency", FormMetric::isMorningSmokingFrequency),
+              formField("minutes_after_waking_to_smoke", FormMetric::getMinutesAfterWakingToSmoke),
+              formField("smoke_avg_per_day", FormMetric::getSmokeAvgPerDay),
+              metricField("mt_smoke_avg_per_day", Metric::getAvgCigarettesPerDay),
+              metricField("steps", Metric::getSteps),
+              metricField("heart_rate", Metric::getHeartRate),
+              metricField("spo2", Metric::getSpo2),
+              metricField("sleep_duration", Metric::getSleepDuration),
+              metricField("avg_in_take_nicotine_per_day", Metric::getAvgNicotineMgPerDay)));
+
+  // member không có metric/form/plan thì field tương ứng là null (rule số học sẽ fail)
+  private static Map.Entry<String, Function<MissionConditionContext, Object>> metricField(
+      String name, Function<Metric, Object> getter) {
+    return Map.entry(name, c -> c.metric() != null ? getter.apply(c.metric()) : null);
+  }
+
+  private static Map.Entry<String, Function<MissionConditionContext, Object>> formField(
+      String name, Function<FormMetric, Object> getter) {
+    return Map.entry(name, c -> c.formMetric() != null ? getter.apply(c.formMetric()) : null);
+  }
+
+  private final MissionRepository missionRepository;
+  private final LongSupplier nanoClock;
+
+  private volatile Snapshot snapshot;
+
+  @Autowired
+  MissionCatalogIndex(MissionRepository missionRepository) {
+    this(missionRepository, System::nanoTime);
+  }
+
+  // clock tách ra để test kiểm soát MAX_AGE
+  MissionCatalogIndex(MissionRepository missionRepository, LongSupplier nanoClock) {
+    this.missionRepository = missionRepository;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * A mission with its compiled condition; {@code condition} is null when the mission has no
+   * condition and {@code invalid} is set when the stored condition could not be compiled.
+   */
+  record Candidate(
+      Mission mission,
+      CompiledCondition<MissionConditionContext> condition,
+      boolean invalid,
+      int order) {}
+
+  private record Bucket(
+      List<Candidate> all,
+      List<Candidate> uncategorized,
+      Map<String, List<Candidate>> byInterest) {}
+
+  private record Snapshot(
+      Map<MissionPhase, Map<MissionStatus, Bucket>> buckets, long loadedAtNanos) {}
+
+  public void invalidate() {
+    snapshot = null;
+  }
+
+  /**
+   * Missions of the given phase and status that a member with {@code interests} may get: all of
+   * them when there are no interests, otherwise the uncategorized ones plus those whose category
+   * matches an interest (case-insensitive). Keeps id order.
+   */
+  public List<Candidate> candidates(
+      MissionPhase phase, MissionStatus status, Collection<String> interests) {
+    Bucket bucket = current().buckets().getOrDefault(phase, Map.of()).get(status);
+    if (bucket == null) return List.of();
+    if (interests == null || interests.isEmpty()) return bucket.all();
+
+    Set<String> keys = new HashSet<>();
+    for (String interest : interests) {
+      if (interest != null) keys.add(interest.toLowerCase(Locale.ROOT));
+    }
+    List<Candidate> result = new ArrayList<>(bucket.uncategorized());
+    for (String key : keys) {
+      result.addAll(bucket.byInterest().getOrDefault(key, List.of()));
+    }
+    result.sort(Comparator.comparingInt(Candidate::order));
+    return result;
+  }
+
+  private Snapshot current() {
+    Snapshot s = snapshot;
+    if (s == null || nanoClock.getAsLong() - s.loadedAtNanos() > MAX_AGE.toNanos()) {
+      synchronized (this) {
+        s = snapshot;
+        if (s == null || nanoClock.getAsLong() - s.loadedAtNanos() > MAX_AGE.toNanos()) {
+          s = load();
+          snapshot = s;
+        }
+      }
+    }
+    return s;
+  }
+
+  private Snapshot load() {
+    Map<MissionPhase, Map<MissionStatus, List<Candidate>>> grouped =
+        new EnumMap<>(MissionPhase.class);
+    List<Mission> missions = missionRepository.findAllWithInterestCategory();
+    int invalid = 0;
+    for (int i = 0; i < missions.size(); i++) {
+      Mission mission = missions.get(i);
+      if (mission.getPhase() == null || mission.getStatus() == null) continue;
+      Candidate candidate = compile(mission, i);
+      if (candidate.invalid()) invalid++;
+      grouped
+          .computeIfAbsent(mission.getPhase(), k -> new EnumMap<>(MissionStatus.class))
+          .computeIfAbsent(mission.getStatus(), k -> new ArrayList<>())
+          .add(candidate);
+    }
+
+    Map<MissionPhase, Map<MissionStatus, Bucket>> buckets = new EnumMap<>(MissionPhase.class);
+    grouped.forEach(
+        (phase, byStatus) -> {
+          Map<MissionStatus, Bucket> statusBuckets = new EnumMap<>(MissionStatus.class);
+          byStatus.forEach((status, list) -> statusBuckets.put(status, toBucket(list)));
+          buckets.put(phase, statusBuckets);
+        });
+    log.info(
+        "Loaded {} missions into catalog index ({} invalid conditions)", missions.size(), invalid);
+    return new Snapshot(buckets, nanoClock.getAsLong());
+  }
+
+  private Bucket toBucket(List<Candidate> candidates) {
+    List<Candidate> uncategorized = new ArrayList<>();
+    Map<String, List<Candidate>> byInterest = new HashMap<>();
+    for (Candidate candidate : candidates) {
+      var category = candidate.mission().getInterestCategory();
+      if (category == null) {
+        uncategorized.add(candidate);
+      } else if (category.getName() != null) {
+        byInterest
+            .computeIfAbsent(category.getName().toLowerCase(Locale.ROOT), k -> new ArrayList<>())
+            .add(candidate);
+      }
+    }
+    byInterest.replaceAll((k, v) -> List.copyOf(v));
+    return new Bucket(List.copyOf(candidates), List.copyOf(uncategorized), byInterest);
+  }
+
+  private Candidate compile(Mission mission, int order) {
+    if (mission.getCondition() == null) return new Candidate(mission, null, false, order);
+    try {
+      return new Candidate(
+          mission, MISSION_CONDITIONS.compile(mission.getCondition()), false, order);
+    } catch (Exception e) {
+      log.warn("Invalid condition for mission {}: {}", mission.getId(), e.getMessage());
+      return new Candidate(mission, null, true, order);
+    }
+  }
+}
@@ -9,13 +9,14 @@ import com.smartquit.smartquitiot.dto.response.MissionDTO;
 import com.smartquit.smartquitiot.entity.*;
 import com.smartquit.smartquitiot.enums.MissionPhase;
 import com.smartquit.smartquitiot.enums.MissionStatus;
-import com.smartquit.smartquitiot.enums.Operator;
 import com.smartquit.smartquitiot.mapper.MissionMapper;
 import com.smartquit.smartquitiot.repository.InterestCategoryRepository;
 import com.smartquit.smartquitiot.repository.MissionRepository;
 import com.smartquit.smartquitiot.repository.MissionTypeRepository;
 import com.smartquit.smartquitiot.service.MissionService;
+import com.smartquit.smartquitiot.service.impl.MissionCatalogIndex.MissionConditionContext;
 import com.smartquit.smartquitiot.specifications.MissionSpecification;
+import com.smartquit.smartquitiot.util.condition.CompiledCondition;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -35,126 +36,53 @@ public class MissionServiceImpl implements MissionService {
   private final MissionMapper missionMapper;
   private final MissionTypeRepository missionTypeRepository;
   private final InterestCategoryRepository interestCategoryRepository;
+  private final MissionCatalogIndex missionCatalogIndex;
 
   @Override
   public List<Mission> filterMissionsForPhase(
       QuitPlan plan, Account account, MissionPhase missionPhase, MissionStatus missionStatus) {
     FormMetric formMetric = plan.getFormMetric();
     List<String> userInterests = formMetric.getInterests(); // danh sách interest từ form
-    List<Mission> all = missionRepository.findByPhaseAndStatus(missionPhase, missionStatus);
-    log.info("all mission: {}", all.size());
-    return all.stream()
-        .filter(
-            m -> {
-              if (userInterests == null || userInterests.isEmpty()) return true;
-              var interestCat = m.getInterestCategory();
-              if (interestCat == null) return true;
-              return userInterests.stream()
-                  .anyMatch(i -> i.equalsIgnoreCase(interestCat.getName()));
-            })
-        .filter(m -> checkRuleSatisfied(m, formMetric, account, plan))
+    Metric memberMetric =
+        account != null && account.getMember() != null ? account.getMember().getMetric() : null;
+    MissionConditionContext ctx = new MissionConditionContext(formMetric, memberMetric, plan);
+    List<MissionCatalogIndex.Candidate> candidates =
+        missionCatalogIndex.candidates(missionPhase, missionStatus, userInterests);
+    log.info("candidate missions: {}", candidates.size());
+    return candidates.stream()
+        .filter(c -> checkRuleSatisfied(c, ctx))
+        .map(MissionCatalogIndex.Candidate::mission)
         .toList();
   }
 
   private boolean checkRuleSatisfied(
-      Mission mission, FormMetric metric, Account account, QuitPlan plan) {
-    if (mission.getCondition() == null) return true; // ko role -> pass
+      MissionCatalogIndex.Candidate candidate, MissionConditionContext ctx) {
+    if (candidate.invalid()) return false;
+    CompiledCondition<MissionConditionContext> condition = candidate.condition();
+    if (condition == null) return true; // ko role -> pass
+    Mission mission = candidate.mission();
     try {
-      JsonNode condition = mission.getCondition();
-      return evaluateCondition(condition, metric, account, plan);
+      if (!log.isDebugEnabled()) {
+        return condition.test(ctx);
+      }
+      return condition.test(
+          ctx,
+          (field, operator, expected, actual, passed) ->
+              log.debug(
+                  "Check rule: mission={}, field={}, operator={}, expected={}, actual={},"
+                      + " passed={}",
+                  mission.getId(),
+                  field,
+                  operator,
+                  expected,
+                  actual,
+                  passed));
     } catch (Exception e) {
-      e.printStackTrace();
+      log.warn("Invalid condition for mission {}: {}", mission.getId(), e.getMessage());
       return false;
     }
   }
 
-  private boolean evaluateCondition(
-      JsonNode condition, FormMetric metric, Account account, QuitPlan plan) {
-    String logic = condition.has("logic") ? condition.get("logic").asText("AND") : "AND";
-    JsonNode rules = condition.get("rules");
-
-    boolean result = logic.equalsIgnoreCase("AND");
-
-    for (JsonNode rule : rules) {
-      boolean current;
-
-      if (rule.has("rules")) {
-        // rule con (nested)
-        current = evaluateCondition(rule, metric, account, plan);
-      } else {
-        String field = rule.get("field").asText();
-        String operator = rule.get("operator").asText();
-
-        Object actualValue = getMetricValueDynamic(field, metric, account, plan);
-        JsonNode valueNode = rule.get("value");
-        log.info(
-            "Check rule: field={}, operator={}, expected={}, actual={}",
-            field,
-            operator,
-            valueNode,
-            actualValue);
-
-        // xử lý boolean / string / numeric
-        if (valueNode.isBoolean()) {
-          boolean expected = valueNode.asBoolean();
-          current = (actualValue instanceof Boolean && (Boolean) actualValue == expected);
-        } else if (valueNode.isTextual()) {
-          String expected = valueNode.asText();
-          current = (actualValue != null && actualValue.toString().equalsIgnoreCase(expected));
-        } else {
-          double expected = valueNode.asDouble();
-          if (actualValue instanceof Number actualNum) {
-            current = compare(actualNum.doubleValue(), Operator.fromSymbol(operator), expected);
-          } else current = false;
-        }
-      }
-
-      if (logic.equalsIgnoreCase("AND")) result &= current;
-      else if (logic.equalsIgnoreCase("OR")) result |= current;
-    }
-
-    return result;
-  }
-
-  private Object getMetricValueDynamic(
-      String field, FormMetric formMetric, Account account, QuitPlan plan) {
-    if (field == null || account == null || account.getMember() == null) return null;
-
-    String key = field.trim().toLowerCase().replace(" ", "_");
-    return switch (key) {
-      case "avg_confident_level" -> account.getMember().getMetric().getAvgConfidentLevel();
-      case "avg_craving_level" -> account.getMember().getMetric().getAvgCravingLevel();
-      case "avg_mood" -> account.getMember().getMetric().getAvgMood();
-      case "avg_anxiety" -> account.getMember().getMetric().getAvgAnxiety();
-      case "streaks" -> account.getMember().getMetric().getStreaks();
-      case "relapse_count_in_phase" -> account.getMember().getMetric().getRelapseCountInPhase();
-      case "use_nrt" -> plan.isUseNRT(); //  boolean field
-      case "morning_smoking_frequency" -> formMetric.isMorningSmokingFrequency();
-      case "minutes_after_waking_to_smoke" -> formMetric.getMinutesAfterWakingToSmoke();
-      case "smoke_avg_per_day" -> formMetric.getSmokeAvgPerDay();
-      case "mt_smoke_avg_per_day" -> account.getMember().getMetric().getAvgCigarettesPerDay();
-      case "steps" -> account.getMember().getMetric().getSteps();
-      case "heart_rate" -> account.getMember().getMetric().getHeartRate();
-      case "spo2" -> account.getMember().getMetric().getSpo2();
-      case "sleep_duration" -> account.getMember().getMetric().getSleepDuration();
-      case "avg_in_take_nicotine_per_day" -> account
-          .getMember()
-          .getMetric()
-          .getAvgNicotineMgPerDay();
-      default -> null;
-    };
-  }
-
-  private boolean compare(double actual, Operator op, double expected) {
-    return switch (op) {
-      case LT -> actual < expected;
-      case LE -> actual <= expected;
-      case EQ -> Double.compare(actual, expected) == 0;
-      case GE -> actual >= expected;
-      case GT -> actual > expected;
-    };
-  }
-
   //    @Override
   //    public Page<MissionDTO> getAllMissions(int page, int size) {
   //        PageRequest pageRequest = PageRequest.of(page, size);
@@ -179,7 +107,9 @@ public class MissionServiceImpl implements MissionService {
             .findById(id)
             .orElseThrow(() -> new IllegalArgumentException("mission not found"));
     mission.setStatus(MissionStatus.INACTIVE);
-    return missionMapper.toMissionDTO(missionRepository.save(mission));
+    Mission saved = missionRepository.save(mission);
+    missionCatalogIndex.invalidate();
+    return missionMapper.toMissionDTO(saved);
   }
 
   @Override
@@ -236,6 +166,7 @@ public class MissionServiceImpl implements MissionService {
     mission.setInterestCategory(interestCategory);
     mission.setCondition(conditionNode);
     Mission savedMission = missionRepository.save(mission);
+    missionCatalogIndex.invalidate();
     return missionMapper.toMissionDTO(savedMission);
   }
 
@@ -293,6 +224,7 @@ public class MissionServiceImpl implements MissionService {
     mission.setCondition(conditionNode);
 
     Mission updatedMission = missionRepository.save(mission);
+    missionCatalogIndex.invalidate();
 
     return missionMapper.toMissionDTO(updatedMission);
   }
@@ -10,6 +10,7 @@ import com.smartquit.smartquitiot.mapper.NotificationMapper;
 import com.smartquit.smartquitiot.repository.NotificationRepository;
 import com.smartquit.smartquitiot.service.AccountService;
 import com.smartquit.smartquitiot.service.NotificationService;
+import com.smartquit.smartquitiot.service.PushDeliveryService;
 import java.util.Arrays;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
@@ -43,6 +44,7 @@ public class NotificationServiceImpl implements NotificationService {
   private final NotificationMapper notificationMapper;
   private final SimpMessagingTemplate messagingTemplate;
   private final AccountService accountService;
+  private final PushDeliveryService pushDeliveryService;
 
   @Override
   public NotificationDTO saveAndPublish(
@@ -268,25 +270,6 @@ public class NotificationServiceImpl implements NotificationService {
 
   @Override
   public void sendPushNotification(String fcmToken, String title, String body) {
-    com.google.firebase.messaging.Message message =
-        com.google.firebase.messaging.Message.builder()
-            .setToken(fcmToken)
-            .setNotification(
-                com.google.firebase.messaging.Notification.builder()
-                    .setTitle(title)
-                    .setBody(body)
-                    .build())
-            .setAndroidConfig(
-                com.google.firebase.messaging.AndroidConfig.builder()
-                    .setPriority(com.google.firebase.messaging.AndroidConfig.Priority.HIGH)
-                    .build())
-            .build();
-
-    try {
-      String response = com.google.firebase.messaging.FirebaseMessaging.getInstance().send(message);
-      log.info("Successfully sent FCM message: " + response);
-    } catch (Exception e) {
-      log.error("FCM Error for token {}: ", fcmToken, e);
-    }
+    pushDeliveryService.send(new PushDeliveryService.PushMessage(fcmToken, title, body));
   }
 }
@@ -21,9 +21,13 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -36,9 +40,11 @@ import org.springframework.transaction.annotation.Transactional;
 public class PhaseDetailMissionServiceImpl implements PhaseDetailMissionService {
   private final PhaseDetailRepository phaseDetailRepository;
   private final PhaseDetailMissionRepository phaseDetailMissionRepository;
+  private final PhaseDetailMissionJdbcRepository phaseDetailMissionJdbcRepository;
   private final MissionRepository missionRepository;
   private final PhaseRepository phaseRepository;
   private final ChatClient chatClient;
+  private final LlmCallLimiter llmCallLimiter;
   private final MissionTools missionTools;
   private final QuitPlanMapper quitPlanMapper;
   private final AccountService accountService;
@@ -418,13 +424,15 @@ public class PhaseDetailMissionServiceImpl implements PhaseDetailMissionService
             "useNRT", plan.isUseNRT(),
             "planId", plan.getId());
 
-    return chatClient
-        .prompt()
-        .system(sys)
-        .tools(missionTools)
-        .user(toJson(userInfo))
-        .call()
-        .entity(PhaseBatchMissionsResponse.class);
+    return llmCallLimiter.call(
+        () ->
+            chatClient
+                .prompt()
+                .system(sys)
+                .tools(missionTools)
+                .user(toJson(userInfo))
+                .call()
+                .entity(PhaseBatchMissionsResponse.class));
   }
 
   private String toJson(Object o) {
@@ -442,36 +450,45 @@ public class PhaseDetailMissionServiceImpl implements PhaseDetailMissionService
       log.warn("AI response is null or items null -> nothing to persist");
       return 0;
     }
-    int totalSaved = 0;
-    for (PhaseDetailPlanToolDTO day : resp.getPhaseDetails()) {
-
+    List<PhaseDetailPlanToolDTO> days =
+        resp.getPhaseDetails().stream()
+            .filter(
+                day -> {
+                  if (day.getPhaseDetailId() == null) {
+                    log.warn("Skip a day because phaseDetailId is null");
+                    return false;
+                  }
+                  return true;
+                })
+            .toList();
+    Map<Integer, PhaseDetail> phaseDetails =
+        phaseDetailRepository
+            .findAllById(days.stream().map(PhaseDetailPlanToolDTO::getPhaseDetailId).toList())
+            .stream()
+            .collect(Collectors.toMap(PhaseDetail::getId, Function.identity()));
+    MissionLookup missions =
+        resolveMissions(
+            days.stream()
+                .filter(day -> day.getMissions() != null)
+                .flatMap(day -> day.getMissions().stream())
+                .toList());
+
+    List<PhaseDetailMission> toSave = new ArrayList<>();
+    for (PhaseDetailPlanToolDTO day : days) {
       Integer phaseDetailId = day.getPhaseDetailId();
-      if (phaseDetailId == null) {
-        log.warn("Skip a day because phaseDetailId is null");
-        continue;
+      PhaseDetail phaseDetail = phaseDetails.get(phaseDetailId);
+      if (phaseDetail == null) {
+        throw new IllegalStateException("PhaseDetail not found: " + phaseDetailId);
       }
 
-      PhaseDetail phaseDetail =
-          phaseDetailRepository
-              .findById(phaseDetailId)
-              .orElseThrow(
-                  () -> new IllegalStateException("PhaseDetail not found: " + phaseDetailId));
-
       if (day.getMissions() == null || day.getMissions().isEmpty()) {
         log.info("Day {} has no missions from AI. Kept empty.", phaseDetailId);
         continue;
       }
 
-      List<PhaseDetailMission> toSave = new ArrayList<>();
+      int dayCount = 0;
       for (PhaseDetailMissionPlanToolDTO m : day.getMissions()) {
-        Mission mission = null;
-        if (m.getId() > 0) {
-          mission = missionRepository.findById(m.getId()).orElse(null);
-        }
-        if (mission == null && m.getCode() != null) {
-          mission = missionRepository.findByCode(m.getCode()).orElse(null);
-        }
-
+        Mission mission = missions.find(m);
         if (mission == null) {
           log.warn("Mission not found (id={}, code={}), skip", m.getId(), m.getCode());
           continue;
@@ -486,16 +503,17 @@ public class PhaseDetailMissionServiceImpl implements PhaseDetailMissionService
         entity.setDescription(mission.getDescription());
 
         toSave.add(entity);
+        dayCount++;
       }
 
-      if (!toSave.isEmpty()) {
-        phaseDetailMissionRepository.saveAll(toSave);
-        totalSaved += toSave.size();
-        log.info("Saved {} PhaseDetailMission for phaseDetailId={}", toSave.size(), phaseDetailId);
+      if (dayCount > 0) {
+        log.info("Prepared {} PhaseDetailMission for phaseDetailId={}", dayCount, phaseDetailId);
       } else {
         log.info("No valid missions to save for phaseDetailId={}", phaseDetailId);
       }
     }
+    phaseDetailMissionJdbcRepository.batchInsert(toSave);
+    int totalSaved = toSave.size();
     //        if (totalSaved <= 0) {
     //            throw new RuntimeException(
     //                    "No PhaseDetailMission saved at savePhaseDetailMissionsForPhase — possible
@@ -506,4 +524,41 @@ public class PhaseDetailMissionServiceImpl implements PhaseDetailMissionService
 
     return totalSaved;
   }
+
+  private record MissionLookup(Map<Integer, Mission> byId, Map<String, Mission> byCode) {
+    // ưu tiên id, AI trả sai id thì fallback sang code như trước
+    Mission find(PhaseDetailMissionPlanToolDTO m) {
+      Mission mission = m.getId() > 0 ? byId.get(m.getId()) : null;
+      if (mission == null && m.getCode() != null) {
+        mission = byCode.get(m.getCode());
+      }
+      return mission;
+    }
+  }
+
+  // 1 query IN theo id, 1 query IN theo code cho những mission chưa resolve được bằng id
+  private MissionLookup resolveMissions(List<PhaseDetailMissionPlanToolDTO> requested) {
+    Set<Integer> ids = new HashSet<>();
+    for (PhaseDetailMissionPlanToolDTO m : requested) {
+      if (m.getId() > 0) ids.add(m.getId());
+    }
+    Map<Integer, Mission> byId =
+        ids.isEmpty()
+            ? Map.of()
+            : missionRepository.findByIdIn(ids).stream()
+                .collect(Collectors.toMap(Mission::getId, Function.identity()));
+
+    Set<String> codes = new HashSet<>();
+    for (PhaseDetailMissionPlanToolDTO m : requested) {
+      if (m.getCode() != null && (m.getId() <= 0 || !byId.containsKey(m.getId()))) {
+        codes.add(m.getCode());
+      }
+    }
+    Map<String, Mission> byCode =
+        codes.isEmpty()
+            ? Map.of()
+            : missionRepository.findByCodeIn(codes).stream()
+                .collect(Collectors.toMap(Mission::getCode, Function.identity()));
+    return new MissionLookup(byId, byCode);
+  }
 }
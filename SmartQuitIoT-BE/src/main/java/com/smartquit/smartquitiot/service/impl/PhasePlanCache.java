@@ -0,0 +1,167 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static com.smartquit.smartquitiot.toolcalling.QuitPlanTools.SYSTEM_PROMPT;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartquit.smartquitiot.dto.response.PhaseDTO;
+import com.smartquit.smartquitiot.dto.response.PhaseResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * LLM phase plans keyed by a hash of the prompt and the normalized member profile (the only inputs
+ * of {@code calculatePhaseDuration}). Plans are stored relative to their start date and shifted
+ * onto the requested one on a hit, so members with the same profile share an entry.
+ */
+@Slf4j
+@Component
+class PhasePlanCache {
+
+  private final ObjectMapper objectMapper;
+  private final Duration ttl;
+  private final int maxEntries;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+  // đổi prompt là đổi key => entry cũ tự hết hạn, không cần flush tay
+  private final String promptVersion = sha256(SYSTEM_PROMPT);
+  private final Map<String, Entry> entries;
+
+  private record Entry(String json, LocalDate baseStart, long expiresAtNanos) {}
+
+  /** Normalized inputs of phase generation; gender is upper-cased, age in whole years. */
+  record Profile(int ftnd, int smokeAvgPerDay, int yearsSmoking, int age, String gender) {}
+
+  PhasePlanCache(
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry,
+      @Value("${app.ai.phase-cache.ttl-hours:24}") long ttlHours,
+      @Value("${app.ai.phase-cache.max-entries:1000}") int maxEntries) {
+    this.objectMapper = objectMapper;
+    this.ttl = Duration.ofHours(ttlHours);
+    this.maxEntries = maxEntries;
+    this.hits = Counter.builder("ai.phase_plan.cache").tag("result", "hit").register(meterRegistry);
+    this.misses =
+        Counter.builder("ai.phase_plan.cache").tag("result", "miss").register(meterRegistry);
+    this.evictions = Counter.builder("ai.phase_plan.cache.evictions").register(meterRegistry);
+    // access-order => LRU, bỏ entry cũ nhất khi vượt maxEntries
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            boolean evict = size() > PhasePlanCache.this.maxEntries;
+            if (evict) evictions.increment();
+            return evict;
+          }
+        };
+    Gauge.builder("ai.phase_plan.cache.size", this, PhasePlanCache::size).register(meterRegistry);
+  }
+
+  public Optional<PhaseResponse> get(Profile profile, LocalDate startDate) {
+    String key = key(profile);
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+      if (entry != null && System.nanoTime() - entry.expiresAtNanos() > 0) {
+        entries.remove(key);
+        entry = null;
+      }
+    }
+    if (entry == null) {
+      misses.increment();
+      return Optional.empty();
+    }
+    try {
+      PhaseResponse copy = objectMapper.readValue(entry.json(), PhaseResponse.class);
+      shift(copy, ChronoUnit.DAYS.between(entry.baseStart(), startDate));
+      hits.increment();
+      return Optional.of(copy);
+    } catch (JsonProcessingException e) {
+      log.warn("Dropping unreadable phase plan cache entry: {}", e.getMessage());
+      synchronized (entries) {
+        entries.remove(key);
+      }
+      misses.increment();
+      return Optional.empty();
+    }
+  }
+
+  public void put(Profile profile, LocalDate startDate, PhaseResponse response) {
+    LocalDate baseStart =
+        response.getStartDateOfQuitPlan() != null ? response.getStartDateOfQuitPlan() : startDate;
+    try {
+      Entry entry =
+          new Entry(
+              objectMapper.writeValueAsString(response),
+              baseStart,
+              System.nanoTime() + ttl.toNanos());
+      synchronized (entries) {
+        entries.put(key(profile), entry);
+      }
+    } catch (JsonProcessingException e) {
+      log.warn("Could not cache phase plan: {}", e.getMessage());
+    }
+  }
+
+  private int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private String key(Profile profile) {
+    return sha256(
+        promptVersion
+            + '|'
+            + profile.ftnd()
+            + '|'
+            + profile.smokeAvgPerDay()
+            + '|'
+            + profile.yearsSmoking()
+            + '|'
+            + profile.age()
+            + '|'
+            + (profile.gender() != null ? profile.gender().toUpperCase(Locale.ROOT) : ""));
+  }
+
+  private static void shift(PhaseResponse response, long days) {
+    if (days == 0) return;
+    response.setStartDateOfQuitPlan(plus(response.getStartDateOfQuitPlan(), days));
+    response.setEndDateOfQuitPlan(plus(response.getEndDateOfQuitPlan(), days));
+    if (response.getPhases() == null) return;
+    for (PhaseDTO phase : response.getPhases()) {
+      phase.setStartDateOfQuitPlan(plus(phase.getStartDateOfQuitPlan(), days));
+      phase.setStartDate(plus(phase.getStartDate(), days));
+      phase.setEndDate(plus(phase.getEndDate(), days));
+    }
+  }
+
+  private static LocalDate plus(LocalDate date, long days) {
+    return date != null ? date.plusDays(days) : null;
+  }
+
+  private static String sha256(String value) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
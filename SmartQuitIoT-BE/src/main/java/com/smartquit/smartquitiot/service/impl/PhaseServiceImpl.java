@@ -14,21 +14,30 @@ import com.smartquit.smartquitiot.repository.QuitPlanRepository;
 import com.smartquit.smartquitiot.repository.SystemPhaseConditionRepository;
 import com.smartquit.smartquitiot.service.*;
 import com.smartquit.smartquitiot.toolcalling.QuitPlanTools;
+import com.smartquit.smartquitiot.util.condition.ConditionCompiler;
+import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Period;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @Slf4j
@@ -37,6 +46,8 @@ public class PhaseServiceImpl implements PhaseService {
   private final SystemPhaseConditionRepository systemPhaseConditionRepository;
   private final QuitPlanTools quitPlanTools;
   private final ChatClient chatClient;
+  private final LlmCallLimiter llmCallLimiter;
+  private final PhasePlanCache phasePlanCache;
   private final PhaseRepository phaseRepository;
   private final AccountService accountService;
   private final QuitPlanRepository quitPlanRepository;
@@ -44,6 +55,30 @@ public class PhaseServiceImpl implements PhaseService {
   private final PhaseDetailMissionService phaseDetailMissionService;
   private final NotificationService notificationService;
   private final QuitPlanMapper quitPlanMapper;
+  private final TransactionTemplate transactionTemplate;
+
+  private static final int PLAN_STATUS_CHUNK_SIZE = 50;
+  private static final int PLAN_STATUS_PARALLELISM = 4;
+  // plan bị FAILED chưa được keep/redo: không tự đổi trạng thái, keep/redo sẽ reset index về null
+  public static final LocalDate WAITING_FOR_MEMBER = LocalDate.of(9999, 12, 31);
+
+  private record PhaseConditionContext(Phase phase, Metric metric, FormMetric formMetric) {}
+
+  private static final ConditionCompiler<PhaseConditionContext> PHASE_CONDITIONS =
+      ConditionCompiler.numeric(
+          Map.of(
+              "progress", c -> c.phase().getProgress(),
+              "craving_level_avg", c -> c.metric() != null ? c.metric().getAvgCravingLevel() : null,
+              "avg_cigarettes",
+                  c -> c.metric() != null ? c.metric().getAvgCigarettesPerDay() : null,
+              "fm_cigarettes_total", c -> c.formMetric().getSmokeAvgPerDay(),
+              "avg_mood", c -> c.metric() != null ? c.metric().getAvgMood() : null,
+              "avg_anxiety", c -> c.metric() != null ? c.metric().getAvgAnxiety() : null,
+              "avg_confident", c -> c.metric() != null ? c.metric().getAvgConfidentLevel() : null));
+
+  private final ExecutorService planStatusWorkers =
+      Executors.newFixedThreadPool(
+          PLAN_STATUS_PARALLELISM, Thread.ofVirtual().name("plan-status-", 0).factory());
 
   // nho lam cai schedule update status of PHASE
   @Override
@@ -128,41 +163,15 @@ public class PhaseServiceImpl implements PhaseService {
       CreateQuitPlanInFirstLoginRequest req, int FTND, Account account) {
     // k goi AI de giam overload
 
-    // goi AI
-    String userInfo =
-        """
-                    User profile:
-                    - Age: %s
-                    - Gender: %s
-                    - smokeAvgPerDay: %d
-                    - yearsSmoking: %d
-                    - FTND: %d
-                    - StartDate: %s
-                """
-            .formatted(
-                calculateAge(account.getMember().getDob()),
-                account.getMember().getGender(),
-                req.getSmokeAvgPerDay(),
-                req.getNumberOfYearsOfSmoking(),
-                FTND,
-                req.getStartDate());
-    // response from ai
-    PhaseResponse phaseResponse =
-        chatClient
-            .prompt()
-            .system(SYSTEM_PROMPT)
-            .user(userInfo)
-            .tools(quitPlanTools)
-            .call()
-            .entity(PhaseResponse.class);
-
-    if (phaseResponse == null
-        || phaseResponse.getPhases() == null
-        || phaseResponse.getPhases().isEmpty()) {
-      throw new IllegalStateException("AI did not return any phases");
-    }
-
-    return phaseResponse;
+    // goi AI (profile giống nhau thì dùng lại kết quả đã cache)
+    return askPhases(
+        new PhasePlanCache.Profile(
+            FTND,
+            req.getSmokeAvgPerDay(),
+            req.getNumberOfYearsOfSmoking(),
+            calculateAge(account.getMember().getDob()),
+            String.valueOf(account.getMember().getGender())),
+        req.getStartDate());
 
     // k goi AI
     //        return buildPhasesByRules(
@@ -184,41 +193,15 @@ public class PhaseServiceImpl implements PhaseService {
     // rules
     // k goi Ai de giam overload
 
-    // goi AI
-    String userInfo =
-        """
-                    User profile:
-                    - Age: %s
-                    - Gender: %s
-                    - smokeAvgPerDay: %d
-                    - yearsSmoking: %d
-                    - FTND: %d
-                    - StartDate: %s
-                """
-            .formatted(
-                calculateAge(account.getMember().getDob()),
-                account.getMember().getGender(),
-                smokeAvgPerDay,
-                numberOfYearsSmoking,
-                FTND,
-                startDate);
-    // response from ai
-    PhaseResponse phaseResponse =
-        chatClient
-            .prompt()
-            .system(SYSTEM_PROMPT)
-            .user(userInfo)
-            .tools(quitPlanTools)
-            .call()
-            .entity(PhaseResponse.class);
-
-    if (phaseResponse == null
-        || phaseResponse.getPhases() == null
-        || phaseResponse.getPhases().isEmpty()) {
-      throw new IllegalStateException("AI did not return any phases");
-    }
-
-    return phaseResponse;
+    // goi AI (profile giống nhau thì dùng lại kết quả đã cache)
+    return askPhases(
+        new PhasePlanCache.Profile(
+            FTND,
+            smokeAvgPerDay,
+            numberOfYearsSmoking,
+            calculateAge(account.getMember().getDob()),
+            String.valueOf(account.getMember().getGender())),
+        startDate);
     // k goi AI
     //        return buildPhasesByRules(
     //                smokeAvgPerDay,
@@ -322,6 +305,7 @@ public class PhaseServiceImpl implements PhaseService {
     }
     oldPhase.setRedo(true);
     phaseRepository.save(oldPhase); // set thành old
+    plan.setNextTransitionDate(null);
     LocalDate anchorStart =
         redoPhaseRequest.getAnchorStart() != null
             ? redoPhaseRequest.getAnchorStart()
@@ -420,6 +404,49 @@ public class PhaseServiceImpl implements PhaseService {
     }
   }
 
+  private PhaseResponse askPhases(PhasePlanCache.Profile profile, LocalDate startDate) {
+    Optional<PhaseResponse> cached = phasePlanCache.get(profile, startDate);
+    if (cached.isPresent()) {
+      return cached.get();
+    }
+    String userInfo =
+        """
+                    User profile:
+                    - Age: %s
+                    - Gender: %s
+                    - smokeAvgPerDay: %d
+                    - yearsSmoking: %d
+                    - FTND: %d
+                    - StartDate: %s
+                """
+            .formatted(
+                profile.age(),
+                profile.gender(),
+                profile.smokeAvgPerDay(),
+                profile.yearsSmoking(),
+                profile.ftnd(),
+                startDate);
+    PhaseResponse phaseResponse =
+        llmCallLimiter.call(
+            () ->
+                chatClient
+                    .prompt()
+                    .system(SYSTEM_PROMPT)
+                    .user(userInfo)
+                    .tools(quitPlanTools)
+                    .call()
+                    .entity(PhaseResponse.class));
+
+    if (phaseResponse == null
+        || phaseResponse.getPhases() == null
+        || phaseResponse.getPhases().isEmpty()) {
+      throw new IllegalStateException("AI did not return any phases");
+    }
+
+    phasePlanCache.put(profile, startDate, phaseResponse);
+    return phaseResponse;
+  }
+
   private int calculateAge(LocalDate dob) {
     return Period.between(dob, LocalDate.now()).getYears();
   }
@@ -439,165 +466,219 @@ public class PhaseServiceImpl implements PhaseService {
   }
 
   // update status cua plan va quit plan
-  // tam thoi server ko co. nen la de 1p chay 1 lan cho de test
+  // chỉ xử lý plan có nextTransitionDate <= hôm nay (hoặc chưa index), chia chunk chạy song song,
+  // mỗi chunk 1 transaction riêng
   @Scheduled(cron = "0 */1 * * * *")
-  @Transactional
   @Override
   public void updateQuitPlanAndPhaseStatuses() {
-    log.info("UPDATE QUIT PLAN AND PHASE STATUS SCHEDULER RUNNING");
     LocalDate currentDate = LocalDate.now();
-    // con truong hop failed
-    // Lấy tất cả plan đang chạy trong hệ thống
-    List<QuitPlan> activePlans =
-        quitPlanRepository.findByStatusIn(
-            List.of(QuitPlanStatus.CREATED, QuitPlanStatus.IN_PROGRESS));
-
-    if (activePlans.isEmpty()) {
-      //            log.info("Không có QuitPlan CREATED/IN_PROGRESS để cập nhật.");
+    List<Integer> dueIds =
+        quitPlanRepository.findIdsDueForTransition(
+            List.of(QuitPlanStatus.CREATED, QuitPlanStatus.IN_PROGRESS), currentDate);
+    if (dueIds.isEmpty()) {
       return;
     }
-
-    for (QuitPlan currentPlan : activePlans) {
-      // Trước ngày bắt đầu thì tất cả CREATED
-      if (currentDate.isBefore(currentPlan.getStartDate())) {
-        if (currentPlan.getStatus() != QuitPlanStatus.CREATED)
-          currentPlan.setStatus(QuitPlanStatus.CREATED);
-        for (Phase p : currentPlan.getPhases()) {
-          if (p.getStatus() != PhaseStatus.CREATED) p.setStatus(PhaseStatus.CREATED);
-          phaseRepository.save(p);
-        }
-        quitPlanRepository.save(currentPlan);
-        log.info("Plan {} giữ trạng thái CREATED (chưa đến ngày bắt đầu)", currentPlan.getId());
-        continue;
+    log.info("UPDATE QUIT PLAN AND PHASE STATUS: {} plan(s) due", dueIds.size());
+
+    List<Future<?>> chunks = new ArrayList<>();
+    for (int from = 0; from < dueIds.size(); from += PLAN_STATUS_CHUNK_SIZE) {
+      List<Integer> chunk =
+          dueIds.subList(from, Math.min(from + PLAN_STATUS_CHUNK_SIZE, dueIds.size()));
+      chunks.add(
+          planStatusWorkers.submit(
+              () ->
+                  transactionTemplate.executeWithoutResult(
+                      status -> {
+                        for (QuitPlan plan : quitPlanRepository.findWithPhasesByIdIn(chunk)) {
+                          updatePlanStatus(plan, currentDate);
+                        }
+                      })));
+    }
+    for (Future<?> chunk : chunks) {
+      try {
+        chunk.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        log.error("Failed to update quit plan statuses for a chunk", e.getCause());
       }
+    }
+  }
+
+  @PreDestroy
+  public void shutdownPlanStatusWorkers() {
+    planStatusWorkers.shutdown();
+  }
 
-      // Đến/sau startDate thì plan IN_PROGRESS
-      if (currentPlan.getStatus() != QuitPlanStatus.IN_PROGRESS) {
-        currentPlan.setStatus(QuitPlanStatus.IN_PROGRESS);
+  private void updatePlanStatus(QuitPlan currentPlan, LocalDate currentDate) {
+    // Trước ngày bắt đầu thì tất cả CREATED
+    if (currentDate.isBefore(currentPlan.getStartDate())) {
+      if (currentPlan.getStatus() != QuitPlanStatus.CREATED)
+        currentPlan.setStatus(QuitPlanStatus.CREATED);
+      for (Phase p : currentPlan.getPhases()) {
+        if (p.getStatus() != PhaseStatus.CREATED) p.setStatus(PhaseStatus.CREATED);
       }
+      currentPlan.setNextTransitionDate(currentPlan.getStartDate());
+      log.info("Plan {} giữ trạng thái CREATED (chưa đến ngày bắt đầu)", currentPlan.getId());
+      return;
+    }
 
-      FormMetric formMetric = currentPlan.getFormMetric();
-      // List<Phase> phases = currentPlan.getPhases();
-      // sap xep lai truong hop redo
-      List<Phase> ordered =
-          currentPlan.getPhases().stream()
-              .filter(p -> !p.isRedo())
-              .sorted(Comparator.comparing(Phase::getStartDate).thenComparing(Phase::getId))
-              .toList();
-      //            for (Phase p : ordered) {
-      //                log.info("ss {}",p.getId());
-      //            }
-      boolean hasBlockingFailure = false;
-      for (int i = 0; i < ordered.size(); i++) {
-        Phase phase = ordered.get(i);
-
-        // Nếu đã có 1 phase FAILED phía trước chưa được xử lý -> đóng băng các phase sau
-        if (hasBlockingFailure) {
-          log.info("Skip phase {} because previous phase is FAILED and unresolved", phase.getId());
-          continue;
-        }
+    // Đến/sau startDate thì plan IN_PROGRESS
+    if (currentPlan.getStatus() != QuitPlanStatus.IN_PROGRESS) {
+      currentPlan.setStatus(QuitPlanStatus.IN_PROGRESS);
+    }
 
-        PhaseStatus oldStatus = phase.getStatus();
+    FormMetric formMetric = currentPlan.getFormMetric();
+    // List<Phase> phases = currentPlan.getPhases();
+    // sap xep lai truong hop redo
+    List<Phase> ordered =
+        currentPlan.getPhases().stream()
+            .filter(p -> !p.isRedo())
+            .sorted(Comparator.comparing(Phase::getStartDate).thenComparing(Phase::getId))
+            .toList();
+    //            for (Phase p : ordered) {
+    //                log.info("ss {}",p.getId());
+    //            }
+    boolean hasBlockingFailure = false;
+    for (int i = 0; i < ordered.size(); i++) {
+      Phase phase = ordered.get(i);
+
+      // Nếu đã có 1 phase FAILED phía trước chưa được xử lý -> đóng băng các phase sau
+      if (hasBlockingFailure) {
+        log.info("Skip phase {} because previous phase is FAILED and unresolved", phase.getId());
+        continue;
+      }
 
-        // FAILED nhưng mà người ta chọn keep rồi nên là cho đánh dá lại
-        // Còn không nếu đã FAILED từ trước mà không chon keep thi block luon
-        if (oldStatus == PhaseStatus.FAILED && !phase.isKeepPhase()) {
-          hasBlockingFailure = true;
-          continue;
-        }
+      PhaseStatus oldStatus = phase.getStatus();
 
-        if (phase.isRedo()) {
-          continue;
-        }
-        if (oldStatus == PhaseStatus.COMPLETED) {
-          continue;
-        }
-        if (currentDate.isBefore(phase.getStartDate())) {
-          phase.setStatus(PhaseStatus.CREATED);
-        } else if (!currentDate.isAfter(phase.getEndDate())) {
-          // Trong khung thời gian phase
-          if (i == 0 || ordered.get(i - 1).getStatus() == PhaseStatus.COMPLETED) {
-            phase.setStatus(PhaseStatus.IN_PROGRESS);
-          }
-        } else { // currentDate > endDate
-
-          Account account =
-              currentPlan.getMember() != null ? currentPlan.getMember().getAccount() : null;
-          boolean passed = evaluateCondition(phase.getCondition(), account, phase, formMetric);
-          if (passed) {
-            phase.setStatus(PhaseStatus.COMPLETED);
-            phase.setCompletedAt(LocalDateTime.now());
-            phase.setAvgCigarettesPerDay(account.getMember().getMetric().getAvgCigarettesPerDay());
-            phase.setAvgCravingLevel(account.getMember().getMetric().getAvgCravingLevel());
-            // phase.setFm_cigarettes_total(currentPlan.getFormMetric().getSmokeAvgPerDay());
-            phase.setAvgMood(account.getMember().getMetric().getAvgMood());
-            phase.setAvgAnxiety(account.getMember().getMetric().getAvgAnxiety());
-            phase.setAvgConfidentLevel(account.getMember().getMetric().getAvgConfidentLevel());
-            phaseRepository.save(phase);
+      // FAILED nhưng mà người ta chọn keep rồi nên là cho đánh dá lại
+      // Còn không nếu đã FAILED từ trước mà không chon keep thi block luon
+      if (oldStatus == PhaseStatus.FAILED && !phase.isKeepPhase()) {
+        hasBlockingFailure = true;
+        continue;
+      }
 
-            int nextIndex = i + 1;
-            if (nextIndex < ordered.size()) {
-              Phase next = ordered.get(nextIndex);
-              LocalDate anchor = phase.getCompletedAt().toLocalDate();
-
-              // Nếu completedAt == startDate của phase kế -> giữ lịch & generate bình thường
-              if (next.getStartDate() != null && anchor.isEqual(next.getStartDate())) {
-                maybeGenerateNextPhase(ordered, i, currentPlan);
-              } else {
-                // Lệch nhịp (kể cả pass do keep hay các lý do khác)
-                // -> chỉnh lại LỊCH TOÀN BỘ phần còn lại
-                log.info("tao o day ne");
-                List<Phase> updatedPhases = rescheduleFollowingPhases(currentPlan, i, anchor);
-                maybeGenerateNextPhase(updatedPhases, i, currentPlan);
-              }
-            }
+      if (phase.isRedo()) {
+        continue;
+      }
+      if (oldStatus == PhaseStatus.COMPLETED) {
+        continue;
+      }
+      if (currentDate.isBefore(phase.getStartDate())) {
+        phase.setStatus(PhaseStatus.CREATED);
+      } else if (!currentDate.isAfter(phase.getEndDate())) {
+        // Trong khung thời gian phase
+        if (i == 0 || ordered.get(i - 1).getStatus() == PhaseStatus.COMPLETED) {
+          phase.setStatus(PhaseStatus.IN_PROGRESS);
+        }
+      } else { // currentDate > endDate
+
+        Account account =
+            currentPlan.getMember() != null ? currentPlan.getMember().getAccount() : null;
+        boolean passed = evaluateCondition(phase.getCondition(), account, phase, formMetric);
+        if (passed) {
+          phase.setStatus(PhaseStatus.COMPLETED);
+          phase.setCompletedAt(LocalDateTime.now());
+          phase.setAvgCigarettesPerDay(account.getMember().getMetric().getAvgCigarettesPerDay());
+          phase.setAvgCravingLevel(account.getMember().getMetric().getAvgCravingLevel());
+          // phase.setFm_cigarettes_total(currentPlan.getFormMetric().getSmokeAvgPerDay());
+          phase.setAvgMood(account.getMember().getMetric().getAvgMood());
+          phase.setAvgAnxiety(account.getMember().getMetric().getAvgAnxiety());
+          phase.setAvgConfidentLevel(account.getMember().getMetric().getAvgConfidentLevel());
+          phaseRepository.save(phase);
 
-            // reset keepPhase
-            if (phase.isKeepPhase()) {
-              phase.setKeepPhase(false);
-              phaseRepository.save(phase);
+          int nextIndex = i + 1;
+          if (nextIndex < ordered.size()) {
+            Phase next = ordered.get(nextIndex);
+            LocalDate anchor = phase.getCompletedAt().toLocalDate();
+
+            // Nếu completedAt == startDate của phase kế -> giữ lịch & generate bình thường
+            if (next.getStartDate() != null && anchor.isEqual(next.getStartDate())) {
+              maybeGenerateNextPhase(ordered, i, currentPlan);
+            } else {
+              // Lệch nhịp (kể cả pass do keep hay các lý do khác)
+              // -> chỉnh lại LỊCH TOÀN BỘ phần còn lại
+              log.info("tao o day ne");
+              List<Phase> updatedPhases = rescheduleFollowingPhases(currentPlan, i, anchor);
+              maybeGenerateNextPhase(updatedPhases, i, currentPlan);
             }
+          }
 
-            // thongbao
-
-          } else {
-            phase.setStatus(PhaseStatus.FAILED);
-            //                        log.info(" not pass due to fail condition of phase");
+          // reset keepPhase
+          if (phase.isKeepPhase()) {
+            phase.setKeepPhase(false);
             phaseRepository.save(phase);
-            hasBlockingFailure = true;
           }
 
-          // thong bao
-        }
+          // thongbao
 
-        if (oldStatus != phase.getStatus()) {
+        } else {
+          phase.setStatus(PhaseStatus.FAILED);
+          //                        log.info(" not pass due to fail condition of phase");
           phaseRepository.save(phase);
-          log.info("Phase {} đổi trạng thái: {} → {}", phase.getId(), oldStatus, phase.getStatus());
-
-          if (phase.getStatus() == PhaseStatus.COMPLETED) {
-            notificationService.saveAndSendPhaseNoti(
-                currentPlan.getMember().getAccount(), phase, PhaseStatus.COMPLETED, 0);
-          } else if (phase.getStatus() == PhaseStatus.IN_PROGRESS) {
-            notificationService.saveAndSendPhaseNoti(
-                currentPlan.getMember().getAccount(), phase, PhaseStatus.IN_PROGRESS, 0);
-          } else if (phase.getStatus() == PhaseStatus.FAILED) {
-            notificationService.saveAndSendPhaseNoti(
-                currentPlan.getMember().getAccount(), phase, PhaseStatus.FAILED, 0);
-          }
+          hasBlockingFailure = true;
         }
+
+        // thong bao
       }
 
-      // Nếu tất cả phase COMPLETED thì plan COMPLETED
-      boolean allCompleted = ordered.stream().allMatch(p -> p.getStatus() == PhaseStatus.COMPLETED);
-      if (allCompleted && currentPlan.getStatus() != QuitPlanStatus.COMPLETED) {
-        currentPlan.setStatus(QuitPlanStatus.COMPLETED);
-        notificationService.saveAndSendQuitPlanNoti(
-            currentPlan.getMember().getAccount(), currentPlan, QuitPlanStatus.COMPLETED);
-        log.info("QuitPlan {} đã hoàn thành toàn bộ.", currentPlan.getId());
+      if (oldStatus != phase.getStatus()) {
+        phaseRepository.save(phase);
+        log.info("Phase {} đổi trạng thái: {} → {}", phase.getId(), oldStatus, phase.getStatus());
+
+        if (phase.getStatus() == PhaseStatus.COMPLETED) {
+          notificationService.saveAndSendPhaseNoti(
+              currentPlan.getMember().getAccount(), phase, PhaseStatus.COMPLETED, 0);
+        } else if (phase.getStatus() == PhaseStatus.IN_PROGRESS) {
+          notificationService.saveAndSendPhaseNoti(
+              currentPlan.getMember().getAccount(), phase, PhaseStatus.IN_PROGRESS, 0);
+        } else if (phase.getStatus() == PhaseStatus.FAILED) {
+          notificationService.saveAndSendPhaseNoti(
+              currentPlan.getMember().getAccount(), phase, PhaseStatus.FAILED, 0);
+        }
       }
+    }
 
-      quitPlanRepository.save(currentPlan);
+    // Nếu tất cả phase COMPLETED thì plan COMPLETED
+    boolean allCompleted = ordered.stream().allMatch(p -> p.getStatus() == PhaseStatus.COMPLETED);
+    if (allCompleted && currentPlan.getStatus() != QuitPlanStatus.COMPLETED) {
+      currentPlan.setStatus(QuitPlanStatus.COMPLETED);
+      notificationService.saveAndSendQuitPlanNoti(
+          currentPlan.getMember().getAccount(), currentPlan, QuitPlanStatus.COMPLETED);
+      log.info("QuitPlan {} đã hoàn thành toàn bộ.", currentPlan.getId());
     }
+
+    // plan/phase là managed entity: chỉ field thay đổi mới được flush, không cần save lại
+    currentPlan.setNextTransitionDate(nextTransitionDate(currentPlan, currentDate));
+  }
+
+  // ngày sớm nhất mà chạy lại scheduler có thể đổi trạng thái plan
+  private LocalDate nextTransitionDate(QuitPlan plan, LocalDate currentDate) {
+    if (currentDate.isBefore(plan.getStartDate())) {
+      return plan.getStartDate();
+    }
+    LocalDate next = null;
+    List<Phase> ordered =
+        plan.getPhases().stream()
+            .filter(p -> !p.isRedo())
+            .sorted(Comparator.comparing(Phase::getStartDate).thenComparing(Phase::getId))
+            .toList();
+    for (Phase phase : ordered) {
+      if (phase.getStatus() == PhaseStatus.COMPLETED) continue;
+      if (phase.getStatus() == PhaseStatus.FAILED) {
+        // keep => condition đánh giá lại liên tục theo progress; không keep => chờ member xử lý
+        return phase.isKeepPhase() ? currentDate : WAITING_FOR_MEMBER;
+      }
+      LocalDate candidate =
+          currentDate.isBefore(phase.getStartDate())
+              ? phase.getStartDate()
+              : phase.getEndDate().plusDays(1);
+      if (next == null || candidate.isBefore(next)) {
+        next = candidate;
+      }
+    }
+    return next != null ? next : currentDate.plusDays(1);
   }
 
   // nho set end date cua quit plan
@@ -649,80 +730,12 @@ public class PhaseServiceImpl implements PhaseService {
 
   private boolean evaluateCondition(
       JsonNode node, Account account, Phase phase, FormMetric formMetric) {
-    String logic = node.has("logic") ? node.get("logic").asText("AND") : "AND";
-    boolean result = logic.equalsIgnoreCase("AND");
-
-    for (JsonNode rule : node.get("rules")) {
-      boolean current;
-
-      if (rule.has("rules")) {
-        current = evaluateCondition(rule, account, phase, formMetric);
-      } else {
-        String field = rule.get("field").asText();
-        String operator = rule.get("operator").asText();
-
-        Object actualValue = getMetricValueDynamic(field, account, phase, formMetric);
-        double expected = 0;
-
-        if (rule.has("formula")) {
-          JsonNode f = rule.get("formula");
-          String base = f.get("base").asText();
-          String fop = f.has("operator") ? f.get("operator").asText("*") : "*";
-          double percent = f.get("percent").asDouble();
-
-          Object baseVal = getMetricValueDynamic(base, account, phase, formMetric);
-          if (baseVal instanceof Number baseNum) {
-            double baseValue = baseNum.doubleValue();
-            expected =
-                switch (fop) {
-                  case "*" -> baseValue * percent;
-                  case "+" -> baseValue + percent;
-                  case "-" -> baseValue - percent;
-                  case "/" -> baseValue / percent;
-                  default -> baseValue;
-                };
-          }
-        } else if (rule.has("value") && rule.get("value").isNumber()) {
-          expected = rule.get("value").asDouble();
-        }
-
-        current =
-            (actualValue instanceof Number actualNum)
-                && compare(actualNum.doubleValue(), Operator.fromSymbol(operator), expected);
-      }
-
-      if (logic.equalsIgnoreCase("AND")) result &= current;
-      else if (logic.equalsIgnoreCase("OR")) result |= current;
-    }
-    return result;
-  }
-
-  private Object getMetricValueDynamic(
-      String field, Account account, Phase phase, FormMetric formMetric) {
-    if (field == null || account == null || account.getMember() == null) return null;
-
-    String key = field.trim().toLowerCase().replace(" ", "_");
-    return switch (key) {
-      case "progress" -> phase.getProgress();
-      case "craving_level_avg" -> account.getMember().getMetric().getAvgCravingLevel();
-      case "avg_cigarettes" -> account.getMember().getMetric().getAvgCigarettesPerDay();
-      case "fm_cigarettes_total" -> formMetric.getSmokeAvgPerDay();
-      case "avg_mood" -> account.getMember().getMetric().getAvgMood();
-      case "avg_anxiety" -> account.getMember().getMetric().getAvgAnxiety();
-      case "avg_confident" -> account.getMember().getMetric().getAvgConfidentLevel();
-
-      default -> null;
-    };
-  }
-
-  private boolean compare(double actual, Operator op, double expected) {
-    return switch (op) {
-      case LT -> actual < expected;
-      case LE -> actual <= expected;
-      case EQ -> Double.compare(actual, expected) == 0;
-      case GE -> actual >= expected;
-      case GT -> actual > expected;
-    };
+    Metric metric =
+        account != null && account.getMember() != null ? account.getMember().getMetric() : null;
+    // mỗi phase chỉ đánh giá khi hết hạn => compile tại chỗ, không cần giữ lại
+    return PHASE_CONDITIONS
+        .compile(node)
+        .test(new PhaseConditionContext(phase, metric, formMetric));
   }
 
   private MissionPhase mapPhaseNameToEnum(Phase phase) {
@@ -0,0 +1,160 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.smartquit.smartquitiot.dto.request.CreateNewQuitPlanRequest;
+import com.smartquit.smartquitiot.dto.request.CreateQuitPlanInFirstLoginRequest;
+import com.smartquit.smartquitiot.dto.response.PhaseBatchMissionsResponse;
+import com.smartquit.smartquitiot.dto.response.PlanGenerationJobResponse;
+import com.smartquit.smartquitiot.entity.Account;
+import com.smartquit.smartquitiot.enums.PlanGenerationJobStatus;
+import com.smartquit.smartquitiot.service.AccountService;
+import com.smartquit.smartquitiot.service.PlanGenerationJobService;
+import com.smartquit.smartquitiot.service.QuitPlanService;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs quit plan creation (phase + mission generation by the chat model) off the request thread.
+ * The job state lives in Redis so any instance can answer a poll; completion is also pushed on
+ * {@code /topic/quit-plan-jobs/{accountId}}.
+ */
+@Slf4j
+@Service
+public class PlanGenerationJobServiceImpl implements PlanGenerationJobService {
+
+  private static final String JOB_CACHE = "plan_generation_jobs";
+  private static final String TOPIC_JOBS_FMT = "/topic/quit-plan-jobs/%d";
+
+  private final QuitPlanService quitPlanService;
+  private final AccountService accountService;
+  private final SimpMessagingTemplate messagingTemplate;
+  private final Cache jobs;
+  // job chạy trong transaction => giới hạn số job đồng thời để không giữ quá nhiều DB connection
+  private final Semaphore jobPermits;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  // mỗi account chỉ có 1 job đang chạy trên instance này, bấm submit lại sẽ nhận job cũ
+  private final Map<Integer, String> activeJobByAccount = new ConcurrentHashMap<>();
+
+  public PlanGenerationJobServiceImpl(
+      QuitPlanService quitPlanService,
+      AccountService accountService,
+      SimpMessagingTemplate messagingTemplate,
+      CacheManager cacheManager,
+      @Value("${app.ai.plan-generation.max-concurrent-jobs:4}") int maxConcurrentJobs) {
+    this.quitPlanService = quitPlanService;
+    this.accountService = accountService;
+    this.messagingTemplate = messagingTemplate;
+    this.jobs = cacheManager.getCache(JOB_CACHE);
+    this.jobPermits = new Semaphore(maxConcurrentJobs, true);
+  }
+
+  @Override
+  public PlanGenerationJobResponse submitFirstLoginPlan(CreateQuitPlanInFirstLoginRequest req) {
+    return submit(() -> quitPlanService.createQuitPlanInFirstLogin(req));
+  }
+
+  @Override
+  public PlanGenerationJobResponse submitNewPlan(CreateNewQuitPlanRequest req) {
+    return submit(() -> quitPlanService.createNewQuitPlan(req));
+  }
+
+  @Override
+  public PlanGenerationJobResponse getJob(String jobId) {
+    PlanGenerationJobResponse job = jobs.get(jobId, PlanGenerationJobResponse.class);
+    if (job == null) {
+      throw new IllegalArgumentException("Plan generation job not found: " + jobId);
+    }
+    Account account = accountService.getAuthenticatedAccount();
+    if (job.getAccountId() != account.getId()) {
+      throw new AccessDeniedException("Plan generation job belongs to another account");
+    }
+    return job;
+  }
+
+  private PlanGenerationJobResponse submit(Supplier<PhaseBatchMissionsResponse> generation) {
+    Account account = accountService.getAuthenticatedAccount();
+    int accountId = account.getId();
+    String jobId = UUID.randomUUID().toString();
+    String existing = activeJobByAccount.putIfAbsent(accountId, jobId);
+    if (existing != null) {
+      PlanGenerationJobResponse running = jobs.get(existing, PlanGenerationJobResponse.class);
+      if (running != null) return running;
+      activeJobByAccount.put(accountId, jobId);
+    }
+
+    PlanGenerationJobResponse job =
+        PlanGenerationJobResponse.builder()
+            .jobId(jobId)
+            .accountId(accountId)
+            .status(PlanGenerationJobStatus.PENDING)
+            .submittedAt(LocalDateTime.now())
+            .build();
+    jobs.put(jobId, job);
+    try {
+      // copy SecurityContext sang thread của job vì QuitPlanService lấy account từ đó
+      executor.execute(new DelegatingSecurityContextRunnable(() -> run(job, generation)));
+    } catch (RuntimeException e) {
+      activeJobByAccount.remove(accountId, jobId);
+      throw e;
+    }
+    log.info("Submitted plan generation job {} for account {}", jobId, accountId);
+    return job;
+  }
+
+  private void run(PlanGenerationJobResponse job, Supplier<PhaseBatchMissionsResponse> generation) {
+    try {
+      jobPermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      finish(job, null, "Plan generation was interrupted");
+      return;
+    }
+    try {
+      job.setStatus(PlanGenerationJobStatus.RUNNING);
+      jobs.put(job.getJobId(), job);
+      finish(job, generation.get(), null);
+    } catch (Exception e) {
+      log.error("Plan generation job {} failed", job.getJobId(), e);
+      finish(job, null, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+    } finally {
+      jobPermits.release();
+    }
+  }
+
+  private void finish(
+      PlanGenerationJobResponse job, PhaseBatchMissionsResponse result, String error) {
+    job.setStatus(
+        error == null ? PlanGenerationJobStatus.SUCCEEDED : PlanGenerationJobStatus.FAILED);
+    job.setResult(result);
+    job.setError(error);
+    job.setFinishedAt(LocalDateTime.now());
+    try {
+      jobs.put(job.getJobId(), job);
+      messagingTemplate.convertAndSend(String.format(TOPIC_JOBS_FMT, job.getAccountId()), job);
+    } catch (Exception e) {
+      log.warn(
+          "Failed to publish result of plan generation job {}: {}", job.getJobId(), e.getMessage());
+    } finally {
+      activeJobByAccount.remove(job.getAccountId(), job.getJobId());
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdown();
+  }
+}
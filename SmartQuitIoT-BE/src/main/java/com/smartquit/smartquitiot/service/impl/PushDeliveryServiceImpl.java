@@ -0,0 +1,136 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.smartquit.smartquitiot.repository.MemberRepository;
+import com.smartquit.smartquitiot.service.FcmGateway;
+import com.smartquit.smartquitiot.service.PushDeliveryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Sends pushes in FCM batches of up to 500 without blocking on the response. At most {@code
+ * max-in-flight} batches are outstanding; callers wait for a free slot beyond that. Tokens that FCM
+ * reports as unregistered are cleared from Member.
+ */
+@Slf4j
+@Service
+public class PushDeliveryServiceImpl implements PushDeliveryService {
+
+  private final FcmGateway fcmGateway;
+  private final MemberRepository memberRepository;
+  private final TransactionTemplate tx;
+  private final Semaphore inFlight;
+  // callback của sendEachAsync chạy trên thread của Firebase => xử lý kết quả (có transaction xoá
+  // token) trên executor riêng; số batch đồng thời đã bị giới hạn bởi inFlight
+  private final ExecutorService resultExecutor = Executors.newVirtualThreadPerTaskExecutor();
+  private final int batchSize;
+  private final Map<FcmGateway.Outcome, Counter> outcomes = new EnumMap<>(FcmGateway.Outcome.class);
+
+  public PushDeliveryServiceImpl(
+      FcmGateway fcmGateway,
+      MemberRepository memberRepository,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry,
+      @Value("${app.push.batch-size:500}") int batchSize,
+      @Value("${app.push.max-in-flight:4}") int maxInFlight) {
+    this.fcmGateway = fcmGateway;
+    this.memberRepository = memberRepository;
+    this.tx = new TransactionTemplate(transactionManager);
+    this.batchSize = Math.min(Math.max(batchSize, 1), FcmGateway.MAX_BATCH_SIZE);
+    this.inFlight = new Semaphore(Math.max(maxInFlight, 1));
+    for (FcmGateway.Outcome outcome : FcmGateway.Outcome.values()) {
+      outcomes.put(
+          outcome,
+          Counter.builder("push.delivery.messages")
+              .tag("outcome", outcome.name())
+              .register(meterRegistry));
+    }
+    Gauge.builder(
+            "push.delivery.in_flight",
+            inFlight,
+            s -> Math.max(maxInFlight, 1) - s.availablePermits())
+        .description("FCM batches waiting for a response")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public CompletableFuture<Void> send(PushMessage message) {
+    return sendAll(List.of(message));
+  }
+
+  @Override
+  public CompletableFuture<Void> sendAll(List<PushMessage> messages) {
+    List<PushMessage> valid =
+        messages.stream().filter(m -> m.token() != null && !m.token().isBlank()).toList();
+    if (valid.isEmpty()) return CompletableFuture.completedFuture(null);
+
+    List<CompletableFuture<Void>> batches = new ArrayList<>();
+    for (int from = 0; from < valid.size(); from += batchSize) {
+      List<PushMessage> batch = valid.subList(from, Math.min(from + batchSize, valid.size()));
+      try {
+        inFlight.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      CompletableFuture<Void> sent;
+      try {
+        sent =
+            fcmGateway
+                .sendEach(batch)
+                .thenAcceptAsync(result -> handleResult(batch, result), resultExecutor);
+      } catch (RuntimeException e) {
+        sent = CompletableFuture.failedFuture(e);
+      }
+      batches.add(
+          sent.whenComplete(
+              (ok, error) -> {
+                inFlight.release();
+                if (error != null) {
+                  log.error("Failed to send FCM batch of {}", batch.size(), error);
+                }
+              }));
+    }
+    return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]));
+  }
+
+  private void handleResult(List<PushMessage> batch, List<FcmGateway.Outcome> result) {
+    Set<String> unregistered = new HashSet<>();
+    for (int i = 0; i < batch.size() && i < result.size(); i++) {
+      FcmGateway.Outcome outcome = result.get(i);
+      outcomes.get(outcome).increment();
+      if (outcome == FcmGateway.Outcome.UNREGISTERED) {
+        unregistered.add(batch.get(i).token());
+      }
+    }
+    if (unregistered.isEmpty()) return;
+
+    try {
+      Integer cleared = tx.execute(status -> memberRepository.clearFcmTokens(unregistered));
+      log.info("Cleared {} unregistered FCM token(s)", cleared);
+    } catch (Exception e) {
+      log.warn("Failed to clear unregistered FCM tokens: {}", e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    resultExecutor.shutdown();
+  }
+}
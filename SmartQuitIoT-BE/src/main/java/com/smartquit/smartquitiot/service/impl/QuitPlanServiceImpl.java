@@ -175,6 +175,8 @@ public class QuitPlanServiceImpl implements QuitPlanService {
     }
     if (phase.getStatus() == PhaseStatus.FAILED) {
       phase.setKeepPhase(true);
+      // để scheduler đánh giá lại plan ở lần chạy kế tiếp
+      phase.getQuitPlan().setNextTransitionDate(null);
     } else {
       throw new RuntimeException(
           "Phase is not in Failed status so cant not keep phase of quit plan");
@@ -1,22 +1,12 @@
 package com.smartquit.smartquitiot.service.impl;
 
-import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.context.annotation.Bean;
-import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.cache.RedisCacheManager;
-import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
-import org.springframework.data.redis.serializer.RedisSerializationContext;
-import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
-@EnableCaching
 public class RedisServiceImpl {
 
   private final RedisTemplate<String, Object> redisTemplate;
@@ -32,19 +22,4 @@ public class RedisServiceImpl {
   public void delete(String key) {
     redisTemplate.delete(key);
   }
-
-  @Bean
-  public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-    RedisCacheConfiguration config =
-        RedisCacheConfiguration.defaultCacheConfig()
-            .entryTtl(Duration.ofHours(1))
-            .disableCachingNullValues()
-            .serializeKeysWith(
-                RedisSerializationContext.SerializationPair.fromSerializer(
-                    new StringRedisSerializer()))
-            .serializeValuesWith(
-                RedisSerializationContext.SerializationPair.fromSerializer(
-                    new GenericJackson2JsonRedisSerializer()));
-    return RedisCacheManager.builder(connectionFactory).cacheDefaults(config).build();
-  }
 }
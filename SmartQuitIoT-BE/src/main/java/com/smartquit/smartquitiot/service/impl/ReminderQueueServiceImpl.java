@@ -1,27 +1,25 @@
 package com.smartquit.smartquitiot.service.impl;
 
 import com.smartquit.smartquitiot.entity.*;
-import com.smartquit.smartquitiot.enums.NotificationType;
 import com.smartquit.smartquitiot.enums.PhaseEnum;
 import com.smartquit.smartquitiot.enums.ReminderQueueStatus;
 import com.smartquit.smartquitiot.enums.ReminderType;
-import com.smartquit.smartquitiot.repository.DiaryRecordRepository;
 import com.smartquit.smartquitiot.repository.QuitPlanRepository;
-import com.smartquit.smartquitiot.repository.ReminderQueueRepository;
+import com.smartquit.smartquitiot.repository.ReminderQueueJdbcRepository;
 import com.smartquit.smartquitiot.repository.ReminderTemplateRepository;
-import com.smartquit.smartquitiot.service.NotificationService;
 import com.smartquit.smartquitiot.service.ReminderQueueService;
+import com.smartquit.smartquitiot.service.TriggerStatService;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,84 +29,10 @@ import org.springframework.transaction.annotation.Transactional;
 public class ReminderQueueServiceImpl implements ReminderQueueService {
 
   private final ReminderTemplateRepository reminderTemplateRepository;
-  private final ReminderQueueRepository reminderQueueRepository;
-  private final DiaryRecordRepository diaryRecordRepository;
-  private final NotificationService notificationService;
+  private final ReminderQueueJdbcRepository reminderQueueJdbcRepository;
+  private final TriggerStatService triggerStatService;
   private final QuitPlanRepository quitPlanRepository;
 
-  @Scheduled(cron = "0 */1 * * * *")
-  @Transactional
-  public void dispatchReminders() {
-    LocalDateTime now = LocalDateTime.now();
-
-    log.info("REMINDER SCHEDULER RUNNING AT: {}", now);
-
-    List<ReminderQueue> dueReminders =
-        reminderQueueRepository.findByStatusAndScheduledAtBefore(ReminderQueueStatus.PENDING, now);
-
-    if (dueReminders.isEmpty()) {
-      log.info("No reminders to send.");
-      return;
-    }
-
-    log.info("Found {} reminder(s) due for sending…", dueReminders.size());
-
-    for (ReminderQueue rq : dueReminders) {
-      try {
-        LocalDate today = now.toLocalDate();
-
-        // Nếu là reminder của hôm nay nhưng đã trễ quá 1h bỏ luôn
-        if (rq.getScheduledAt().toLocalDate().isEqual(today)
-            && rq.getScheduledAt().isBefore(now.minusHours(1))) {
-
-          rq.setStatus(ReminderQueueStatus.CANCELLED);
-          reminderQueueRepository.save(rq);
-          continue;
-        }
-
-        // --- REFACTORED FOR FCM SUPPORT ---
-        Member member = null;
-
-        // Check if the reminder is linked via Account (AI Prediction) or PhaseDetail (Daily Tasks)
-        if (rq.getAccount() != null) {
-          member = rq.getAccount().getMember();
-        } else if (rq.getPhaseDetail() != null) {
-          member = rq.getPhaseDetail().getPhase().getQuitPlan().getMember();
-        }
-
-        if (member != null) {
-          // 1. Send Local Notification (for in-app notification list/history)
-          notificationService.saveAndPublish(
-              member.getAccount(),
-              NotificationType.REMINDER,
-              "SmartQuit Reminder",
-              rq.getContent(),
-              null,
-              null,
-              "smartquit://reminder");
-
-          // 2. Send Real-time FCM Push Notification (leveraging mobile FCM)
-          if (member.getFcmToken() != null && !member.getFcmToken().isEmpty()) {
-            log.info("Sending FCM push to member: {}", member.getId());
-            notificationService.sendPushNotification(
-                member.getFcmToken(), "SmartQuit Reminder", rq.getContent());
-          } else {
-            log.warn("Member {} has no FCM Token, skipping push.", member.getId());
-          }
-        }
-        // ----------------------------------
-
-        rq.setStatus(ReminderQueueStatus.SENT);
-        reminderQueueRepository.save(rq);
-
-      } catch (Exception e) {
-        log.error("Error dispatching reminder ID: {}", rq.getId(), e);
-        rq.setStatus(ReminderQueueStatus.CANCELLED);
-        reminderQueueRepository.save(rq);
-      }
-    }
-  }
-
   @Override
   @Transactional
   public void createDailyRemindersForPhase(Phase phase, List<PhaseDetail> details) {
@@ -135,80 +59,67 @@ public class ReminderQueueServiceImpl implements ReminderQueueService {
     // Nếu không có template morning thì thôi khỏi gen MORNING
     boolean hasMorningTemplate = !morningTemplates.isEmpty();
 
-    // Templates cho BEHAVIOR – sẽ lọc theo trigger sau
-    List<ReminderTemplate> behaviorTemplates =
-        reminderTemplateRepository.findByReminderType(ReminderType.BEHAVIOR);
+    // Templates BEHAVIOR gom theo triggerCode 1 lần, không lọc lại cho từng ngày
+    Map<String, List<ReminderTemplate>> behaviorByTrigger =
+        reminderTemplateRepository.findByReminderType(ReminderType.BEHAVIOR).stream()
+            .filter(t -> t.getTriggerCode() != null)
+            .collect(Collectors.groupingBy(t -> t.getTriggerCode().toUpperCase()));
 
     // Triggers chính của member (ví dụ STRESS, COFFEE,…)
     List<String> memberTriggers = getFrequentlyTriggeredReminders(member.getId());
 
+    // ví dụ behavior gửi sau MORNING 3 tiếng
+    LocalTime behaviorBaseTime = morningTime.plusHours(3);
+    if (behaviorBaseTime.isAfter(LocalTime.of(22, 0))) {
+      // nếu cộng 3 tiếng lố quá tối thì cho lại 15h
+      behaviorBaseTime = LocalTime.of(15, 0);
+    }
+
+    List<ReminderQueue> reminders = new ArrayList<>(details.size() * 2);
     for (PhaseDetail pd : details) {
       LocalDate phaseDate = pd.getDate();
       // MORNING
       if (hasMorningTemplate) {
         ReminderTemplate morningChosen = pickRandom(morningTemplates);
-
-        LocalDateTime morningCandidate = LocalDateTime.of(phaseDate, morningTime);
-
         LocalDateTime morningScheduleAt =
-            adjustForQuietTime(morningCandidate, quietStart, quietEnd);
-        log.info(
-            "[REM-GEN] phaseDetail={} morningCandidate={} morningScheduleAt={}",
-            pd.getId(),
-            morningCandidate,
-            morningScheduleAt);
-
-        ReminderQueue morningQueue = new ReminderQueue();
-        morningQueue.setPhaseDetail(pd);
-        // Added Link to account for easier FCM lookup in scheduler
-        morningQueue.setAccount(member.getAccount());
-        morningQueue.setReminderTemplate(morningChosen);
-        morningQueue.setContent(morningChosen.getContent());
-        morningQueue.setScheduledAt(morningScheduleAt);
-        morningQueue.setStatus(ReminderQueueStatus.PENDING);
-
-        reminderQueueRepository.save(morningQueue);
+            adjustForQuietTime(LocalDateTime.of(phaseDate, morningTime), quietStart, quietEnd);
+        reminders.add(newReminder(pd, member, morningChosen, morningScheduleAt));
       }
 
       // BEHAVIOR
-      if (!memberTriggers.isEmpty() && !behaviorTemplates.isEmpty()) {
+      if (!memberTriggers.isEmpty() && !behaviorByTrigger.isEmpty()) {
         // random 1 trigger trong số trigger của member
         String triggerForThisDay = pickRandom(memberTriggers);
-        log.info("triggerForThisDay {}", triggerForThisDay);
-        // lọc template behavior nào có triggerCode phù hợp
         List<ReminderTemplate> matchedBehaviorTemplates =
-            behaviorTemplates.stream()
-                .filter(t -> triggerForThisDay.equalsIgnoreCase(t.getTriggerCode()))
-                .toList();
+            triggerForThisDay != null
+                ? behaviorByTrigger.get(triggerForThisDay.toUpperCase())
+                : null;
 
-        if (!matchedBehaviorTemplates.isEmpty()) {
+        if (matchedBehaviorTemplates != null) {
           ReminderTemplate behaviorChosen = pickRandom(matchedBehaviorTemplates);
-
-          // ví dụ behavior gửi sau MORNING 3 tiếng
-          LocalTime behaviorBaseTime = morningTime.plusHours(3);
-          if (behaviorBaseTime.isAfter(LocalTime.of(22, 0))) {
-            // nếu cộng 3 tiếng lố quá tối thì cho lại 15h
-            behaviorBaseTime = LocalTime.of(15, 0);
-          }
-
-          LocalDateTime behaviorCandidate = LocalDateTime.of(phaseDate, behaviorBaseTime);
-
           LocalDateTime behaviorScheduleAt =
-              adjustForQuietTime(behaviorCandidate, quietStart, quietEnd);
-
-          ReminderQueue behaviorQueue = new ReminderQueue();
-          behaviorQueue.setPhaseDetail(pd);
-          // Added Link to account for easier FCM lookup in scheduler
-          behaviorQueue.setAccount(member.getAccount());
-          behaviorQueue.setReminderTemplate(behaviorChosen);
-          behaviorQueue.setContent(behaviorChosen.getContent());
-          behaviorQueue.setScheduledAt(behaviorScheduleAt);
-          behaviorQueue.setStatus(ReminderQueueStatus.PENDING);
-
-          reminderQueueRepository.save(behaviorQueue);
+              adjustForQuietTime(
+                  LocalDateTime.of(phaseDate, behaviorBaseTime), quietStart, quietEnd);
+          reminders.add(newReminder(pd, member, behaviorChosen, behaviorScheduleAt));
         }
       }
     }
+
+    reminderQueueJdbcRepository.batchInsert(reminders);
+    log.info("[REM-GEN] phase={} generated {} reminder(s)", phase.getId(), reminders.size());
+  }
+
+  private ReminderQueue newReminder(
+      PhaseDetail pd, Member member, ReminderTemplate template, LocalDateTime scheduledAt) {
+    ReminderQueue rq = new ReminderQueue();
+    rq.setPhaseDetail(pd);
+    // Added Link to account for easier FCM lookup in scheduler
+    rq.setAccount(member.getAccount());
+    rq.setReminderTemplate(template);
+    rq.setContent(template.getContent());
+    rq.setScheduledAt(scheduledAt);
+    rq.setStatus(ReminderQueueStatus.PENDING);
+    return rq;
   }
 
   // from Log Diary Record
@@ -220,45 +131,21 @@ public class ReminderQueueServiceImpl implements ReminderQueueService {
           "No active Quit Plan found when using getFrequentlyTriggeredReminders");
     }
 
-    List<DiaryRecord> diaryRecords = diaryRecordRepository.findByMemberIdOrderByDateDesc(memberId);
-
-    // CASE 1: Diary rỗng
-    if (diaryRecords.isEmpty()) {
-      log.info("[REMINDER] No diary records. Fallback to FormMetric.triggered or default.");
-
-      FormMetric fm = plan.getFormMetric();
-      if (fm != null && fm.getTriggered() != null && !fm.getTriggered().isEmpty()) {
-        return fm.getTriggered().stream().map(this::normalizeTrigger).collect(Collectors.toList());
-      }
-
-      return getDefaultTriggers();
+    // top trigger lấy từ thống kê cộng dồn, không quét lại diary
+    List<String> topTriggers = triggerStatService.getTopTriggers(memberId, 3);
+    if (!topTriggers.isEmpty()) {
+      return topTriggers;
     }
 
-    // CASE 2: Diary có nhưng triggers rỗng
-    Map<String, Long> triggerCount =
-        diaryRecords.stream()
-            .filter(r -> r.getTriggers() != null && !r.getTriggers().isEmpty())
-            .flatMap(r -> r.getTriggers().stream())
-            .map(this::normalizeTrigger)
-            .collect(Collectors.groupingBy(t -> t, Collectors.counting()));
-
-    if (triggerCount.isEmpty()) {
-      log.info("[REMINDER] Diary exists but no triggers. Checking FormMetric…");
-
-      FormMetric fm = plan.getFormMetric();
-      if (fm != null && fm.getTriggered() != null && !fm.getTriggered().isEmpty()) {
-        return fm.getTriggered().stream().map(this::normalizeTrigger).collect(Collectors.toList());
-      }
-
-      return getDefaultTriggers();
+    log.info("[REMINDER] No diary triggers. Fallback to FormMetric.triggered or default.");
+    FormMetric fm = plan.getFormMetric();
+    if (fm != null && fm.getTriggered() != null && !fm.getTriggered().isEmpty()) {
+      return fm.getTriggered().stream()
+          .map(triggerStatService::normalizeTrigger)
+          .collect(Collectors.toList());
     }
 
-    // CASE 3: Có trigger thống kê được
-    return triggerCount.entrySet().stream()
-        .sorted((a, b) -> Long.compare(b.getValue(), a.getValue())) // DESC
-        .limit(3)
-        .map(Map.Entry::getKey)
-        .collect(Collectors.toList());
+    return getDefaultTriggers();
   }
 
   private List<String> getDefaultTriggers() {
@@ -275,11 +162,6 @@ public class ReminderQueueServiceImpl implements ReminderQueueService {
         "WORK");
   }
 
-  private String normalizeTrigger(String raw) {
-    if (raw == null) return null;
-    return raw.trim().toUpperCase().replace(" ", "_");
-  }
-
   // Random generic cho List<T>
   private <T> T pickRandom(List<T> list) {
     int idx = ThreadLocalRandom.current().nextInt(list.size());
@@ -33,6 +33,7 @@ public class ScheduleServiceImpl implements ScheduleService {
   private final CoachWorkScheduleRepository coachWorkScheduleRepository;
   private final SlotService slotService;
   private final CoachMapper coachMapper;
+  private final CoachAvailabilityIndex coachAvailabilityIndex;
 
   @Override
   @Transactional
@@ -100,6 +101,7 @@ public class ScheduleServiceImpl implements ScheduleService {
     if (!newSchedules.isEmpty()) {
       try {
         coachWorkScheduleRepository.saveAll(newSchedules);
+        parsedDates.forEach(coachAvailabilityIndex::invalidateDate);
         log.info("Created {} new work schedules", newSchedules.size());
       } catch (org.springframework.dao.DataIntegrityViolationException ex) {
         // Race condition: if two requests insert at the same time,
@@ -192,6 +194,7 @@ public class ScheduleServiceImpl implements ScheduleService {
       }
 
       coachWorkScheduleRepository.deleteAll(schedules);
+      coachAvailabilityIndex.invalidateDate(date);
       log.info("Removed work schedules of coach {} on date {}", coachId, date);
     }
 
@@ -220,13 +223,14 @@ public class ScheduleServiceImpl implements ScheduleService {
         newSchedules.add(schedule);
       }
       coachWorkScheduleRepository.saveAll(newSchedules);
+      coachAvailabilityIndex.invalidateDate(date);
       log.info("Added coach {} to schedule on date {}", coachId, date);
     }
   }
 
   @Override
   public List<SlotAvailableResponse> getAvailableSlots(int coachId, LocalDate date) {
-    if (!coachRepository.existsById(coachId)) {
+    if (!coachAvailabilityIndex.coachExists(coachId)) {
       throw new IllegalArgumentException("Coach does not exist.");
     }
 
@@ -237,23 +241,17 @@ public class ScheduleServiceImpl implements ScheduleService {
 
     LocalDateTime now = LocalDateTime.now();
 
-    return coachWorkScheduleRepository
-        .findAllByCoachIdAndDateAndStatusWithSlot(coachId, date, CoachWorkScheduleStatus.AVAILABLE)
-        .stream()
+    return coachAvailabilityIndex.freeSlots(coachId, date).stream()
         .filter(
-            cws -> {
+            slot -> {
               if (date.isEqual(today)) {
-                LocalDateTime slotStart = LocalDateTime.of(date, cws.getSlot().getStartTime());
+                LocalDateTime slotStart = LocalDateTime.of(date, slot.getStartTime());
                 return !slotStart.isBefore(now);
               }
               return true;
             })
         .map(
-            cws ->
-                new SlotAvailableResponse(
-                    cws.getSlot().getId(),
-                    cws.getSlot().getStartTime(),
-                    cws.getSlot().getEndTime()))
+            slot -> new SlotAvailableResponse(slot.getId(), slot.getStartTime(), slot.getEndTime()))
         .collect(Collectors.toList());
   }
 
@@ -290,22 +288,6 @@ public class ScheduleServiceImpl implements ScheduleService {
     if (date == null) throw new IllegalArgumentException("Date is required");
     if (slotId <= 0) throw new IllegalArgumentException("Invalid slotId");
 
-    // Query all CoachWorkSchedules for this date and slot (including coach join)
-    List<CoachWorkSchedule> cwsList =
-        coachWorkScheduleRepository.findAllByDateAndSlotIdWithCoach(date, slotId);
-
-    return cwsList.stream()
-        .filter(Objects::nonNull)
-        .filter(cws -> cws.getStatus() == CoachWorkScheduleStatus.AVAILABLE)
-        .filter(
-            cws -> {
-              Coach coach = cws.getCoach();
-              return coach != null && coach.getAccount() != null;
-            })
-        .filter(cws -> excludeCoachId == null || cws.getCoach().getId() != excludeCoachId)
-        .map(CoachWorkSchedule::getCoach)
-        .distinct()
-        .map(coachMapper::toCoachSummaryDTO)
-        .toList();
+    return coachAvailabilityIndex.freeCoaches(date, slotId, excludeCoachId);
   }
 }
@@ -37,6 +37,7 @@ public class SlotServiceImpl implements SlotService {
   private final AppointmentRepository appointmentRepository;
   private final CoachWorkScheduleRepository coachWorkScheduleRepository;
   private final FeedbackRepository feedbackRepository;
+  private final CoachAvailabilityIndex coachAvailabilityIndex;
 
   @Override
   @Transactional
@@ -127,6 +128,7 @@ public class SlotServiceImpl implements SlotService {
 
     // Create new slots (findOrCreateRange will create if not exists, or return existing)
     List<Slot> slotsAfterReseed = findOrCreateRange(start, end, slotMinutes, gapMinutes);
+    coachAvailabilityIndex.invalidateAll();
 
     // Count actually new slots (not existed before)
     int createdCount =
@@ -0,0 +1,49 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.smartquit.smartquitiot.service.FcmGateway;
+import com.smartquit.smartquitiot.service.PushDeliveryService.PushMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Giả lập FCM để load-test local: không gọi Firebase, chỉ delay + trả UNREGISTERED ngẫu nhiên
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.push.stub", havingValue = "true")
+public class StubFcmGateway implements FcmGateway {
+
+  private final long latencyMs;
+  private final double unregisteredRate;
+
+  public StubFcmGateway(
+      @Value("${app.push.stub-latency-ms:200}") long latencyMs,
+      @Value("${app.push.stub-unregistered-rate:0.01}") double unregisteredRate) {
+    this.latencyMs = latencyMs;
+    this.unregisteredRate = unregisteredRate;
+    log.warn("Using stub FCM gateway, no push notification will be delivered");
+  }
+
+  @Override
+  public CompletableFuture<List<Outcome>> sendEach(List<PushMessage> messages) {
+    Executor delayed = CompletableFuture.delayedExecutor(latencyMs, TimeUnit.MILLISECONDS);
+    return CompletableFuture.supplyAsync(
+        () -> {
+          List<Outcome> outcomes = new ArrayList<>(messages.size());
+          for (int i = 0; i < messages.size(); i++) {
+            outcomes.add(
+                ThreadLocalRandom.current().nextDouble() < unregisteredRate
+                    ? Outcome.UNREGISTERED
+                    : Outcome.SENT);
+          }
+          return outcomes;
+        },
+        delayed);
+  }
+}
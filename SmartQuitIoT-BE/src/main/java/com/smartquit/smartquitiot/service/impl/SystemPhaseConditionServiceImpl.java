@@ -8,12 +8,13 @@ import com.smartquit.smartquitiot.dto.response.SystemPhaseConditionDTO;
 import com.smartquit.smartquitiot.dto.response.TestConditionResponse;
 import com.smartquit.smartquitiot.dto.response.TestData;
 import com.smartquit.smartquitiot.entity.SystemPhaseCondition;
-import com.smartquit.smartquitiot.enums.Operator;
 import com.smartquit.smartquitiot.mapper.SystemPhaseConditionMapper;
 import com.smartquit.smartquitiot.repository.SystemPhaseConditionRepository;
 import com.smartquit.smartquitiot.service.SystemPhaseConditionService;
+import com.smartquit.smartquitiot.util.condition.ConditionCompiler;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,6 +22,18 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 @RequiredArgsConstructor
 public class SystemPhaseConditionServiceImpl implements SystemPhaseConditionService {
+  // cùng field với condition của phase (PhaseServiceImpl), giá trị lấy từ TestData
+  private static final ConditionCompiler<TestData> TEST_CONDITIONS =
+      ConditionCompiler.numeric(
+          Map.of(
+              "progress", TestData::getProgress,
+              "craving_level_avg", TestData::getAvgCravingLevel,
+              "avg_cigarettes", TestData::getAvgCigarettesPerDay,
+              "fm_cigarettes_total", TestData::getFmCigarettesTotal,
+              "avg_mood", TestData::getAvgMood,
+              "avg_anxiety", TestData::getAvgAnxiety,
+              "avg_confident", TestData::getAvgConfidentLevel));
+
   private final SystemPhaseConditionRepository systemPhaseConditionRepository;
   private final SystemPhaseConditionMapper systemPhaseConditionMapper;
 
@@ -73,99 +86,32 @@ public class SystemPhaseConditionServiceImpl implements SystemPhaseConditionServ
         .build();
   }
 
+  // chạy condition với trace để trả chi tiết từng rule cho màn test
   private boolean evaluateConditionForTest(
       JsonNode node, TestData testData, List<RuleEvaluationDetail> ruleResults) {
-    String logic = node.has("logic") ? node.get("logic").asText("AND") : "AND";
-    boolean result = logic.equalsIgnoreCase("AND");
-
-    for (JsonNode rule : node.get("rules")) {
-      boolean current;
-
-      if (rule.has("rules")) {
-        // Nested logic group
-        current = evaluateConditionForTest(rule, testData, ruleResults);
-      } else {
-        String field = rule.get("field").asText();
-        String operator = rule.get("operator").asText();
-
-        Object actualValue = getMetricValueForTest(field, testData);
-        double expected = 0;
-
-        if (rule.has("formula")) {
-          JsonNode f = rule.get("formula");
-          String base = f.get("base").asText();
-          String fop = f.has("operator") ? f.get("operator").asText("*") : "*";
-          double percent = f.get("percent").asDouble();
-
-          Object baseVal = getMetricValueForTest(base, testData);
-          if (baseVal instanceof Number baseNum) {
-            double baseValue = baseNum.doubleValue();
-            expected =
-                switch (fop) {
-                  case "*" -> baseValue * percent;
-                  case "+" -> baseValue + percent;
-                  case "-" -> baseValue - percent;
-                  case "/" -> baseValue / percent;
-                  default -> baseValue;
-                };
-          }
-        } else if (rule.has("value") && rule.get("value").isNumber()) {
-          expected = rule.get("value").asDouble();
-        }
-
-        current =
-            (actualValue instanceof Number actualNum)
-                && compare(actualNum.doubleValue(), Operator.fromSymbol(operator), expected);
-
-        //  Track rule evaluation for test response
-        ruleResults.add(
-            RuleEvaluationDetail.builder()
-                .field(field)
-                .operator(operator)
-                .expectedValue(expected)
-                .actualValue(actualValue)
-                .passed(current)
-                .description(
-                    String.format(
-                        "%s: %.2f %s %.2f = %s",
-                        field,
-                        actualValue instanceof Number ? ((Number) actualValue).doubleValue() : 0.0,
-                        operator,
-                        expected,
-                        current ? "✓" : "✗"))
-                .build());
-      }
-
-      if (logic.equalsIgnoreCase("AND")) result &= current;
-      else if (logic.equalsIgnoreCase("OR")) result |= current;
-    }
-    return result;
-  }
-
-  private Object getMetricValueForTest(String field, TestData testData) {
-    if (field == null || testData == null) return null;
-
-    String key = field.trim().toLowerCase().replace(" ", "_");
-    return switch (key) {
-      case "progress" -> testData.getProgress();
-      case "craving_level_avg" -> testData.getAvgCravingLevel();
-      case "avg_cigarettes" -> testData.getAvgCigarettesPerDay();
-      case "fm_cigarettes_total" -> testData.getFmCigarettesTotal();
-      case "avg_mood" -> testData.getAvgMood();
-      case "avg_anxiety" -> testData.getAvgAnxiety();
-      case "avg_confident" -> testData.getAvgConfidentLevel();
-      default -> null;
-    };
-  }
-
-  private boolean compare(double actual, Operator op, double expected) {
-    return switch (op) {
-      case LT -> actual < expected;
-      case LE -> actual <= expected;
-      case EQ -> Double.compare(actual, expected) == 0;
-      case GE -> actual >= expected;
-      case GT -> actual > expected;
-    };
+    return TEST_CONDITIONS
+        .compile(node)
+        .test(
+            testData,
+            (field, operator, expected, actual, passed) ->
+                ruleResults.add(
+                    RuleEvaluationDetail.builder()
+                        .field(field)
+                        .operator(operator)
+                        .expectedValue(expected)
+                        .actualValue(actual)
+                        .passed(passed)
+                        .description(
+                            String.format(
+                                "%s: %.2f %s %.2f = %s",
+                                field,
+                                actual instanceof Number ? ((Number) actual).doubleValue() : 0.0,
+                                operator,
+                                expected instanceof Number
+                                    ? ((Number) expected).doubleValue()
+                                    : 0.0,
+                                passed ? "✓" : "✗"))
+                        .build()));
   }
 
   private String buildEvaluationDetails(
@@ -0,0 +1,154 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import com.smartquit.smartquitiot.repository.DiaryRecordRepository;
+import com.smartquit.smartquitiot.repository.MemberRepository;
+import com.smartquit.smartquitiot.repository.MemberTriggerStatRepository;
+import com.smartquit.smartquitiot.service.TriggerStatService;
+import java.util.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TriggerStatServiceImpl implements TriggerStatService {
+
+  private static final String TOP_TRIGGERS_CACHE = "member_top_triggers";
+  // cache top 10, caller cần ít hơn thì cắt từ list này
+  private static final int CACHED_TOP = 10;
+
+  private final MemberTriggerStatRepository memberTriggerStatRepository;
+  private final DiaryRecordRepository diaryRecordRepository;
+  private final MemberRepository memberRepository;
+  private final CacheManager cacheManager;
+
+  @Override
+  @Transactional
+  public void recordTriggers(int memberId, Collection<String> triggers) {
+    Map<String, Integer> deltas = new HashMap<>();
+    addCounts(deltas, triggers);
+    if (deltas.isEmpty()) return;
+
+    // member chưa có thống kê (diary cũ trước khi có bảng này) => dựng lại từ lịch sử,
+    // lịch sử đã gồm record vừa lưu nên không cộng delta nữa
+    if (memberTriggerStatRepository.existsByMember_Id(memberId) || !seedFromHistory(memberId)) {
+      deltas.forEach(
+          (trigger, delta) -> memberTriggerStatRepository.upsertCount(memberId, trigger, delta));
+    }
+    evictAfterCommit(memberId);
+  }
+
+  /**
+   * One-off backfill for members whose diaries predate the stats table, so the read path never has
+   * to build them. Members that already have stats are skipped; members whose diaries have no
+   * trigger get no rows and are simply scanned again on the next run.
+   */
+  @Override
+  @Transactional
+  public void backfillMissingStats() {
+    Map<Integer, Map<String, Integer>> countsByMember = new HashMap<>();
+    for (Object[] row : diaryRecordRepository.findTriggersOfMembersWithoutStats()) {
+      @SuppressWarnings("unchecked")
+      List<String> triggers = (List<String>) row[1];
+      addCounts(
+          countsByMember.computeIfAbsent(((Number) row[0]).intValue(), k -> new HashMap<>()),
+          triggers);
+    }
+    int seeded = 0;
+    for (Map.Entry<Integer, Map<String, Integer>> e : countsByMember.entrySet()) {
+      if (e.getValue().isEmpty()) continue;
+      memberRepository.lockById(e.getKey());
+      // diary mới trong lúc quét đã tự seed ở write path
+      if (memberTriggerStatRepository.countByMemberIdForUpdate(e.getKey()) > 0) continue;
+      e.getValue()
+          .forEach(
+              (trigger, count) -> memberTriggerStatRepository.setCount(e.getKey(), trigger, count));
+      evictAfterCommit(e.getKey());
+      seeded++;
+    }
+    if (seeded > 0) log.info("Backfilled trigger stats for {} member(s)", seeded);
+  }
+
+  @Override
+  public List<String> getTopTriggers(int memberId, int limit) {
+    List<String> top = null;
+    Cache cache = cacheManager.getCache(TOP_TRIGGERS_CACHE);
+    if (cache != null) {
+      try {
+        top = cache.get(memberId, () -> loadTopTriggers(memberId));
+      } catch (Exception e) {
+        log.warn("Top trigger cache unavailable: {}", e.getMessage());
+      }
+    }
+    if (top == null) {
+      top = loadTopTriggers(memberId);
+    }
+    return top.size() > limit ? new ArrayList<>(top.subList(0, limit)) : top;
+  }
+
+  @Override
+  public String normalizeTrigger(String raw) {
+    if (raw == null) return null;
+    return raw.trim().toUpperCase().replace(" ", "_");
+  }
+
+  private ArrayList<String> loadTopTriggers(int memberId) {
+    return new ArrayList<>(
+        memberTriggerStatRepository.findTopTriggerCodes(memberId, PageRequest.of(0, CACHED_TOP)));
+  }
+
+  /**
+   * Builds the member's stats from the diary history (the record being saved included); false when
+   * another transaction built them while this one waited for the member row lock.
+   */
+  private boolean seedFromHistory(int memberId) {
+    memberRepository.lockById(memberId);
+    if (memberTriggerStatRepository.countByMemberIdForUpdate(memberId) > 0) return false;
+
+    Map<String, Integer> counts = new HashMap<>();
+    for (List<String> triggers : diaryRecordRepository.findTriggersByMemberId(memberId)) {
+      addCounts(counts, triggers);
+    }
+    counts.forEach(
+        (trigger, count) -> memberTriggerStatRepository.setCount(memberId, trigger, count));
+    log.info("Seeded {} trigger stat(s) for member {}", counts.size(), memberId);
+    return true;
+  }
+
+  private void addCounts(Map<String, Integer> counts, Collection<String> triggers) {
+    if (triggers == null) return;
+    for (String raw : triggers) {
+      String trigger = normalizeTrigger(raw);
+      if (trigger == null || trigger.isEmpty()) continue;
+      counts.merge(trigger, 1, Integer::sum);
+    }
+  }
+
+  private void evictAfterCommit(int memberId) {
+    Runnable evict =
+        () -> {
+          Cache cache = cacheManager.getCache(TOP_TRIGGERS_CACHE);
+          if (cache != null) {
+            cache.evict(memberId);
+          }
+        };
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              evict.run();
+            }
+          });
+    } else {
+      evict.run();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.smartquit.smartquitiot.util;
+
+import com.smartquit.smartquitiot.entity.DiaryRecord;
+import com.smartquit.smartquitiot.entity.Metric;
+
+public final class MetricAggregateUtils {
+
+  private MetricAggregateUtils() {}
+
+  // sign = 1 khi thêm record, -1 khi gỡ giá trị cũ của record trước khi update
+  public static void applyRecord(Metric metric, DiaryRecord record, int sign) {
+    metric.setDiaryRecordCount(metric.getDiaryRecordCount() + sign);
+    metric.setSumCravingLevel(metric.getSumCravingLevel() + (long) sign * record.getCravingLevel());
+    metric.setSumMoodLevel(metric.getSumMoodLevel() + (long) sign * record.getMoodLevel());
+    metric.setSumConfidenceLevel(
+        metric.getSumConfidenceLevel() + (long) sign * record.getConfidenceLevel());
+    metric.setSumAnxietyLevel(metric.getSumAnxietyLevel() + (long) sign * record.getAnxietyLevel());
+    metric.setTotalCigarettesSmoked(
+        metric.getTotalCigarettesSmoked() + (long) sign * record.getCigarettesSmoked());
+    if (!record.isHaveSmoked()) {
+      metric.setSmokeFreeDayCount(metric.getSmokeFreeDayCount() + sign);
+    }
+    metric.setNrtTotalSpent(metric.getNrtTotalSpent() + sign * record.getMoneySpentOnNrt());
+  }
+
+  // row from DiaryRecordRepository.aggregateByMemberId / aggregateGroupByMember, null = no records
+  public static void resetFromRow(Metric metric, Object[] row) {
+    metric.setDiaryRecordCount(row == null ? 0 : toInt(row[1]));
+    metric.setSumCravingLevel(row == null ? 0 : toLong(row[2]));
+    metric.setSumMoodLevel(row == null ? 0 : toLong(row[3]));
+    metric.setSumConfidenceLevel(row == null ? 0 : toLong(row[4]));
+    metric.setSumAnxietyLevel(row == null ? 0 : toLong(row[5]));
+    metric.setTotalCigarettesSmoked(row == null ? 0 : toLong(row[6]));
+    metric.setSmokeFreeDayCount(row == null ? 0 : toInt(row[7]));
+    metric.setNrtTotalSpent(row == null || row[8] == null ? 0.0 : ((Number) row[8]).doubleValue());
+  }
+
+  public static boolean matchesRow(Metric metric, Object[] row) {
+    Metric expected = new Metric();
+    resetFromRow(expected, row);
+    return metric.getDiaryRecordCount() == expected.getDiaryRecordCount()
+        && metric.getSumCravingLevel() == expected.getSumCravingLevel()
+        && metric.getSumMoodLevel() == expected.getSumMoodLevel()
+        && metric.getSumConfidenceLevel() == expected.getSumConfidenceLevel()
+        && metric.getSumAnxietyLevel() == expected.getSumAnxietyLevel()
+        && metric.getTotalCigarettesSmoked() == expected.getTotalCigarettesSmoked()
+        && metric.getSmokeFreeDayCount() == expected.getSmokeFreeDayCount()
+        && Math.abs(metric.getNrtTotalSpent() - expected.getNrtTotalSpent()) < 0.01;
+  }
+
+  // recompute averages from the running sums
+  public static void refreshAverages(Metric metric) {
+    int count = metric.getDiaryRecordCount();
+    if (count <= 0) {
+      return;
+    }
+    metric.setAvgCravingLevel((double) metric.getSumCravingLevel() / count);
+    metric.setAvgMood((double) metric.getSumMoodLevel() / count);
+    metric.setAvgConfidentLevel((double) metric.getSumConfidenceLevel() / count);
+    metric.setAvgAnxiety((double) metric.getSumAnxietyLevel() / count);
+    metric.setAvgCigarettesPerDay((double) metric.getTotalCigarettesSmoked() / count);
+  }
+
+  private static int toInt(Object value) {
+    return value == null ? 0 : ((Number) value).intValue();
+  }
+
+  private static long toLong(Object value) {
+    return value == null ? 0L : ((Number) value).longValue();
+  }
+}
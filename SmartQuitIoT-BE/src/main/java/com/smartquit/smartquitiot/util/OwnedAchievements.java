@@ -0,0 +1,63 @@
+package com.smartquit.smartquitiot.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Achievements a member owns: a bitset over achievement ids for membership checks, plus ids sorted
+ * ascending with the matching achievedAt (epoch millis) for display.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OwnedAchievements {
+
+  long[] bits = new long[0];
+  int[] ids = new int[0];
+  long[] achievedAt = new long[0];
+
+  public static OwnedAchievements of(Map<Integer, LocalDateTime> achievedAtById) {
+    TreeMap<Integer, LocalDateTime> sorted = new TreeMap<>(achievedAtById);
+    int[] ids = new int[sorted.size()];
+    long[] achievedAt = new long[sorted.size()];
+    long[] bits = new long[sorted.isEmpty() ? 0 : (sorted.lastKey() >>> 6) + 1];
+    int i = 0;
+    for (Map.Entry<Integer, LocalDateTime> e : sorted.entrySet()) {
+      int id = e.getKey();
+      ids[i] = id;
+      achievedAt[i] = toMillis(e.getValue());
+      bits[id >>> 6] |= 1L << id;
+      i++;
+    }
+    return new OwnedAchievements(bits, ids, achievedAt);
+  }
+
+  public boolean owns(int achievementId) {
+    int word = achievementId >>> 6;
+    return achievementId >= 0 && word < bits.length && (bits[word] & (1L << achievementId)) != 0;
+  }
+
+  /** achievedAt of an owned achievement, null if not owned. */
+  public LocalDateTime achievedAtOf(int achievementId) {
+    int idx = Arrays.binarySearch(ids, achievementId);
+    if (idx < 0) return null;
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(achievedAt[idx]), ZoneId.systemDefault());
+  }
+
+  private static long toMillis(LocalDateTime time) {
+    LocalDateTime value = time != null ? time : LocalDateTime.now();
+    return value.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+}
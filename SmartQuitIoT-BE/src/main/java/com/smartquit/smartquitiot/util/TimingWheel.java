@@ -0,0 +1,150 @@
+package com.smartquit.smartquitiot.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel. Level {@code l} has {@code wheelSize} slots of {@code tickMs *
+ * wheelSize^l} each; an entry sits in the lowest level that can hold its deadline and cascades down
+ * when its slot comes around. Deadlines past the top level are rejected. Cancel and reschedule only
+ * drop the item's current entry from the index; the stale entry is skipped when its slot comes
+ * around. Not thread-safe on its own; callers synchronize.
+ */
+public class TimingWheel<T> {
+
+  private record Entry<T>(T item, long deadlineTick) {}
+
+  private final long tickMs;
+  private final int wheelSize;
+  private final long[] spans;
+  private final List<List<ArrayDeque<Entry<T>>>> levels;
+  // entry hiện tại của mỗi item, entry trong slot khác với entry này là entry cũ đã bị huỷ
+  private final Map<T, Entry<T>> scheduled = new HashMap<>();
+  private final List<Entry<T>> overdue = new ArrayList<>();
+  private long currentTick;
+
+  public TimingWheel(long tickMs, int wheelSize, int levelCount, long startMs) {
+    this.tickMs = tickMs;
+    this.wheelSize = wheelSize;
+    this.spans = new long[levelCount + 1];
+    this.levels = new ArrayList<>(levelCount);
+    long span = 1;
+    for (int l = 0; l <= levelCount; l++) {
+      spans[l] = span;
+      span *= wheelSize;
+    }
+    for (int l = 0; l < levelCount; l++) {
+      List<ArrayDeque<Entry<T>>> slots = new ArrayList<>(wheelSize);
+      for (int i = 0; i < wheelSize; i++) {
+        slots.add(new ArrayDeque<>());
+      }
+      levels.add(slots);
+    }
+    this.currentTick = startMs / tickMs;
+  }
+
+  /** Furthest deadline (relative to now) the wheel accepts. */
+  public long horizonMs() {
+    return (spans[levels.size()] - 1) * tickMs;
+  }
+
+  public int size() {
+    return scheduled.size();
+  }
+
+  /** false if the item is already scheduled or the deadline is past the horizon. */
+  public boolean add(T item, long deadlineMs) {
+    if (scheduled.containsKey(item)) return false;
+    long deadlineTick = Math.floorDiv(deadlineMs + tickMs - 1, tickMs);
+    if (deadlineTick - currentTick >= spans[levels.size()]) return false;
+    Entry<T> entry = new Entry<>(item, deadlineTick);
+    scheduled.put(item, entry);
+    place(entry);
+    return true;
+  }
+
+  /**
+   * Moves the item to a new deadline, scheduling it if it was not. false (and no longer scheduled)
+   * if the new deadline is past the horizon.
+   */
+  public boolean reschedule(T item, long deadlineMs) {
+    scheduled.remove(item);
+    return add(item, deadlineMs);
+  }
+
+  /** false if the item was not scheduled. */
+  public boolean cancel(T item) {
+    return scheduled.remove(item) != null;
+  }
+
+  /** Moves the wheel to {@code nowMs} and returns the items whose deadline has passed. */
+  public List<T> advance(long nowMs) {
+    List<T> expired = new ArrayList<>();
+    overdue.forEach(e -> expire(e, expired));
+    overdue.clear();
+    long nowTick = nowMs / tickMs;
+
+    // bị treo lâu hơn cả vòng lớn nhất => mọi entry đều đã quá hạn
+    if (nowTick - currentTick >= spans[levels.size()]) {
+      for (List<ArrayDeque<Entry<T>>> slots : levels) {
+        for (ArrayDeque<Entry<T>> slot : slots) {
+          slot.forEach(e -> expire(e, expired));
+          slot.clear();
+        }
+      }
+      currentTick = nowTick;
+      return expired;
+    }
+
+    while (currentTick < nowTick) {
+      currentTick++;
+      // cascade từ level cao xuống trước khi lấy slot của level 0
+      for (int l = levels.size() - 1; l >= 1; l--) {
+        if (currentTick % spans[l] != 0) continue;
+        ArrayDeque<Entry<T>> slot = levels.get(l).get(slotIndex(currentTick, l));
+        List<Entry<T>> moving = new ArrayList<>(slot);
+        slot.clear();
+        for (Entry<T> e : moving) {
+          if (isLive(e)) place(e);
+        }
+      }
+      ArrayDeque<Entry<T>> due = levels.get(0).get(slotIndex(currentTick, 0));
+      due.forEach(e -> expire(e, expired));
+      due.clear();
+    }
+    overdue.forEach(e -> expire(e, expired));
+    overdue.clear();
+    return expired;
+  }
+
+  private boolean isLive(Entry<T> entry) {
+    return scheduled.get(entry.item()) == entry;
+  }
+
+  private void expire(Entry<T> entry, List<T> expired) {
+    if (!isLive(entry)) return;
+    scheduled.remove(entry.item());
+    expired.add(entry.item());
+  }
+
+  private void place(Entry<T> entry) {
+    long delta = entry.deadlineTick() - currentTick;
+    if (delta <= 0) {
+      overdue.add(entry);
+      return;
+    }
+    for (int l = 0; l < levels.size(); l++) {
+      if (delta < spans[l + 1]) {
+        levels.get(l).get(slotIndex(entry.deadlineTick(), l)).add(entry);
+        return;
+      }
+    }
+  }
+
+  private int slotIndex(long tick, int level) {
+    return (int) ((tick / spans[level]) % wheelSize);
+  }
+}
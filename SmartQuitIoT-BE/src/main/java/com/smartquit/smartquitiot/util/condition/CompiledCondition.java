@@ -0,0 +1,10 @@
+package com.smartquit.smartquitiot.util.condition;
+
+/** A rule tree compiled by {@link ConditionCompiler}; safe to share between threads. */
+public interface CompiledCondition<C> {
+
+  boolean test(C context);
+
+  /** Evaluates every rule (no short-circuit) and reports each leaf to {@code trace}. */
+  boolean test(C context, ConditionTrace trace);
+}
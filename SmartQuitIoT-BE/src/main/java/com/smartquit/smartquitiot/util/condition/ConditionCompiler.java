@@ -0,0 +1,180 @@
+package com.smartquit.smartquitiot.util.condition;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.smartquit.smartquitiot.enums.Operator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Compiles the {@code logic}/{@code rules}/{@code field}/{@code operator}/{@code value|formula}
+ * JSON used by phase conditions and mission rules into a predicate tree. Field names are resolved
+ * to accessors once at compile time. Nothing is cached here: callers that evaluate the same
+ * condition repeatedly keep the compiled tree next to its owner (see MissionCatalogIndex).
+ *
+ * <p>Leaf semantics: the actual value must be a number and is compared with {@code value} (or the
+ * {@code formula} result, or 0 when neither is given or {@code value} is not a number). Compilers
+ * created with {@link #ConditionCompiler(Map)} additionally treat a boolean {@code value} as an
+ * equality check and a text {@code value} as a case-insensitive equality check; {@link
+ * #numeric(Map)} compilers do not.
+ */
+public class ConditionCompiler<C> {
+
+  private final Map<String, Function<C, Object>> fields;
+  private final boolean typedValues;
+
+  /** {@code fields} keys are normalized names (lower case, "_" instead of spaces). */
+  public ConditionCompiler(Map<String, Function<C, Object>> fields) {
+    this(fields, true);
+  }
+
+  private ConditionCompiler(Map<String, Function<C, Object>> fields, boolean typedValues) {
+    this.fields = Map.copyOf(fields);
+    this.typedValues = typedValues;
+  }
+
+  /** Compiler whose leaves are always numeric comparisons, as phase conditions have always been. */
+  public static <C> ConditionCompiler<C> numeric(Map<String, Function<C, Object>> fields) {
+    return new ConditionCompiler<>(fields, false);
+  }
+
+  public CompiledCondition<C> compile(JsonNode condition) {
+    return compileGroup(condition);
+  }
+
+  private Node<C> compileNode(JsonNode node) {
+    return node.has("rules") ? compileGroup(node) : compileLeaf(node);
+  }
+
+  private Group<C> compileGroup(JsonNode node) {
+    String logic = node.has("logic") ? node.get("logic").asText("AND") : "AND";
+    List<Node<C>> children = new ArrayList<>();
+    JsonNode rules = node.get("rules");
+    if (rules != null) {
+      for (JsonNode rule : rules) {
+        children.add(compileNode(rule));
+      }
+    }
+    return new Group<>(logic.toUpperCase(), children);
+  }
+
+  private Node<C> compileLeaf(JsonNode rule) {
+    String field = rule.get("field").asText();
+    String operator = rule.has("operator") ? rule.get("operator").asText() : null;
+    Function<C, Object> accessor = accessor(field);
+    JsonNode value = rule.get("value");
+
+    if (typedValues && value != null && value.isBoolean()) {
+      boolean expected = value.asBoolean();
+      return new Leaf<>(
+          field, operator, accessor, ctx -> expected, (a, e) -> a instanceof Boolean b && b == e);
+    }
+    if (typedValues && value != null && value.isTextual()) {
+      String expected = value.asText();
+      return new Leaf<>(
+          field,
+          operator,
+          accessor,
+          ctx -> expected,
+          (a, e) -> a != null && a.toString().equalsIgnoreCase((String) e));
+    }
+
+    Operator op = Operator.fromSymbol(operator);
+    Function<C, Object> expected;
+    if (rule.has("formula")) {
+      JsonNode f = rule.get("formula");
+      Function<C, Object> base = accessor(f.get("base").asText());
+      String fop = f.has("operator") ? f.get("operator").asText("*") : "*";
+      double percent = f.get("percent").asDouble();
+      expected =
+          ctx -> {
+            if (!(base.apply(ctx) instanceof Number baseNum)) return 0.0;
+            double baseValue = baseNum.doubleValue();
+            return switch (fop) {
+              case "*" -> baseValue * percent;
+              case "+" -> baseValue + percent;
+              case "-" -> baseValue - percent;
+              case "/" -> baseValue / percent;
+              default -> baseValue;
+            };
+          };
+    } else {
+      double constant = value != null && value.isNumber() ? value.asDouble() : 0.0;
+      expected = ctx -> constant;
+    }
+    return new Leaf<>(
+        field,
+        operator,
+        accessor,
+        expected,
+        (a, e) -> a instanceof Number n && compare(n.doubleValue(), op, (Double) e));
+  }
+
+  private Function<C, Object> accessor(String field) {
+    String key = field.trim().toLowerCase().replace(" ", "_");
+    return fields.getOrDefault(key, ctx -> null);
+  }
+
+  private static boolean compare(double actual, Operator op, double expected) {
+    return switch (op) {
+      case LT -> actual < expected;
+      case LE -> actual <= expected;
+      case EQ -> Double.compare(actual, expected) == 0;
+      case GE -> actual >= expected;
+      case GT -> actual > expected;
+    };
+  }
+
+  private interface Node<C> {
+    boolean eval(C ctx, ConditionTrace trace);
+  }
+
+  private record Group<C>(String logic, List<Node<C>> children)
+      implements Node<C>, CompiledCondition<C> {
+
+    @Override
+    public boolean eval(C ctx, ConditionTrace trace) {
+      boolean and = "AND".equals(logic);
+      boolean or = "OR".equals(logic);
+      boolean result = and;
+      for (Node<C> child : children) {
+        // không trace thì dừng sớm được; có trace thì chạy hết để báo đủ từng rule
+        if (trace == null && ((and && !result) || (or && result))) break;
+        boolean current = child.eval(ctx, trace);
+        if (and) result &= current;
+        else if (or) result |= current;
+      }
+      return result;
+    }
+
+    @Override
+    public boolean test(C context) {
+      return eval(context, null);
+    }
+
+    @Override
+    public boolean test(C context, ConditionTrace trace) {
+      return eval(context, trace);
+    }
+  }
+
+  private record Leaf<C>(
+      String field,
+      String operator,
+      Function<C, Object> actual,
+      Function<C, Object> expected,
+      BiPredicate<Object, Object> check)
+      implements Node<C> {
+
+    @Override
+    public boolean eval(C ctx, ConditionTrace trace) {
+      Object actualValue = actual.apply(ctx);
+      Object expectedValue = expected.apply(ctx);
+      boolean passed = check.test(actualValue, expectedValue);
+      if (trace != null) trace.rule(field, operator, expectedValue, actualValue, passed);
+      return passed;
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package com.smartquit.smartquitiot.util.condition;
+
+/** Receives the result of every leaf rule when a condition is evaluated with tracing. */
+@FunctionalInterface
+public interface ConditionTrace {
+
+  void rule(String field, String operator, Object expected, Object actual, boolean passed);
+}
@@ -0,0 +1,196 @@
+package com.smartquit.smartquitiot.cron;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.smartquit.smartquitiot.entity.Account;
+import com.smartquit.smartquitiot.entity.Appointment;
+import com.smartquit.smartquitiot.entity.Coach;
+import com.smartquit.smartquitiot.entity.CoachWorkSchedule;
+import com.smartquit.smartquitiot.entity.Member;
+import com.smartquit.smartquitiot.entity.Slot;
+import com.smartquit.smartquitiot.enums.AppointmentStatus;
+import com.smartquit.smartquitiot.enums.CoachWorkScheduleStatus;
+import com.smartquit.smartquitiot.enums.Role;
+import com.smartquit.smartquitiot.repository.AppointmentRepository;
+import com.smartquit.smartquitiot.repository.CoachRepository;
+import com.smartquit.smartquitiot.repository.CoachWorkScheduleRepository;
+import com.smartquit.smartquitiot.repository.MemberRepository;
+import com.smartquit.smartquitiot.repository.SlotRepository;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Runs the status transitions against the application schema on MariaDB: only PENDING/IN_PROGRESS
+ * rows in the catch-up window move, each to the expected status, and a second run at the same time
+ * changes nothing.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AppointmentStatusCron.class)
+class AppointmentStatusCronMariaDbTest {
+
+  @Container @ServiceConnection
+  static final MariaDBContainer<?> MARIADB = new MariaDBContainer<>("mariadb:11.4");
+
+  private static final LocalDate TODAY = LocalDate.of(2025, 6, 10);
+  private static final LocalDateTime NOW = TODAY.atTime(10, 15);
+
+  @Autowired private AppointmentStatusCron cron;
+  @Autowired private AppointmentRepository appointmentRepository;
+  @Autowired private CoachRepository coachRepository;
+  @Autowired private MemberRepository memberRepository;
+  @Autowired private SlotRepository slotRepository;
+  @Autowired private CoachWorkScheduleRepository coachWorkScheduleRepository;
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  private Coach coach;
+  private Member member;
+  private Slot ended;
+  private Slot running;
+  private Slot upcoming;
+  private Slot overnight;
+
+  @BeforeEach
+  void seed() {
+    coach = new Coach();
+    coach.setFirstName("Coach");
+    coach.setLastName("Cron");
+    coach.setAccount(account("coach_cron", Role.COACH));
+    coach = coachRepository.save(coach);
+    member = new Member();
+    member.setFirstName("Member");
+    member.setLastName("Cron");
+    member.setAccount(account("member_cron", Role.MEMBER));
+    member = memberRepository.save(member);
+
+    ended = slot(8, 0, 8, 30);
+    running = slot(10, 0, 10, 30);
+    upcoming = slot(11, 0, 11, 30);
+    // qua nửa đêm: kết thúc lúc 00:30 ngày hôm sau
+    overnight = slot(23, 30, 0, 30);
+  }
+
+  @Test
+  void onlyOpenAppointmentsInTheWindow_moveToTheExpectedStatus() {
+    Map<String, Integer> ids = new HashMap<>();
+    ids.put("missed", appointment(TODAY, ended, AppointmentStatus.PENDING));
+    ids.put("endedRunning", appointment(TODAY, ended, AppointmentStatus.IN_PROGRESS));
+    ids.put("starting", appointment(TODAY, running, AppointmentStatus.PENDING));
+    ids.put("alreadyRunning", appointment(TODAY, running, AppointmentStatus.IN_PROGRESS));
+    ids.put("future", appointment(TODAY, upcoming, AppointmentStatus.PENDING));
+    ids.put("cancelledEnded", appointment(TODAY, ended, AppointmentStatus.CANCELLED));
+    ids.put("cancelledRunning", appointment(TODAY, running, AppointmentStatus.CANCELLED));
+    ids.put("completed", appointment(TODAY, ended, AppointmentStatus.COMPLETED));
+    ids.put(
+        "overnightYesterday",
+        appointment(TODAY.minusDays(1), overnight, AppointmentStatus.PENDING));
+    ids.put("overnightToday", appointment(TODAY, overnight, AppointmentStatus.PENDING));
+    // ngoài cửa sổ catch-up 7 ngày
+    ids.put("tooOld", appointment(TODAY.minusDays(8), ended, AppointmentStatus.PENDING));
+
+    AppointmentStatusCron.Transitions first = cron.transitionStatuses(NOW);
+
+    assertThat(first.completed())
+        .containsExactlyInAnyOrder(
+            ids.get("missed"), ids.get("endedRunning"), ids.get("overnightYesterday"));
+    assertThat(first.started()).containsExactly(ids.get("starting"));
+    assertThat(statuses(ids))
+        .containsEntry("missed", "COMPLETED")
+        .containsEntry("endedRunning", "COMPLETED")
+        .containsEntry("overnightYesterday", "COMPLETED")
+        .containsEntry("starting", "IN_PROGRESS")
+        .containsEntry("alreadyRunning", "IN_PROGRESS")
+        .containsEntry("future", "PENDING")
+        .containsEntry("cancelledEnded", "CANCELLED")
+        .containsEntry("cancelledRunning", "CANCELLED")
+        .containsEntry("completed", "COMPLETED")
+        .containsEntry("overnightToday", "PENDING")
+        .containsEntry("tooOld", "PENDING");
+
+    // chạy lại cùng thời điểm: không row nào bị chọn hay đổi nữa
+    Map<String, String> before = statuses(ids);
+    AppointmentStatusCron.Transitions second = cron.transitionStatuses(NOW);
+    assertThat(second.started()).isEmpty();
+    assertThat(second.completed()).isEmpty();
+    assertThat(statuses(ids)).isEqualTo(before);
+  }
+
+  @Test
+  void laterRun_completesWhatStarted_withoutTouchingClosedRows() {
+    int starting = appointment(TODAY, running, AppointmentStatus.PENDING);
+    int future = appointment(TODAY, upcoming, AppointmentStatus.PENDING);
+    int cancelled = appointment(TODAY, running, AppointmentStatus.CANCELLED);
+
+    assertThat(cron.transitionStatuses(NOW).started()).containsExactly(starting);
+
+    // 10:30 đúng lúc slot kết thúc => COMPLETED, slot 11:00 chưa bắt đầu
+    AppointmentStatusCron.Transitions atEnd = cron.transitionStatuses(TODAY.atTime(10, 30));
+    assertThat(atEnd.completed()).containsExactly(starting);
+    assertThat(atEnd.started()).isEmpty();
+
+    AppointmentStatusCron.Transitions atNext = cron.transitionStatuses(TODAY.atTime(11, 0));
+    assertThat(atNext.started()).containsExactly(future);
+    assertThat(atNext.completed()).isEmpty();
+    assertThat(status(starting)).isEqualTo("COMPLETED");
+    assertThat(status(cancelled)).isEqualTo("CANCELLED");
+  }
+
+  private Map<String, String> statuses(Map<String, Integer> ids) {
+    Map<String, String> result = new HashMap<>();
+    ids.forEach((name, id) -> result.put(name, status(id)));
+    return result;
+  }
+
+  private String status(int id) {
+    return jdbcTemplate.queryForObject(
+        "SELECT appointment_status FROM appointment WHERE id = ?", String.class, id);
+  }
+
+  private Slot slot(int startHour, int startMinute, int endHour, int endMinute) {
+    return slotRepository.save(
+        new Slot(0, LocalTime.of(startHour, startMinute), LocalTime.of(endHour, endMinute)));
+  }
+
+  private int appointment(LocalDate date, Slot slot, AppointmentStatus status) {
+    CoachWorkSchedule cws = new CoachWorkSchedule();
+    cws.setCoach(coach);
+    cws.setSlot(slot);
+    cws.setDate(date);
+    cws.setStatus(CoachWorkScheduleStatus.BOOKED);
+    cws = coachWorkScheduleRepository.save(cws);
+
+    Appointment appointment = new Appointment();
+    appointment.setName("Cron test");
+    appointment.setDate(date);
+    appointment.setCoach(coach);
+    appointment.setMember(member);
+    appointment.setCoachWorkSchedule(cws);
+    appointment.setAppointmentStatus(status);
+    appointment.setActiveScheduleId(status == AppointmentStatus.CANCELLED ? null : cws.getId());
+    return appointmentRepository.saveAndFlush(appointment).getId();
+  }
+
+  private static Account account(String username, Role role) {
+    Account account = new Account();
+    account.setUsername(username);
+    account.setEmail(username + "@smartquit.test");
+    account.setPassword("secret");
+    account.setRole(role);
+    return account;
+  }
+}
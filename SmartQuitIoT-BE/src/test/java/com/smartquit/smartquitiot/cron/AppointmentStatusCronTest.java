@@ -0,0 +1,78 @@
+package com.smartquit.smartquitiot.cron;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.smartquit.smartquitiot.repository.AppointmentRepository;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AppointmentStatusCronTest {
+
+  private static final LocalDate TODAY = LocalDate.of(2025, 6, 10);
+  private static final LocalDateTime NOW = TODAY.atTime(10, 15);
+  private static final List<String> OPEN = List.of("PENDING", "IN_PROGRESS");
+
+  @Mock private AppointmentRepository appointmentRepository;
+
+  private AppointmentStatusCron cron;
+
+  @BeforeEach
+  void setUp() {
+    cron = new AppointmentStatusCron(appointmentRepository, 7);
+  }
+
+  @Test
+  void completesEndedOpenRows_thenStartsPendingOnes() {
+    when(appointmentRepository.lockEndedIds(OPEN, TODAY.minusDays(7), TODAY, NOW))
+        .thenReturn(List.of(1, 2));
+    when(appointmentRepository.lockStartedIds(TODAY.minusDays(7), TODAY, NOW))
+        .thenReturn(List.of(3));
+
+    AppointmentStatusCron.Transitions transitions = cron.transitionStatuses(NOW);
+
+    assertThat(transitions.completed()).containsExactly(1, 2);
+    assertThat(transitions.started()).containsExactly(3);
+    InOrder inOrder = inOrder(appointmentRepository);
+    inOrder.verify(appointmentRepository).lockEndedIds(any(), any(), any(), any());
+    inOrder.verify(appointmentRepository).updateStatusByIds(List.of(1, 2), OPEN, "COMPLETED");
+    inOrder.verify(appointmentRepository).lockStartedIds(any(), any(), any());
+    // chỉ PENDING mới được chuyển sang IN_PROGRESS
+    inOrder
+        .verify(appointmentRepository)
+        .updateStatusByIds(List.of(3), List.of("PENDING"), "IN_PROGRESS");
+    verifyNoMoreInteractions(appointmentRepository);
+  }
+
+  @Test
+  void nothingDue_updatesNothing() {
+    when(appointmentRepository.lockEndedIds(any(), any(), any(), any())).thenReturn(List.of());
+    when(appointmentRepository.lockStartedIds(any(), any(), any())).thenReturn(List.of());
+
+    AppointmentStatusCron.Transitions transitions = cron.transitionStatuses(NOW);
+
+    assertThat(transitions.completed()).isEmpty();
+    assertThat(transitions.started()).isEmpty();
+    verify(appointmentRepository, never()).updateStatusByIds(anyList(), anyList(), any());
+  }
+
+  @Test
+  void scheduledRun_swallowsFailures() {
+    when(appointmentRepository.lockEndedIds(any(), any(), any(), any()))
+        .thenThrow(new IllegalStateException("db down"));
+
+    cron.updateAppointmentStatuses();
+
+    verify(appointmentRepository, never()).updateStatusByIds(anyList(), anyList(), any());
+  }
+}
@@ -0,0 +1,98 @@
+package com.smartquit.smartquitiot.cron;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.smartquit.smartquitiot.entity.DiaryRecord;
+import com.smartquit.smartquitiot.entity.Member;
+import com.smartquit.smartquitiot.entity.Metric;
+import com.smartquit.smartquitiot.repository.DiaryRecordRepository;
+import com.smartquit.smartquitiot.repository.MetricRepository;
+import com.smartquit.smartquitiot.util.MetricAggregateUtils;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MetricAggregateReconcileCronTest {
+
+  @Mock private MetricRepository metricRepository;
+  @Mock private DiaryRecordRepository diaryRecordRepository;
+
+  @InjectMocks private MetricAggregateReconcileCron cron;
+
+  private static Metric metric(Integer memberId) {
+    Metric metric = new Metric();
+    if (memberId != null) {
+      Member member = new Member();
+      member.setId(memberId);
+      metric.setMember(member);
+    }
+    return metric;
+  }
+
+  private static DiaryRecord record(int craving, boolean haveSmoked, int cigarettes) {
+    DiaryRecord record = new DiaryRecord();
+    record.setCravingLevel(craving);
+    record.setHaveSmoked(haveSmoked);
+    record.setCigarettesSmoked(cigarettes);
+    return record;
+  }
+
+  @Test
+  void onlyDriftedMetrics_areRebuiltAndSaved() {
+    // member 1 khớp DB, member 2 lệch, member 3 không còn record, metric 4 không có member
+    Metric inSync = metric(1);
+    MetricAggregateUtils.applyRecord(inSync, record(4, false, 0), 1);
+    MetricAggregateUtils.applyRecord(inSync, record(6, true, 3), 1);
+    Metric drifted = metric(2);
+    MetricAggregateUtils.applyRecord(drifted, record(9, true, 10), 1);
+    Metric orphaned = metric(3);
+    MetricAggregateUtils.applyRecord(orphaned, record(2, false, 0), 1);
+    Metric noMember = metric(null);
+
+    when(diaryRecordRepository.aggregateGroupByMember())
+        .thenReturn(
+            List.of(
+                new Object[] {1, 2L, 10L, 0L, 0L, 0L, 3L, 1L, 0.0},
+                new Object[] {2, 2L, 12L, 0L, 0L, 0L, 4L, 1L, 5.0}));
+    when(metricRepository.findAll()).thenReturn(List.of(inSync, drifted, orphaned, noMember));
+
+    cron.reconcileMetricAggregates();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<Metric>> saved = ArgumentCaptor.forClass(List.class);
+    verify(metricRepository).saveAll(saved.capture());
+    assertThat(saved.getValue()).containsExactly(drifted, orphaned);
+
+    assertThat(drifted.getDiaryRecordCount()).isEqualTo(2);
+    assertThat(drifted.getSumCravingLevel()).isEqualTo(12);
+    assertThat(drifted.getTotalCigarettesSmoked()).isEqualTo(4);
+    assertThat(drifted.getSmokeFreeDayCount()).isEqualTo(1);
+    assertThat(drifted.getNrtTotalSpent()).isEqualTo(5.0);
+    assertThat(drifted.getAvgCravingLevel()).isEqualTo(6.0);
+    assertThat(drifted.getAvgCigarettesPerDay()).isEqualTo(2.0);
+
+    assertThat(orphaned.getDiaryRecordCount()).isZero();
+    assertThat(orphaned.getSumCravingLevel()).isZero();
+    assertThat(orphaned.getSmokeFreeDayCount()).isZero();
+  }
+
+  @Test
+  void inSyncMetrics_areNotSaved() {
+    Metric metric = metric(1);
+    MetricAggregateUtils.applyRecord(metric, record(4, false, 0), 1);
+    when(diaryRecordRepository.aggregateGroupByMember())
+        .thenReturn(List.<Object[]>of(new Object[] {1, 1L, 4L, 0L, 0L, 0L, 0L, 1L, 0.0}));
+    when(metricRepository.findAll()).thenReturn(List.of(metric, metric(5)));
+
+    cron.reconcileMetricAggregates();
+
+    verify(metricRepository, never()).saveAll(any());
+  }
+}
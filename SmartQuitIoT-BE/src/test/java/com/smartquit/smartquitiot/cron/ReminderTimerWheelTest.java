@@ -0,0 +1,159 @@
+package com.smartquit.smartquitiot.cron;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.smartquit.smartquitiot.repository.ReminderQueueRepository;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ReminderTimerWheelTest {
+
+  private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 10, 8, 0);
+
+  @Mock private ReminderQueueRepository reminderQueueRepository;
+  @Mock private ReminderDispatcher reminderDispatcher;
+
+  private final AtomicLong clock = new AtomicLong(millis(NOW));
+  private ReminderTimerWheel timerWheel;
+
+  @BeforeEach
+  void setUp() {
+    timerWheel =
+        new ReminderTimerWheel(
+            reminderQueueRepository, reminderDispatcher, Duration.ofMinutes(10), clock::get);
+  }
+
+  private static long millis(LocalDateTime time) {
+    return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  // chạy tick như ticker thật, mỗi giây một lần
+  private void tickUntil(LocalDateTime time) {
+    while (clock.get() < millis(time)) {
+      clock.addAndGet(1000);
+      timerWheel.tick();
+    }
+  }
+
+  @Test
+  void scheduledReminder_isDispatchedOnItsSecond() {
+    timerWheel.schedule(1, NOW.plusSeconds(5));
+    timerWheel.schedule(2, NOW.plusSeconds(5).plusNanos(1_000_000));
+
+    tickUntil(NOW.plusSeconds(4));
+    verifyNoInteractions(reminderDispatcher);
+
+    tickUntil(NOW.plusSeconds(5));
+    verify(reminderDispatcher).dispatchNow(List.of(1));
+    tickUntil(NOW.plusSeconds(6));
+    verify(reminderDispatcher).dispatchNow(List.of(2));
+    verifyNoMoreInteractions(reminderDispatcher);
+  }
+
+  @Test
+  void reminderMinutesAway_cascadesAndFiresOnTime() {
+    timerWheel.schedule(1, NOW.plusMinutes(7).plusSeconds(30));
+
+    tickUntil(NOW.plusMinutes(7).plusSeconds(29));
+    verifyNoInteractions(reminderDispatcher);
+
+    tickUntil(NOW.plusMinutes(7).plusSeconds(30));
+    verify(reminderDispatcher).dispatchNow(List.of(1));
+  }
+
+  @Test
+  void reminderPastHorizon_isLeftToHydrate() {
+    timerWheel.schedule(1, NOW.plusMinutes(11));
+    timerWheel.schedule(2, null);
+
+    tickUntil(NOW.plusMinutes(12));
+    verifyNoInteractions(reminderDispatcher);
+  }
+
+  @Test
+  void schedulingAgain_movesTheReminder() {
+    timerWheel.schedule(1, NOW.plusSeconds(5));
+    timerWheel.schedule(1, NOW.plusSeconds(20));
+
+    tickUntil(NOW.plusSeconds(19));
+    verifyNoInteractions(reminderDispatcher);
+    tickUntil(NOW.plusMinutes(1));
+    verify(reminderDispatcher, times(1)).dispatchNow(List.of(1));
+    verifyNoMoreInteractions(reminderDispatcher);
+  }
+
+  @Test
+  void reschedulingPastHorizon_dropsTheReminder() {
+    timerWheel.schedule(1, NOW.plusSeconds(5));
+    timerWheel.schedule(1, NOW.plusMinutes(30));
+
+    tickUntil(NOW.plusMinutes(1));
+    verifyNoInteractions(reminderDispatcher);
+  }
+
+  @Test
+  void cancelledReminder_isNotDispatched() {
+    timerWheel.schedule(1, NOW.plusSeconds(5));
+    timerWheel.schedule(2, NOW.plusSeconds(5));
+    timerWheel.cancel(1);
+
+    tickUntil(NOW.plusSeconds(10));
+    verify(reminderDispatcher).dispatchNow(List.of(2));
+    verifyNoMoreInteractions(reminderDispatcher);
+  }
+
+  @Test
+  void hydrate_loadsPendingWindow_andSkipsRemindersAlreadyInTheWheel() {
+    timerWheel.schedule(1, NOW.plusSeconds(30));
+    when(reminderQueueRepository.findPendingScheduledBetween(
+            NOW.minusMinutes(1), NOW.plusMinutes(10)))
+        .thenReturn(
+            List.of(
+                new Object[] {1, NOW.plusSeconds(3)},
+                new Object[] {2L, NOW.plusSeconds(3)},
+                new Object[] {3, NOW.minusSeconds(30)}));
+
+    timerWheel.hydrate();
+
+    // reminder quá hạn đi ngay tick đầu
+    tickUntil(NOW.plusSeconds(1));
+    verify(reminderDispatcher).dispatchNow(List.of(3));
+    tickUntil(NOW.plusSeconds(3));
+    verify(reminderDispatcher).dispatchNow(List.of(2));
+    // reminder 1 giữ deadline đã schedule
+    tickUntil(NOW.plusSeconds(30));
+    verify(reminderDispatcher).dispatchNow(List.of(1));
+    verifyNoMoreInteractions(reminderDispatcher);
+  }
+
+  @Test
+  void tick_survivesDispatcherFailure() {
+    timerWheel.schedule(1, NOW.plusSeconds(1));
+    timerWheel.schedule(2, NOW.plusSeconds(2));
+    doThrow(new IllegalStateException("boom")).when(reminderDispatcher).dispatchNow(List.of(1));
+
+    tickUntil(NOW.plusSeconds(2));
+    verify(reminderDispatcher).dispatchNow(List.of(2));
+  }
+
+  @Test
+  void hydrate_survivesRepositoryFailure() {
+    when(reminderQueueRepository.findPendingScheduledBetween(any(), any()))
+        .thenThrow(new IllegalStateException("db down"));
+
+    timerWheel.hydrate();
+    timerWheel.schedule(1, NOW.plusSeconds(1));
+    tickUntil(NOW.plusSeconds(1));
+    verify(reminderDispatcher).dispatchNow(List.of(1));
+  }
+}
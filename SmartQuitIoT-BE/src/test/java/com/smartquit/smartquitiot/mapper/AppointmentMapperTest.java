@@ -0,0 +1,112 @@
+package com.smartquit.smartquitiot.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.smartquit.smartquitiot.dto.response.AppointmentResponse;
+import com.smartquit.smartquitiot.entity.*;
+import com.smartquit.smartquitiot.enums.AppointmentStatus;
+import com.smartquit.smartquitiot.enums.CancelledBy;
+import com.smartquit.smartquitiot.repository.AppointmentListRow;
+import java.time.*;
+import org.junit.jupiter.api.Test;
+
+class AppointmentMapperTest {
+
+  private final AppointmentMapper mapper = new AppointmentMapper();
+
+  private static final LocalDate DATE = LocalDate.of(2025, 3, 10);
+  private static final LocalDateTime CREATED = LocalDateTime.of(2025, 3, 1, 8, 0);
+  private static final LocalDateTime CANCELLED = LocalDateTime.of(2025, 3, 2, 9, 0);
+
+  private static Appointment appointment(boolean withMember, boolean withSlot) {
+    Coach coach = new Coach();
+    coach.setId(10);
+    coach.setFirstName("Jane");
+    coach.setLastName(null);
+
+    Appointment a = new Appointment();
+    a.setId(50);
+    a.setDate(DATE);
+    a.setAppointmentStatus(AppointmentStatus.CANCELLED);
+    a.setCancelledBy(CancelledBy.MEMBER);
+    a.setCancelledAt(CANCELLED);
+    a.setCreatedAt(CREATED);
+    a.setCoach(coach);
+    if (withMember) {
+      Member member = new Member();
+      member.setId(1);
+      member.setFirstName("John");
+      member.setLastName("Doe");
+      a.setMember(member);
+    }
+    CoachWorkSchedule cws = new CoachWorkSchedule();
+    if (withSlot) cws.setSlot(new Slot(5, LocalTime.of(10, 0), LocalTime.of(10, 30)));
+    a.setCoachWorkSchedule(cws);
+    return a;
+  }
+
+  private static AppointmentListRow row(boolean withMember, boolean withSlot) {
+    return new AppointmentListRow(
+        50,
+        DATE,
+        AppointmentStatus.CANCELLED,
+        CancelledBy.MEMBER,
+        CANCELLED,
+        CREATED,
+        10,
+        "Jane",
+        null,
+        withMember ? 1 : null,
+        withMember ? "John" : null,
+        withMember ? "Doe" : null,
+        withSlot ? 5 : null,
+        withSlot ? LocalTime.of(10, 0) : null,
+        withSlot ? LocalTime.of(10, 30) : null,
+        77);
+  }
+
+  @Test
+  void entityAndListRow_mapToTheSameResponse() {
+    for (boolean withMember : new boolean[] {true, false}) {
+      for (boolean withSlot : new boolean[] {true, false}) {
+        AppointmentResponse fromEntity =
+            mapper.toResponseWithRuntime(appointment(withMember, withSlot), "CANCELLED");
+        AppointmentResponse fromRow = mapper.toResponse(row(withMember, withSlot), "CANCELLED");
+
+        // hasRated chỉ có ở row (entity path set sau trong service)
+        assertThat(fromRow)
+            .usingRecursiveComparison()
+            .ignoringFields("hasRated")
+            .isEqualTo(fromEntity);
+        assertThat(fromRow.isHasRated()).isTrue();
+      }
+    }
+  }
+
+  @Test
+  void toResponse_fillsNamesChannelAndJoinWindow() {
+    AppointmentResponse response = mapper.toResponse(appointment(true, true));
+
+    assertThat(response.getCoachName()).isEqualTo("Jane");
+    assertThat(response.getMemberId()).isEqualTo(1);
+    assertThat(response.getMemberName()).isEqualTo("John Doe");
+    assertThat(response.getChannelName()).isEqualTo("appointment_50");
+    assertThat(response.getMeetingUrl()).isEqualTo("/meeting/50");
+    ZoneId zone = ZoneId.of("Asia/Ho_Chi_Minh");
+    assertThat(response.getJoinWindowStart())
+        .isEqualTo(LocalDateTime.of(DATE, LocalTime.of(9, 55)).atZone(zone).toInstant());
+    assertThat(response.getJoinWindowEnd())
+        .isEqualTo(LocalDateTime.of(DATE, LocalTime.of(10, 35)).atZone(zone).toInstant());
+  }
+
+  @Test
+  void toResponse_withoutSlotOrMember_leavesThemEmpty() {
+    AppointmentResponse response = mapper.toResponse(appointment(false, false));
+
+    assertThat(response.getSlotId()).isZero();
+    assertThat(response.getMemberId()).isNull();
+    assertThat(response.getMemberName()).isNull();
+    assertThat(response.getJoinWindowStart()).isNull();
+    assertThat(response.getJoinWindowEnd()).isNull();
+  }
+}
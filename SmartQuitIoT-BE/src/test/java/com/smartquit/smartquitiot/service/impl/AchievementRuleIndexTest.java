@@ -0,0 +1,179 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartquit.smartquitiot.entity.Achievement;
+import com.smartquit.smartquitiot.repository.AchievementRepository;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AchievementRuleIndexTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Mock private AchievementRepository achievementRepository;
+
+  @InjectMocks private AchievementRuleIndex index;
+
+  private static JsonNode json(String json) {
+    try {
+      return json == null ? null : MAPPER.readTree(json.replace('\'', '"'));
+    } catch (Exception e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static Achievement achievement(int id, String condition) {
+    Achievement a = new Achievement();
+    a.setId(id);
+    a.setName("A" + id);
+    a.setCondition(json(condition));
+    return a;
+  }
+
+  private static Achievement rule(int id, String field, String operator, int value) {
+    return achievement(
+        id, "{'field':'" + field + "','operator':'" + operator + "','value':" + value + "}");
+  }
+
+  private List<Integer> matchingIds(String field, int value) {
+    return index.matching(field, value).stream().map(r -> r.achievement().getId()).toList();
+  }
+
+  @Test
+  void thresholdBoundaries_inclusiveAndExclusive() {
+    when(achievementRepository.findAll())
+        .thenReturn(List.of(rule(1, "streaks", ">=", 7), rule(2, "streaks", ">", 7)));
+
+    assertThat(matchingIds("streaks", 6)).isEmpty();
+    assertThat(matchingIds("streaks", 7)).isEqualTo(List.of(1));
+    assertThat(matchingIds("streaks", 8)).isEqualTo(List.of(1, 2));
+  }
+
+  @Test
+  void monotonicRules_areReturnedLowestThresholdFirst() {
+    when(achievementRepository.findAll())
+        .thenReturn(
+            List.of(
+                rule(1, "streaks", ">=", 30),
+                rule(2, "streaks", ">=", 1),
+                rule(3, "streaks", ">", 6),
+                rule(4, "streaks", ">=", 7),
+                rule(5, "streaks", ">=", 100)));
+
+    assertThat(matchingIds("streaks", 0)).isEmpty();
+    assertThat(matchingIds("streaks", 7)).isEqualTo(List.of(2, 3, 4));
+    assertThat(matchingIds("streaks", 30)).isEqualTo(List.of(2, 3, 4, 1));
+    assertThat(matchingIds("streaks", Integer.MAX_VALUE)).isEqualTo(List.of(2, 3, 4, 1, 5));
+  }
+
+  @Test
+  void fields_areIndexedSeparately() {
+    when(achievementRepository.findAll())
+        .thenReturn(
+            List.of(
+                rule(1, "streaks", ">=", 3),
+                rule(2, "money_saved", ">=", 3),
+                rule(3, "money_saved", ">=", 500)));
+
+    assertThat(matchingIds("streaks", 500)).isEqualTo(List.of(1));
+    assertThat(matchingIds("money_saved", 3)).isEqualTo(List.of(2));
+    assertThat(matchingIds("money_saved", 500)).isEqualTo(List.of(2, 3));
+    assertThat(matchingIds("posts", 500)).isEmpty();
+  }
+
+  @Test
+  void otherOperators_areCheckedAfterMonotonicRules() {
+    when(achievementRepository.findAll())
+        .thenReturn(
+            List.of(
+                rule(1, "streaks", "<=", 2),
+                rule(2, "streaks", "==", 5),
+                rule(3, "streaks", "=", 5),
+                rule(4, "streaks", "!=", 5),
+                rule(5, "streaks", "<", 2),
+                rule(6, "streaks", "~", 5),
+                rule(7, "streaks", ">=", 1)));
+
+    assertThat(matchingIds("streaks", 1)).isEqualTo(List.of(7, 1, 4, 5));
+    assertThat(matchingIds("streaks", 2)).isEqualTo(List.of(7, 1, 4));
+    assertThat(matchingIds("streaks", 5)).isEqualTo(List.of(7, 2, 3));
+  }
+
+  @Test
+  void matching_agreesWithCheckingEveryRule() {
+    String[] operators = {">=", ">", "<=", "<", "==", "!="};
+    List<Achievement> achievements = new ArrayList<>();
+    int id = 1;
+    for (String op : operators) {
+      for (int threshold : new int[] {-1, 0, 3, 3, 10}) {
+        achievements.add(rule(id++, "streaks", op, threshold));
+      }
+    }
+    when(achievementRepository.findAll()).thenReturn(achievements);
+
+    for (int value = -3; value <= 12; value++) {
+      List<Integer> expected = new ArrayList<>();
+      for (Achievement a : achievements) {
+        int target = a.getCondition().get("value").asInt();
+        boolean passed =
+            switch (a.getCondition().get("operator").asText()) {
+              case ">=" -> value >= target;
+              case ">" -> value > target;
+              case "<=" -> value <= target;
+              case "<" -> value < target;
+              case "==" -> value == target;
+              default -> value != target;
+            };
+        if (passed) expected.add(a.getId());
+      }
+      assertThat(matchingIds("streaks", value))
+          .as("value %d", value)
+          .containsExactlyInAnyOrderElementsOf(expected);
+    }
+  }
+
+  @Test
+  void invalidOrDeletedConditions_areSkipped_butStayInCatalog() {
+    Achievement deleted = rule(5, "streaks", ">=", 1);
+    deleted.setDeleted(true);
+    when(achievementRepository.findAll())
+        .thenReturn(
+            List.of(
+                deleted,
+                achievement(4, "[{'field':'streaks','operator':'>=','value':2}]"),
+                achievement(3, "{'field':'streaks','operator':'>='}"),
+                achievement(2, "{'operator':'>=','value':1}"),
+                achievement(1, null),
+                achievement(6, "{'field':'streaks','value':1}")));
+
+    // condition dạng mảng lấy phần tử đầu
+    assertThat(matchingIds("streaks", 10)).isEqualTo(List.of(4));
+    assertThat(index.catalog()).extracting(Achievement::getId).containsExactly(1, 2, 3, 4, 5, 6);
+  }
+
+  @Test
+  void snapshot_isReused_untilInvalidated() {
+    when(achievementRepository.findAll())
+        .thenReturn(List.of(rule(1, "streaks", ">=", 7)))
+        .thenReturn(List.of(rule(1, "streaks", ">=", 3), rule(2, "streaks", ">=", 5)));
+
+    assertThat(matchingIds("streaks", 5)).isEmpty();
+    assertThat(matchingIds("streaks", 7)).isEqualTo(List.of(1));
+    verify(achievementRepository, times(1)).findAll();
+
+    index.invalidate();
+    assertThat(matchingIds("streaks", 5)).isEqualTo(List.of(1, 2));
+    assertThat(index.catalog()).hasSize(2);
+    verify(achievementRepository, times(2)).findAll();
+  }
+}
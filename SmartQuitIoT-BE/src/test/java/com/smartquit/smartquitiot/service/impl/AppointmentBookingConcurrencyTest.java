@@ -0,0 +1,234 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.smartquit.smartquitiot.dto.request.AppointmentRequest;
+import com.smartquit.smartquitiot.entity.Account;
+import com.smartquit.smartquitiot.entity.Coach;
+import com.smartquit.smartquitiot.entity.CoachWorkSchedule;
+import com.smartquit.smartquitiot.entity.Member;
+import com.smartquit.smartquitiot.entity.Slot;
+import com.smartquit.smartquitiot.enums.CoachWorkScheduleStatus;
+import com.smartquit.smartquitiot.enums.NotificationType;
+import com.smartquit.smartquitiot.enums.Role;
+import com.smartquit.smartquitiot.mapper.AppointmentMapper;
+import com.smartquit.smartquitiot.repository.CoachRepository;
+import com.smartquit.smartquitiot.repository.CoachWorkScheduleRepository;
+import com.smartquit.smartquitiot.repository.MemberRepository;
+import com.smartquit.smartquitiot.repository.SlotRepository;
+import com.smartquit.smartquitiot.service.AgoraService;
+import com.smartquit.smartquitiot.service.AppointmentService;
+import com.smartquit.smartquitiot.service.NotificationService;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Many members racing for the slots of one coach through the real bookAppointment, against the
+ * application schema on MariaDB. Each slot must end up with exactly one appointment under both
+ * booking protocols; throughput is only logged.
+ */
+@Slf4j
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({AppointmentServiceImpl.class, AppointmentMapper.class})
+// service tự mở/commit transaction như khi chạy thật
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AppointmentBookingConcurrencyTest {
+
+  private static final int MEMBERS = 32;
+  private static final int SLOTS = 20;
+  private static final AtomicInteger RUN = new AtomicInteger();
+
+  @Container @ServiceConnection
+  static final MariaDBContainer<?> MARIADB = new MariaDBContainer<>("mariadb:11.4");
+
+  @Autowired private AppointmentService appointmentService;
+  @Autowired private MemberRepository memberRepository;
+  @Autowired private CoachRepository coachRepository;
+  @Autowired private SlotRepository slotRepository;
+  @Autowired private CoachWorkScheduleRepository coachWorkScheduleRepository;
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @MockitoBean private BookingQuotaCounter bookingQuotaCounter;
+  @MockitoBean private CoachAvailabilityIndex coachAvailabilityIndex;
+  @MockitoBean private NotificationService notificationService;
+  @MockitoBean private AgoraService agoraService;
+
+  private final LocalDate date = LocalDate.now().plusDays(1);
+
+  @BeforeEach
+  void allowEveryBooking() {
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any())).thenReturn(true);
+  }
+
+  @ParameterizedTest(name = "optimistic={0}")
+  @ValueSource(booleans = {true, false})
+  void racingMembers_neverDoubleBookASlot(boolean optimistic) throws Exception {
+    Object target = AopTestUtils.getTargetObject(appointmentService);
+    ReflectionTestUtils.setField(target, "optimisticBooking", optimistic);
+    int run = RUN.incrementAndGet();
+    Coach coach = seedCoach(run);
+    List<Integer> slotIds = seedSchedule(coach);
+    List<Integer> memberAccountIds = seedMembers(run);
+
+    AtomicInteger booked = new AtomicInteger();
+    AtomicInteger attempts = new AtomicInteger();
+    ConcurrentLinkedQueue<Exception> unexpected = new ConcurrentLinkedQueue<>();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(MEMBERS);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int accountId : memberAccountIds) {
+      futures.add(
+          pool.submit(
+              () -> {
+                List<Integer> order = new ArrayList<>(slotIds);
+                Collections.shuffle(order);
+                start.await();
+                // mỗi member thử hết các slot, ai nhanh tay thì được
+                for (int slotId : order) {
+                  attempts.incrementAndGet();
+                  try {
+                    appointmentService.bookAppointment(accountId, request(coach, slotId));
+                    booked.incrementAndGet();
+                  } catch (IllegalStateException e) {
+                    // slot đã có người đặt
+                  } catch (Exception e) {
+                    unexpected.add(e);
+                  }
+                }
+                return null;
+              }));
+    }
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Future<?> f : futures) f.get();
+    long nanos = System.nanoTime() - begin;
+    pool.shutdown();
+
+    log.info(
+        "Booking race (optimistic={}): {} booked of {} attempts in {} ms, {} attempts/s",
+        optimistic,
+        booked.get(),
+        attempts.get(),
+        nanos / 1_000_000,
+        Math.round(attempts.get() * 1_000_000_000.0 / nanos));
+
+    assertThat(unexpected).isEmpty();
+    assertThat(booked).hasValue(SLOTS);
+    Map<String, Object> appointments =
+        jdbcTemplate.queryForMap(
+            "SELECT COUNT(*) AS total, COUNT(DISTINCT coach_work_schedule_id) AS schedules,"
+                + " SUM(active_schedule_id = coach_work_schedule_id) AS keyed"
+                + " FROM appointment WHERE coach_id = ? AND appointment_status <> 'CANCELLED'",
+            coach.getId());
+    assertThat(((Number) appointments.get("total")).intValue()).isEqualTo(SLOTS);
+    assertThat(((Number) appointments.get("schedules")).intValue()).isEqualTo(SLOTS);
+    assertThat(((Number) appointments.get("keyed")).intValue()).isEqualTo(SLOTS);
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM coach_work_schedule WHERE coach_id = ? AND status = 'BOOKED'",
+                Integer.class,
+                coach.getId()))
+        .isEqualTo(SLOTS);
+    // notification gửi sau commit trên thread riêng, đúng 1 lần cho mỗi lịch hẹn
+    verify(notificationService, timeout(10_000).times(SLOTS))
+        .saveAndPublish(
+            any(Account.class),
+            eq(NotificationType.APPOINTMENT_BOOKED),
+            anyString(),
+            anyString(),
+            isNull(),
+            anyString(),
+            anyString());
+  }
+
+  private AppointmentRequest request(Coach coach, int slotId) {
+    AppointmentRequest request = new AppointmentRequest();
+    request.setCoachId(coach.getId());
+    request.setSlotId(slotId);
+    request.setDate(date);
+    return request;
+  }
+
+  private Coach seedCoach(int run) {
+    Coach coach = new Coach();
+    coach.setFirstName("Coach");
+    coach.setLastName("Run" + run);
+    coach.setAccount(account("coach" + run, Role.COACH));
+    return coachRepository.save(coach);
+  }
+
+  private List<Integer> seedSchedule(Coach coach) {
+    List<Integer> slotIds = new ArrayList<>();
+    for (int i = 0; i < SLOTS; i++) {
+      LocalTime startTime = LocalTime.of(1, 0).plusMinutes(30L * i);
+      Slot slot = slotRepository.save(new Slot(0, startTime, startTime.plusMinutes(30)));
+      CoachWorkSchedule cws = new CoachWorkSchedule();
+      cws.setCoach(coach);
+      cws.setSlot(slot);
+      cws.setDate(date);
+      cws.setStatus(CoachWorkScheduleStatus.AVAILABLE);
+      coachWorkScheduleRepository.save(cws);
+      slotIds.add(slot.getId());
+    }
+    return slotIds;
+  }
+
+  private List<Integer> seedMembers(int run) {
+    List<Integer> accountIds = new ArrayList<>();
+    for (int i = 0; i < MEMBERS; i++) {
+      Member member = new Member();
+      member.setFirstName("Member");
+      member.setLastName(String.valueOf(i));
+      member.setAccount(account("member" + run + "_" + i, Role.MEMBER));
+      accountIds.add(memberRepository.save(member).getAccount().getId());
+    }
+    return accountIds;
+  }
+
+  private static Account account(String username, Role role) {
+    Account account = new Account();
+    account.setUsername(username);
+    account.setEmail(username + "@smartquit.test");
+    account.setPassword("secret");
+    account.setRole(role);
+    return account;
+  }
+}
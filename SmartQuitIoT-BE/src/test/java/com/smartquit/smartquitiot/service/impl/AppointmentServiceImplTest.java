@@ -25,6 +25,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @ExtendWith(MockitoExtension.class)
 class AppointmentServiceImplTest {
@@ -40,14 +42,16 @@ class AppointmentServiceImplTest {
 
   @Mock private AgoraService agoraService;
 
-  @Mock private MembershipSubscriptionRepository membershipSubscriptionRepository;
-
   @Mock private FeedbackRepository feedbackRepository;
 
   @Mock private NotificationService notificationService;
 
   @Mock private NotificationRepository notificationRepository;
 
+  @Mock private CoachAvailabilityIndex coachAvailabilityIndex;
+
+  @Mock private BookingQuotaCounter bookingQuotaCounter;
+
   // ===== CLASS UNDER TEST =====
   @InjectMocks private AppointmentServiceImpl appointmentService;
 
@@ -111,11 +115,7 @@ class AppointmentServiceImplTest {
 
     when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
 
-    when(membershipSubscriptionRepository.findActiveByMemberId(anyInt(), any()))
-        .thenReturn(Optional.of(mockSubscription()));
-
-    when(appointmentRepository.countActiveByMemberIdAndDateBetween(anyInt(), any(), any()))
-        .thenReturn(0L);
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any())).thenReturn(true);
 
     when(appointmentRepository.findOverlappingAppointments(anyInt(), any(), anyInt(), anyInt()))
         .thenReturn(List.of());
@@ -167,8 +167,8 @@ class AppointmentServiceImplTest {
 
     when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
 
-    when(membershipSubscriptionRepository.findActiveByMemberId(anyInt(), any()))
-        .thenReturn(Optional.empty());
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any()))
+        .thenReturn(false); // không có subscription
 
     // ===== WHEN & THEN =====
     assertThatThrownBy(() -> appointmentService.bookAppointment(accountId, request))
@@ -184,12 +184,7 @@ class AppointmentServiceImplTest {
 
     when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
 
-    MembershipSubscription sub = mockSubscription();
-    when(membershipSubscriptionRepository.findActiveByMemberId(anyInt(), any()))
-        .thenReturn(Optional.of(sub));
-
-    when(appointmentRepository.countActiveByMemberIdAndDateBetween(anyInt(), any(), any()))
-        .thenReturn(10L); // Đã dùng hết lượt
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any())).thenReturn(false); // Đã dùng hết lượt
 
     // ===== WHEN & THEN =====
     assertThatThrownBy(() -> appointmentService.bookAppointment(accountId, request))
@@ -212,11 +207,7 @@ class AppointmentServiceImplTest {
 
     when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
 
-    when(membershipSubscriptionRepository.findActiveByMemberId(anyInt(), any()))
-        .thenReturn(Optional.of(mockSubscription()));
-
-    when(appointmentRepository.countActiveByMemberIdAndDateBetween(anyInt(), any(), any()))
-        .thenReturn(0L);
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any())).thenReturn(true);
 
     when(appointmentRepository.findOverlappingAppointments(anyInt(), any(), anyInt(), anyInt()))
         .thenReturn(List.of(conflictingAppointment));
@@ -238,11 +229,7 @@ class AppointmentServiceImplTest {
 
     when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
 
-    when(membershipSubscriptionRepository.findActiveByMemberId(anyInt(), any()))
-        .thenReturn(Optional.of(mockSubscription()));
-
-    when(appointmentRepository.countActiveByMemberIdAndDateBetween(anyInt(), any(), any()))
-        .thenReturn(0L);
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any())).thenReturn(true);
 
     when(appointmentRepository.findOverlappingAppointments(anyInt(), any(), anyInt(), anyInt()))
         .thenReturn(List.of());
@@ -267,11 +254,7 @@ class AppointmentServiceImplTest {
 
     when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
 
-    when(membershipSubscriptionRepository.findActiveByMemberId(anyInt(), any()))
-        .thenReturn(Optional.of(mockSubscription()));
-
-    when(appointmentRepository.countActiveByMemberIdAndDateBetween(anyInt(), any(), any()))
-        .thenReturn(0L);
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any())).thenReturn(true);
 
     when(appointmentRepository.findOverlappingAppointments(anyInt(), any(), anyInt(), anyInt()))
         .thenReturn(List.of());
@@ -302,11 +285,7 @@ class AppointmentServiceImplTest {
 
     when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
 
-    when(membershipSubscriptionRepository.findActiveByMemberId(anyInt(), any()))
-        .thenReturn(Optional.of(mockSubscription()));
-
-    when(appointmentRepository.countActiveByMemberIdAndDateBetween(anyInt(), any(), any()))
-        .thenReturn(0L);
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any())).thenReturn(true);
 
     when(appointmentRepository.findOverlappingAppointments(anyInt(), any(), anyInt(), anyInt()))
         .thenReturn(List.of());
@@ -324,6 +303,80 @@ class AppointmentServiceImplTest {
         .hasMessageContaining("This slot is not available");
   }
 
+  @Test
+  void should_book_with_conditional_update_when_optimistic_booking_enabled() {
+    // ===== GIVEN =====
+    int accountId = 100;
+    ReflectionTestUtils.setField(appointmentService, "optimisticBooking", true);
+
+    AppointmentRequest request = new AppointmentRequest();
+    request.setCoachId(coach.getId());
+    request.setSlotId(slot.getId());
+    request.setDate(cws.getDate());
+
+    when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
+
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any())).thenReturn(true);
+
+    when(appointmentRepository.findOverlappingAppointments(anyInt(), any(), anyInt(), anyInt()))
+        .thenReturn(List.of());
+
+    when(coachWorkScheduleRepository.claimAvailable(coach.getId(), cws.getDate(), slot.getId()))
+        .thenReturn(1);
+
+    cws.setStatus(CoachWorkScheduleStatus.BOOKED);
+    when(coachWorkScheduleRepository.findByCoachIdAndDateAndSlotIdWithCoach(
+            coach.getId(), cws.getDate(), slot.getId()))
+        .thenReturn(Optional.of(cws));
+
+    when(appointmentMapper.toResponse(any())).thenReturn(new AppointmentResponse());
+
+    // ===== WHEN =====
+    AppointmentResponse result = appointmentService.bookAppointment(accountId, request);
+
+    // ===== THEN =====
+    assertThat(result).isNotNull();
+    verify(coachWorkScheduleRepository, never())
+        .findByCoachIdAndDateAndSlotIdForUpdate(anyInt(), any(), anyInt());
+    verify(appointmentRepository, never()).existsActiveByCoachSlotDate(anyInt(), anyInt(), any());
+    verify(appointmentRepository)
+        .save(
+            argThat(
+                a -> a.getActiveScheduleId() != null && a.getActiveScheduleId() == cws.getId()));
+  }
+
+  @Test
+  void should_throw_exception_when_optimistic_claim_loses_race() {
+    // ===== GIVEN =====
+    int accountId = 100;
+    ReflectionTestUtils.setField(appointmentService, "optimisticBooking", true);
+
+    AppointmentRequest request = new AppointmentRequest();
+    request.setCoachId(coach.getId());
+    request.setSlotId(slot.getId());
+    request.setDate(cws.getDate());
+
+    when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
+
+    when(bookingQuotaCounter.tryAcquire(anyInt(), any())).thenReturn(true);
+
+    when(appointmentRepository.findOverlappingAppointments(anyInt(), any(), anyInt(), anyInt()))
+        .thenReturn(List.of());
+
+    when(coachWorkScheduleRepository.claimAvailable(coach.getId(), cws.getDate(), slot.getId()))
+        .thenReturn(0); // member khác đã claim trước
+
+    when(coachWorkScheduleRepository.existsByCoachIdAndDateAndSlotId(
+            coach.getId(), cws.getDate(), slot.getId()))
+        .thenReturn(true);
+
+    // ===== WHEN & THEN =====
+    assertThatThrownBy(() -> appointmentService.bookAppointment(accountId, request))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("This slot is not available");
+    verify(appointmentRepository, never()).save(any());
+  }
+
   // ========== cancelAppointment Tests ==========
 
   @Test
@@ -463,6 +516,7 @@ class AppointmentServiceImplTest {
     assertThat(cws.getStatus()).isEqualTo(CoachWorkScheduleStatus.UNAVAILABLE);
     verify(appointmentRepository).save(appointment);
     verify(coachWorkScheduleRepository).save(cws);
+    verify(bookingQuotaCounter).release(member.getId(), appointmentDate);
   }
 
   @Test
@@ -496,17 +550,12 @@ class AppointmentServiceImplTest {
     LocalDate startDate = LocalDate.now().minusDays(10);
     LocalDate endDate = LocalDate.now().plusDays(20);
 
-    MembershipSubscription sub = new MembershipSubscription();
-    sub.setStartDate(startDate);
-    sub.setEndDate(endDate);
-
     when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
 
-    when(membershipSubscriptionRepository.findActiveByMemberId(anyInt(), any()))
-        .thenReturn(Optional.of(sub));
-
-    when(appointmentRepository.countActiveByMemberIdAndDateBetween(anyInt(), any(), any()))
-        .thenReturn(2L); // Đã dùng 2 lượt
+    when(bookingQuotaCounter.current(member.getId()))
+        .thenReturn(
+            Optional.of(
+                new BookingQuotaCounter.Quota(1, startDate, endDate, 4, 2))); // Đã dùng 2 lượt
 
     // ===== WHEN =====
     RemainingBookingResponse result = appointmentService.getRemainingBookingsForMember(accountId);
@@ -527,8 +576,7 @@ class AppointmentServiceImplTest {
 
     when(memberRepository.findByAccountId(accountId)).thenReturn(Optional.of(member));
 
-    when(membershipSubscriptionRepository.findActiveByMemberId(anyInt(), any()))
-        .thenReturn(Optional.empty());
+    when(bookingQuotaCounter.current(member.getId())).thenReturn(Optional.empty());
 
     // ===== WHEN =====
     RemainingBookingResponse result = appointmentService.getRemainingBookingsForMember(accountId);
@@ -717,12 +765,144 @@ class AppointmentServiceImplTest {
         .hasMessageContaining("do not have permission");
   }
 
-  // ========== HELPER METHODS ==========
+  // ========== cursor listing Tests ==========
+
+  private static AppointmentListRow listRow(
+      int id, AppointmentStatus status, LocalDate date, LocalTime start, LocalTime end) {
+    return new AppointmentListRow(
+        id,
+        date,
+        status,
+        null,
+        null,
+        LocalDateTime.now(),
+        10,
+        "Jane",
+        "Smith",
+        1,
+        "John",
+        "Doe",
+        start != null ? 5 : null,
+        start,
+        end,
+        null);
+  }
+
+  private void echoRuntimeStatus() {
+    when(appointmentMapper.toResponse(any(AppointmentListRow.class), anyString()))
+        .thenAnswer(
+            inv -> {
+              AppointmentListRow row = inv.getArgument(0);
+              AppointmentResponse r = new AppointmentResponse();
+              r.setAppointmentId(row.appointmentId());
+              r.setRuntimeStatus(inv.getArgument(1));
+              return r;
+            });
+  }
+
+  @Test
+  void should_list_member_appointments_before_cursor_with_runtime_status() {
+    // ===== GIVEN =====
+    LocalDate todayVn = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh"));
+    LocalDate tomorrow = todayVn.plusDays(1);
+    LocalDate yesterday = todayVn.minusDays(1);
+    LocalTime start = LocalTime.of(10, 0);
+    LocalTime end = LocalTime.of(10, 30);
+    when(appointmentRepository.findListRowsByMemberAccountId(
+            eq(100), eq(AppointmentStatus.PENDING), eq(tomorrow), eq(40), any()))
+        .thenReturn(
+            List.of(
+                listRow(39, AppointmentStatus.PENDING, tomorrow, start, end),
+                listRow(38, AppointmentStatus.PENDING, yesterday, start, end),
+                listRow(37, AppointmentStatus.PENDING, todayVn, LocalTime.MIN, LocalTime.MAX),
+                listRow(36, AppointmentStatus.CANCELLED, tomorrow, start, end),
+                listRow(35, AppointmentStatus.COMPLETED, tomorrow, start, end),
+                listRow(34, AppointmentStatus.PENDING, tomorrow, null, null)));
+    echoRuntimeStatus();
+
+    // ===== WHEN =====
+    List<AppointmentResponse> result =
+        appointmentService.getMemberAppointmentsBefore(
+            100, " pending ", tomorrow.toString(), 40, 10);
+
+    // ===== THEN =====
+    assertThat(result.stream().map(AppointmentResponse::getAppointmentId).toList())
+        .isEqualTo(List.of(39, 38, 37, 36, 35, 34));
+    assertThat(result.stream().map(AppointmentResponse::getRuntimeStatus).toList())
+        .isEqualTo(
+            List.of("PENDING", "COMPLETED", "IN_PROGRESS", "CANCELLED", "COMPLETED", "UNKNOWN"));
+    verify(appointmentRepository)
+        .findListRowsByMemberAccountId(
+            100, AppointmentStatus.PENDING, tomorrow, 40, PageRequest.of(0, 10));
+  }
+
+  @Test
+  void should_clamp_cursor_list_limit() {
+    // ===== GIVEN =====
+    when(appointmentRepository.findListRowsByCoachAccountId(anyInt(), any(), any(), any(), any()))
+        .thenReturn(List.of());
+
+    // ===== WHEN =====
+    appointmentService.getCoachAppointmentsBefore(200, null, null, null, 0);
+    appointmentService.getCoachAppointmentsBefore(200, null, null, null, -5);
+    appointmentService.getCoachAppointmentsBefore(200, null, null, null, 500);
+    appointmentService.getCoachAppointmentsBefore(200, "", " ", null, 100);
+
+    // ===== THEN =====
+    verify(appointmentRepository, times(2))
+        .findListRowsByCoachAccountId(200, null, null, null, PageRequest.of(0, 20));
+    verify(appointmentRepository, times(2))
+        .findListRowsByCoachAccountId(200, null, null, null, PageRequest.of(0, 100));
+  }
+
+  @Test
+  void should_pass_coach_cursor_and_filters_to_repository() {
+    // ===== GIVEN =====
+    LocalDate date = LocalDate.of(2025, 1, 15);
+    when(appointmentRepository.findListRowsByCoachAccountId(
+            200, AppointmentStatus.CANCELLED, date, 12, PageRequest.of(0, 5)))
+        .thenReturn(
+            List.of(listRow(11, AppointmentStatus.CANCELLED, date, LocalTime.of(9, 0), null)));
+    echoRuntimeStatus();
+
+    // ===== WHEN =====
+    List<AppointmentResponse> result =
+        appointmentService.getCoachAppointmentsBefore(200, "cancelled", "2025-01-15", 12, 5);
 
-  private MembershipSubscription mockSubscription() {
-    MembershipSubscription sub = new MembershipSubscription();
-    sub.setStartDate(LocalDate.now().minusDays(1));
-    sub.setEndDate(LocalDate.now().plusDays(30));
-    return sub;
+    // ===== THEN =====
+    assertThat(result.size()).isEqualTo(1);
+    assertThat(result.get(0).getRuntimeStatus()).isEqualTo("CANCELLED");
+  }
+
+  @Test
+  void should_reject_invalid_cursor_list_filters() {
+    assertThatThrownBy(
+            () -> appointmentService.getMemberAppointmentsBefore(100, "DONE", null, null, 20))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid status filter: DONE");
+    assertThatThrownBy(
+            () -> appointmentService.getCoachAppointmentsBefore(200, null, "15/01/2025", null, 20))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid date filter, expected yyyy-MM-dd");
+    verifyNoInteractions(appointmentRepository);
+  }
+
+  @Test
+  void should_reject_invalid_filters_in_paged_listing() {
+    // ===== GIVEN =====
+    when(memberRepository.findByAccountId(100)).thenReturn(Optional.of(member));
+
+    // ===== WHEN & THEN =====
+    assertThatThrownBy(
+            () -> appointmentService.getAppointmentsByMemberAccountId(100, "DONE", null, 0, 10))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid status filter: DONE");
+    assertThatThrownBy(
+            () ->
+                appointmentService.getAppointmentsByCoachAccountId(200, null, "2025-13-01", 0, 10))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid date filter, expected yyyy-MM-dd");
+    verify(appointmentRepository, never()).findAllByMemberId(anyInt());
+    verify(appointmentRepository, never()).findAllByCoachAccountId(anyInt());
   }
 }
@@ -0,0 +1,287 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.smartquit.smartquitiot.entity.MembershipSubscription;
+import com.smartquit.smartquitiot.repository.AppointmentRepository;
+import com.smartquit.smartquitiot.repository.MembershipSubscriptionRepository;
+import java.net.ServerSocket;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import redis.embedded.RedisServer;
+
+@ExtendWith(MockitoExtension.class)
+class BookingQuotaCounterTest {
+
+  private static final int MEMBER_ID = 1;
+  private static final String KEY = "booking_quota:1";
+  // kỳ 30 ngày => 4 lượt
+  private static final LocalDate START = LocalDate.now().minusDays(10);
+  private static final LocalDate END = START.plusDays(29);
+  private static final LocalDate IN_PERIOD = LocalDate.now().plusDays(1);
+  private static final LocalDate AFTER_PERIOD = END.plusDays(3);
+
+  private static RedisServer redisServer;
+  private static LettuceConnectionFactory connectionFactory;
+  private static StringRedisTemplate redis;
+
+  @Mock private MembershipSubscriptionRepository membershipSubscriptionRepository;
+  @Mock private AppointmentRepository appointmentRepository;
+
+  private BookingQuotaCounter counter;
+
+  @BeforeAll
+  static void startRedis() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    redisServer = RedisServer.newRedisServer().port(port).bind("127.0.0.1").build();
+    redisServer.start();
+    connectionFactory =
+        new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+    connectionFactory.afterPropertiesSet();
+    connectionFactory.start();
+    redis = new StringRedisTemplate(connectionFactory);
+  }
+
+  @AfterAll
+  static void stopRedis() throws Exception {
+    connectionFactory.destroy();
+    redisServer.stop();
+  }
+
+  @BeforeEach
+  void setUp() {
+    redis.delete(KEY);
+    counter =
+        new BookingQuotaCounter(redis, membershipSubscriptionRepository, appointmentRepository);
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private void stubSubscription(long usedInDb) {
+    MembershipSubscription sub = new MembershipSubscription();
+    sub.setId(9);
+    sub.setStartDate(START);
+    sub.setEndDate(END);
+    when(membershipSubscriptionRepository.findActiveByMemberId(eq(MEMBER_ID), any()))
+        .thenReturn(Optional.of(sub));
+    lenient()
+        .when(appointmentRepository.countActiveByMemberIdAndDateBetween(MEMBER_ID, START, END))
+        .thenReturn(usedInDb);
+  }
+
+  private int usedInRedis() {
+    return Integer.parseInt((String) redis.opsForHash().get(KEY, "used"));
+  }
+
+  @Test
+  void cacheMiss_isRebuiltFromDatabase_thenServedFromRedis() {
+    stubSubscription(1);
+
+    Optional<BookingQuotaCounter.Quota> quota = counter.current(MEMBER_ID);
+
+    assertThat(quota)
+        .contains(new BookingQuotaCounter.Quota(9, START, END, 4, 1))
+        .get()
+        .extracting(BookingQuotaCounter.Quota::remaining)
+        .isEqualTo(3);
+    assertThat(redis.opsForHash().entries(KEY))
+        .containsEntry("sub", "9")
+        .containsEntry("allowed", "4")
+        .containsEntry("used", "1");
+    // hết hạn sau ngày cuối kỳ
+    assertThat(redis.getExpire(KEY)).isPositive();
+
+    assertThat(counter.current(MEMBER_ID)).isEqualTo(quota);
+    verify(membershipSubscriptionRepository, times(1)).findActiveByMemberId(eq(MEMBER_ID), any());
+    verify(appointmentRepository, times(1))
+        .countActiveByMemberIdAndDateBetween(MEMBER_ID, START, END);
+  }
+
+  @Test
+  void tryAcquire_onMiss_rebuildsAndTakesOneUnit() {
+    stubSubscription(1);
+
+    assertThat(counter.tryAcquire(MEMBER_ID, IN_PERIOD)).isTrue();
+
+    assertThat(usedInRedis()).isEqualTo(2);
+  }
+
+  @Test
+  void tryAcquire_isDeniedOnceUsedReachesAllowed() {
+    stubSubscription(2);
+
+    assertThat(counter.tryAcquire(MEMBER_ID, IN_PERIOD)).isTrue();
+    assertThat(counter.tryAcquire(MEMBER_ID, IN_PERIOD)).isTrue();
+    assertThat(counter.tryAcquire(MEMBER_ID, IN_PERIOD)).isFalse();
+    assertThat(counter.tryAcquire(MEMBER_ID, IN_PERIOD)).isFalse();
+
+    assertThat(usedInRedis()).isEqualTo(4);
+    assertThat(counter.current(MEMBER_ID)).get().extracting(q -> q.remaining()).isEqualTo(0);
+  }
+
+  @Test
+  void dateOutsidePeriod_isAllowedWithoutTakingAUnit() {
+    stubSubscription(3);
+
+    assertThat(counter.tryAcquire(MEMBER_ID, AFTER_PERIOD)).isTrue();
+    assertThat(counter.tryAcquire(MEMBER_ID, START.minusDays(1))).isTrue();
+    assertThat(usedInRedis()).isEqualTo(3);
+
+    // hết lượt thì ngày ngoài kỳ cũng bị chặn
+    assertThat(counter.tryAcquire(MEMBER_ID, IN_PERIOD)).isTrue();
+    assertThat(counter.tryAcquire(MEMBER_ID, AFTER_PERIOD)).isFalse();
+    assertThat(usedInRedis()).isEqualTo(4);
+  }
+
+  @Test
+  void acquiredUnit_isGivenBackWhenTransactionRollsBack() {
+    stubSubscription(1);
+
+    TransactionSynchronizationManager.initSynchronization();
+    assertThat(counter.tryAcquire(MEMBER_ID, IN_PERIOD)).isTrue();
+    assertThat(usedInRedis()).isEqualTo(2);
+    List<TransactionSynchronization> synchronizations =
+        TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationManager.clearSynchronization();
+
+    synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    assertThat(usedInRedis()).isEqualTo(1);
+  }
+
+  @Test
+  void acquiredUnit_isKeptWhenTransactionCommits() {
+    stubSubscription(1);
+
+    TransactionSynchronizationManager.initSynchronization();
+    counter.tryAcquire(MEMBER_ID, IN_PERIOD);
+    List<TransactionSynchronization> synchronizations =
+        TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationManager.clearSynchronization();
+
+    synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    assertThat(usedInRedis()).isEqualTo(2);
+  }
+
+  @Test
+  void release_givesBackUnitAfterCommit_onlyForDatesInPeriod() {
+    stubSubscription(2);
+    counter.current(MEMBER_ID);
+
+    TransactionSynchronizationManager.initSynchronization();
+    counter.release(MEMBER_ID, IN_PERIOD);
+    assertThat(usedInRedis()).isEqualTo(2);
+    List<TransactionSynchronization> synchronizations =
+        TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationManager.clearSynchronization();
+    synchronizations.forEach(TransactionSynchronization::afterCommit);
+    assertThat(usedInRedis()).isEqualTo(1);
+
+    counter.release(MEMBER_ID, AFTER_PERIOD);
+    assertThat(usedInRedis()).isEqualTo(1);
+    counter.release(MEMBER_ID, IN_PERIOD);
+    counter.release(MEMBER_ID, IN_PERIOD);
+    // không xuống dưới 0
+    assertThat(usedInRedis()).isZero();
+  }
+
+  @Test
+  void evict_dropsCachedQuota() {
+    stubSubscription(1);
+    counter.current(MEMBER_ID);
+
+    counter.evict(MEMBER_ID);
+
+    assertThat(redis.hasKey(KEY)).isFalse();
+  }
+
+  @Test
+  void noActiveSubscription_isDenied_andNothingIsCached() {
+    when(membershipSubscriptionRepository.findActiveByMemberId(eq(MEMBER_ID), any()))
+        .thenReturn(Optional.empty());
+
+    assertThat(counter.current(MEMBER_ID)).isEmpty();
+    assertThat(counter.tryAcquire(MEMBER_ID, IN_PERIOD)).isFalse();
+    assertThat(redis.hasKey(KEY)).isFalse();
+  }
+
+  @Test
+  void concurrentBookings_neverTakeMoreThanAllowed() throws Exception {
+    stubSubscription(1);
+    int threads = 16;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        Callable<Boolean> booking =
+            () -> {
+              start.await();
+              return counter.tryAcquire(MEMBER_ID, IN_PERIOD);
+            };
+        results.add(pool.submit(booking));
+      }
+      start.countDown();
+      int acquired = 0;
+      for (Future<Boolean> result : results) {
+        if (result.get()) acquired++;
+      }
+
+      assertThat(acquired).isEqualTo(3);
+      assertThat(usedInRedis()).isEqualTo(4);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void redisDown_fallsBackToDatabaseCount() {
+    StringRedisTemplate down =
+        mock(
+            StringRedisTemplate.class,
+            inv -> {
+              throw new RedisConnectionFailureException("connection refused");
+            });
+    BookingQuotaCounter fallback =
+        new BookingQuotaCounter(down, membershipSubscriptionRepository, appointmentRepository);
+
+    stubSubscription(3);
+    assertThat(fallback.current(MEMBER_ID)).get().extracting(q -> q.remaining()).isEqualTo(1);
+    assertThat(fallback.tryAcquire(MEMBER_ID, IN_PERIOD)).isTrue();
+
+    when(appointmentRepository.countActiveByMemberIdAndDateBetween(MEMBER_ID, START, END))
+        .thenReturn(4L);
+    assertThat(fallback.tryAcquire(MEMBER_ID, IN_PERIOD)).isFalse();
+  }
+}
@@ -0,0 +1,248 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.smartquit.smartquitiot.dto.response.CoachSummaryDTO;
+import com.smartquit.smartquitiot.entity.Account;
+import com.smartquit.smartquitiot.entity.Coach;
+import com.smartquit.smartquitiot.entity.CoachWorkSchedule;
+import com.smartquit.smartquitiot.entity.Slot;
+import com.smartquit.smartquitiot.enums.CoachWorkScheduleStatus;
+import com.smartquit.smartquitiot.mapper.CoachMapper;
+import com.smartquit.smartquitiot.repository.CoachRepository;
+import com.smartquit.smartquitiot.repository.CoachWorkScheduleRepository;
+import com.smartquit.smartquitiot.repository.SlotRepository;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+class CoachAvailabilityIndexTest {
+
+  private static final LocalDate DATE = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh")).plusDays(1);
+
+  @Mock private CoachWorkScheduleRepository coachWorkScheduleRepository;
+  @Mock private CoachRepository coachRepository;
+  @Mock private SlotRepository slotRepository;
+  @Mock private CoachMapper coachMapper;
+
+  @InjectMocks private CoachAvailabilityIndex index;
+
+  private Slot slot1;
+  private Slot slot2;
+  private Slot slot3;
+  private Coach coach1;
+  private Coach coach2;
+  private Coach coachWithoutAccount;
+
+  @BeforeEach
+  void setUp() {
+    // id không theo thứ tự giờ để kiểm tra kết quả sắp theo startTime
+    slot1 = new Slot(1, LocalTime.of(9, 0), LocalTime.of(9, 30));
+    slot2 = new Slot(2, LocalTime.of(8, 0), LocalTime.of(8, 30));
+    slot3 = new Slot(3, LocalTime.of(10, 0), LocalTime.of(10, 30));
+
+    coach1 = coach(1, true);
+    coach2 = coach(2, true);
+    coachWithoutAccount = coach(3, false);
+
+    lenient()
+        .when(slotRepository.findAllByOrderByStartTimeAsc())
+        .thenReturn(List.of(slot2, slot1, slot3));
+    lenient()
+        .when(coachRepository.findAllWithAccount())
+        .thenReturn(List.of(coach1, coach2, coachWithoutAccount));
+    lenient()
+        .when(coachMapper.toCoachSummaryDTO(any(Coach.class)))
+        .thenAnswer(inv -> summary(inv.getArgument(0)));
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private static Coach coach(int id, boolean withAccount) {
+    Coach coach = new Coach();
+    coach.setId(id);
+    if (withAccount) {
+      Account account = new Account();
+      account.setId(100 + id);
+      coach.setAccount(account);
+    }
+    return coach;
+  }
+
+  private static CoachSummaryDTO summary(Coach coach) {
+    CoachSummaryDTO dto = new CoachSummaryDTO();
+    dto.setId(coach.getId());
+    dto.setAccountId(coach.getAccount().getId());
+    return dto;
+  }
+
+  private void stubAvailable(LocalDate date, int[]... coachAndSlot) {
+    List<Object[]> rows = new ArrayList<>();
+    for (int[] pair : coachAndSlot) rows.add(new Object[] {pair[0], pair[1]});
+    when(coachWorkScheduleRepository.findCoachAndSlotIdsByDateAndStatus(
+            date, CoachWorkScheduleStatus.AVAILABLE))
+        .thenReturn(rows);
+  }
+
+  private static CoachWorkSchedule cws(
+      Coach coach, Slot slot, LocalDate date, CoachWorkScheduleStatus status) {
+    CoachWorkSchedule cws = new CoachWorkSchedule();
+    cws.setCoach(coach);
+    cws.setSlot(slot);
+    cws.setDate(date);
+    cws.setStatus(status);
+    return cws;
+  }
+
+  private List<Integer> freeSlotIds(int coachId) {
+    return index.freeSlots(coachId, DATE).stream().map(Slot::getId).toList();
+  }
+
+  private List<Integer> freeCoachIds(int slotId, Integer excludeCoachId) {
+    return index.freeCoaches(DATE, slotId, excludeCoachId).stream()
+        .map(CoachSummaryDTO::getId)
+        .toList();
+  }
+
+  @Test
+  void load_buildsFreeSlotsPerCoach_orderedByStartTime() {
+    stubAvailable(DATE, new int[] {1, 1}, new int[] {1, 2}, new int[] {1, 3}, new int[] {2, 2});
+
+    assertThat(freeSlotIds(1)).containsExactly(2, 1, 3);
+    assertThat(freeSlotIds(2)).containsExactly(2);
+    assertThat(freeSlotIds(99)).isEmpty();
+    assertThat(freeCoachIds(2, null)).containsExactly(1, 2);
+    assertThat(freeCoachIds(1, null)).containsExactly(1);
+
+    // lần đọc sau không query lại
+    verify(coachWorkScheduleRepository, times(1))
+        .findCoachAndSlotIdsByDateAndStatus(DATE, CoachWorkScheduleStatus.AVAILABLE);
+    verify(slotRepository, times(1)).findAllByOrderByStartTimeAsc();
+  }
+
+  @Test
+  void book_cancel_reassign_flipBitsWithoutReloading() {
+    stubAvailable(DATE, new int[] {1, 1}, new int[] {1, 2}, new int[] {2, 2});
+    assertThat(freeCoachIds(2, null)).containsExactly(1, 2);
+
+    // member đặt slot 2 của coach 1
+    index.onStatusChanged(cws(coach1, slot2, DATE, CoachWorkScheduleStatus.BOOKED));
+    assertThat(freeSlotIds(1)).containsExactly(1);
+    assertThat(freeCoachIds(2, null)).containsExactly(2);
+
+    // huỷ => slot trống lại
+    index.onStatusChanged(cws(coach1, slot2, DATE, CoachWorkScheduleStatus.AVAILABLE));
+    assertThat(freeSlotIds(1)).containsExactly(2, 1);
+    assertThat(freeCoachIds(2, null)).containsExactly(1, 2);
+
+    // đặt lại rồi chuyển sang coach 2: slot cũ trống, slot mới bận
+    index.onStatusChanged(cws(coach1, slot2, DATE, CoachWorkScheduleStatus.BOOKED));
+    index.onStatusChanged(cws(coach1, slot2, DATE, CoachWorkScheduleStatus.AVAILABLE));
+    index.onStatusChanged(cws(coach2, slot2, DATE, CoachWorkScheduleStatus.BOOKED));
+    assertThat(freeCoachIds(2, null)).containsExactly(1);
+    assertThat(freeSlotIds(2)).isEmpty();
+
+    // lịch mới thêm cho coach 2
+    index.onStatusChanged(cws(coach2, slot3, DATE, CoachWorkScheduleStatus.AVAILABLE));
+    assertThat(freeSlotIds(2)).containsExactly(3);
+
+    verify(coachWorkScheduleRepository, times(1))
+        .findCoachAndSlotIdsByDateAndStatus(DATE, CoachWorkScheduleStatus.AVAILABLE);
+  }
+
+  @Test
+  void freeCoaches_skipsExcludedCoach_andCoachesWithoutAccount() {
+    stubAvailable(DATE, new int[] {1, 1}, new int[] {2, 1}, new int[] {3, 1});
+
+    assertThat(freeCoachIds(1, null)).containsExactly(1, 2);
+    assertThat(freeCoachIds(1, 1)).containsExactly(2);
+    assertThat(freeCoachIds(1, 2)).containsExactly(1);
+    assertThat(freeCoachIds(1, 42)).containsExactly(1, 2);
+  }
+
+  @Test
+  void statusChange_isAppliedOnlyAfterCommit() {
+    stubAvailable(DATE, new int[] {1, 1});
+    assertThat(freeSlotIds(1)).containsExactly(1);
+
+    TransactionSynchronizationManager.initSynchronization();
+    index.onStatusChanged(cws(coach1, slot1, DATE, CoachWorkScheduleStatus.BOOKED));
+    assertThat(freeSlotIds(1)).containsExactly(1);
+
+    List<TransactionSynchronization> synchronizations =
+        TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationManager.clearSynchronization();
+    synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+    assertThat(freeSlotIds(1)).isEmpty();
+  }
+
+  @Test
+  void statusChange_onDateNotLoaded_isLeftToTheNextLoad() {
+    index.onStatusChanged(cws(coach1, slot1, DATE, CoachWorkScheduleStatus.AVAILABLE));
+
+    stubAvailable(DATE, new int[] {1, 2});
+    assertThat(freeSlotIds(1)).containsExactly(2);
+  }
+
+  @Test
+  void invalidateDate_reloadsFromDatabase() {
+    stubAvailable(DATE, new int[] {1, 1});
+    assertThat(freeSlotIds(1)).containsExactly(1);
+
+    index.invalidateDate(DATE);
+    assertThat(freeSlotIds(1)).containsExactly(1);
+
+    verify(coachWorkScheduleRepository, times(2))
+        .findCoachAndSlotIdsByDateAndStatus(DATE, CoachWorkScheduleStatus.AVAILABLE);
+  }
+
+  @Test
+  void pastDays_areEvictedAgainstVietnamToday() {
+    LocalDate yesterday = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh")).minusDays(1);
+    stubAvailable(yesterday, new int[] {1, 1});
+    stubAvailable(DATE, new int[] {1, 2});
+
+    assertThat(index.freeSlots(1, yesterday)).extracting(Slot::getId).containsExactly(1);
+    assertThat(freeSlotIds(1)).containsExactly(2);
+    // ngày đã qua không giữ lại => mỗi lần hỏi đều load lại, ngày tới vẫn giữ
+    assertThat(index.freeSlots(1, yesterday)).extracting(Slot::getId).containsExactly(1);
+    assertThat(freeSlotIds(1)).containsExactly(2);
+
+    verify(coachWorkScheduleRepository, times(2))
+        .findCoachAndSlotIdsByDateAndStatus(yesterday, CoachWorkScheduleStatus.AVAILABLE);
+    verify(coachWorkScheduleRepository, times(1))
+        .findCoachAndSlotIdsByDateAndStatus(DATE, CoachWorkScheduleStatus.AVAILABLE);
+  }
+
+  @Test
+  void coachExists_usesCatalog_andFallsBackToRepositoryForNewCoaches() {
+    assertThat(index.coachExists(1)).isTrue();
+    verify(coachRepository, never()).existsById(anyInt());
+
+    when(coachRepository.existsById(7)).thenReturn(true);
+    assertThat(index.coachExists(7)).isTrue();
+    // coach mới => lần đọc sau load lại catalog
+    assertThat(index.coachExists(2)).isTrue();
+    verify(coachRepository, times(2)).findAllWithAccount();
+  }
+}
@@ -0,0 +1,166 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import com.smartquit.smartquitiot.dto.response.DiaryChartSeriesDTO;
+import com.smartquit.smartquitiot.entity.Member;
+import com.smartquit.smartquitiot.repository.DiaryRecordRepository;
+import com.smartquit.smartquitiot.service.MemberService;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+
+@ExtendWith(MockitoExtension.class)
+class DiaryRecordServiceImplTest {
+
+  private static final int MEMBER_ID = 3;
+  private static final LocalDate D1 = LocalDate.of(2025, 3, 1);
+
+  @Mock private DiaryRecordRepository diaryRecordRepository;
+  @Mock private MemberService memberService;
+  @Mock private CacheManager cacheManager;
+
+  @InjectMocks private DiaryRecordServiceImpl service;
+
+  @BeforeEach
+  void noCache() {
+    when(cacheManager.getCache("member_chart_series")).thenReturn(null);
+  }
+
+  // ngày D1 + i, mọi cột = giá trị i+1 (nicotine null ở ngày đầu => 0)
+  private void givenDays(int count) {
+    List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      int v = i + 1;
+      rows.add(
+          new Object[] {
+            D1.plusDays(i), v, v, v, v, v, i == 0 ? null : BigDecimal.valueOf(v), (double) v
+          });
+    }
+    when(diaryRecordRepository.findChartRowsByMemberId(MEMBER_ID)).thenReturn(rows);
+  }
+
+  private DiaryChartSeriesDTO series(LocalDate from, LocalDate to, Integer downsample) {
+    return service.getDiaryChartSeriesByMemberId(MEMBER_ID, from, to, downsample);
+  }
+
+  private static List<String> days(int... offsets) {
+    List<String> result = new ArrayList<>();
+    for (int offset : offsets) result.add(D1.plusDays(offset).toString());
+    return result;
+  }
+
+  private static void assertAllSeries(DiaryChartSeriesDTO s, double... expected) {
+    assertThat(s.getConfidenceLevel()).containsExactly(expected);
+    assertThat(s.getMoodLevel()).containsExactly(expected);
+    assertThat(s.getAnxietyLevel()).containsExactly(expected);
+    assertThat(s.getCravingLevel()).containsExactly(expected);
+    assertThat(s.getCigarettesSmoked()).containsExactly(expected);
+    assertThat(s.getReductionPercentage()).containsExactly(expected);
+  }
+
+  @Test
+  void noRecords_returnsEmptySeries() {
+    givenDays(0);
+
+    DiaryChartSeriesDTO s = series(null, null, 10);
+
+    assertThat(s.getDates()).isEmpty();
+    assertAllSeries(s);
+    assertThat(s.getEstimatedNicotineIntake()).isEmpty();
+  }
+
+  @Test
+  void windowOutsideHistory_returnsEmptySeries() {
+    givenDays(5);
+
+    assertThat(series(D1.plusDays(10), D1.plusDays(20), null).getDates()).isEmpty();
+    assertThat(series(D1.minusDays(10), D1.minusDays(1), null).getDates()).isEmpty();
+    // from > to
+    DiaryChartSeriesDTO inverted = series(D1.plusDays(3), D1.plusDays(1), null);
+    assertThat(inverted.getDates()).isEmpty();
+    assertAllSeries(inverted);
+  }
+
+  @Test
+  void fromAndTo_areInclusive() {
+    givenDays(5);
+
+    DiaryChartSeriesDTO s = series(D1.plusDays(1), D1.plusDays(3), null);
+
+    assertThat(s.getDates()).isEqualTo(days(1, 2, 3));
+    assertAllSeries(s, 2, 3, 4);
+    assertThat(s.getEstimatedNicotineIntake()).containsExactly(2, 3, 4);
+
+    assertThat(series(D1, D1, null).getDates()).isEqualTo(days(0));
+    assertThat(series(D1.plusDays(4), D1.plusDays(4), null).getDates()).isEqualTo(days(4));
+  }
+
+  @Test
+  void openEndedWindow_keepsTheOtherSide() {
+    givenDays(5);
+
+    assertThat(series(D1.plusDays(3), null, null).getDates()).isEqualTo(days(3, 4));
+    assertThat(series(null, D1.plusDays(1), null).getDates()).isEqualTo(days(0, 1));
+    // ngày đầu nicotine null => 0
+    assertThat(series(null, D1.plusDays(1), null).getEstimatedNicotineIntake())
+        .containsExactly(0, 2);
+    assertThat(series(null, null, null).getDates()).isEqualTo(days(0, 1, 2, 3, 4));
+  }
+
+  @Test
+  void downsampleLargerThanPoints_keepsEveryPoint() {
+    givenDays(4);
+
+    for (Integer downsample : new Integer[] {4, 5, 100, 0, -1, null}) {
+      DiaryChartSeriesDTO s = series(null, null, downsample);
+      assertThat(s.getDates()).as("downsample=%s", downsample).isEqualTo(days(0, 1, 2, 3));
+      assertAllSeries(s, 1, 2, 3, 4);
+    }
+  }
+
+  @Test
+  void unevenLastBucket_averagesOnlyItsOwnPoints() {
+    givenDays(5);
+
+    // 5 điểm, tối đa 2 => bucket 3 ngày: [1,2,3] và [4,5]
+    DiaryChartSeriesDTO s = series(null, null, 2);
+
+    assertThat(s.getDates()).isEqualTo(days(2, 4));
+    assertAllSeries(s, 2.0, 4.5);
+    assertThat(s.getEstimatedNicotineIntake()).containsExactly(5.0 / 3, 4.5);
+  }
+
+  @Test
+  void downsample_appliesToTheWindowOnly() {
+    givenDays(10);
+
+    // window 7 ngày (2..8), tối đa 3 => bucket 3 ngày: [3,4,5] [6,7,8] [9]
+    DiaryChartSeriesDTO s = series(D1.plusDays(2), D1.plusDays(8), 3);
+
+    assertThat(s.getDates()).isEqualTo(days(4, 7, 8));
+    assertAllSeries(s, 4, 7, 9);
+  }
+
+  @Test
+  void getDiaryChartSeries_usesAuthenticatedMember() {
+    Member member = new Member();
+    member.setId(MEMBER_ID);
+    when(memberService.getAuthenticatedMember()).thenReturn(member);
+    givenDays(3);
+
+    DiaryChartSeriesDTO s = service.getDiaryChartSeries(D1.plusDays(1), null, null);
+
+    assertThat(s.getDates()).isEqualTo(days(1, 2));
+    verify(diaryRecordRepository).findChartRowsByMemberId(MEMBER_ID);
+  }
+}
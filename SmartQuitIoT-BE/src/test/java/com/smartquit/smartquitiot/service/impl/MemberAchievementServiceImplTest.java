@@ -0,0 +1,170 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.smartquit.smartquitiot.dto.response.ConditionAchievementDTO;
+import com.smartquit.smartquitiot.entity.Account;
+import com.smartquit.smartquitiot.entity.Achievement;
+import com.smartquit.smartquitiot.entity.Member;
+import com.smartquit.smartquitiot.entity.MemberAchievement;
+import com.smartquit.smartquitiot.entity.Metric;
+import com.smartquit.smartquitiot.repository.MemberAchievementRepository;
+import com.smartquit.smartquitiot.repository.MemberRepository;
+import com.smartquit.smartquitiot.repository.MetricRepository;
+import com.smartquit.smartquitiot.service.AccountService;
+import com.smartquit.smartquitiot.service.LeaderboardService;
+import com.smartquit.smartquitiot.service.NotificationService;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+class MemberAchievementServiceImplTest {
+
+  private static final int MEMBER_ID = 7;
+
+  @Mock private AccountService accountService;
+  @Mock private MemberAchievementRepository memberAchievementRepository;
+  @Mock private MemberRepository memberRepository;
+  @Mock private MetricRepository metricRepository;
+  @Mock private NotificationService notificationService;
+  @Mock private LeaderboardService leaderboardService;
+  @Mock private AchievementRuleIndex achievementRuleIndex;
+  @Mock private CacheManager cacheManager;
+  @Mock private Cache cache;
+
+  @InjectMocks private MemberAchievementServiceImpl service;
+
+  private Account account;
+
+  @BeforeEach
+  void setUp() {
+    Member member = new Member();
+    member.setId(MEMBER_ID);
+    account = new Account();
+    account.setMember(member);
+    Metric metric = new Metric();
+    metric.setStreaks(10);
+    when(accountService.getAuthenticatedAccount()).thenReturn(account);
+    when(metricRepository.findByMemberId(MEMBER_ID)).thenReturn(Optional.of(metric));
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private static AchievementRuleIndex.Rule rule(int id, int value) {
+    Achievement a = new Achievement();
+    a.setId(id);
+    a.setName("A" + id);
+    return new AchievementRuleIndex.Rule(a, new ConditionAchievementDTO("streaks", ">=", value));
+  }
+
+  private static Object[] owned(int achievementId) {
+    // native query trả về Timestamp
+    return new Object[] {achievementId, Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 0, 0))};
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Integer> savedIds() {
+    ArgumentCaptor<List<MemberAchievement>> captor = ArgumentCaptor.forClass(List.class);
+    verify(memberAchievementRepository).saveAll(captor.capture());
+    return captor.getValue().stream().map(ma -> ma.getAchievement().getId()).toList();
+  }
+
+  @Test
+  void locksMember_thenReadsOwnedFromDb_notFromCache() {
+    when(achievementRuleIndex.matching("streaks", 10)).thenReturn(List.of(rule(1, 3), rule(2, 7)));
+    when(memberAchievementRepository.findOwnedAchievementIdsForUpdate(MEMBER_ID))
+        .thenReturn(List.<Object[]>of(owned(1)));
+
+    List<Achievement> result = service.addMemberAchievements(List.of("streaks"));
+
+    InOrder inOrder = inOrder(memberRepository, memberAchievementRepository);
+    inOrder.verify(memberRepository).lockById(MEMBER_ID);
+    inOrder.verify(memberAchievementRepository).findOwnedAchievementIdsForUpdate(MEMBER_ID);
+    // achievement 1 đã có trong DB => chỉ thêm 2
+    assertThat(savedIds()).containsExactly(2);
+    assertThat(result).extracting(Achievement::getId).containsExactly(2);
+    verify(memberAchievementRepository, never()).findOwnedAchievementIds(anyInt());
+    verify(cache, never()).get(any(), any(java.util.concurrent.Callable.class));
+    verify(leaderboardService).incrementAchievementCount(MEMBER_ID, 1);
+    verify(notificationService).saveAndSendAchievementNoti(account, result.get(0));
+  }
+
+  @Test
+  void allOwned_savesNothing_andLeavesCacheAlone() {
+    when(achievementRuleIndex.matching("streaks", 10)).thenReturn(List.of(rule(1, 3)));
+    when(memberAchievementRepository.findOwnedAchievementIdsForUpdate(MEMBER_ID))
+        .thenReturn(List.<Object[]>of(owned(1)));
+
+    assertThat(service.addMemberAchievements(List.of("streaks"))).isEmpty();
+
+    verify(memberAchievementRepository, never()).saveAll(any());
+    verifyNoInteractions(leaderboardService, notificationService, cacheManager);
+  }
+
+  @Test
+  void sameAchievementFromTwoFields_isSavedOnce() {
+    AchievementRuleIndex.Rule shared = rule(5, 3);
+    when(achievementRuleIndex.matching(anyString(), anyInt())).thenReturn(List.of(shared));
+    when(memberAchievementRepository.findOwnedAchievementIdsForUpdate(MEMBER_ID))
+        .thenReturn(List.of());
+
+    service.addMemberAchievements(List.of("streaks", "steps"));
+
+    assertThat(savedIds()).containsExactly(5);
+  }
+
+  @Test
+  void evictsCache_onlyAfterCommit() {
+    when(achievementRuleIndex.matching("streaks", 10)).thenReturn(List.of(rule(1, 3)));
+    when(memberAchievementRepository.findOwnedAchievementIdsForUpdate(MEMBER_ID))
+        .thenReturn(List.of());
+    TransactionSynchronizationManager.initSynchronization();
+
+    service.addMemberAchievements(List.of("streaks"));
+
+    // chưa commit => cache chưa bị đụng tới
+    verifyNoInteractions(cacheManager);
+    when(cacheManager.getCache("member_owned_achievements")).thenReturn(cache);
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+
+    verify(cache).evict(MEMBER_ID);
+    verify(cache, never()).put(any(), any());
+  }
+
+  @Test
+  void noTransaction_evictsImmediately() {
+    when(achievementRuleIndex.matching("streaks", 10)).thenReturn(List.of(rule(1, 3)));
+    when(memberAchievementRepository.findOwnedAchievementIdsForUpdate(MEMBER_ID))
+        .thenReturn(List.of());
+    when(cacheManager.getCache("member_owned_achievements")).thenReturn(cache);
+
+    service.addMemberAchievements(List.of("streaks"));
+
+    verify(cache).evict(MEMBER_ID);
+  }
+}
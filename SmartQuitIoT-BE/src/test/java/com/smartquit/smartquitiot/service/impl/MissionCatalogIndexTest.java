@@ -0,0 +1,213 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartquit.smartquitiot.entity.InterestCategory;
+import com.smartquit.smartquitiot.entity.Metric;
+import com.smartquit.smartquitiot.entity.Mission;
+import com.smartquit.smartquitiot.enums.MissionPhase;
+import com.smartquit.smartquitiot.enums.MissionStatus;
+import com.smartquit.smartquitiot.mapper.MissionMapper;
+import com.smartquit.smartquitiot.repository.InterestCategoryRepository;
+import com.smartquit.smartquitiot.repository.MissionRepository;
+import com.smartquit.smartquitiot.repository.MissionTypeRepository;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MissionCatalogIndexTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final long MAX_AGE_NANOS = Duration.ofMinutes(5).toNanos();
+
+  @Mock private MissionRepository missionRepository;
+
+  private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+  private MissionCatalogIndex index;
+
+  @BeforeEach
+  void setUp() {
+    index = new MissionCatalogIndex(missionRepository, now::get);
+  }
+
+  private static JsonNode json(String json) {
+    try {
+      return json == null ? null : MAPPER.readTree(json.replace('\'', '"'));
+    } catch (Exception e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static Mission mission(int id, MissionStatus status, String category, String condition) {
+    Mission m = new Mission();
+    m.setId(id);
+    m.setCode("M" + id);
+    m.setPhase(MissionPhase.ONSET);
+    m.setStatus(status);
+    if (category != null) {
+      InterestCategory c = new InterestCategory();
+      c.setName(category);
+      m.setInterestCategory(c);
+    }
+    m.setCondition(json(condition));
+    return m;
+  }
+
+  private static Mission mission(int id, String category) {
+    return mission(id, MissionStatus.ACTIVE, category, null);
+  }
+
+  private List<Integer> candidateIds(MissionStatus status, List<String> interests) {
+    return index.candidates(MissionPhase.ONSET, status, interests).stream()
+        .map(c -> c.mission().getId())
+        .toList();
+  }
+
+  @Test
+  void candidates_groupByPhaseAndStatus() {
+    Mission other = mission(9, null);
+    other.setPhase(MissionPhase.PREPARATION);
+    when(missionRepository.findAllWithInterestCategory())
+        .thenReturn(
+            List.of(mission(1, null), mission(2, MissionStatus.INACTIVE, null, null), other));
+
+    assertThat(candidateIds(MissionStatus.ACTIVE, null)).containsExactly(1);
+    assertThat(candidateIds(MissionStatus.INACTIVE, List.of())).containsExactly(2);
+    assertThat(index.candidates(MissionPhase.PREPARATION, MissionStatus.ACTIVE, null))
+        .extracting(c -> c.mission().getId())
+        .containsExactly(9);
+    assertThat(index.candidates(MissionPhase.MAINTENANCE, MissionStatus.ACTIVE, null)).isEmpty();
+  }
+
+  @Test
+  void interests_keepUncategorizedAndMatchingCategories_inIdOrder() {
+    when(missionRepository.findAllWithInterestCategory())
+        .thenReturn(
+            List.of(
+                mission(1, "Sports"),
+                mission(2, null),
+                mission(3, "Music"),
+                mission(4, "sports"),
+                mission(5, "Cooking")));
+
+    // không có interest => lấy hết
+    assertThat(candidateIds(MissionStatus.ACTIVE, List.of())).containsExactly(1, 2, 3, 4, 5);
+    // so category không phân biệt hoa thường, interest trùng không nhân đôi
+    List<String> interests = new ArrayList<>(List.of("SPORTS", "music", "Sports"));
+    interests.add(null);
+    assertThat(candidateIds(MissionStatus.ACTIVE, interests)).containsExactly(1, 2, 3, 4);
+    assertThat(candidateIds(MissionStatus.ACTIVE, List.of("Reading"))).containsExactly(2);
+  }
+
+  @Test
+  void conditions_areCompiledAtLoad_andInvalidOnesAreFlagged() {
+    when(missionRepository.findAllWithInterestCategory())
+        .thenReturn(
+            List.of(
+                mission(1, MissionStatus.ACTIVE, null, null),
+                mission(
+                    2,
+                    MissionStatus.ACTIVE,
+                    null,
+                    "{'rules':[{'field':'streaks','operator':'>=','value':3}]}"),
+                mission(3, MissionStatus.ACTIVE, null, "{'rules':[{'operator':'>='}]}")));
+
+    List<MissionCatalogIndex.Candidate> candidates =
+        index.candidates(MissionPhase.ONSET, MissionStatus.ACTIVE, null);
+
+    assertThat(candidates.get(0).condition()).isNull();
+    assertThat(candidates.get(0).invalid()).isFalse();
+    Metric metric = new Metric();
+    metric.setStreaks(3);
+    assertThat(
+            candidates
+                .get(1)
+                .condition()
+                .test(new MissionCatalogIndex.MissionConditionContext(null, metric, null)))
+        .isTrue();
+    metric.setStreaks(2);
+    assertThat(
+            candidates
+                .get(1)
+                .condition()
+                .test(new MissionCatalogIndex.MissionConditionContext(null, metric, null)))
+        .isFalse();
+    assertThat(candidates.get(2).invalid()).isTrue();
+    assertThat(candidates.get(2).condition()).isNull();
+  }
+
+  @Test
+  void snapshot_isReusedUpToMaxAge_thenReloaded() {
+    when(missionRepository.findAllWithInterestCategory())
+        .thenReturn(List.of(mission(1, null)))
+        .thenReturn(List.of(mission(1, null), mission(2, null)));
+
+    assertThat(candidateIds(MissionStatus.ACTIVE, null)).containsExactly(1);
+    now.addAndGet(MAX_AGE_NANOS);
+    // đúng 5 phút vẫn dùng snapshot cũ
+    assertThat(candidateIds(MissionStatus.ACTIVE, null)).containsExactly(1);
+    verify(missionRepository, times(1)).findAllWithInterestCategory();
+
+    now.addAndGet(1);
+    assertThat(candidateIds(MissionStatus.ACTIVE, null)).containsExactly(1, 2);
+    verify(missionRepository, times(2)).findAllWithInterestCategory();
+
+    // snapshot mới tính tuổi lại từ lúc reload
+    now.addAndGet(MAX_AGE_NANOS);
+    assertThat(candidateIds(MissionStatus.ACTIVE, null)).containsExactly(1, 2);
+    verify(missionRepository, times(2)).findAllWithInterestCategory();
+  }
+
+  @Test
+  void invalidate_reloadsOnNextRead() {
+    when(missionRepository.findAllWithInterestCategory())
+        .thenReturn(List.of(mission(1, null)))
+        .thenReturn(List.of(mission(2, null)));
+
+    assertThat(candidateIds(MissionStatus.ACTIVE, null)).containsExactly(1);
+    index.invalidate();
+    verify(missionRepository, times(1)).findAllWithInterestCategory();
+
+    assertThat(candidateIds(MissionStatus.ACTIVE, null)).containsExactly(2);
+  }
+
+  @Test
+  void savingThroughMissionService_invalidatesTheIndex() {
+    MissionMapper missionMapper = mock(MissionMapper.class);
+    MissionServiceImpl missionService =
+        new MissionServiceImpl(
+            missionRepository,
+            MAPPER,
+            missionMapper,
+            mock(MissionTypeRepository.class),
+            mock(InterestCategoryRepository.class),
+            index);
+    Mission active = mission(1, null);
+    when(missionRepository.findAllWithInterestCategory())
+        .thenReturn(List.of(active))
+        .thenReturn(List.of(mission(1, MissionStatus.INACTIVE, null, null)));
+    when(missionRepository.findById(1)).thenReturn(Optional.of(active));
+    when(missionRepository.save(any(Mission.class))).thenAnswer(inv -> inv.getArgument(0));
+
+    assertThat(candidateIds(MissionStatus.ACTIVE, null)).containsExactly(1);
+    missionService.deleteMission(1);
+
+    // chưa hết MAX_AGE nhưng đã reload sau khi lưu
+    assertThat(candidateIds(MissionStatus.ACTIVE, null)).isEmpty();
+    assertThat(candidateIds(MissionStatus.INACTIVE, null)).containsExactly(1);
+    verify(missionRepository, times(2)).findAllWithInterestCategory();
+  }
+}
@@ -0,0 +1,96 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.*;
+
+import com.smartquit.smartquitiot.dto.response.SlotAvailableResponse;
+import com.smartquit.smartquitiot.entity.Slot;
+import com.smartquit.smartquitiot.mapper.CoachMapper;
+import com.smartquit.smartquitiot.repository.CoachRepository;
+import com.smartquit.smartquitiot.repository.CoachWorkScheduleRepository;
+import com.smartquit.smartquitiot.service.SlotService;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduleServiceImplTest {
+
+  @Mock private CoachRepository coachRepository;
+  @Mock private CoachWorkScheduleRepository coachWorkScheduleRepository;
+  @Mock private SlotService slotService;
+  @Mock private CoachMapper coachMapper;
+  @Mock private CoachAvailabilityIndex coachAvailabilityIndex;
+
+  @InjectMocks private ScheduleServiceImpl scheduleService;
+
+  // đầu ngày luôn đã qua, cuối ngày luôn chưa tới => không phụ thuộc giờ chạy test
+  private Slot pastToday;
+  private Slot laterToday;
+
+  @BeforeEach
+  void setUp() {
+    pastToday = new Slot(1, LocalTime.MIN, LocalTime.of(0, 30));
+    laterToday = new Slot(2, LocalTime.MAX, LocalTime.MAX);
+  }
+
+  @Test
+  void getAvailableSlots_today_dropsSlotsThatAlreadyStarted() {
+    LocalDate today = LocalDate.now();
+    when(coachAvailabilityIndex.coachExists(5)).thenReturn(true);
+    when(coachAvailabilityIndex.freeSlots(5, today)).thenReturn(List.of(pastToday, laterToday));
+
+    List<SlotAvailableResponse> result = scheduleService.getAvailableSlots(5, today);
+
+    assertThat(result).extracting(SlotAvailableResponse::getSlotId).containsExactly(2);
+  }
+
+  @Test
+  void getAvailableSlots_futureDate_keepsEveryFreeSlot() {
+    LocalDate tomorrow = LocalDate.now().plusDays(1);
+    when(coachAvailabilityIndex.coachExists(5)).thenReturn(true);
+    when(coachAvailabilityIndex.freeSlots(5, tomorrow)).thenReturn(List.of(pastToday, laterToday));
+
+    List<SlotAvailableResponse> result = scheduleService.getAvailableSlots(5, tomorrow);
+
+    assertThat(result)
+        .extracting(SlotAvailableResponse::getSlotId, SlotAvailableResponse::getStartTime)
+        .containsExactly(tuple(1, LocalTime.MIN), tuple(2, LocalTime.MAX));
+  }
+
+  @Test
+  void getAvailableSlots_pastDate_throws() {
+    when(coachAvailabilityIndex.coachExists(5)).thenReturn(true);
+
+    assertThatThrownBy(() -> scheduleService.getAvailableSlots(5, LocalDate.now().minusDays(1)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Date must not be earlier than today.");
+    verify(coachAvailabilityIndex, never()).freeSlots(anyInt(), any());
+  }
+
+  @Test
+  void getAvailableSlots_unknownCoach_throws() {
+    when(coachAvailabilityIndex.coachExists(5)).thenReturn(false);
+
+    assertThatThrownBy(() -> scheduleService.getAvailableSlots(5, LocalDate.now()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Coach does not exist.");
+  }
+
+  @Test
+  void findAvailableCoaches_passesExcludedCoachToIndex() {
+    LocalDate tomorrow = LocalDate.now().plusDays(1);
+    when(coachAvailabilityIndex.freeCoaches(tomorrow, 3, 7)).thenReturn(List.of());
+
+    assertThat(scheduleService.findAvailableCoaches(tomorrow, 3, 7)).isEmpty();
+    verify(coachAvailabilityIndex).freeCoaches(tomorrow, 3, 7);
+  }
+}
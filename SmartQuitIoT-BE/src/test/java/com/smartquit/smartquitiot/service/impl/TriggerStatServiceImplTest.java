@@ -0,0 +1,119 @@
+package com.smartquit.smartquitiot.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.smartquit.smartquitiot.repository.DiaryRecordRepository;
+import com.smartquit.smartquitiot.repository.MemberRepository;
+import com.smartquit.smartquitiot.repository.MemberTriggerStatRepository;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Pageable;
+
+@ExtendWith(MockitoExtension.class)
+class TriggerStatServiceImplTest {
+
+  @Mock private MemberTriggerStatRepository memberTriggerStatRepository;
+  @Mock private DiaryRecordRepository diaryRecordRepository;
+  @Mock private MemberRepository memberRepository;
+  @Mock private CacheManager cacheManager;
+  @Mock private Cache cache;
+
+  @InjectMocks private TriggerStatServiceImpl service;
+
+  @Test
+  void recordTriggers_withExistingStats_upsertsNormalizedCounts() {
+    when(memberTriggerStatRepository.existsByMember_Id(1)).thenReturn(true);
+    when(cacheManager.getCache("member_top_triggers")).thenReturn(cache);
+
+    service.recordTriggers(1, List.of("stress", " Stress ", "after meal", ""));
+
+    verify(memberTriggerStatRepository).upsertCount(1, "STRESS", 2);
+    verify(memberTriggerStatRepository).upsertCount(1, "AFTER_MEAL", 1);
+    verifyNoInteractions(memberRepository, diaryRecordRepository);
+    verify(cache).evict(1);
+  }
+
+  @Test
+  void recordTriggers_withoutStats_seedsFromHistoryInsteadOfAddingDeltas() {
+    when(memberTriggerStatRepository.existsByMember_Id(1)).thenReturn(false);
+    when(memberTriggerStatRepository.countByMemberIdForUpdate(1)).thenReturn(0L);
+    // lịch sử đã gồm record vừa lưu
+    when(diaryRecordRepository.findTriggersByMemberId(1))
+        .thenReturn(List.of(List.of("stress"), List.of("stress", "coffee")));
+
+    service.recordTriggers(1, List.of("coffee", "stress"));
+
+    verify(memberRepository).lockById(1);
+    verify(memberTriggerStatRepository).setCount(1, "STRESS", 2);
+    verify(memberTriggerStatRepository).setCount(1, "COFFEE", 1);
+    verify(memberTriggerStatRepository, never()).upsertCount(anyInt(), anyString(), anyInt());
+    // không còn row đánh dấu
+    verify(memberTriggerStatRepository, times(2)).setCount(eq(1), anyString(), anyInt());
+  }
+
+  @Test
+  void recordTriggers_seededByAnotherTransaction_addsDeltas() {
+    when(memberTriggerStatRepository.existsByMember_Id(1)).thenReturn(false);
+    when(memberTriggerStatRepository.countByMemberIdForUpdate(1)).thenReturn(3L);
+
+    service.recordTriggers(1, List.of("coffee"));
+
+    verify(memberTriggerStatRepository).upsertCount(1, "COFFEE", 1);
+    verify(memberTriggerStatRepository, never()).setCount(anyInt(), anyString(), anyInt());
+    verifyNoInteractions(diaryRecordRepository);
+  }
+
+  @Test
+  void recordTriggers_withoutTriggers_touchesNothing() {
+    service.recordTriggers(1, List.of(" "));
+    service.recordTriggers(1, null);
+
+    verifyNoInteractions(memberTriggerStatRepository, memberRepository, cacheManager);
+  }
+
+  @Test
+  void getTopTriggers_onlyReads_andCutsToLimit() {
+    when(cacheManager.getCache("member_top_triggers")).thenReturn(null);
+    when(memberTriggerStatRepository.findTopTriggerCodes(eq(1), any(Pageable.class)))
+        .thenReturn(List.of("STRESS", "COFFEE", "ALCOHOL"));
+
+    assertThat(service.getTopTriggers(1, 2)).containsExactly("STRESS", "COFFEE");
+
+    verify(memberTriggerStatRepository, never()).setCount(anyInt(), anyString(), anyInt());
+    verify(memberTriggerStatRepository, never()).upsertCount(anyInt(), anyString(), anyInt());
+    verifyNoInteractions(memberRepository, diaryRecordRepository);
+  }
+
+  @Test
+  void backfill_seedsMembersWithoutStats_andSkipsThoseSeededMeanwhile() {
+    when(diaryRecordRepository.findTriggersOfMembersWithoutStats())
+        .thenReturn(
+            List.of(
+                new Object[] {1, List.of("stress")},
+                new Object[] {1, List.of("Stress", "coffee")},
+                new Object[] {2, List.of("alcohol")},
+                new Object[] {3, List.of()},
+                new Object[] {3, null}));
+    when(memberTriggerStatRepository.countByMemberIdForUpdate(1)).thenReturn(0L);
+    when(memberTriggerStatRepository.countByMemberIdForUpdate(2)).thenReturn(1L);
+    when(cacheManager.getCache("member_top_triggers")).thenReturn(cache);
+
+    service.backfillMissingStats();
+
+    verify(memberTriggerStatRepository).setCount(1, "STRESS", 2);
+    verify(memberTriggerStatRepository).setCount(1, "COFFEE", 1);
+    verify(memberTriggerStatRepository, never()).setCount(eq(2), anyString(), anyInt());
+    // member 3 không có trigger => không khoá, không ghi
+    verify(memberRepository, never()).lockById(3);
+    verify(cache).evict(1);
+    verify(cache, never()).evict(2);
+  }
+}
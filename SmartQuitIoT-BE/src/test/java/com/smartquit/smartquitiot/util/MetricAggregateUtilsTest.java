@@ -0,0 +1,163 @@
+package com.smartquit.smartquitiot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.smartquit.smartquitiot.entity.DiaryRecord;
+import com.smartquit.smartquitiot.entity.Metric;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MetricAggregateUtilsTest {
+
+  private final Random random = new Random(42);
+
+  private DiaryRecord randomRecord() {
+    DiaryRecord record = new DiaryRecord();
+    fill(record);
+    return record;
+  }
+
+  private void fill(DiaryRecord record) {
+    record.setHaveSmoked(random.nextBoolean());
+    record.setCigarettesSmoked(record.isHaveSmoked() ? random.nextInt(30) : 0);
+    record.setCravingLevel(random.nextInt(11));
+    record.setMoodLevel(random.nextInt(11));
+    record.setConfidenceLevel(random.nextInt(11));
+    record.setAnxietyLevel(random.nextInt(11));
+    record.setMoneySpentOnNrt(random.nextInt(20_000) / 100.0);
+  }
+
+  // giống DiaryRecordRepository.aggregateGroupByMember: COUNT/SUM ra Long, SUM double ra Double
+  private static Object[] rescan(int memberId, List<DiaryRecord> records) {
+    if (records.isEmpty()) return null;
+    long craving = 0, mood = 0, confidence = 0, anxiety = 0, cigarettes = 0, smokeFree = 0;
+    double nrt = 0;
+    for (DiaryRecord r : records) {
+      craving += r.getCravingLevel();
+      mood += r.getMoodLevel();
+      confidence += r.getConfidenceLevel();
+      anxiety += r.getAnxietyLevel();
+      cigarettes += r.getCigarettesSmoked();
+      smokeFree += r.isHaveSmoked() ? 0 : 1;
+      nrt += r.getMoneySpentOnNrt();
+    }
+    return new Object[] {
+      memberId,
+      (long) records.size(),
+      craving,
+      mood,
+      confidence,
+      anxiety,
+      cigarettes,
+      smokeFree,
+      nrt
+    };
+  }
+
+  private static void assertSameAggregates(Metric actual, Metric expected) {
+    assertThat(actual)
+        .usingRecursiveComparison()
+        .ignoringFields("nrtTotalSpent")
+        .isEqualTo(expected);
+    assertThat(actual.getNrtTotalSpent()).isCloseTo(expected.getNrtTotalSpent(), within(1e-6));
+  }
+
+  @Test
+  void incrementalLogsAndUpdates_matchFullRescan() {
+    Metric incremental = new Metric();
+    List<DiaryRecord> records = new ArrayList<>();
+
+    for (int step = 0; step < 500; step++) {
+      if (records.isEmpty() || random.nextInt(3) > 0) {
+        // log record mới
+        DiaryRecord record = randomRecord();
+        records.add(record);
+        MetricAggregateUtils.applyRecord(incremental, record, 1);
+      } else {
+        // update: gỡ giá trị cũ rồi cộng giá trị mới như updateDiaryRecord
+        DiaryRecord record = records.get(random.nextInt(records.size()));
+        MetricAggregateUtils.applyRecord(incremental, record, -1);
+        fill(record);
+        MetricAggregateUtils.applyRecord(incremental, record, 1);
+      }
+      MetricAggregateUtils.refreshAverages(incremental);
+
+      Object[] row = rescan(7, records);
+      Metric rescanned = new Metric();
+      MetricAggregateUtils.resetFromRow(rescanned, row);
+      MetricAggregateUtils.refreshAverages(rescanned);
+
+      assertThat(MetricAggregateUtils.matchesRow(incremental, row)).as("step %d", step).isTrue();
+      assertSameAggregates(incremental, rescanned);
+    }
+  }
+
+  @Test
+  void refreshAverages_dividesSumsByCount() {
+    Metric metric = new Metric();
+    DiaryRecord first = new DiaryRecord();
+    first.setCravingLevel(3);
+    first.setMoodLevel(4);
+    first.setConfidenceLevel(5);
+    first.setAnxietyLevel(6);
+    first.setHaveSmoked(true);
+    first.setCigarettesSmoked(10);
+    DiaryRecord second = new DiaryRecord();
+    second.setCravingLevel(4);
+    second.setMoneySpentOnNrt(12.5);
+
+    MetricAggregateUtils.applyRecord(metric, first, 1);
+    MetricAggregateUtils.applyRecord(metric, second, 1);
+    MetricAggregateUtils.refreshAverages(metric);
+
+    assertThat(metric.getDiaryRecordCount()).isEqualTo(2);
+    assertThat(metric.getSmokeFreeDayCount()).isEqualTo(1);
+    assertThat(metric.getAvgCravingLevel()).isEqualTo(3.5);
+    assertThat(metric.getAvgMood()).isEqualTo(2.0);
+    assertThat(metric.getAvgConfidentLevel()).isEqualTo(2.5);
+    assertThat(metric.getAvgAnxiety()).isEqualTo(3.0);
+    assertThat(metric.getAvgCigarettesPerDay()).isEqualTo(5.0);
+    assertThat(metric.getNrtTotalSpent()).isEqualTo(12.5);
+  }
+
+  @Test
+  void resetFromRow_nullRowOrNullSums_meansNoRecords() {
+    Metric metric = new Metric();
+    MetricAggregateUtils.applyRecord(metric, randomRecord(), 1);
+
+    assertThat(MetricAggregateUtils.matchesRow(metric, null)).isFalse();
+    MetricAggregateUtils.resetFromRow(metric, null);
+    assertThat(MetricAggregateUtils.matchesRow(metric, null)).isTrue();
+    assertThat(metric.getDiaryRecordCount()).isZero();
+    assertThat(metric.getNrtTotalSpent()).isZero();
+
+    Object[] emptySums = {7, 0L, null, null, null, null, null, null, null};
+    assertThat(MetricAggregateUtils.matchesRow(metric, emptySums)).isTrue();
+  }
+
+  @Test
+  void matchesRow_detectsDriftInAnySum_andToleratesNrtRounding() {
+    List<DiaryRecord> records = List.of(randomRecord(), randomRecord(), randomRecord());
+    Object[] row = rescan(7, records);
+    Metric metric = new Metric();
+    records.forEach(r -> MetricAggregateUtils.applyRecord(metric, r, 1));
+    assertThat(MetricAggregateUtils.matchesRow(metric, row)).isTrue();
+
+    for (int column = 1; column <= 7; column++) {
+      Object[] drifted = row.clone();
+      drifted[column] = ((Number) row[column]).longValue() + 1;
+      assertThat(MetricAggregateUtils.matchesRow(metric, drifted))
+          .as("column %d", column)
+          .isFalse();
+    }
+
+    Object[] rounding = row.clone();
+    rounding[8] = (double) row[8] + 0.001;
+    assertThat(MetricAggregateUtils.matchesRow(metric, rounding)).isTrue();
+    rounding[8] = (double) row[8] + 0.5;
+    assertThat(MetricAggregateUtils.matchesRow(metric, rounding)).isFalse();
+  }
+}
@@ -0,0 +1,99 @@
+package com.smartquit.smartquitiot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.smartquit.smartquitiot.config.RedisConfig;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+class OwnedAchievementsTest {
+
+  // achievedAt lưu theo millis
+  private static final LocalDateTime T1 = LocalDateTime.of(2025, 1, 2, 3, 4, 5, 6_000_000);
+  private static final LocalDateTime T2 = LocalDateTime.of(2025, 2, 3, 4, 5, 6);
+
+  private static Map<Integer, LocalDateTime> achieved(int... ids) {
+    Map<Integer, LocalDateTime> map = new HashMap<>();
+    for (int i = 0; i < ids.length; i++) {
+      map.put(ids[i], i % 2 == 0 ? T1 : T2);
+    }
+    return map;
+  }
+
+  @Test
+  void empty_ownsNothing() {
+    OwnedAchievements owned = OwnedAchievements.of(Map.of());
+
+    assertThat(owned.getBits()).isEmpty();
+    assertThat(owned.getIds()).isEmpty();
+    assertThat(owned.owns(0)).isFalse();
+    assertThat(owned.owns(-1)).isFalse();
+    assertThat(owned.achievedAtOf(0)).isNull();
+  }
+
+  @Test
+  void owns_acrossWordBoundaries() {
+    int[] ownedIds = {0, 63, 64, 127, 128, 1000};
+    OwnedAchievements owned = OwnedAchievements.of(achieved(ownedIds));
+
+    assertThat(owned.getBits()).hasSize(1000 / 64 + 1);
+    assertThat(owned.getIds()).containsExactly(ownedIds);
+    for (int id = -1; id <= 1100; id++) {
+      boolean expected = false;
+      for (int o : ownedIds) expected |= o == id;
+      assertThat(owned.owns(id)).as("id %d", id).isEqualTo(expected);
+    }
+    assertThat(owned.owns(Integer.MAX_VALUE)).isFalse();
+    assertThat(owned.owns(Integer.MIN_VALUE)).isFalse();
+  }
+
+  @Test
+  void achievedAtOf_returnsTheStoredTime() {
+    Map<Integer, LocalDateTime> map = new HashMap<>();
+    map.put(70, T1);
+    map.put(5, T2);
+    OwnedAchievements owned = OwnedAchievements.of(map);
+
+    assertThat(owned.getIds()).containsExactly(5, 70);
+    assertThat(owned.achievedAtOf(5)).isEqualTo(T2);
+    assertThat(owned.achievedAtOf(70)).isEqualTo(T1);
+    assertThat(owned.achievedAtOf(6)).isNull();
+  }
+
+  @Test
+  void missingAchievedAt_defaultsToNow() {
+    Map<Integer, LocalDateTime> map = new HashMap<>();
+    map.put(1, null);
+    LocalDateTime before = LocalDateTime.now().minusSeconds(1);
+
+    LocalDateTime achievedAt = OwnedAchievements.of(map).achievedAtOf(1);
+
+    assertThat(achievedAt).isBetween(before, LocalDateTime.now());
+  }
+
+  @Test
+  void roundTripsThroughTheCacheSerializer() {
+    GenericJackson2JsonRedisSerializer serializer = RedisConfig.getJsonSerializer();
+
+    for (Map<Integer, LocalDateTime> map :
+        List.of(Map.<Integer, LocalDateTime>of(), achieved(1, 64, 65, 300))) {
+      OwnedAchievements owned = OwnedAchievements.of(map);
+
+      Object decoded = serializer.deserialize(serializer.serialize(owned));
+
+      assertThat(decoded).isInstanceOf(OwnedAchievements.class);
+      assertThat(decoded).usingRecursiveComparison().isEqualTo(owned);
+      OwnedAchievements back = (OwnedAchievements) decoded;
+      map.forEach(
+          (id, at) -> {
+            assertThat(back.owns(id)).isTrue();
+            assertThat(back.achievedAtOf(id)).isEqualTo(at);
+          });
+      assertThat(back.owns(2)).isFalse();
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package com.smartquit.smartquitiot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+  // giống ReminderTimerWheel: 60 x 1s, 60 x 1 phút
+  private final TimingWheel<String> wheel = new TimingWheel<>(1000, 60, 2, 0);
+
+  @Test
+  void deadlineOnTickBoundary_firesOnThatTick_oneMsLaterWaitsForTheNext() {
+    wheel.add("onTick", 5_000);
+    wheel.add("justAfter", 5_001);
+
+    assertThat(wheel.advance(4_999)).isEmpty();
+    assertThat(wheel.advance(5_000)).containsExactly("onTick");
+    assertThat(wheel.advance(5_999)).isEmpty();
+    assertThat(wheel.advance(6_000)).containsExactly("justAfter");
+    assertThat(wheel.size()).isZero();
+  }
+
+  @Test
+  void pastDeadline_isReturnedByTheNextAdvance() {
+    wheel.advance(10_000);
+    wheel.add("late", 3_000);
+    wheel.add("now", 10_000);
+
+    assertThat(wheel.advance(10_000)).containsExactlyInAnyOrder("late", "now");
+  }
+
+  @Test
+  void minuteLevel_cascadesIntoSecondLevel_andFiresOnItsSecond() {
+    wheel.add("lastSecondSlot", 59_000);
+    wheel.add("minuteBoundary", 60_000);
+    wheel.add("twoMinutes", 125_000);
+
+    assertThat(wheel.advance(59_000)).containsExactly("lastSecondSlot");
+    // slot phút đầu tiên đổ xuống đúng lúc deadline
+    assertThat(wheel.advance(60_000)).containsExactly("minuteBoundary");
+    // phút thứ 2 đổ xuống level 0 ở giây 120, còn chờ 5 giây
+    assertThat(wheel.advance(120_000)).isEmpty();
+    assertThat(wheel.advance(124_999)).isEmpty();
+    assertThat(wheel.advance(125_000)).containsExactly("twoMinutes");
+  }
+
+  @Test
+  void advancingManyTicksAtOnce_returnsEveryDueItemInDeadlineOrder() {
+    wheel.add("c", 3_000_000);
+    wheel.add("a", 1_000);
+    wheel.add("b", 61_000);
+
+    assertThat(wheel.advance(3_000_000)).containsExactly("a", "b", "c");
+  }
+
+  @Test
+  void deadlinePastHorizon_isRejected() {
+    assertThat(wheel.horizonMs()).isEqualTo(3_599_000);
+
+    assertThat(wheel.add("last", 3_599_000)).isTrue();
+    assertThat(wheel.add("tooFar", 3_599_001)).isFalse();
+    assertThat(wheel.size()).isEqualTo(1);
+
+    // horizon tính từ tick hiện tại
+    wheel.advance(1_000);
+    assertThat(wheel.add("tooFar", 3_599_001)).isTrue();
+  }
+
+  @Test
+  void addingAScheduledItemAgain_isIgnored() {
+    assertThat(wheel.add("x", 5_000)).isTrue();
+    assertThat(wheel.add("x", 2_000)).isFalse();
+
+    assertThat(wheel.advance(2_000)).isEmpty();
+    assertThat(wheel.advance(5_000)).containsExactly("x");
+  }
+
+  @Test
+  void stalledLongerThanTopLevel_expiresEverything() {
+    wheel.add("second", 10_000);
+    wheel.add("minute", 600_000);
+
+    assertThat(wheel.advance(10_000_000)).containsExactlyInAnyOrder("second", "minute");
+    assertThat(wheel.size()).isZero();
+    assertThat(wheel.advance(10_001_000)).isEmpty();
+  }
+
+  @Test
+  void cancel_dropsItemFromBothLevels() {
+    wheel.add("second", 5_000);
+    wheel.add("minute", 90_000);
+
+    assertThat(wheel.cancel("second")).isTrue();
+    assertThat(wheel.cancel("minute")).isTrue();
+    assertThat(wheel.cancel("minute")).isFalse();
+    assertThat(wheel.size()).isZero();
+
+    assertThat(wheel.advance(200_000)).isEmpty();
+  }
+
+  @Test
+  void cancelThenAddSameDeadline_firesOnce() {
+    wheel.add("x", 5_000);
+    wheel.cancel("x");
+    wheel.add("x", 5_000);
+
+    assertThat(wheel.advance(5_000)).containsExactly("x");
+  }
+
+  @Test
+  void cancelledOverdueItem_isNotReturned() {
+    wheel.advance(10_000);
+    wheel.add("late", 3_000);
+    wheel.cancel("late");
+
+    assertThat(wheel.advance(10_000)).isEmpty();
+  }
+
+  @Test
+  void reschedule_movesItemLaterAndEarlier() {
+    wheel.add("later", 5_000);
+    wheel.add("earlier", 70_000);
+
+    assertThat(wheel.reschedule("later", 70_000)).isTrue();
+    assertThat(wheel.reschedule("earlier", 3_000)).isTrue();
+    assertThat(wheel.size()).isEqualTo(2);
+
+    assertThat(wheel.advance(3_000)).containsExactly("earlier");
+    assertThat(wheel.advance(69_999)).isEmpty();
+    assertThat(wheel.advance(70_000)).containsExactly("later");
+    assertThat(wheel.advance(200_000)).isEmpty();
+  }
+
+  @Test
+  void reschedule_unknownItemSchedulesIt_pastHorizonUnschedulesIt() {
+    assertThat(wheel.reschedule("new", 2_000)).isTrue();
+    assertThat(wheel.reschedule("new", 4_000_000)).isFalse();
+    assertThat(wheel.size()).isZero();
+
+    assertThat(wheel.advance(3_000)).isEmpty();
+  }
+}
@@ -0,0 +1,313 @@
+package com.smartquit.smartquitiot.util.condition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class ConditionCompilerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private record Ctx(Double craving, Integer streaks, Boolean nrt, String mood, Double baseline) {}
+
+  private final AtomicInteger cravingReads = new AtomicInteger();
+
+  private final ConditionCompiler<Ctx> compiler =
+      new ConditionCompiler<>(
+          Map.<String, Function<Ctx, Object>>of(
+              "craving",
+              c -> {
+                cravingReads.incrementAndGet();
+                return c.craving();
+              },
+              "streaks",
+              Ctx::streaks,
+              "use_nrt",
+              Ctx::nrt,
+              "mood",
+              Ctx::mood,
+              "baseline",
+              Ctx::baseline));
+
+  private record Rule(
+      String field, String operator, Object expected, Object actual, boolean passed) {}
+
+  private static JsonNode json(String json) {
+    try {
+      return MAPPER.readTree(json.replace('\'', '"'));
+    } catch (Exception e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static Ctx ctx(Double craving, Integer streaks) {
+    return new Ctx(craving, streaks, null, null, null);
+  }
+
+  private boolean traced(JsonNode condition, Ctx ctx, List<Rule> rules) {
+    return compiler
+        .compile(condition)
+        .test(
+            ctx,
+            (field, operator, expected, actual, passed) ->
+                rules.add(new Rule(field, operator, expected, actual, passed)));
+  }
+
+  @Test
+  void numericOperators_compareAgainstConstant() {
+    Ctx c = ctx(5.0, 3);
+    assertThat(
+            compiler
+                .compile(json("{'rules':[{'field':'craving','operator':'<','value':6}]}"))
+                .test(c))
+        .isTrue();
+    assertThat(
+            compiler
+                .compile(json("{'rules':[{'field':'craving','operator':'<','value':5}]}"))
+                .test(c))
+        .isFalse();
+    assertThat(
+            compiler
+                .compile(json("{'rules':[{'field':'craving','operator':'<=','value':5}]}"))
+                .test(c))
+        .isTrue();
+    assertThat(
+            compiler
+                .compile(json("{'rules':[{'field':'craving','operator':'=','value':5}]}"))
+                .test(c))
+        .isTrue();
+    assertThat(
+            compiler
+                .compile(json("{'rules':[{'field':'streaks','operator':'>=','value':3}]}"))
+                .test(c))
+        .isTrue();
+    assertThat(
+            compiler
+                .compile(json("{'rules':[{'field':'streaks','operator':'>','value':3}]}"))
+                .test(c))
+        .isFalse();
+    // thiếu value => so với 0
+    assertThat(compiler.compile(json("{'rules':[{'field':'streaks','operator':'gt'}]}")).test(c))
+        .isTrue();
+  }
+
+  @Test
+  void nestedAndOr_followsGroupLogic() {
+    JsonNode condition =
+        json(
+            "{'logic':'AND','rules':["
+                + "{'field':'streaks','operator':'>=','value':7},"
+                + "{'logic':'or','rules':["
+                + "{'field':'craving','operator':'<','value':3},"
+                + "{'field':'use_nrt','value':true}]}]}");
+
+    assertThat(compiler.compile(condition).test(new Ctx(2.0, 7, false, null, null))).isTrue();
+    assertThat(compiler.compile(condition).test(new Ctx(8.0, 7, true, null, null))).isTrue();
+    assertThat(compiler.compile(condition).test(new Ctx(8.0, 7, false, null, null))).isFalse();
+    assertThat(compiler.compile(condition).test(new Ctx(2.0, 6, true, null, null))).isFalse();
+  }
+
+  @Test
+  void emptyGroups_andIsTrue_orIsFalse() {
+    assertThat(compiler.compile(json("{'logic':'AND','rules':[]}")).test(ctx(1.0, 1))).isTrue();
+    assertThat(compiler.compile(json("{'logic':'OR','rules':[]}")).test(ctx(1.0, 1))).isFalse();
+    assertThat(compiler.compile(json("{}")).test(ctx(1.0, 1))).isTrue();
+  }
+
+  @Test
+  void shortCircuit_stopsEarly_butTracedEvaluationReportsEveryRule() {
+    JsonNode condition =
+        json(
+            "{'logic':'AND','rules':["
+                + "{'field':'streaks','operator':'>','value':10},"
+                + "{'field':'craving','operator':'<','value':3}]}");
+    Ctx c = ctx(1.0, 2);
+
+    assertThat(compiler.compile(condition).test(c)).isFalse();
+    assertThat(cravingReads).hasValue(0);
+
+    List<Rule> rules = new ArrayList<>();
+    assertThat(traced(condition, c, rules)).isFalse();
+    assertThat(cravingReads).hasValue(1);
+    assertThat(rules)
+        .containsExactly(
+            new Rule("streaks", ">", 10.0, 2, false), new Rule("craving", "<", 3.0, 1.0, true));
+  }
+
+  @Test
+  void shortCircuitAndTracedEvaluation_agreeOnEveryCombination() {
+    JsonNode condition =
+        json(
+            "{'logic':'OR','rules':["
+                + "{'logic':'AND','rules':["
+                + "{'field':'streaks','operator':'>=','value':3},"
+                + "{'field':'craving','operator':'<=','value':4}]},"
+                + "{'field':'mood','value':'happy'},"
+                + "{'field':'use_nrt','value':false}]}");
+
+    for (Integer streaks : new Integer[] {null, 2, 3}) {
+      for (Double craving : new Double[] {null, 4.0, 5.0}) {
+        for (Boolean nrt : new Boolean[] {null, true, false}) {
+          for (String mood : new String[] {null, "HAPPY", "sad"}) {
+            Ctx c = new Ctx(craving, streaks, nrt, mood, null);
+            List<Rule> rules = new ArrayList<>();
+            assertThat(traced(condition, c, rules))
+                .as("%s", c)
+                .isEqualTo(compiler.compile(condition).test(c));
+            assertThat(rules).hasSize(4);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void formulaOperators_applyPercentToBaseField() {
+    Ctx c = new Ctx(5.0, null, null, null, 10.0);
+
+    assertThat(formula("*", 0.5, "=", c)).isTrue();
+    assertThat(formula("+", -5, "=", c)).isTrue();
+    assertThat(formula("-", 5, "=", c)).isTrue();
+    assertThat(formula("/", 2, "=", c)).isTrue();
+    // operator lạ => dùng nguyên base
+    assertThat(formula("%", 3, "<", c)).isTrue();
+    assertThat(formula("*", 0.4, ">", c)).isTrue();
+    assertThat(formula("*", 0.6, ">=", c)).isFalse();
+
+    // base không phải số => so với 0
+    assertThat(formula("*", 0.5, ">", ctx(5.0, null))).isTrue();
+    assertThat(formula("*", 0.5, "<", ctx(5.0, null))).isFalse();
+  }
+
+  @Test
+  void formula_withoutOperator_multiplies() {
+    JsonNode condition =
+        json(
+            "{'rules':[{'field':'craving','operator':'=',"
+                + "'formula':{'base':'baseline','percent':0.5}}]}");
+
+    assertThat(compiler.compile(condition).test(new Ctx(5.0, null, null, null, 10.0))).isTrue();
+  }
+
+  private boolean formula(String op, double percent, String cmp, Ctx c) {
+    JsonNode condition =
+        json(
+            "{'rules':[{'field':'craving','operator':'"
+                + cmp
+                + "','formula':{'base':'baseline','operator':'"
+                + op
+                + "','percent':"
+                + percent
+                + "}}]}");
+    return compiler.compile(condition).test(c);
+  }
+
+  @Test
+  void booleanLeaf_matchesOnlyBooleans() {
+    JsonNode condition = json("{'rules':[{'field':'use_nrt','value':true}]}");
+
+    assertThat(compiler.compile(condition).test(new Ctx(null, null, true, null, null))).isTrue();
+    assertThat(compiler.compile(condition).test(new Ctx(null, null, false, null, null))).isFalse();
+    assertThat(compiler.compile(condition).test(new Ctx(null, null, null, null, null))).isFalse();
+    // field số không bao giờ bằng true
+    assertThat(
+            compiler
+                .compile(json("{'rules':[{'field':'streaks','value':true}]}"))
+                .test(ctx(1.0, 1)))
+        .isFalse();
+  }
+
+  @Test
+  void textLeaf_isCaseInsensitiveEquality() {
+    JsonNode condition = json("{'rules':[{'field':'mood','operator':'=','value':'Happy'}]}");
+
+    assertThat(compiler.compile(condition).test(new Ctx(null, null, null, "HAPPY", null))).isTrue();
+    assertThat(compiler.compile(condition).test(new Ctx(null, null, null, "sad", null))).isFalse();
+    assertThat(compiler.compile(condition).test(new Ctx(null, null, null, null, null))).isFalse();
+    // so bằng toString của giá trị thực tế
+    assertThat(
+            compiler
+                .compile(json("{'rules':[{'field':'streaks','value':'7'}]}"))
+                .test(ctx(null, 7)))
+        .isTrue();
+  }
+
+  @Test
+  void fieldNames_areNormalized_andUnknownFieldsResolveToNull() {
+    Ctx c = new Ctx(1.0, 1, true, "happy", null);
+
+    assertThat(compiler.compile(json("{'rules':[{'field':' Use NRT ','value':true}]}")).test(c))
+        .isTrue();
+
+    List<Rule> rules = new ArrayList<>();
+    JsonNode unknown =
+        json(
+            "{'logic':'OR','rules':["
+                + "{'field':'weight','operator':'>=','value':0},"
+                + "{'field':'weight','value':false},"
+                + "{'field':'weight','value':'x'}]}");
+    assertThat(traced(unknown, c, rules)).isFalse();
+    assertThat(rules).extracting(Rule::actual).containsOnlyNulls();
+    assertThat(rules).extracting(Rule::passed).containsOnly(false);
+  }
+
+  @Test
+  void compile_returnsAFreshTreeEachTime() {
+    JsonNode condition = json("{'rules':[{'field':'streaks','operator':'>','value':1}]}");
+
+    CompiledCondition<Ctx> first = compiler.compile(condition);
+    CompiledCondition<Ctx> second = compiler.compile(condition);
+
+    // không cache theo nội dung JSON; caller tự giữ cây đã compile
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.test(ctx(null, 2))).isEqualTo(first.test(ctx(null, 2))).isTrue();
+  }
+
+  @Test
+  void numericCompiler_comparesNonNumericValuesAgainstZero() {
+    ConditionCompiler<Ctx> numeric =
+        ConditionCompiler.numeric(
+            Map.<String, Function<Ctx, Object>>of(
+                "streaks", Ctx::streaks, "use_nrt", Ctx::nrt, "mood", Ctx::mood));
+    Ctx c = new Ctx(null, 1, true, "happy", null);
+
+    // boolean/text value => so với 0 như evaluator phase cũ, không so bằng
+    assertThat(
+            numeric
+                .compile(json("{'rules':[{'field':'streaks','operator':'>','value':true}]}"))
+                .test(c))
+        .isTrue();
+    assertThat(
+            numeric
+                .compile(json("{'rules':[{'field':'streaks','operator':'<','value':'7'}]}"))
+                .test(c))
+        .isFalse();
+    // field không phải số thì rule luôn fail
+    assertThat(
+            numeric
+                .compile(json("{'rules':[{'field':'use_nrt','operator':'=','value':true}]}"))
+                .test(c))
+        .isFalse();
+    assertThat(
+            numeric
+                .compile(json("{'rules':[{'field':'mood','operator':'=','value':'happy'}]}"))
+                .test(c))
+        .isFalse();
+
+    List<Rule> rules = new ArrayList<>();
+    numeric
+        .compile(json("{'rules':[{'field':'streaks','operator':'>=','value':'x'}]}"))
+        .test(
+            c,
+            (field, operator, expected, actual, passed) ->
+                rules.add(new Rule(field, operator, expected, actual, passed)));
+    assertThat(rules).containsExactly(new Rule("streaks", ">=", 0.0, 1, true));
+  }
+}